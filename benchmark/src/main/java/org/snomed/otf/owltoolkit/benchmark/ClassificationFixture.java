@@ -0,0 +1,101 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.benchmark;
+
+import org.ihtsdo.otf.snomedboot.ReleaseImportException;
+import org.openjdk.jmh.annotations.*;
+import org.semanticweb.elk.owlapi.ElkReasonerFactory;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.reasoner.InferenceType;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+import org.snomed.otf.owltoolkit.classification.ReasonerTaxonomy;
+import org.snomed.otf.owltoolkit.classification.ReasonerTaxonomyWalker;
+import org.snomed.otf.owltoolkit.constants.Concepts;
+import org.snomed.otf.owltoolkit.conversion.AxiomRelationshipConversionService;
+import org.snomed.otf.owltoolkit.conversion.ConversionException;
+import org.snomed.otf.owltoolkit.domain.AxiomRepresentation;
+import org.snomed.otf.owltoolkit.normalform.RelationshipChangeProcessor;
+import org.snomed.otf.owltoolkit.normalform.RelationshipNormalFormGenerator;
+import org.snomed.otf.owltoolkit.ontology.OntologyService;
+import org.snomed.otf.owltoolkit.ontology.PropertyChain;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomy;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomyBuilder;
+import org.snomed.otf.owltoolkit.util.InputStreamSet;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+import static java.lang.Long.parseLong;
+
+/**
+ * Runs the classification stages once per trial so that each benchmark can measure a single stage using the output of the earlier ones.
+ * The stages are run in the same way as {@link org.snomed.otf.owltoolkit.service.SnomedReasonerService} using the ELK reasoner.
+ */
+@State(Scope.Benchmark)
+public class ClassificationFixture {
+
+	public SnomedTaxonomy snomedTaxonomy;
+	public Set<Long> ungroupedRoles;
+	public OWLOntology ontology;
+	public Set<PropertyChain> propertyChains;
+	public OWLReasoner reasoner;
+	public ReasonerTaxonomy reasonerTaxonomy;
+	public Map<Long, Set<AxiomRepresentation>> conceptAxiomStatementMap;
+
+	@Setup(Level.Trial)
+	public void setUp(Rf2Fixture rf2Fixture) throws IOException, ReleaseImportException, OWLOntologyCreationException, ConversionException {
+		try (InputStreamSet snapshotArchives = new InputStreamSet(rf2Fixture.snapshotArchive)) {
+			snomedTaxonomy = new SnomedTaxonomyBuilder().build(snapshotArchives, null, false);
+		}
+		ungroupedRoles = snomedTaxonomy.getUngroupedRolesForContentTypeOrDefault(parseLong(Concepts.ALL_PRECOORDINATED_CONTENT));
+		OntologyService ontologyService = new OntologyService(ungroupedRoles);
+		ontology = ontologyService.createOntology(snomedTaxonomy);
+		propertyChains = ontologyService.getPropertyChains(ontology);
+
+		reasoner = new ElkReasonerFactory().createReasoner(ontology);
+		reasoner.precomputeInferences(InferenceType.CLASS_HIERARCHY);
+		reasonerTaxonomy = new ReasonerTaxonomyWalker(reasoner, new ReasonerTaxonomy()).walk();
+
+		conceptAxiomStatementMap = new AxiomRelationshipConversionService(ungroupedRoles)
+				.convertAxiomsToRelationships(snomedTaxonomy.getConceptAxiomMap(), true);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		reasoner.dispose();
+	}
+
+	/**
+	 * Generates the normal form of the classified taxonomy.
+	 * The change processor updates the group of existing inferred relationships in place, so only the first run can make those updates.
+	 */
+	public RelationshipChangeProcessor collectNormalFormChanges(RelationshipChangeProcessor changeProcessor, int parallelism) {
+		return collectNormalFormChanges(changeProcessor, parallelism, RelationshipNormalFormGenerator.DEFAULT_CLOSURE_CACHE_SIZE);
+	}
+
+	/**
+	 * @param closureCacheSize maximum number of property chain closures cached by the generator
+	 * @see #collectNormalFormChanges(RelationshipChangeProcessor, int)
+	 */
+	public RelationshipChangeProcessor collectNormalFormChanges(RelationshipChangeProcessor changeProcessor, int parallelism, long closureCacheSize) {
+		new RelationshipNormalFormGenerator(reasonerTaxonomy, snomedTaxonomy, conceptAxiomStatementMap, propertyChains, closureCacheSize)
+				.collectNormalFormChanges(changeProcessor, parallelism);
+		return changeProcessor;
+	}
+
+}
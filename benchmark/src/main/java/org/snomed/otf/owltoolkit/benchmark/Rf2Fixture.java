@@ -0,0 +1,110 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.snomed.otf.owltoolkit.ontology.OntologyService;
+import org.snomed.otf.owltoolkit.testutil.SyntheticSnapshotGenerator;
+import org.snomed.otf.snomedboot.testutil.ZipUtil;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * RF2 snapshot archive used as benchmark input.
+ *
+ * Fixture names starting with "MiniRF2_" are test resource directories of the toolkit, found below the directory
+ * given by system property benchmark.fixtures, default ../src/test/resources.
+ * Fixture names "synthetic-N" generate a taxonomy of N concepts with proportions similar to a SNOMED CT edition.
+ * Fixture names "synthetic-groups-N" generate a taxonomy of N concepts with many role groups, which concepts inherit from their ancestors.
+ * Fixture names "synthetic-inferred-N" generate the same taxonomy as "synthetic-N" with inferred relationships.
+ * Fixture names ending in ".zip" are RF2 release archives, for example SnomedCT_InternationalRF2_PRODUCTION_20200731T120000Z.zip
+ */
+@State(Scope.Benchmark)
+public class Rf2Fixture {
+
+	private static final String SYNTHETIC_PREFIX = "synthetic-";
+	private static final String SYNTHETIC_GROUPS_PREFIX = "synthetic-groups-";
+	private static final String SYNTHETIC_INFERRED_PREFIX = "synthetic-inferred-";
+	private static final long SYNTHETIC_SEED = 1;
+
+	@Param({"MiniRF2_Base_CompleteOwl", "synthetic-10000"})
+	public String fixture;
+
+	public File snapshotArchive;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		if (fixture.endsWith(".zip")) {
+			snapshotArchive = new File(fixture);
+		} else if (fixture.startsWith(SYNTHETIC_GROUPS_PREFIX)) {
+			int conceptCount = Integer.parseInt(fixture.substring(SYNTHETIC_GROUPS_PREFIX.length()));
+			snapshotArchive = new SyntheticSnapshotGenerator(conceptCount, 4, SYNTHETIC_SEED)
+					.withMaxDepth(8)
+					.withRoleGroups(8, 2)
+					.withConcreteValues(2)
+					.withPropertyChains(2)
+					.writeSnapshot();
+		} else if (fixture.startsWith(SYNTHETIC_INFERRED_PREFIX)) {
+			int conceptCount = Integer.parseInt(fixture.substring(SYNTHETIC_INFERRED_PREFIX.length()));
+			snapshotArchive = SyntheticSnapshotGenerator.editionScale(conceptCount, SYNTHETIC_SEED).withInferredRelationships().writeSnapshot();
+		} else if (fixture.startsWith(SYNTHETIC_PREFIX)) {
+			int conceptCount = Integer.parseInt(fixture.substring(SYNTHETIC_PREFIX.length()));
+			snapshotArchive = SyntheticSnapshotGenerator.editionScale(conceptCount, SYNTHETIC_SEED).writeSnapshot();
+		} else {
+			String fixturesDirectory = System.getProperty("benchmark.fixtures", "../src/test/resources");
+			snapshotArchive = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines(fixturesDirectory + "/SnomedCT_" + fixture + "_snapshot");
+		}
+	}
+
+	/**
+	 * @return the expressions of the active members of the OWL axiom reference set in the snapshot,
+	 * with the outdated role group constant replaced as the taxonomy loader does.
+	 */
+	public List<String> readOwlAxiomExpressions() throws IOException {
+		List<String> owlExpressions = new ArrayList<>();
+		try (ZipFile zipFile = new ZipFile(snapshotArchive)) {
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				if (!entry.getName().contains("sRefset_OWLAxiomSnapshot")) {
+					continue;
+				}
+				try (BufferedReader reader = new BufferedReader(new InputStreamReader(zipFile.getInputStream(entry), StandardCharsets.UTF_8))) {
+					// Skip header
+					reader.readLine();
+					String line;
+					while ((line = reader.readLine()) != null) {
+						String[] columns = line.split("\t");
+						if (columns.length > 6 && "1".equals(columns[2])) {
+							owlExpressions.add(columns[6].replace(OntologyService.ROLE_GROUP_OUTDATED_CONSTANT, OntologyService.ROLE_GROUP_SCTID));
+						}
+					}
+				}
+			}
+		}
+		return owlExpressions;
+	}
+
+}
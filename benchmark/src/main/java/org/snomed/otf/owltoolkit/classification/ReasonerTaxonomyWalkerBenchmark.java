@@ -0,0 +1,44 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.classification;
+
+import org.openjdk.jmh.annotations.*;
+import org.snomed.otf.owltoolkit.benchmark.ClassificationFixture;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extraction of the inferred hierarchy from a reasoner which has already classified the ontology.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ReasonerTaxonomyWalkerBenchmark {
+
+	@Benchmark
+	public ReasonerTaxonomy walk(ClassificationFixture classificationFixture) {
+		return new ReasonerTaxonomyWalker(classificationFixture.reasoner, new ReasonerTaxonomy()).walk();
+	}
+
+	@Benchmark
+	public ReasonerTaxonomy walkInParallel(ClassificationFixture classificationFixture) {
+		return new ReasonerTaxonomyWalker(classificationFixture.reasoner, new ReasonerTaxonomy())
+				.walkInParallel(Runtime.getRuntime().availableProcessors());
+	}
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.normalform;
+
+import org.openjdk.jmh.annotations.*;
+import org.snomed.otf.owltoolkit.benchmark.ClassificationFixture;
+import org.snomed.otf.owltoolkit.benchmark.Rf2Fixture;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Normal form generation with and without indexed redundancy elimination.
+ * Uses its own fixture of concepts with many role groups because the index is only used for large sets of groups.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class RedundancyEliminationBenchmark {
+
+	@Param({"synthetic-groups-5000"})
+	private String fixture;
+
+	@Param({"false", "true"})
+	private boolean indexedRedundancyElimination;
+
+	private ClassificationFixture classificationFixture;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		final Rf2Fixture rf2Fixture = new Rf2Fixture();
+		rf2Fixture.fixture = fixture;
+		rf2Fixture.setUp();
+		classificationFixture = new ClassificationFixture();
+		classificationFixture.setUp(rf2Fixture);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		classificationFixture.tearDown();
+	}
+
+	@Benchmark
+	public RelationshipChangeProcessor collectNormalFormChanges() {
+		final RelationshipNormalFormGenerator generator = new RelationshipNormalFormGenerator(classificationFixture.reasonerTaxonomy,
+				classificationFixture.snomedTaxonomy, classificationFixture.conceptAxiomStatementMap, classificationFixture.propertyChains);
+		generator.setIndexedRedundancyElimination(indexedRedundancyElimination);
+		final RelationshipChangeProcessor changeProcessor = new RelationshipChangeProcessor();
+		generator.collectNormalFormChanges(changeProcessor);
+		return changeProcessor;
+	}
+
+}
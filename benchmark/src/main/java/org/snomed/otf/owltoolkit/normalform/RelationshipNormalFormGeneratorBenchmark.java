@@ -0,0 +1,90 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.normalform;
+
+import org.openjdk.jmh.annotations.*;
+import org.snomed.otf.owltoolkit.benchmark.ClassificationFixture;
+import org.snomed.otf.owltoolkit.domain.Relationship;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generation of the inferred relationship normal form and the comparison of that with the existing inferred relationships.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class RelationshipNormalFormGeneratorBenchmark {
+
+	@Param({"SORTED", "HASHED"})
+	private RelationshipDiffType diffType;
+
+	private List<ApplyInput> applyInputs;
+
+	@Setup(Level.Trial)
+	public void setUp(ClassificationFixture classificationFixture) {
+		// The first run updates the group numbers of existing inferred relationships in place,
+		// so the recorded inputs are those of the following runs
+		classificationFixture.collectNormalFormChanges(new RelationshipChangeProcessor(), 1);
+		applyInputs = new ArrayList<>();
+		classificationFixture.collectNormalFormChanges(new RelationshipChangeProcessor() {
+			@Override
+			public void apply(long conceptId, Collection<Relationship> existingRelationships, Collection<Relationship> newRelationships) {
+				applyInputs.add(new ApplyInput(conceptId, new ArrayList<>(existingRelationships), new ArrayList<>(newRelationships)));
+				super.apply(conceptId, existingRelationships, newRelationships);
+			}
+		}, 1);
+	}
+
+	@Benchmark
+	public RelationshipChangeProcessor collectNormalFormChanges(ClassificationFixture classificationFixture) {
+		return classificationFixture.collectNormalFormChanges(new RelationshipChangeProcessor(diffType), 1);
+	}
+
+	@Benchmark
+	public RelationshipChangeProcessor collectNormalFormChangesInParallel(ClassificationFixture classificationFixture) {
+		return classificationFixture.collectNormalFormChanges(new RelationshipChangeProcessor(diffType), Runtime.getRuntime().availableProcessors());
+	}
+
+	@Benchmark
+	public RelationshipChangeProcessor apply() {
+		RelationshipChangeProcessor changeProcessor = new RelationshipChangeProcessor(diffType);
+		for (ApplyInput applyInput : applyInputs) {
+			changeProcessor.apply(applyInput.conceptId, applyInput.existingRelationships, applyInput.newRelationships);
+		}
+		return changeProcessor;
+	}
+
+	private static final class ApplyInput {
+
+		private final long conceptId;
+		private final Collection<Relationship> existingRelationships;
+		private final Collection<Relationship> newRelationships;
+
+		private ApplyInput(long conceptId, Collection<Relationship> existingRelationships, Collection<Relationship> newRelationships) {
+			this.conceptId = conceptId;
+			this.existingRelationships = existingRelationships;
+			this.newRelationships = newRelationships;
+		}
+	}
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.normalform;
+
+import org.openjdk.jmh.annotations.*;
+import org.snomed.otf.owltoolkit.benchmark.ClassificationFixture;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Normal form generation with the targeted and the full second pass.
+ * Only taxonomies with property chains recompute concepts in the second pass, such as the synthetic fixture.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SecondNormalisationPassBenchmark {
+
+	@Param({"false", "true"})
+	private boolean targetedSecondPass;
+
+	@Benchmark
+	public RelationshipChangeProcessor collectNormalFormChanges(ClassificationFixture classificationFixture) {
+		final RelationshipNormalFormGenerator generator = new RelationshipNormalFormGenerator(classificationFixture.reasonerTaxonomy,
+				classificationFixture.snomedTaxonomy, classificationFixture.conceptAxiomStatementMap, classificationFixture.propertyChains);
+		generator.setTargetedSecondPass(targetedSecondPass);
+		final RelationshipChangeProcessor changeProcessor = new RelationshipChangeProcessor();
+		generator.collectNormalFormChanges(changeProcessor);
+		return changeProcessor;
+	}
+
+}
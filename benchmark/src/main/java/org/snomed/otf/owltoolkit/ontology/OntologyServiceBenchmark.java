@@ -0,0 +1,85 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.ontology;
+
+import org.ihtsdo.otf.snomedboot.ReleaseImportException;
+import org.openjdk.jmh.annotations.*;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.snomed.otf.owltoolkit.benchmark.ClassificationFixture;
+import org.snomed.otf.owltoolkit.benchmark.Rf2Fixture;
+import org.snomed.otf.owltoolkit.constants.Concepts;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomy;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomyBuilder;
+import org.snomed.otf.owltoolkit.util.InputStreamSet;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.Long.parseLong;
+
+/**
+ * Creation of the OWL ontology from a loaded taxonomy.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class OntologyServiceBenchmark {
+
+	@Benchmark
+	public OWLOntology createOntology(ClassificationFixture classificationFixture) throws OWLOntologyCreationException {
+		return new OntologyService(classificationFixture.ungroupedRoles).createOntology(classificationFixture.snomedTaxonomy);
+	}
+
+	/**
+	 * The "Create OWL Ontology" stage of a classification on a taxonomy the size of a SNOMED CT edition, using one and several threads.
+	 * Only the taxonomy is loaded, the ontology is not classified.
+	 */
+	@State(Scope.Benchmark)
+	public static class EditionOntology {
+
+		@Param({"synthetic-350000"})
+		private String fixture;
+
+		@Param({"1", "4"})
+		private int parallelism;
+
+		private SnomedTaxonomy snomedTaxonomy;
+		private Set<Long> ungroupedRoles;
+
+		@Setup(Level.Trial)
+		public void setUp() throws IOException, ReleaseImportException {
+			final Rf2Fixture rf2Fixture = new Rf2Fixture();
+			rf2Fixture.fixture = fixture;
+			rf2Fixture.setUp();
+			try (InputStreamSet snapshotArchives = new InputStreamSet(rf2Fixture.snapshotArchive)) {
+				snomedTaxonomy = new SnomedTaxonomyBuilder().build(snapshotArchives, null, false);
+			}
+			ungroupedRoles = snomedTaxonomy.getUngroupedRolesForContentTypeOrDefault(parseLong(Concepts.ALL_PRECOORDINATED_CONTENT));
+		}
+	}
+
+	@Benchmark
+	public OWLOntology createEditionOntology(EditionOntology editionOntology) throws OWLOntologyCreationException {
+		final OntologyService ontologyService = new OntologyService(editionOntology.ungroupedRoles);
+		ontologyService.setParallelism(editionOntology.parallelism);
+		return ontologyService.createOntology(editionOntology.snomedTaxonomy);
+	}
+
+}
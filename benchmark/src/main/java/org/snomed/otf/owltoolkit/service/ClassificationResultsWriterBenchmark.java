@@ -0,0 +1,61 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.snomed.otf.owltoolkit.benchmark.ClassificationFixture;
+import org.snomed.otf.owltoolkit.normalform.RelationshipChangeProcessor;
+
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing of the results archive. The archive is compressed but not stored.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ClassificationResultsWriterBenchmark {
+
+	private RelationshipChangeProcessor changeProcessor;
+
+	@Setup(Level.Trial)
+	public void setUp(ClassificationFixture classificationFixture) {
+		changeProcessor = classificationFixture.collectNormalFormChanges(new RelationshipChangeProcessor(), 1);
+	}
+
+	@Benchmark
+	public void writeResultsRf2Archive(ClassificationFixture classificationFixture) throws ReasonerServiceException {
+		new ClassificationResultsWriter().writeResultsRf2Archive(changeProcessor, classificationFixture.reasonerTaxonomy.getEquivalentConceptIds(),
+				new DiscardingOutputStream(), new Date());
+	}
+
+	private static final class DiscardingOutputStream extends OutputStream {
+
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	}
+
+}
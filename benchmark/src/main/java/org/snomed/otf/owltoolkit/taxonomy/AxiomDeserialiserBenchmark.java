@@ -0,0 +1,57 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.taxonomy;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.snomed.otf.owltoolkit.benchmark.Rf2Fixture;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deserialisation of all OWL axiom expressions of the snapshot, without the RF2 import,
+ * using the SNOMED axiom parser with the OWL API parser as fallback, or the OWL API parser alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class AxiomDeserialiserBenchmark {
+
+	@Param({"true", "false"})
+	public boolean snomedAxiomParser;
+
+	private List<String> owlExpressions;
+
+	@Setup(Level.Trial)
+	public void setUp(Rf2Fixture rf2Fixture) throws IOException {
+		owlExpressions = rf2Fixture.readOwlAxiomExpressions();
+	}
+
+	@Benchmark
+	public void deserialiseAxioms(Blackhole blackhole) throws OWLOntologyCreationException {
+		AxiomDeserialiser axiomDeserialiser = new AxiomDeserialiser(false, snomedAxiomParser);
+		for (String owlExpression : owlExpressions) {
+			blackhole.consume(axiomDeserialiser.deserialiseAxiom(owlExpression, null));
+		}
+	}
+
+}
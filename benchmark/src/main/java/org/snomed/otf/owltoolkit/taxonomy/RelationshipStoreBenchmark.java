@@ -0,0 +1,88 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.taxonomy;
+
+import org.ihtsdo.otf.snomedboot.ReleaseImportException;
+import org.openjdk.jmh.annotations.*;
+import org.snomed.otf.owltoolkit.benchmark.Rf2Fixture;
+import org.snomed.otf.owltoolkit.metrics.JvmSample;
+import org.snomed.otf.owltoolkit.util.InputStreamSet;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading an RF2 snapshot archive into a taxonomy with each type of relationship store.
+ * Besides the load time, reports the heap retained by the loaded taxonomy and the peak heap while loading, in megabytes.
+ * Use a fixture with inferred relationships, for example synthetic-inferred-500000 or a release archive,
+ * and give the forked JVM a large heap with -jvmArgsAppend.
+ * JMH adds up the heap counters of all measurement iterations and forks, so keep the default of one of each.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 1)
+@Measurement(iterations = 1)
+public class RelationshipStoreBenchmark {
+
+	@Param({"MAP", "COLUMNAR"})
+	public RelationshipStoreType relationshipStoreType;
+
+	// Kept until the next load so that the heap it retains can be measured
+	private SnomedTaxonomy snomedTaxonomy;
+
+	@Benchmark
+	public void load(Rf2Fixture rf2Fixture, HeapCounters heapCounters) throws IOException, ReleaseImportException {
+		JvmSample start = JvmSample.take();
+		try (InputStreamSet snapshotArchives = new InputStreamSet(rf2Fixture.snapshotArchive)) {
+			snomedTaxonomy = new SnomedTaxonomyBuilder().build(snapshotArchives, null, false, relationshipStoreType);
+		}
+		heapCounters.peakHeapMegabytes = start.measurePhase("Load", JvmSample.take()).getPeakHeapBytes() / (1024 * 1024);
+	}
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class HeapCounters {
+
+		public long retainedHeapMegabytes;
+		public long peakHeapMegabytes;
+
+		private long heapBefore;
+
+		@Setup(Level.Iteration)
+		public void setUp(RelationshipStoreBenchmark benchmark) {
+			benchmark.snomedTaxonomy = null;
+			retainedHeapMegabytes = 0;
+			peakHeapMegabytes = 0;
+			heapBefore = usedHeap();
+		}
+
+		@TearDown(Level.Iteration)
+		public void tearDown() {
+			retainedHeapMegabytes = (usedHeap() - heapBefore) / (1024 * 1024);
+		}
+
+		private static long usedHeap() {
+			Runtime runtime = Runtime.getRuntime();
+			for (int i = 0; i < 3; i++) {
+				System.gc();
+			}
+			return runtime.totalMemory() - runtime.freeMemory();
+		}
+	}
+
+}
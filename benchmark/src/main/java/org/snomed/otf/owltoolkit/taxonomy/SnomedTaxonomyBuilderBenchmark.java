@@ -0,0 +1,43 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.taxonomy;
+
+import org.ihtsdo.otf.snomedboot.ReleaseImportException;
+import org.openjdk.jmh.annotations.*;
+import org.snomed.otf.owltoolkit.benchmark.Rf2Fixture;
+import org.snomed.otf.owltoolkit.util.InputStreamSet;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading an RF2 snapshot archive into a taxonomy, including deserialisation of the OWL axioms.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SnomedTaxonomyBuilderBenchmark {
+
+	@Benchmark
+	public SnomedTaxonomy build(Rf2Fixture rf2Fixture) throws IOException, ReleaseImportException {
+		try (InputStreamSet snapshotArchives = new InputStreamSet(rf2Fixture.snapshotArchive)) {
+			return new SnomedTaxonomyBuilder().build(snapshotArchives, null, false);
+		}
+	}
+
+}
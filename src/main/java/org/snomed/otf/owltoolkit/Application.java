@@ -8,8 +8,12 @@ import org.snomed.otf.owltoolkit.conversion.OWLAxiomToStatedRelationshipService;
 import org.snomed.otf.owltoolkit.conversion.RF2ToOWLService;
 import org.snomed.otf.owltoolkit.conversion.StatedRelationshipToOwlRefsetService;
 import org.snomed.otf.owltoolkit.ontology.OntologyService;
+import org.snomed.otf.owltoolkit.service.ClassificationHttpServer;
 import org.snomed.otf.owltoolkit.service.ReasonerServiceException;
+import org.snomed.otf.owltoolkit.service.ResidentClassificationService;
 import org.snomed.otf.owltoolkit.service.SnomedReasonerService;
+import org.snomed.otf.owltoolkit.taxonomy.RelationshipStoreType;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomyCache;
 import org.snomed.otf.owltoolkit.util.InputStreamSet;
 import org.snomed.otf.owltoolkit.util.OptionalFileInputStream;
 
@@ -34,6 +38,11 @@ public class Application {
 	private static final String ARG_DEBUG = "-debug";
 	private static final String ARG_RF2_TO_OWL = "-rf2-to-owl";
 	private static final String ARG_CLASSIFY = "-classify";
+	private static final String ARG_CLASSIFICATION_SERVER = "-classification-server";
+	private static final String ARG_INCREMENTAL_REASONING = "-incremental-reasoning";
+	private static final String ARG_PARALLEL_TAXONOMY_EXTRACTION = "-parallel-taxonomy-extraction";
+	private static final String ARG_METRICS_REPORT = "-metrics-report";
+	private static final String ARG_COLUMNAR_RELATIONSHIPS = "-columnar-relationships";
 	private static final String ARG_RF2_STATED_TO_COMPLETE_OWL = "-rf2-stated-to-complete-owl";
 	private static final String ARG_RF2_OWL_TO_STATED = "-rf2-owl-to-stated";
 	private static final String ARG_RF2_SNAPSHOT_ARCHIVES = "-rf2-snapshot-archives";
@@ -42,6 +51,8 @@ public class Application {
 	private static final String ARG_URI = "-uri";
 	private static final String ARG_VERSION = "-version";
 	private static final String ARG_WITHOUT_ANNOTATIONS = "-without-annotations";
+	private static final String ARG_STREAMING_OUTPUT = "-streaming-output";
+	private static final String ARG_SNAPSHOT_CACHE = "-snapshot-cache";
 	private static final SimpleDateFormat DATETIME_FORMAT = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss");
 	private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyyMMdd");
 	private static final String STATED_RELATIONSHIP_SNAPSHOT = "sct2_StatedRelationship_Snapshot.txt";
@@ -74,6 +85,9 @@ public class Application {
 			if (args.contains(ARG_CLASSIFY)) {
 				modeFound = true;
 				classify(args);
+			} else if (args.contains(ARG_CLASSIFICATION_SERVER)) {
+				modeFound = true;
+				runClassificationServer(args);
 			} else if (args.contains(ARG_RF2_STATED_TO_COMPLETE_OWL)) {
 				modeFound = true;
 				statedRelationshipsToOwlReferenceSet(args);
@@ -95,7 +109,15 @@ public class Application {
 		File deltaFile = getDeltaFiles(args);
 
 		File resultsFile = new File("classification-results-" + DATETIME_FORMAT.format(new Date()) + ZIP);
-		new SnomedReasonerService().classify(
+		SnomedReasonerService snomedReasonerService = new SnomedReasonerService();
+		String snapshotCacheDirectory = getParameterValue(ARG_SNAPSHOT_CACHE, args);
+		if (snapshotCacheDirectory != null) {
+			snomedReasonerService.setSnapshotCache(new SnomedTaxonomyCache(new File(snapshotCacheDirectory)));
+		}
+		snomedReasonerService.setParallelTaxonomyExtraction(args.contains(ARG_PARALLEL_TAXONOMY_EXTRACTION));
+		snomedReasonerService.setWriteMetricsReport(args.contains(ARG_METRICS_REPORT));
+		snomedReasonerService.setRelationshipStoreType(getRelationshipStoreType(args));
+		snomedReasonerService.classify(
 				"command-line",
 				snapshotFiles,
 				deltaFile,
@@ -107,6 +129,32 @@ public class Application {
 		System.out.println("Classification results written to " + resultsFile.getAbsolutePath());
 	}
 
+	private void runClassificationServer(List<String> args) throws ReasonerServiceException, IOException {
+		Set<File> snapshotFiles = getSnapshotFiles(args);
+		String portString = getRequiredParameterValue(ARG_CLASSIFICATION_SERVER, args);
+		int port;
+		try {
+			port = Integer.parseInt(portString);
+		} catch (NumberFormatException e) {
+			assertTrue("Expecting a port number after " + ARG_CLASSIFICATION_SERVER, false);
+			return;
+		}
+		String snapshotCacheDirectory = getParameterValue(ARG_SNAPSHOT_CACHE, args);
+		SnomedTaxonomyCache snapshotCache = snapshotCacheDirectory != null ? new SnomedTaxonomyCache(new File(snapshotCacheDirectory)) : null;
+
+		ResidentClassificationService classificationService = ResidentClassificationService.load(snapshotFiles, snapshotCache,
+				SnomedReasonerService.ELK_REASONER_FACTORY, args.contains(ARG_INCREMENTAL_REASONING), getRelationshipStoreType(args));
+		ClassificationHttpServer server = new ClassificationHttpServer(classificationService, port);
+		server.start();
+		System.out.println("Classification server listening on port " + server.getPort() + ". POST RF2 delta archives to " + ClassificationHttpServer.CLASSIFY_PATH);
+		try {
+			server.awaitStop();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			server.stop();
+		}
+	}
+
 	// RF2 to OWL
 	private void rf2ToOwl(List<String> args) throws ConversionException, IOException {
 		// Parameter validation
@@ -121,6 +169,7 @@ public class Application {
 		String versionDate = getEffectiveDate(args);
 
 		boolean includeDescriptions = !args.contains(ARG_WITHOUT_ANNOTATIONS);
+		boolean streamingOutput = args.contains(ARG_STREAMING_OUTPUT);
 
 		System.out.println();
 		System.out.println("Creating Ontology using the following options:");
@@ -129,6 +178,7 @@ public class Application {
 		System.out.println("  Ontology URI: " + ontologyUri);
 		System.out.println("  Ontology Version: " + versionDate);
 		System.out.println("  Include Description Annotations: " + includeDescriptions);
+		System.out.println("  Streaming Output: " + streamingOutput);
 		System.out.println();
 
 		// Conversion
@@ -142,7 +192,9 @@ public class Application {
 			 OptionalFileInputStream deltaStream = new OptionalFileInputStream(deltaFile);
 			 FileOutputStream outputStream = new FileOutputStream(ontologyOutputFile)) {
 
-			new RF2ToOWLService().convertRF2ArchiveToOWL(ontologyUri, versionDate, includeDescriptions, snapshotStreams, deltaStream, outputStream);
+			RF2ToOWLService rf2ToOWLService = new RF2ToOWLService();
+			rf2ToOWLService.setStreamingOutput(streamingOutput);
+			rf2ToOWLService.convertRF2ArchiveToOWL(ontologyUri, versionDate, includeDescriptions, snapshotStreams, deltaStream, outputStream);
 		} catch (IOException e) {
 			System.err.println("Failed to close input or output stream.");
 			e.printStackTrace();
@@ -271,6 +323,16 @@ public class Application {
 						pad(ARG_CLASSIFY) +
 						"Run classification process.\n" +
 						pad("") + "Results are written to an RF2 delta archive.\n" +
+						pad("") + "Add " + ARG_PARALLEL_TAXONOMY_EXTRACTION + " to read the inferred hierarchy from the reasoner using one thread per core.\n" +
+						pad("") + "Add " + ARG_METRICS_REPORT + " to also write a JSON report of the time, memory and counts of each phase next to the results.\n" +
+						pad("") + "Add " + ARG_COLUMNAR_RELATIONSHIPS + " to hold relationships in primitive arrays, using less memory for large releases.\n" +
+						"\n" +
+
+						pad(ARG_CLASSIFICATION_SERVER + " <port>") +
+						"Load the Snapshots once and run a local classification server on the given port.\n" +
+						pad("") + "POST an RF2 delta archive to " + ClassificationHttpServer.CLASSIFY_PATH + ", the response is the RF2 results delta archive.\n" +
+						pad("") + "Add " + ARG_INCREMENTAL_REASONING + " to also keep the ontology and reasoner loaded and apply each delta incrementally.\n" +
+						pad("") + "Add " + ARG_COLUMNAR_RELATIONSHIPS + " to hold the relationships of the Snapshots in primitive arrays, using less memory.\n" +
 						"\n" +
 
 						pad(ARG_RF2_TO_OWL) +
@@ -306,6 +368,11 @@ public class Application {
 						"(Optional) Path to a zip file containing RF2 Delta files to be applied on top \n" +
 						pad("") + "of the Snapshots. This is helpful during an authoring cycle.\n" +
 						"\n" +
+
+						pad(ARG_SNAPSHOT_CACHE + " <path>") +
+						"(Optional) Directory used to cache the taxonomy built from the Snapshots when classifying.\n" +
+						pad("") + "Classifying again with the same Snapshots loads the taxonomy from this cache.\n" +
+						"\n" +
 						pad(ARG_DEBUG) +
 						"Additional output for debugging.\n" +
 						"\n" +
@@ -328,6 +395,11 @@ public class Application {
 						pad("") + "resulting in a smaller file size.\n" +
 						"\n" +
 
+						pad(ARG_STREAMING_OUTPUT) +
+						"(Optional) Flag to write the ontology concept by concept without building it in memory first.\n" +
+						pad("") + "The file is the same, memory use stays low for large editions.\n" +
+						"\n" +
+
 						"");
 	}
 
@@ -339,6 +411,10 @@ public class Application {
 		return versionDate;
 	}
 
+	private RelationshipStoreType getRelationshipStoreType(List<String> args) {
+		return args.contains(ARG_COLUMNAR_RELATIONSHIPS) ? RelationshipStoreType.COLUMNAR : RelationshipStoreType.MAP;
+	}
+
 	private String getParameterValue(String paramName, List<String> args) {
 		if (args.indexOf(paramName) > -1) {
 			return args.get(args.indexOf(paramName) + 1);
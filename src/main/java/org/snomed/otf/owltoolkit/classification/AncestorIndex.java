@@ -0,0 +1,44 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.classification;
+
+import java.io.Serializable;
+import java.util.Set;
+
+/**
+ * Ancestors of the concepts of a {@link ReasonerTaxonomy}.
+ */
+interface AncestorIndex extends Serializable {
+
+	/**
+	 * Makes sure the concept has an entry. Once all concepts involved have entries the ancestors of different concepts
+	 * can be added from several threads.
+	 */
+	void register(long conceptId);
+
+	/**
+	 * Adds the parents and the current ancestors of each parent to the ancestors of the concept.
+	 */
+	void addAncestors(long conceptId, Set<Long> parentIds);
+
+	boolean isAncestor(long conceptId, long ancestorId);
+
+	/**
+	 * @return the ancestors of the concept, empty if the concept is not known. Must not be modified.
+	 */
+	Set<Long> getAncestors(long conceptId);
+
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.classification;
+
+/**
+ * How the ancestors of each concept are held in a {@link ReasonerTaxonomy}.
+ */
+public enum AncestorIndexType {
+
+	/**
+	 * One hash set of ancestor ids per concept.
+	 */
+	HASH_SET,
+
+	/**
+	 * Concepts are given dense int indexes and the ancestors of each concept are held as a sorted array of indexes.
+	 * Uses a fraction of the heap of HASH_SET and ancestor tests do not allocate.
+	 */
+	SORTED_ARRAY
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.classification;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+import java.util.Collections;
+import java.util.Set;
+
+class HashSetAncestorIndex implements AncestorIndex {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Long2ObjectOpenHashMap<Set<Long>> ancestorIds = new Long2ObjectOpenHashMap<>();
+
+	@Override
+	public void register(long conceptId) {
+		getOrCreateSet(conceptId);
+	}
+
+	@Override
+	public void addAncestors(long conceptId, Set<Long> parentIds) {
+		Set<Long> ancestors = getOrCreateSet(conceptId);
+		ancestors.addAll(parentIds);
+		for (Long parentId : parentIds) {
+			ancestors.addAll(getAncestors(parentId));
+		}
+	}
+
+	@Override
+	public boolean isAncestor(long conceptId, long ancestorId) {
+		Set<Long> ancestors = ancestorIds.get(conceptId);
+		return ancestors != null && ancestors.contains(ancestorId);
+	}
+
+	@Override
+	public Set<Long> getAncestors(long conceptId) {
+		Set<Long> ancestors = ancestorIds.get(conceptId);
+		return ancestors != null ? ancestors : Collections.emptySet();
+	}
+
+	private Set<Long> getOrCreateSet(long conceptId) {
+		Set<Long> ancestors = ancestorIds.get(conceptId);
+		if (ancestors == null) {
+			ancestors = new LongOpenHashSet();
+			ancestorIds.put(conceptId, ancestors);
+		}
+		return ancestors;
+	}
+
+}
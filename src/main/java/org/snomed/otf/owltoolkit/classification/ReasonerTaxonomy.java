@@ -16,6 +16,7 @@
  */
 package org.snomed.otf.owltoolkit.classification;
 
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
@@ -23,6 +24,8 @@ import org.snomed.otf.owltoolkit.domain.Relationship;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 
 public class ReasonerTaxonomy implements Serializable {
 
@@ -31,11 +34,16 @@ public class ReasonerTaxonomy implements Serializable {
 	private final List<Set<Long>> equivalentConceptIds = new ArrayList<>();
 	private final Set<Long> unsatisfiableConceptIds = new LongOpenHashSet();
 	private final Map<Long, Set<Long>> parentIds = new Long2ObjectOpenHashMap<>();
-	private final Map<Long, Set<Long>> ancestorIds = new Long2ObjectOpenHashMap<>();
+	private final AncestorIndex ancestorIndex;
 	private final List<Long> insertionOrderedIds = new LongArrayList();
 	private final List<Long> insertionOrderedAttributeIds = new LongArrayList();
 
 	public ReasonerTaxonomy() {
+		this(AncestorIndexType.SORTED_ARRAY);
+	}
+
+	public ReasonerTaxonomy(final AncestorIndexType ancestorIndexType) {
+		ancestorIndex = ancestorIndexType == AncestorIndexType.HASH_SET ? new HashSetAncestorIndex() : new SortedArrayAncestorIndex();
 	}
 	
 	public void addEquivalentConceptIds(final Set<Long> conceptIds) {
@@ -57,12 +65,73 @@ public class ReasonerTaxonomy implements Serializable {
 	public void addEntry(final ReasonerTaxonomyEntry entry) {
 		insertionOrderedIds.add(entry.getSourceId());
 		getOrCreateSet(parentIds, entry.getSourceId()).addAll(entry.getParentIds());
-		getOrCreateSet(ancestorIds, entry.getSourceId()).addAll(entry.getParentIds());
-		for (Long parentId : entry.getParentIds()) {
-			getOrCreateSet(ancestorIds, entry.getSourceId()).addAll(getOrCreateSet(ancestorIds, parentId));
+		ancestorIndex.addAncestors(entry.getSourceId(), entry.getParentIds());
+	}
+
+	/**
+	 * Adds entries in the given order with the same result as calling {@link #addEntry(ReasonerTaxonomyEntry)} for each one.
+	 * The parents of an entry must come before it. Ancestors are computed after all entries are added, in waves by depth in the hierarchy.
+	 * Entries of one wave only read the ancestors of earlier waves so each wave is processed in parallel using the pool.
+	 */
+	public void addEntries(final List<ReasonerTaxonomyEntry> entries, final ForkJoinPool pool) throws InterruptedException, ExecutionException {
+		final Map<Long, ReasonerTaxonomyEntry> entriesById = new Long2ObjectOpenHashMap<>(entries.size());
+		for (ReasonerTaxonomyEntry entry : entries) {
+			insertionOrderedIds.add(entry.getSourceId());
+			getOrCreateSet(parentIds, entry.getSourceId()).addAll(entry.getParentIds());
+			ancestorIndex.register(entry.getSourceId());
+			for (Long parentId : entry.getParentIds()) {
+				ancestorIndex.register(parentId);
+			}
+			entriesById.put(entry.getSourceId(), entry);
+		}
+
+		final Long2IntOpenHashMap depths = new Long2IntOpenHashMap(entries.size());
+		final List<List<ReasonerTaxonomyEntry>> entriesByDepth = new ArrayList<>();
+		for (ReasonerTaxonomyEntry entry : entries) {
+			final int depth = getDepth(entry.getSourceId(), entriesById, depths);
+			while (entriesByDepth.size() <= depth) {
+				entriesByDepth.add(new ArrayList<>());
+			}
+			entriesByDepth.get(depth).add(entry);
+		}
+
+		// All concepts are registered so each task only writes to the ancestors of its own entry
+		for (List<ReasonerTaxonomyEntry> wave : entriesByDepth) {
+			pool.submit(() -> wave.parallelStream()
+					.forEach(entry -> ancestorIndex.addAncestors(entry.getSourceId(), entry.getParentIds()))).get();
 		}
 	}
 
+	private int getDepth(final long id, final Map<Long, ReasonerTaxonomyEntry> entriesById, final Long2IntOpenHashMap depths) {
+		final Deque<Long> stack = new ArrayDeque<>();
+		stack.push(id);
+		while (!stack.isEmpty()) {
+			final long current = stack.peek();
+			if (depths.containsKey(current)) {
+				stack.pop();
+				continue;
+			}
+			int depth = 0;
+			boolean parentDepthsKnown = true;
+			for (Long parentId : entriesById.get(current).getParentIds()) {
+				if (!entriesById.containsKey(parentId)) {
+					continue;
+				}
+				if (depths.containsKey((long) parentId)) {
+					depth = Math.max(depth, depths.get((long) parentId) + 1);
+				} else {
+					stack.push(parentId);
+					parentDepthsKnown = false;
+				}
+			}
+			if (parentDepthsKnown) {
+				depths.put(current, depth);
+				stack.pop();
+			}
+		}
+		return depths.get(id);
+	}
+
 	private Set<Long> getOrCreateSet(final Map<Long, Set<Long>> map, final long key) {
 		if (map.containsKey(key)) {
 			return map.get(key);
@@ -86,7 +155,21 @@ public class ReasonerTaxonomy implements Serializable {
 	}
 	
 	public Set<Long> getAncestors(final long sourceId) {
-		return getOrReturnEmptySet(ancestorIds, sourceId);
+		return ancestorIndex.getAncestors(sourceId);
+	}
+
+	/**
+	 * @return true if ancestorId is an ancestor of sourceId. Does not allocate.
+	 */
+	public boolean isAncestor(final long sourceId, final long ancestorId) {
+		return ancestorIndex.isAncestor(sourceId, ancestorId);
+	}
+
+	/**
+	 * @return true if ancestorId is the same as or an ancestor of sourceId. Does not allocate.
+	 */
+	public boolean isSameOrAncestor(final long sourceId, final long ancestorId) {
+		return sourceId == ancestorId || ancestorIndex.isAncestor(sourceId, ancestorId);
 	}
 	
 	public List<Long> getConceptIds() {
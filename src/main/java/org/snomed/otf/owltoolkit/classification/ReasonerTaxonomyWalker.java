@@ -16,6 +16,9 @@
  */
 package org.snomed.otf.owltoolkit.classification;
 
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import org.semanticweb.owlapi.model.*;
 import org.semanticweb.owlapi.reasoner.Node;
@@ -26,8 +29,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.snomed.otf.owltoolkit.constants.Concepts;
 import org.snomed.otf.owltoolkit.ontology.OntologyHelper;
+import org.snomed.otf.owltoolkit.ontology.OntologyService;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 
 public class ReasonerTaxonomyWalker {
@@ -76,17 +82,307 @@ public class ReasonerTaxonomyWalker {
 		processedConceptIds.clear();
 		processedConceptIds = null;
 
+		moveAttributeIdsAfterConceptModelAttribute();
+
+		LOGGER.info("<<< taxonomy extraction");
+		return taxonomy;
+	}
+
+	private void moveAttributeIdsAfterConceptModelAttribute() {
 		// Move attribute ids to after 'Concept model attribute' concept so they are processed in the correct order.
 		List<Long> attributeIds = taxonomy.getAttributeIds();
 		attributeIds.remove(Concepts.CONCEPT_MODEL_ATTRIBUTE_LONG);
 		List<Long> conceptIds = taxonomy.getConceptIds();
 		conceptIds.removeAll(attributeIds);
 		conceptIds.addAll(conceptIds.indexOf(Concepts.CONCEPT_MODEL_ATTRIBUTE_LONG) + 1, attributeIds);
+	}
+
+	/**
+	 * Builds the same taxonomy as {@link #walk()} using several threads. The reasoner must have precomputed the class hierarchy
+	 * so that the hierarchy queries made from the threads only read it.
+	 *
+	 * The concept classes are shared out across a fork-join pool which collects the direct parents and equivalent concepts of each node.
+	 * The entries are then added to the taxonomy parents first and the ancestors are computed in a separate parallel pass.
+	 *
+	 * @param parallelism number of threads to use.
+	 */
+	public ReasonerTaxonomy walkInParallel(int parallelism) {
+		LOGGER.info(">>> SnomedTaxonomy extraction using {} threads", parallelism);
+
+		extractProperties();
+
+		List<OWLClass> conceptClasses = owlOntology.getClassesInSignature().stream()
+				.filter(OntologyHelper::isConceptClass)
+				.collect(Collectors.toList());
+
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			List<NodeEntry> nodeEntries = pool.submit(() -> conceptClasses.parallelStream()
+					.map(this::getNodeEntry)
+					.filter(Objects::nonNull)
+					.collect(Collectors.toList())).get();
+
+			taxonomy.addEntries(getTaxonomyEntriesParentsFirst(nodeEntries), pool);
+			moveAttributeIdsAfterConceptModelAttribute();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while extracting taxonomy.", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Failed to extract taxonomy.", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+
+		LOGGER.info("<<< taxonomy extraction");
+		return taxonomy;
+	}
+
+	/**
+	 * @return the parents and equivalent concepts of the node of the given class, or null if the class is not the representative of its node.
+	 */
+	private NodeEntry getNodeEntry(OWLClass owlClass) {
+		Node<OWLClass> node = reasoner.getEquivalentClasses(owlClass);
+		Set<Long> conceptIds = new LongOpenHashSet();
+		long representativeConceptId = getConceptIds(node, conceptIds);
+		if (representativeConceptId != OntologyHelper.getConceptId(owlClass)) {
+			return null;
+		}
+		if (node.isBottomNode()) {
+			return new NodeEntry(representativeConceptId, conceptIds, null);
+		}
+		Set<Long> parentConceptIds = new LongOpenHashSet();
+		for (Node<OWLClass> parentNode : reasoner.getSuperClasses(node.getRepresentativeElement(), true)) {
+			// No parents if we found the Top node
+			if (parentNode.isTopNode()) {
+				break;
+			}
+			parentConceptIds.add(getConceptIds(parentNode, new LongOpenHashSet()));
+		}
+		return new NodeEntry(representativeConceptId, conceptIds, parentConceptIds);
+	}
+
+	private List<ReasonerTaxonomyEntry> getTaxonomyEntriesParentsFirst(List<NodeEntry> nodeEntries) {
+		Map<Long, NodeEntry> entriesByRepresentative = new Long2ObjectOpenHashMap<>();
+		for (NodeEntry nodeEntry : nodeEntries) {
+			entriesByRepresentative.put(nodeEntry.representativeConceptId, nodeEntry);
+		}
+
+		Map<Long, List<Long>> children = new Long2ObjectOpenHashMap<>();
+		Long2IntOpenHashMap remainingParentCounts = new Long2IntOpenHashMap();
+		Deque<Long> ready = new ArrayDeque<>();
+		for (NodeEntry nodeEntry : nodeEntries) {
+			if (nodeEntry.parentConceptIds == null) {
+				registerEquivalentConceptIds(nodeEntry.conceptIds, true);
+				continue;
+			}
+			int remainingParents = 0;
+			for (Long parentId : nodeEntry.parentConceptIds) {
+				if (entriesByRepresentative.containsKey(parentId)) {
+					children.computeIfAbsent(parentId, id -> new LongArrayList()).add(nodeEntry.representativeConceptId);
+					remainingParents++;
+				}
+			}
+			if (remainingParents == 0) {
+				ready.add(nodeEntry.representativeConceptId);
+			} else {
+				remainingParentCounts.put(nodeEntry.representativeConceptId, remainingParents);
+			}
+		}
+
+		List<ReasonerTaxonomyEntry> taxonomyEntries = new ArrayList<>();
+		while (!ready.isEmpty()) {
+			NodeEntry nodeEntry = entriesByRepresentative.get(ready.removeFirst());
+			long representativeConceptId = nodeEntry.representativeConceptId;
+			if (nodeEntry.conceptIds.size() > 1) {
+				registerEquivalentConceptIds(nodeEntry.conceptIds, false);
+			}
+			taxonomyEntries.add(new ReasonerTaxonomyEntry(representativeConceptId, nodeEntry.parentConceptIds));
+			Set<Long> representativeParent = Collections.singleton(representativeConceptId);
+			for (Long conceptId : nodeEntry.conceptIds) {
+				if (conceptId != representativeConceptId) {
+					taxonomyEntries.add(new ReasonerTaxonomyEntry(conceptId, representativeParent));
+				}
+			}
+
+			for (Long childId : children.getOrDefault(representativeConceptId, Collections.emptyList())) {
+				if (remainingParentCounts.addTo(childId, -1) == 1) {
+					ready.add(childId);
+				}
+			}
+		}
+		return taxonomyEntries;
+	}
+
+	/**
+	 * Builds the taxonomy by reusing a previous walk of the same ontology before it was changed.
+	 * Parents are only requested from the reasoner for the changed concepts and for their descendants, before and after the change.
+	 * Entries of all other concepts are copied from the previous taxonomy. The property hierarchy is always extracted again.
+	 *
+	 * Changes to a concept can also change the subsumers of concepts which use it as an attribute value, these must be given in
+	 * referencingConceptIds. Changes to the attribute hierarchy can affect any concept so should be classified using {@link #walk()}.
+	 *
+	 * @param previousTaxonomy the taxonomy of the ontology before the changes.
+	 * @param changedConceptIds concepts whose axioms were added, changed or removed.
+	 * @param referencingConceptIds for each concept, the concepts whose axioms refer to it. May be null.
+	 * @return the taxonomy, with entries in the same form as {@link #walk()} and concepts in a hierarchical order.
+	 */
+	public ReasonerTaxonomy walk(ReasonerTaxonomy previousTaxonomy, Set<Long> changedConceptIds, Map<Long, ? extends Collection<Long>> referencingConceptIds) {
+		LOGGER.info(">>> SnomedTaxonomy extraction for {} changed concepts", changedConceptIds.size());
+
+		extractProperties();
+
+		Set<Long> affectedConceptIds = getAffectedConceptIds(previousTaxonomy, changedConceptIds, referencingConceptIds);
+		LOGGER.info("{} concepts affected by changes", affectedConceptIds.size());
+
+		// Collect the parents of all concepts, copying those not affected
+		Map<Long, Set<Long>> conceptParents = new LinkedHashMap<>();
+		for (Long conceptId : previousTaxonomy.getConceptIds()) {
+			if (!affectedConceptIds.contains(conceptId)) {
+				conceptParents.put(conceptId, previousTaxonomy.getParents(conceptId));
+			}
+		}
+		for (Set<Long> equivalentConceptIds : previousTaxonomy.getEquivalentConceptIds()) {
+			if (Collections.disjoint(equivalentConceptIds, affectedConceptIds)) {
+				taxonomy.addEquivalentConceptIds(equivalentConceptIds);
+			}
+		}
+		for (Long unsatisfiableConceptId : previousTaxonomy.getUnsatisfiableConceptIds()) {
+			if (!affectedConceptIds.contains(unsatisfiableConceptId)) {
+				taxonomy.getUnsatisfiableConceptIds().add(unsatisfiableConceptId);
+			}
+		}
+
+		OWLDataFactory factory = owlOntology.getOWLOntologyManager().getOWLDataFactory();
+		Set<Long> processedRepresentatives = new LongOpenHashSet();
+		Deque<Long> toProcess = new ArrayDeque<>(affectedConceptIds);
+		// Classes which are only used as attribute values have no axioms of their own so are not in the changed concepts
+		for (Node<OWLClass> topLevelNode : reasoner.getSubClasses(reasoner.getTopClassNode().getRepresentativeElement(), true)) {
+			for (OWLClass topLevelClass : topLevelNode) {
+				if (OntologyHelper.isConceptClass(topLevelClass) && !conceptParents.containsKey(OntologyHelper.getConceptId(topLevelClass))) {
+					toProcess.add(OntologyHelper.getConceptId(topLevelClass));
+				}
+			}
+		}
+		while (!toProcess.isEmpty()) {
+			Long conceptId = toProcess.pop();
+			OWLClass owlClass = factory.getOWLClass(IRI.create(OntologyService.SNOMED_CORE_COMPONENTS_URI + conceptId));
+			if (!owlOntology.containsClassInSignature(owlClass.getIRI())) {
+				// Concept no longer in the ontology
+				continue;
+			}
+			Node<OWLClass> node = reasoner.getEquivalentClasses(owlClass);
+			final Set<Long> conceptIds = new LongOpenHashSet();
+			final long representativeConceptId = getConceptIds(node, conceptIds);
+			if (!processedRepresentatives.add(representativeConceptId)) {
+				continue;
+			}
+
+			if (node.isBottomNode()) {
+				registerEquivalentConceptIds(conceptIds, true);
+				continue;
+			}
+			if (conceptIds.size() > 1) {
+				registerEquivalentConceptIds(conceptIds, false);
+			}
+
+			final Set<Long> parentConceptIds = new LongOpenHashSet();
+			for (final Node<OWLClass> parentNode : reasoner.getSuperClasses(node.getRepresentativeElement(), true)) {
+				if (parentNode.isTopNode()) {
+					break;
+				}
+				long parentConceptId = getConceptIds(parentNode, new LongOpenHashSet());
+				parentConceptIds.add(parentConceptId);
+				if (!conceptParents.containsKey(parentConceptId)) {
+					toProcess.add(parentConceptId);
+				}
+			}
+			conceptParents.put(representativeConceptId, parentConceptIds);
+
+			Set<Long> representativeParent = Collections.singleton(representativeConceptId);
+			for (Long equivalentConceptId : conceptIds) {
+				if (equivalentConceptId != representativeConceptId) {
+					conceptParents.put(equivalentConceptId, new LongOpenHashSet(representativeParent));
+				}
+			}
+		}
+
+		// Add entries with parents before children so that ancestors are complete
+		Set<Long> added = new LongOpenHashSet();
+		Deque<Long> stack = new ArrayDeque<>();
+		for (Long conceptId : conceptParents.keySet()) {
+			stack.push(conceptId);
+			while (!stack.isEmpty()) {
+				Long current = stack.peek();
+				if (added.contains(current)) {
+					stack.pop();
+					continue;
+				}
+				boolean parentsAdded = true;
+				for (Long parentId : conceptParents.get(current)) {
+					if (!added.contains(parentId) && conceptParents.containsKey(parentId)) {
+						stack.push(parentId);
+						parentsAdded = false;
+					}
+				}
+				if (parentsAdded) {
+					stack.pop();
+					added.add(current);
+					registerParentConceptIds(current, conceptParents.get(current));
+				}
+			}
+		}
+
+		moveAttributeIdsAfterConceptModelAttribute();
 
 		LOGGER.info("<<< taxonomy extraction");
 		return taxonomy;
 	}
 
+	private Set<Long> getAffectedConceptIds(ReasonerTaxonomy previousTaxonomy, Set<Long> changedConceptIds, Map<Long, ? extends Collection<Long>> referencingConceptIds) {
+		Map<Long, List<Long>> previousChildren = new Long2ObjectOpenHashMap<>();
+		for (Long conceptId : previousTaxonomy.getConceptIds()) {
+			for (Long parentId : previousTaxonomy.getParents(conceptId)) {
+				previousChildren.computeIfAbsent(parentId, id -> new LongArrayList()).add(conceptId);
+			}
+		}
+
+		OWLDataFactory factory = owlOntology.getOWLOntologyManager().getOWLDataFactory();
+		Set<Long> affected = new LongOpenHashSet();
+		Deque<Long> toVisit = new ArrayDeque<>(changedConceptIds);
+		while (!toVisit.isEmpty()) {
+			Long conceptId = toVisit.pop();
+			if (!affected.add(conceptId)) {
+				continue;
+			}
+			// Descendants before the change
+			toVisit.addAll(previousChildren.getOrDefault(conceptId, Collections.emptyList()));
+
+			// Descendants after the change
+			OWLClass owlClass = factory.getOWLClass(IRI.create(OntologyService.SNOMED_CORE_COMPONENTS_URI + conceptId));
+			if (owlOntology.containsClassInSignature(owlClass.getIRI())) {
+				Set<OWLClass> relatedClasses = new HashSet<>(reasoner.getEquivalentClasses(owlClass).getEntities());
+				for (Node<OWLClass> subNode : reasoner.getSubClasses(owlClass, true)) {
+					if (!subNode.isBottomNode()) {
+						relatedClasses.addAll(subNode.getEntities());
+					}
+				}
+				for (OWLClass relatedClass : relatedClasses) {
+					if (OntologyHelper.isConceptClass(relatedClass)) {
+						toVisit.add(OntologyHelper.getConceptId(relatedClass));
+					}
+				}
+			}
+
+			if (referencingConceptIds != null) {
+				Collection<Long> referencing = referencingConceptIds.get(conceptId);
+				if (referencing != null) {
+					toVisit.addAll(referencing);
+				}
+			}
+		}
+		return affected;
+	}
+
 	private void extractProperties() {
 		// Some reasoners (ELK v0.4.3) do not support extracting the property hierarchy so we extract them from the stated OWL Ontology
 
@@ -267,4 +563,18 @@ public class ReasonerTaxonomyWalker {
 		}
 	}
 
+	private static final class NodeEntry {
+
+		private final long representativeConceptId;
+		private final Set<Long> conceptIds;
+		// Null for the unsatisfiable node
+		private final Set<Long> parentConceptIds;
+
+		private NodeEntry(long representativeConceptId, Set<Long> conceptIds, Set<Long> parentConceptIds) {
+			this.representativeConceptId = representativeConceptId;
+			this.conceptIds = conceptIds;
+			this.parentConceptIds = parentConceptIds;
+		}
+	}
+
 }
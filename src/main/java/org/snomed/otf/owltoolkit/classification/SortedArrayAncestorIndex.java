@@ -0,0 +1,161 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.classification;
+
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+import java.util.*;
+
+/**
+ * Each concept is given a dense int index, the ancestors of a concept are held as a sorted array of the indexes of the ancestors.
+ * Membership tests are a binary search of the array.
+ */
+class SortedArrayAncestorIndex implements AncestorIndex {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int[] NO_ANCESTORS = new int[0];
+
+	private final Long2IntOpenHashMap indexes = new Long2IntOpenHashMap();
+	private final LongArrayList conceptIds = new LongArrayList();
+	private int[][] ancestorIndexes = new int[1024][];
+
+	SortedArrayAncestorIndex() {
+		indexes.defaultReturnValue(-1);
+	}
+
+	@Override
+	public void register(long conceptId) {
+		getOrCreateIndex(conceptId);
+	}
+
+	@Override
+	public void addAncestors(long conceptId, Set<Long> parentIds) {
+		int index = getOrCreateIndex(conceptId);
+		int[] existing = ancestorIndexes[index];
+		int size = existing.length;
+		for (Long parentId : parentIds) {
+			size += 1 + ancestorIndexes[getOrCreateIndex(parentId)].length;
+		}
+
+		int[] ancestors = Arrays.copyOf(existing, size);
+		int position = existing.length;
+		for (Long parentId : parentIds) {
+			int parentIndex = indexes.get((long) parentId);
+			ancestors[position++] = parentIndex;
+			int[] parentAncestors = ancestorIndexes[parentIndex];
+			System.arraycopy(parentAncestors, 0, ancestors, position, parentAncestors.length);
+			position += parentAncestors.length;
+		}
+		ancestorIndexes[index] = sortAndRemoveDuplicates(ancestors);
+	}
+
+	@Override
+	public boolean isAncestor(long conceptId, long ancestorId) {
+		int index = indexes.get(conceptId);
+		if (index == -1) {
+			return false;
+		}
+		int ancestorIndex = indexes.get(ancestorId);
+		return ancestorIndex != -1 && Arrays.binarySearch(ancestorIndexes[index], ancestorIndex) >= 0;
+	}
+
+	@Override
+	public Set<Long> getAncestors(long conceptId) {
+		int index = indexes.get(conceptId);
+		if (index == -1) {
+			return Collections.emptySet();
+		}
+		return new AncestorSet(ancestorIndexes[index]);
+	}
+
+	private int getOrCreateIndex(long conceptId) {
+		int index = indexes.get(conceptId);
+		if (index == -1) {
+			index = conceptIds.size();
+			indexes.put(conceptId, index);
+			conceptIds.add(conceptId);
+			if (index == ancestorIndexes.length) {
+				ancestorIndexes = Arrays.copyOf(ancestorIndexes, index * 2);
+			}
+			ancestorIndexes[index] = NO_ANCESTORS;
+		}
+		return index;
+	}
+
+	private static int[] sortAndRemoveDuplicates(int[] values) {
+		if (values.length == 0) {
+			return NO_ANCESTORS;
+		}
+		IntArrays.quickSort(values);
+		int unique = 1;
+		for (int i = 1; i < values.length; i++) {
+			if (values[i] != values[unique - 1]) {
+				values[unique++] = values[i];
+			}
+		}
+		return unique == values.length ? values : Arrays.copyOf(values, unique);
+	}
+
+	/**
+	 * Read only view of the ancestors of one concept.
+	 */
+	private final class AncestorSet extends AbstractSet<Long> {
+
+		private final int[] ancestors;
+
+		private AncestorSet(int[] ancestors) {
+			this.ancestors = ancestors;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			if (!(o instanceof Long)) {
+				return false;
+			}
+			int index = indexes.get((long) (Long) o);
+			return index != -1 && Arrays.binarySearch(ancestors, index) >= 0;
+		}
+
+		@Override
+		public Iterator<Long> iterator() {
+			return new Iterator<Long>() {
+				private int position;
+
+				@Override
+				public boolean hasNext() {
+					return position < ancestors.length;
+				}
+
+				@Override
+				public Long next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					return conceptIds.getLong(ancestors[position++]);
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return ancestors.length;
+		}
+	}
+
+}
@@ -5,6 +5,7 @@ import org.ihtsdo.otf.snomedboot.ReleaseImportException;
 import org.semanticweb.owlapi.model.OWLOntology;
 import org.semanticweb.owlapi.model.OWLOntologyCreationException;
 import org.semanticweb.owlapi.model.OWLOntologyStorageException;
+import org.semanticweb.owlapi.model.OWLRuntimeException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.snomed.otf.owltoolkit.constants.Concepts;
@@ -35,6 +36,8 @@ public class RF2ToOWLService {
 	public static final String HEADER_PREFIX = "Ontology(<";
 	public static final String HEADER_SUFFIX = ">)";
 
+	private boolean streamingOutput;
+
 	public void convertRF2ArchiveToOWL(String ontologyUriOverride, String versionDate, boolean includeDescriptions, InputStreamSet snomedRf2SnapshotArchives,
 			OptionalFileInputStream deltaStream, OutputStream owlFileOutputStream) throws ConversionException {
 
@@ -47,7 +50,7 @@ public class RF2ToOWLService {
 			throw new ConversionException("Failed to load RF2 archive.", e);
 		}
 
-		if (snomedTaxonomy.getStatedRelationships().isEmpty() && snomedTaxonomy.getAxiomCount() == 0) {
+		if (snomedTaxonomy.getStatedRelationshipCount() == 0 && snomedTaxonomy.getAxiomCount() == 0) {
 			throw new ConversionException("No Stated Relationships or Axioms were found. An Ontology file can not be produced.");
 		}
 
@@ -79,11 +82,13 @@ public class RF2ToOWLService {
 		// using list of never grouped roles during relationship to axiom conversion
 		logger.info("Building Ontology");
 		OntologyService ontologyService = new OntologyService(neverGroupedRoles);
-		OWLOntology ontology;
-		try {
-			ontology = ontologyService.createOntology(snomedTaxonomy, ontologyUri, versionDate, includeDescriptions);
-		} catch (OWLOntologyCreationException e) {
-			throw new ConversionException("Failed to build OWL Ontology from SNOMED taxonomy.", e);
+		OWLOntology ontology = null;
+		if (!streamingOutput) {
+			try {
+				ontology = ontologyService.createOntology(snomedTaxonomy, ontologyUri, versionDate, includeDescriptions);
+			} catch (OWLOntologyCreationException e) {
+				throw new ConversionException("Failed to build OWL Ontology from SNOMED taxonomy.", e);
+			}
 		}
 
 		// Write to any non-default namespaces to OutputStream
@@ -105,15 +110,34 @@ public class RF2ToOWLService {
 		}
 
 		// Write ontology to OutputStream
-		try {
-			ontologyService.saveOntology(ontology, owlFileOutputStream);
-		} catch (OWLOntologyStorageException e) {
-			throw new ConversionException("Failed to serialise and write OWL Ontology to output stream.", e);
+		if (streamingOutput) {
+			logger.info("Writing Ontology concept by concept");
+			try {
+				ontologyService.writeOntology(snomedTaxonomy, ontologyUri, versionDate, includeDescriptions, owlFileOutputStream);
+			} catch (OWLOntologyCreationException e) {
+				throw new ConversionException("Failed to build OWL Ontology from SNOMED taxonomy.", e);
+			} catch (IOException | OWLRuntimeException e) {
+				throw new ConversionException("Failed to serialise and write OWL Ontology to output stream.", e);
+			}
+		} else {
+			try {
+				ontologyService.saveOntology(ontology, owlFileOutputStream);
+			} catch (OWLOntologyStorageException e) {
+				throw new ConversionException("Failed to serialise and write OWL Ontology to output stream.", e);
+			}
 		}
 
 		logger.info("RF2 to OWL Ontology conversion complete.");
 	}
 
+	/**
+	 * Write the ontology as the axioms of each concept are created rather than building the whole OWL ontology in memory first.
+	 * The output is the same, memory use no longer grows with the number of axioms and descriptions.
+	 */
+	public void setStreamingOutput(boolean streamingOutput) {
+		this.streamingOutput = streamingOutput;
+	}
+
 	protected String getCopyrightNotice() throws IOException {
 		return FileCopyUtils.copyToString(new InputStreamReader(getClass().getResourceAsStream("/owl-file-copyright-notice.txt")));
 	}
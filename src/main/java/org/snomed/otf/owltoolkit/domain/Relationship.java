@@ -85,6 +85,16 @@ public class Relationship {
 		this.destinationId = -1;
 	}
 
+	/**
+	 * @return a new relationship with the same fields, which can be changed without changing this one.
+	 */
+	public Relationship copy() {
+		if (isConcrete()) {
+			return new Relationship(relationshipId, effectiveTime, moduleId, typeId, value, group, unionGroup, universal, characteristicTypeId);
+		}
+		return new Relationship(relationshipId, effectiveTime, moduleId, typeId, destinationId, group, unionGroup, universal, characteristicTypeId);
+	}
+
 	public void clearId() {
 		relationshipId = -1;
 	}
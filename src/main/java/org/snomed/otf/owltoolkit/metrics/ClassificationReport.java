@@ -0,0 +1,162 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.metrics;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+/**
+ * Collects the phase metrics and counters of one classification and writes them as a JSON report.
+ * Everything recorded is also passed on to an optional delegate registry.
+ */
+public class ClassificationReport implements MetricsRegistry {
+
+	public static final String CONCEPTS = "concepts";
+	public static final String AXIOMS = "axioms";
+	public static final String REASONER_NODES = "reasonerNodes";
+	public static final String EQUIVALENT_CONCEPT_SETS = "equivalentConceptSets";
+	public static final String RELATIONSHIPS_ADDED = "relationshipsAdded";
+	public static final String RELATIONSHIPS_UPDATED = "relationshipsUpdated";
+	public static final String RELATIONSHIPS_REDUNDANT = "relationshipsRedundant";
+	public static final String RELATIONSHIPS_REMOVED_DUE_TO_CONCEPT_INACTIVATION = "relationshipsRemovedDueToConceptInactivation";
+	public static final String CLOSURE_CACHE_HITS = "closureCacheHits";
+	public static final String CLOSURE_CACHE_MISSES = "closureCacheMisses";
+	public static final String SECOND_PASS_RECOMPUTED_CONCEPTS = "secondPassRecomputedConcepts";
+	public static final String ENTITY_CACHE_HITS = "entityCacheHits";
+	public static final String ENTITY_CACHE_MISSES = "entityCacheMisses";
+
+	private final String classificationId;
+	private final Date startDate;
+	private final MetricsRegistry delegate;
+	private final List<PhaseMetrics> phases = new ArrayList<>();
+	private final Map<String, Long> counters = new LinkedHashMap<>();
+
+	public ClassificationReport(String classificationId, Date startDate, MetricsRegistry delegate) {
+		this.classificationId = classificationId;
+		this.startDate = startDate;
+		this.delegate = delegate != null ? delegate : NONE;
+	}
+
+	@Override
+	public synchronized void recordPhase(PhaseMetrics phaseMetrics) {
+		phases.add(phaseMetrics);
+		delegate.recordPhase(phaseMetrics);
+	}
+
+	@Override
+	public synchronized void setCounter(String name, long value) {
+		counters.put(name, value);
+		delegate.setCounter(name, value);
+	}
+
+	public synchronized List<PhaseMetrics> getPhases() {
+		return new ArrayList<>(phases);
+	}
+
+	public synchronized Map<String, Long> getCounters() {
+		return new LinkedHashMap<>(counters);
+	}
+
+	/**
+	 * @return the file the report of the given results archive is written to, in the same directory.
+	 */
+	public static File getReportFile(File resultsArchive) {
+		String name = resultsArchive.getName();
+		if (name.endsWith(".zip")) {
+			name = name.substring(0, name.length() - 4);
+		}
+		return new File(resultsArchive.getAbsoluteFile().getParentFile(), name + "-metrics.json");
+	}
+
+	public void writeJson(File reportFile) throws IOException {
+		try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(reportFile), StandardCharsets.UTF_8))) {
+			writeJson(writer);
+		}
+	}
+
+	public synchronized void writeJson(Writer writer) throws IOException {
+		SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
+		long totalWallTimeMillis = 0;
+		long totalCpuTimeMillis = 0;
+		for (PhaseMetrics phase : phases) {
+			totalWallTimeMillis += phase.getWallTimeMillis();
+			totalCpuTimeMillis += Math.max(0, phase.getCpuTimeMillis());
+		}
+
+		writer.write("{\n");
+		writer.write("  \"classificationId\": " + quote(classificationId) + ",\n");
+		writer.write("  \"startDate\": " + quote(dateFormat.format(startDate)) + ",\n");
+		writer.write("  \"totalWallTimeMillis\": " + totalWallTimeMillis + ",\n");
+		writer.write("  \"totalCpuTimeMillis\": " + totalCpuTimeMillis + ",\n");
+		writer.write("  \"phases\": [");
+		for (int i = 0; i < phases.size(); i++) {
+			PhaseMetrics phase = phases.get(i);
+			writer.write(i == 0 ? "\n" : ",\n");
+			writer.write("    {\"name\": " + quote(phase.getName()) +
+					", \"wallTimeMillis\": " + phase.getWallTimeMillis() +
+					", \"cpuTimeMillis\": " + phase.getCpuTimeMillis() +
+					", \"allocatedBytes\": " + phase.getAllocatedBytes() +
+					", \"peakHeapBytes\": " + phase.getPeakHeapBytes() +
+					", \"gcCount\": " + phase.getGcCount() +
+					", \"gcTimeMillis\": " + phase.getGcTimeMillis() + "}");
+		}
+		writer.write(phases.isEmpty() ? "],\n" : "\n  ],\n");
+		writer.write("  \"counters\": {");
+		int i = 0;
+		for (Map.Entry<String, Long> counter : counters.entrySet()) {
+			writer.write(i++ == 0 ? "\n" : ",\n");
+			writer.write("    " + quote(counter.getKey()) + ": " + counter.getValue());
+		}
+		writer.write(counters.isEmpty() ? "}\n" : "\n  }\n");
+		writer.write("}\n");
+	}
+
+	private static String quote(String value) {
+		if (value == null) {
+			return "null";
+		}
+		StringBuilder quoted = new StringBuilder("\"");
+		for (char c : value.toCharArray()) {
+			switch (c) {
+				case '"':
+					quoted.append("\\\"");
+					break;
+				case '\\':
+					quoted.append("\\\\");
+					break;
+				case '\n':
+					quoted.append("\\n");
+					break;
+				case '\r':
+					quoted.append("\\r");
+					break;
+				case '\t':
+					quoted.append("\\t");
+					break;
+				default:
+					if (c < 0x20) {
+						quoted.append(String.format("\\u%04x", (int) c));
+					} else {
+						quoted.append(c);
+					}
+			}
+		}
+		return quoted.append("\"").toString();
+	}
+
+}
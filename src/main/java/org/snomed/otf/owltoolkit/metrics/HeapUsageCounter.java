@@ -0,0 +1,125 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.metrics;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.*;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Follows the heap through the garbage collection notifications of the JVM.
+ * The bytes allocated so far are the bytes reclaimed by all collections plus the heap in use,
+ * which counts the allocation of every thread, including pool and reasoner threads which end before the next sample.
+ * The heap in use is highest just before a collection so the usage before each collection gives the peak of the whole heap.
+ * Notifications arrive on another thread after the collection, so readings first wait for the notifications of the collections counted so far.
+ */
+final class HeapUsageCounter implements NotificationListener {
+
+	static final HeapUsageCounter INSTANCE = new HeapUsageCounter();
+
+	private static final long NOTIFICATION_TIMEOUT_MILLIS = 1000;
+
+	private final Set<String> heapPoolNames = new HashSet<>();
+	private final boolean supported;
+	private long reclaimedBytes;
+	private long peakHeapBytes;
+	private long notifiedCollections;
+
+	private HeapUsageCounter() {
+		for (MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (memoryPool.getType() == MemoryType.HEAP) {
+				heapPoolNames.add(memoryPool.getName());
+			}
+		}
+		boolean listening = false;
+		for (GarbageCollectorMXBean garbageCollector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			if (garbageCollector instanceof NotificationEmitter) {
+				((NotificationEmitter) garbageCollector).addNotificationListener(this, null, null);
+				listening = true;
+			}
+		}
+		supported = listening;
+		synchronized (this) {
+			notifiedCollections += getCollectionCount();
+		}
+	}
+
+	@Override
+	public synchronized void handleNotification(Notification notification, Object handback) {
+		if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+			return;
+		}
+		com.sun.management.GcInfo gcInfo = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData()).getGcInfo();
+		long usedBeforeGc = getHeapUsed(gcInfo.getMemoryUsageBeforeGc());
+		reclaimedBytes += usedBeforeGc - getHeapUsed(gcInfo.getMemoryUsageAfterGc());
+		peakHeapBytes = Math.max(peakHeapBytes, usedBeforeGc);
+		notifiedCollections++;
+		notifyAll();
+	}
+
+	/**
+	 * Waits until the notifications of the given number of collections have arrived, or the timeout has passed.
+	 */
+	synchronized void awaitNotifications(long collectionCount) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + NOTIFICATION_TIMEOUT_MILLIS;
+		long remaining;
+		while (supported && notifiedCollections < collectionCount && (remaining = deadline - System.currentTimeMillis()) > 0) {
+			wait(remaining);
+		}
+	}
+
+	/**
+	 * @return bytes allocated since the JVM started, or -1 if the JVM does not report its garbage collections.
+	 */
+	synchronized long getAllocatedBytes(long heapUsed) {
+		return supported ? reclaimedBytes + heapUsed : -1;
+	}
+
+	/**
+	 * Returns the highest heap usage since the last call and starts the next period at the given usage.
+	 */
+	synchronized long takePeakHeapBytes(long heapUsed) {
+		long peak = Math.max(peakHeapBytes, heapUsed);
+		peakHeapBytes = heapUsed;
+		return peak;
+	}
+
+	static long getCollectionCount() {
+		long collectionCount = 0;
+		for (GarbageCollectorMXBean garbageCollector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			collectionCount += Math.max(0, garbageCollector.getCollectionCount());
+		}
+		return collectionCount;
+	}
+
+	private long getHeapUsed(Map<String, MemoryUsage> memoryUsageByPool) {
+		long used = 0;
+		for (Map.Entry<String, MemoryUsage> poolUsage : memoryUsageByPool.entrySet()) {
+			if (heapPoolNames.contains(poolUsage.getKey())) {
+				used += poolUsage.getValue().getUsed();
+			}
+		}
+		return used;
+	}
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.metrics;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+
+/**
+ * Point in time reading of the JVM counters used to measure a phase.
+ * Allocation and peak heap usage come from the garbage collection notifications followed by {@link HeapUsageCounter}.
+ * Taking a sample reads and then resets the peak heap usage so that each phase measures its own peak.
+ */
+public class JvmSample {
+
+	private final long wallTimeMillis;
+	private final long cpuTimeNanos;
+	private final long allocatedBytes;
+	private final long gcCount;
+	private final long gcTimeMillis;
+	private final long peakHeapBytes;
+
+	private JvmSample(long wallTimeMillis, long cpuTimeNanos, long allocatedBytes, long gcCount, long gcTimeMillis, long peakHeapBytes) {
+		this.wallTimeMillis = wallTimeMillis;
+		this.cpuTimeNanos = cpuTimeNanos;
+		this.allocatedBytes = allocatedBytes;
+		this.gcCount = gcCount;
+		this.gcTimeMillis = gcTimeMillis;
+		this.peakHeapBytes = peakHeapBytes;
+	}
+
+	public static JvmSample take() {
+		// Reads the heap between two collections so that it matches the reclaimed bytes of the collections counted
+		long gcCount = HeapUsageCounter.getCollectionCount();
+		long countedGcCount;
+		long heapUsed;
+		do {
+			countedGcCount = gcCount;
+			heapUsed = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+			gcCount = HeapUsageCounter.getCollectionCount();
+		} while (gcCount != countedGcCount);
+		try {
+			HeapUsageCounter.INSTANCE.awaitNotifications(gcCount);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		long gcTimeMillis = 0;
+		for (GarbageCollectorMXBean garbageCollector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			gcTimeMillis += Math.max(0, garbageCollector.getCollectionTime());
+		}
+		return new JvmSample(System.currentTimeMillis(), getProcessCpuTimeNanos(), HeapUsageCounter.INSTANCE.getAllocatedBytes(heapUsed),
+				gcCount, gcTimeMillis, HeapUsageCounter.INSTANCE.takePeakHeapBytes(heapUsed));
+	}
+
+	/**
+	 * Measures the phase which started at this sample and ended at the given one.
+	 */
+	public PhaseMetrics measurePhase(String name, JvmSample end) {
+		return new PhaseMetrics(name,
+				end.wallTimeMillis - wallTimeMillis,
+				cpuTimeNanos != -1 && end.cpuTimeNanos != -1 ? (end.cpuTimeNanos - cpuTimeNanos) / 1_000_000 : -1,
+				allocatedBytes != -1 && end.allocatedBytes != -1 ? end.allocatedBytes - allocatedBytes : -1,
+				end.peakHeapBytes,
+				end.gcCount - gcCount,
+				end.gcTimeMillis - gcTimeMillis);
+	}
+
+	private static long getProcessCpuTimeNanos() {
+		OperatingSystemMXBean operatingSystem = ManagementFactory.getOperatingSystemMXBean();
+		if (operatingSystem instanceof com.sun.management.OperatingSystemMXBean) {
+			return ((com.sun.management.OperatingSystemMXBean) operatingSystem).getProcessCpuTime();
+		}
+		return -1;
+	}
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.metrics;
+
+/**
+ * Receives the metrics of a classification as it runs.
+ * Implement this to pass the metrics on to a monitoring system.
+ */
+public interface MetricsRegistry {
+
+	/**
+	 * Registry which ignores all metrics. Phase measurements are not taken when this is used.
+	 */
+	MetricsRegistry NONE = new MetricsRegistry() {
+		@Override
+		public void recordPhase(PhaseMetrics phaseMetrics) {
+		}
+
+		@Override
+		public void setCounter(String name, long value) {
+		}
+	};
+
+	/**
+	 * Called once each phase of the classification has completed.
+	 */
+	void recordPhase(PhaseMetrics phaseMetrics);
+
+	/**
+	 * Sets a count of domain objects, for example concepts or added relationships.
+	 */
+	void setCounter(String name, long value);
+
+}
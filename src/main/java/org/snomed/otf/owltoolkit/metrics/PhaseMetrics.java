@@ -0,0 +1,94 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.metrics;
+
+/**
+ * Resource use of one phase of a classification.
+ * Values which the JVM can not measure are -1.
+ */
+public class PhaseMetrics {
+
+	private final String name;
+	private final long wallTimeMillis;
+	private final long cpuTimeMillis;
+	private final long allocatedBytes;
+	private final long peakHeapBytes;
+	private final long gcCount;
+	private final long gcTimeMillis;
+
+	public PhaseMetrics(String name, long wallTimeMillis, long cpuTimeMillis, long allocatedBytes, long peakHeapBytes, long gcCount, long gcTimeMillis) {
+		this.name = name;
+		this.wallTimeMillis = wallTimeMillis;
+		this.cpuTimeMillis = cpuTimeMillis;
+		this.allocatedBytes = allocatedBytes;
+		this.peakHeapBytes = peakHeapBytes;
+		this.gcCount = gcCount;
+		this.gcTimeMillis = gcTimeMillis;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getWallTimeMillis() {
+		return wallTimeMillis;
+	}
+
+	/**
+	 * @return CPU time of the whole process, including any threads started by the phase.
+	 */
+	public long getCpuTimeMillis() {
+		return cpuTimeMillis;
+	}
+
+	/**
+	 * @return bytes allocated by all threads during the phase, counted from the heap reclaimed by garbage collections and the heap in use.
+	 */
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	/**
+	 * @return highest usage of the whole heap during the phase.
+	 */
+	public long getPeakHeapBytes() {
+		return peakHeapBytes;
+	}
+
+	public long getGcCount() {
+		return gcCount;
+	}
+
+	/**
+	 * @return approximate time spent in garbage collection.
+	 */
+	public long getGcTimeMillis() {
+		return gcTimeMillis;
+	}
+
+	@Override
+	public String toString() {
+		return "PhaseMetrics{" +
+				"name='" + name + '\'' +
+				", wallTimeMillis=" + wallTimeMillis +
+				", cpuTimeMillis=" + cpuTimeMillis +
+				", allocatedBytes=" + allocatedBytes +
+				", peakHeapBytes=" + peakHeapBytes +
+				", gcCount=" + gcCount +
+				", gcTimeMillis=" + gcTimeMillis +
+				'}';
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.normalform;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import org.snomed.otf.owltoolkit.domain.Relationship;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Finds the identifier of an inactive inferred relationship which can be reused for a newly inferred relationship,
+ * to prevent inferred relationships churning. A match has the same group, type and destination.
+ * Where several inactive relationships match the most recently changed one is used.
+ *
+ * The inactive relationships of a concept are indexed once by group, type and destination, so each new relationship
+ * is matched in constant time.
+ */
+public class InactiveRelationshipIdIndex {
+
+	// Of matching inactive relationships the first in this order is used
+	private static final Comparator<Relationship> RELATIONSHIP_COMPARATOR_RECENT_CHANGE_FIRST = Comparator
+			.comparing(Relationship::getTypeId)
+			.thenComparing(Relationship::getDestinationId)
+			.thenComparing(Relationship::getValueAsString, Comparator.nullsLast(Comparator.naturalOrder()))
+			.thenComparing(Relationship::getGroup)
+			.thenComparing(Relationship::getEffectiveTime, Comparator.reverseOrder());
+
+	private final SnomedTaxonomy snomedTaxonomy;
+
+	public InactiveRelationshipIdIndex(SnomedTaxonomy snomedTaxonomy) {
+		this.snomedTaxonomy = snomedTaxonomy;
+	}
+
+	/**
+	 * @return index of the inactive inferred relationships of the concept
+	 */
+	public ConceptIndex getConceptIndex(long conceptId) {
+		return new ConceptIndex(snomedTaxonomy.getInactiveInferredRelationships(conceptId));
+	}
+
+	private static long groupTypeDestinationKey(Relationship relationship) {
+		long key = relationship.getTypeId();
+		key = key * 31 + relationship.getDestinationId();
+		key = key * 31 + relationship.getGroup();
+		return HashCommon.mix(key);
+	}
+
+	private static boolean sameGroupTypeDestination(Relationship a, Relationship b) {
+		return a.getGroup() == b.getGroup()
+				&& a.getTypeId() == b.getTypeId()
+				&& a.getDestinationId() == b.getDestinationId();
+	}
+
+	/**
+	 * Inactive inferred relationships of one concept.
+	 */
+	public static final class ConceptIndex {
+
+		private final Long2ObjectOpenHashMap<Relationship> mostRecentByKey;
+
+		// Only used if two different group, type and destination combinations have the same hash
+		private List<Relationship> inactiveRecentChangeFirst;
+
+		private ConceptIndex(Collection<Relationship> inactiveRelationships) {
+			mostRecentByKey = new Long2ObjectOpenHashMap<>(inactiveRelationships.size());
+			for (Relationship inactiveRelationship : inactiveRelationships) {
+				final long key = groupTypeDestinationKey(inactiveRelationship);
+				final Relationship mostRecent = mostRecentByKey.putIfAbsent(key, inactiveRelationship);
+				if (mostRecent != null) {
+					if (!sameGroupTypeDestination(mostRecent, inactiveRelationship)) {
+						inactiveRecentChangeFirst = new ArrayList<>(inactiveRelationships);
+						inactiveRecentChangeFirst.sort(RELATIONSHIP_COMPARATOR_RECENT_CHANGE_FIRST);
+						return;
+					}
+					if (RELATIONSHIP_COMPARATOR_RECENT_CHANGE_FIRST.compare(inactiveRelationship, mostRecent) < 0) {
+						mostRecentByKey.put(key, inactiveRelationship);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Sets the identifier of the new relationship to that of the most recently changed matching inactive relationship, if any.
+		 * @return true if an identifier was reused.
+		 */
+		public boolean reuseInactiveRelationshipId(Relationship newRelationship) {
+			final Relationship inactiveRelationship = find(newRelationship);
+			if (inactiveRelationship != null) {
+				newRelationship.setRelationshipId(inactiveRelationship.getRelationshipId());
+				return true;
+			}
+			return false;
+		}
+
+		private Relationship find(Relationship newRelationship) {
+			if (inactiveRecentChangeFirst != null) {
+				for (Relationship inactiveRelationship : inactiveRecentChangeFirst) {
+					if (sameGroupTypeDestination(newRelationship, inactiveRelationship)) {
+						return inactiveRelationship;
+					}
+				}
+				return null;
+			}
+			final Relationship inactiveRelationship = mostRecentByKey.get(groupTypeDestinationKey(newRelationship));
+			return inactiveRelationship != null && sameGroupTypeDestination(newRelationship, inactiveRelationship) ? inactiveRelationship : null;
+		}
+	}
+
+}
@@ -15,15 +15,20 @@
  */
 package org.snomed.otf.owltoolkit.normalform;
 
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import org.snomed.otf.owltoolkit.constants.Concepts;
 import org.snomed.otf.owltoolkit.domain.Relationship;
+import org.snomed.otf.owltoolkit.domain.Relationship.ConcreteValue;
 
 import java.util.*;
 
 /**
  * Compares two collections of change subjects and calls template methods whenever a removed, added or unmodified
  * element is encountered.
+ *
+ * @see RelationshipDiffType
  */
 public class RelationshipChangeProcessor {
 
@@ -51,6 +56,7 @@ public class RelationshipChangeProcessor {
 			.thenComparing(Relationship::getUnionGroup)
 			.thenComparing(Relationship::isUniversal);
 
+	private final RelationshipDiffType diffType;
 	private final Map<Long, Set<Relationship>> addedStatements;
 	private final Map<Long, Set<Relationship>> removedStatements;
 	private Long addedCount;
@@ -58,6 +64,11 @@ public class RelationshipChangeProcessor {
 	private Long removedDueToConceptInactivationCount;
 
 	public RelationshipChangeProcessor() {
+		this(RelationshipDiffType.HASHED);
+	}
+
+	public RelationshipChangeProcessor(RelationshipDiffType diffType) {
+		this.diffType = diffType;
 		addedCount = 0L;
 		updatedCount = 0L;
 		removedDueToConceptInactivationCount = 0L;
@@ -66,6 +77,12 @@ public class RelationshipChangeProcessor {
 	}
 
 	public void apply(final long conceptId, final Collection<Relationship> existingRelationships, final Collection<Relationship> newRelationships) {
+		if (diffType == RelationshipDiffType.SORTED || !applyHashed(conceptId, existingRelationships, newRelationships)) {
+			applySorted(conceptId, existingRelationships, newRelationships);
+		}
+	}
+
+	private void applySorted(final long conceptId, final Collection<Relationship> existingRelationships, final Collection<Relationship> newRelationships) {
 
 		final List<Relationship> sortedOld = newSortedList(existingRelationships, RELATIONSHIP_COMPARATOR_ALL_FIELDS);
 		final List<Relationship> sortedNew = newSortedList(newRelationships, RELATIONSHIP_COMPARATOR_ALL_FIELDS);
@@ -115,9 +132,10 @@ public class RelationshipChangeProcessor {
 		for (final Relationship newMini : sortedNew) {
 			if (updatedRelationshipNewOldMap.containsKey(newMini)) {
 				// Update existing relationship
-				Relationship existingRelationship = updatedRelationshipNewOldMap.get(newMini);
-				existingRelationship.setGroup(newMini.getGroup());
-				handleAddedOrChangedRelationship(conceptId, existingRelationship);
+				// The existing relationship may be shared with another taxonomy so the new group is set on a copy
+				Relationship updatedRelationship = updatedRelationshipNewOldMap.get(newMini).copy();
+				updatedRelationship.setGroup(newMini.getGroup());
+				handleAddedOrChangedRelationship(conceptId, updatedRelationship);
 				updatedCount++;
 			} else if (Collections.binarySearch(sortedOld, newMini, RELATIONSHIP_COMPARATOR_ALL_FIELDS) < 0) {
 				newMini.clearId();// Make sure stated relationship ids don't get through into new inferred relationship results
@@ -127,28 +145,188 @@ public class RelationshipChangeProcessor {
 		}
 	}
 
+	/**
+	 * Same changes as {@link #applySorted(long, Collection, Collection)} found using hash maps keyed on all compared fields.
+	 * The sorted lists are only needed for existing ungrouped relationships which are not matched exactly.
+	 * @return false if there was a hash collision between different relationships, nothing has been changed in that case.
+	 */
+	private boolean applyHashed(final long conceptId, final Collection<Relationship> existingRelationships, final Collection<Relationship> newRelationships) {
+
+		final Long2ObjectOpenHashMap<Relationship> newByKey = new Long2ObjectOpenHashMap<>(newRelationships.size());
+		for (final Relationship newSubject : newRelationships) {
+			final Relationship previous = newByKey.putIfAbsent(allFieldsKey(newSubject), newSubject);
+			if (previous != null && !sameAllFields(previous, newSubject)) {
+				return false;
+			}
+		}
+
+		// Of existing relationships with the same fields the one with the greatest module is kept, as when sorted
+		final Long2ObjectOpenHashMap<Relationship> oldByKey = new Long2ObjectOpenHashMap<>(existingRelationships.size());
+		final List<Relationship> redundant = new ArrayList<>();
+		List<Relationship> unmatchedOld = null;
+		for (final Relationship oldSubject : existingRelationships) {
+			final long key = allFieldsKey(oldSubject);
+			final Relationship newSubject = newByKey.get(key);
+			final Relationship kept = oldByKey.get(key);
+			if ((newSubject != null && !sameAllFields(newSubject, oldSubject)) || (kept != null && !sameAllFields(kept, oldSubject))) {
+				return false;
+			}
+			if (kept == null) {
+				oldByKey.put(key, oldSubject);
+			} else if (newSubject != null) {
+				// Existing relationship is a duplicate
+				if (oldSubject.getModuleId() > kept.getModuleId()) {
+					oldByKey.put(key, oldSubject);
+					redundant.add(kept);
+				} else {
+					redundant.add(oldSubject);
+				}
+			}
+			if (newSubject == null) {
+				if (unmatchedOld == null) {
+					unmatchedOld = new ArrayList<>();
+				}
+				unmatchedOld.add(oldSubject);
+			}
+		}
+
+		final Map<Relationship, Relationship> updatedRelationshipNewOldMap = new HashMap<>();
+		if (unmatchedOld != null) {
+			unmatchedOld.sort(RELATIONSHIP_COMPARATOR_WITH_MODULE_ID);
+			List<Relationship> sortedNew = null;
+			Int2IntOpenHashMap relationshipsInGroupCounts = null;
+			for (final Relationship oldSubject : unmatchedOld) {
+				// Handle the case where existing self grouped relationships are being moved out of group 0.
+				if (oldSubject.getGroup() == 0 && oldSubject.getTypeId() != Concepts.IS_A_LONG) {
+					if (sortedNew == null) {
+						sortedNew = newSortedList(newRelationships, RELATIONSHIP_COMPARATOR_ALL_FIELDS);
+						relationshipsInGroupCounts = new Int2IntOpenHashMap();
+						for (final Relationship relationship : sortedNew) {
+							relationshipsInGroupCounts.addTo(relationship.getGroup(), 1);
+						}
+					}
+					final int y = Collections.binarySearch(sortedNew, oldSubject, RELATIONSHIP_COMPARATOR_WITHOUT_GROUP);
+					if (y >= 0) {
+						// If this is the only relationship in the group we will update the group number.
+						final Relationship newSubject = sortedNew.get(y);
+						if (relationshipsInGroupCounts.get(newSubject.getGroup()) == 1) {
+							// Keys found in both maps have already been compared
+							if (!oldByKey.containsKey(allFieldsKey(newSubject))) {
+								// Update existing relationship rather than creating new
+								updatedRelationshipNewOldMap.put(newSubject, oldSubject);
+								continue;
+							}
+						}
+					}
+				}
+				redundant.add(oldSubject);
+			}
+		}
+
+		for (final Relationship oldSubject : redundant) {
+			handleRedundantRelationship(conceptId, oldSubject);
+		}
+
+		// Updated relationships take the place of new ones with the same fields
+		final Long2ObjectOpenHashMap<Relationship> updatedByKey = new Long2ObjectOpenHashMap<>(updatedRelationshipNewOldMap.size());
+		for (final Relationship newSubject : updatedRelationshipNewOldMap.keySet()) {
+			updatedByKey.put(allFieldsKey(newSubject), newSubject);
+		}
+		for (final Relationship newMini : newRelationships) {
+			final Relationship existingRelationship = updatedRelationshipNewOldMap.get(newMini);
+			if (existingRelationship != null) {
+				// Update existing relationship, on a copy as above
+				final Relationship updatedRelationship = existingRelationship.copy();
+				updatedRelationship.setGroup(newMini.getGroup());
+				handleAddedOrChangedRelationship(conceptId, updatedRelationship);
+				updatedCount++;
+			} else {
+				final long key = allFieldsKey(newMini);
+				if (!oldByKey.containsKey(key) && !updatedByKey.containsKey(key)) {
+					newMini.clearId();// Make sure stated relationship ids don't get through into new inferred relationship results
+					handleAddedOrChangedRelationship(conceptId, newMini);
+					addedCount++;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Hash of the fields compared by RELATIONSHIP_COMPARATOR_ALL_FIELDS.
+	 */
+	private static long allFieldsKey(Relationship relationship) {
+		long key = relationship.getTypeId();
+		key = key * 31 + relationship.getDestinationId();
+		final ConcreteValue value = relationship.getValue();
+		if (value != null && value.asString() != null) {
+			key = key * 31 + value.asString().hashCode();
+			key = key * 31 + (value.isString() ? 1 : 2);
+		}
+		key = key * 31 + relationship.getGroup();
+		key = key * 31 + relationship.getUnionGroup();
+		key = key * 31 + (relationship.isUniversal() ? 1 : 0);
+		return HashCommon.mix(key);
+	}
+
+	private static boolean sameAllFields(Relationship a, Relationship b) {
+		return a.getTypeId() == b.getTypeId()
+				&& a.getDestinationId() == b.getDestinationId()
+				&& a.getGroup() == b.getGroup()
+				&& a.getUnionGroup() == b.getUnionGroup()
+				&& a.isUniversal() == b.isUniversal()
+				&& sameValue(a.getValue(), b.getValue());
+	}
+
+	// Equal when the RF2 values are equal
+	private static boolean sameValue(ConcreteValue a, ConcreteValue b) {
+		final String aValue = a != null ? a.asString() : null;
+		final String bValue = b != null ? b.asString() : null;
+		if (aValue == null || bValue == null) {
+			return aValue == null && bValue == null;
+		}
+		return aValue.equals(bValue) && a.isString() == b.isString();
+	}
+
 	private List<Relationship> newSortedList(Collection<Relationship> relationships, Comparator<Relationship> comparator) {
 		final List<Relationship> sortedOld = new ArrayList<>(relationships);
 		sortedOld.sort(comparator);
 		return sortedOld;
 	}
 
-	private void handleAddedOrChangedRelationship(long conceptId, Relationship addedSubject) {
+	/**
+	 * Template method called for each new inferred relationship and each existing one with a changed group.
+	 */
+	protected void handleAddedOrChangedRelationship(long conceptId, Relationship addedSubject) {
 		addedStatements.computeIfAbsent(conceptId, k -> new HashSet<>()).add(addedSubject);
 	}
 
 	void handleRedundantRelationship(long conceptId, Relationship removedSubject) {
 		//We will preserve any "Additional" characteristic types eg PartOf relationships
 		if (removedSubject.getCharacteristicTypeId() == -1 || removedSubject.getCharacteristicTypeId() != Concepts.ADDITIONAL_RELATIONSHIP_LONG) {
-			removedStatements.computeIfAbsent(conceptId, k -> new HashSet<>()).add(removedSubject);
+			handleRemovedRelationship(conceptId, removedSubject);
 		}
 	}
 
+	/**
+	 * Template method called for each existing inferred relationship which is redundant and should be made inactive.
+	 */
+	protected void handleRemovedRelationship(long conceptId, Relationship removedSubject) {
+		removedStatements.computeIfAbsent(conceptId, k -> new HashSet<>()).add(removedSubject);
+	}
+
 	void processRemovalsDueToInactivation(Long inactiveConceptId, Set<Relationship> inferredRelationships) {
 		if (inferredRelationships.isEmpty()) {
 			return;
 		}
 		removedDueToConceptInactivationCount += inferredRelationships.size();
+		handleRemovalsDueToInactivation(inactiveConceptId, inferredRelationships);
+	}
+
+	/**
+	 * Template method called with all inferred relationships of a concept which has been made inactive.
+	 */
+	protected void handleRemovalsDueToInactivation(Long inactiveConceptId, Set<Relationship> inferredRelationships) {
 		removedStatements.put(inactiveConceptId, inferredRelationships);
 	}
 
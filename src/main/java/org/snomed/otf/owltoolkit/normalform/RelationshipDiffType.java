@@ -0,0 +1,35 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.normalform;
+
+/**
+ * How {@link RelationshipChangeProcessor} matches the existing relationships of a concept against the newly inferred ones.
+ * Both produce the same added, updated and redundant relationships.
+ */
+public enum RelationshipDiffType {
+
+	/**
+	 * Sorted copies of both collections searched with binary search.
+	 */
+	SORTED,
+
+	/**
+	 * Hash maps keyed by type, destination or value and group, built once per concept.
+	 * Falls back to SORTED for a concept in the unlikely case of a hash collision between different relationships.
+	 */
+	HASHED
+
+}
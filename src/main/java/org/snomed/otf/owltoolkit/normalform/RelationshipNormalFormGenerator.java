@@ -21,9 +21,17 @@
 package org.snomed.otf.owltoolkit.normalform;
 
 import com.google.common.base.Stopwatch;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.*;
-import com.google.common.collect.Maps.EntryTransformer;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.longs.LongSets;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.snomed.otf.owltoolkit.classification.ReasonerTaxonomy;
@@ -31,12 +39,21 @@ import org.snomed.otf.owltoolkit.constants.Concepts;
 import org.snomed.otf.owltoolkit.domain.AxiomRepresentation;
 import org.snomed.otf.owltoolkit.domain.Relationship;
 import org.snomed.otf.owltoolkit.normalform.internal.*;
+import org.snomed.otf.owltoolkit.normalform.internal.NormalFormBuffer.HashSetSlot;
 import org.snomed.otf.owltoolkit.normalform.transitive.NodeGraph;
 import org.snomed.otf.owltoolkit.ontology.PropertyChain;
 import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomy;
 
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static org.snomed.otf.owltoolkit.constants.Concepts.IS_A_LONG;
@@ -56,9 +73,11 @@ public final class RelationshipNormalFormGenerator {
 
 	private static final long INTERNATIONAL_CORE_MODULE_ID = Long.parseLong(Concepts.SNOMED_CT_CORE_MODULE);
 	private static final int ZERO_GROUP = 0;
+	// Working memory of the normal form of each concept, reused by the concepts processed on the same thread
+	private static final ThreadLocal<NormalFormBuffer> NORMAL_FORM_BUFFERS = ThreadLocal.withInitial(NormalFormBuffer::new);
 	private static final Comparator<Group> CORE_MODULE_GROUP_COMPARATOR = (o1, o2) -> {
-		long moduleId1 = o1.getUnionGroups().iterator().next().getRelationshipFragments().iterator().next().getModuleId();
-		long moduleId2 = o2.getUnionGroups().iterator().next().getRelationshipFragments().iterator().next().getModuleId();
+		long moduleId1 = o1.getUnionGroup(0).getFragment(0).getModuleId();
+		long moduleId2 = o2.getUnionGroup(0).getFragment(0).getModuleId();
 		if (moduleId1 == INTERNATIONAL_CORE_MODULE_ID && moduleId2 != INTERNATIONAL_CORE_MODULE_ID) {
 			return -1;
 		} else if (moduleId1 != INTERNATIONAL_CORE_MODULE_ID && moduleId2 == INTERNATIONAL_CORE_MODULE_ID) {
@@ -66,16 +85,39 @@ public final class RelationshipNormalFormGenerator {
 		}
 		return 0;
 	};
+	/**
+	 * Transitive graph limit which makes the edges of all concepts visible.
+	 */
+	private static final int ALL_TRANSITIVE_EDGES = Integer.MAX_VALUE;
+	/**
+	 * Transitive graph limit which makes no edges visible.
+	 */
+	private static final int NO_TRANSITIVE_EDGES = Integer.MIN_VALUE;
+	/**
+	 * Default maximum number of property chain closures kept by each generator.
+	 */
+	public static final long DEFAULT_CLOSURE_CACHE_SIZE = 100_000;
 	private static final Logger LOGGER = LoggerFactory.getLogger(RelationshipNormalFormGenerator.class);
 
 	private final ReasonerTaxonomy reasonerTaxonomy;
 	private final SnomedTaxonomy snomedTaxonomy;
 	private final Set<PropertyChain> propertyChains;
 
-	private final Map<Long, Collection<Relationship>> generatedNonIsACache = new Long2ObjectOpenHashMap<>();
+	private final Map<Long, Collection<Relationship>> generatedNonIsACache = new ConcurrentHashMap<>();
 	private final Set<Long> traversableProperties;
+	private final Set<Long> propertyChainInferredTypes;
+	private final Set<Long> propertyChainSourceTypes;
+	private final Map<Long, List<PropertyChain>> propertyChainsByInferredType;
 	private final Map<Long, NodeGraph> transitiveNodeGraphs = new HashMap<>();
 	private final Map<Long, Set<AxiomRepresentation>> conceptAxiomStatementMap;
+	private final Cache<ClosureKey, ClosureEntry> propertyChainClosureCache;
+	private final AtomicLong closureCacheHits = new AtomicLong();
+	private final AtomicLong closureCacheMisses = new AtomicLong();
+	private final Map<Long, LongSet> dominatedTypesCache = new ConcurrentHashMap<>();
+
+	private boolean targetedSecondPass = true;
+	private boolean indexedRedundancyElimination = true;
+	private int secondPassRecomputedConcepts;
 
 	/**
 	 * Creates a new distribution normal form generator instance.
@@ -87,16 +129,35 @@ public final class RelationshipNormalFormGenerator {
 	public RelationshipNormalFormGenerator(final ReasonerTaxonomy reasonerTaxonomy, final SnomedTaxonomy snomedTaxonomy,
 			final Map<Long, Set<AxiomRepresentation>> conceptAxiomStatementMap, final Set<PropertyChain> propertyChains) {
 
+		this(reasonerTaxonomy, snomedTaxonomy, conceptAxiomStatementMap, propertyChains, DEFAULT_CLOSURE_CACHE_SIZE);
+	}
+
+	/**
+	 * Creates a new distribution normal form generator instance.
+	 * @param reasonerTaxonomy the reasoner to extract results from (may not be {@code null})
+	 * @param snomedTaxonomy the taxonomy as it existed before this classification run (may not be {@code null})
+	 * @param conceptAxiomStatementMap map of concept id to axiom set
+	 * @param propertyChains collection of property chains
+	 * @param closureCacheSize maximum number of property chain closures to keep, 0 to compute each one when it is used
+	 */
+	public RelationshipNormalFormGenerator(final ReasonerTaxonomy reasonerTaxonomy, final SnomedTaxonomy snomedTaxonomy,
+			final Map<Long, Set<AxiomRepresentation>> conceptAxiomStatementMap, final Set<PropertyChain> propertyChains, final long closureCacheSize) {
+
 		this.reasonerTaxonomy = reasonerTaxonomy;
 		this.snomedTaxonomy = snomedTaxonomy;
 		this.propertyChains = propertyChains;
 		this.conceptAxiomStatementMap = conceptAxiomStatementMap;
 
 		traversableProperties = propertyChains.stream().map(PropertyChain::getDestinationType).collect(Collectors.toSet());
+		propertyChainInferredTypes = propertyChains.stream().map(PropertyChain::getInferredType).collect(Collectors.toSet());
+		propertyChainSourceTypes = propertyChains.stream().map(PropertyChain::getSourceType).collect(Collectors.toSet());
+		propertyChainsByInferredType = propertyChains.stream().collect(Collectors.groupingBy(PropertyChain::getInferredType));
 
 		// Initialise node graphs for properties we need to traverse
 		LOGGER.info("Initialising node graphs for traversable properties {}", traversableProperties);
 		traversableProperties.forEach(id -> transitiveNodeGraphs.put(id, new NodeGraph()));
+
+		propertyChainClosureCache = closureCacheSize > 0 ? CacheBuilder.newBuilder().maximumSize(closureCacheSize).build() : null;
 	}
 
 	/**
@@ -110,17 +171,75 @@ public final class RelationshipNormalFormGenerator {
 		final Stopwatch stopwatch = Stopwatch.createStarted();
 		final List<Long> entries = reasonerTaxonomy.getConceptIds();
 
-		for (Long conceptId : entries) {
-			firstNormalisationPass(conceptId);
+		for (int position = 0; position < entries.size(); position++) {
+			firstNormalisationPass(entries.get(position), position, ALL_TRANSITIVE_EDGES);
 		}
 
-		for (Long conceptId : entries) {
-			final Collection<Relationship> existingComponents = snomedTaxonomy.getInferredRelationships((long) conceptId);
-			final Collection<Relationship> generatedComponents = secondNormalisationPass(conceptId);
-			processor.apply(conceptId, existingComponents, generatedComponents);
+		secondNormalisationPass(entries, processor);
+
+		LOGGER.info(MessageFormat.format("<<< Relationship normal form generation [{0}]", stopwatch.toString()));
+		logClosureCacheStats();
+	}
+
+	/**
+	 * Computes and returns all changes as a result of normal form computation, running the first pass on multiple threads.
+	 * The changes are the same as those of {@link #collectNormalFormChanges(RelationshipChangeProcessor)}
+	 * and are passed to the processor in the same order.
+	 *
+	 * @param processor the change processor to route changes to
+	 * @param parallelism the number of threads to use for the first pass
+	 * @see ParallelFirstNormalisationPass
+	 */
+	public final void collectNormalFormChanges(final RelationshipChangeProcessor processor, final int parallelism) {
+		final List<Long> entries = reasonerTaxonomy.getConceptIds();
+		if (parallelism <= 1 || new HashSet<>(entries).size() != entries.size()) {
+			collectNormalFormChanges(processor);
+			return;
 		}
 
+		LOGGER.info(">>> Relationship normal form generation using {} threads", parallelism);
+		final Stopwatch stopwatch = Stopwatch.createStarted();
+
+		final ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			new ParallelFirstNormalisationPass(entries, pool).run();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted during relationship normal form generation.", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Failed to generate relationship normal form.", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+
+		secondNormalisationPass(entries, processor);
+
 		LOGGER.info(MessageFormat.format("<<< Relationship normal form generation [{0}]", stopwatch.toString()));
+		logClosureCacheStats();
+	}
+
+	private void secondNormalisationPass(final List<Long> entries, final RelationshipChangeProcessor processor) {
+		// The first pass of each concept used the transitive graph edges of the concepts before it, unless a concept was processed twice
+		final boolean uniqueEntries = new HashSet<>(entries).size() == entries.size();
+		secondPassRecomputedConcepts = 0;
+
+		// Concepts listed more than once, such as attributes with several parents, have the same normal form each time
+		// so their changes are applied once
+		final LongSet appliedConceptIds = uniqueEntries ? null : new LongOpenHashSet();
+
+		// The processor changes relationship objects so this pass always runs in order on one thread
+		for (int position = 0; position < entries.size(); position++) {
+			final Long conceptId = entries.get(position);
+			if (appliedConceptIds != null && !appliedConceptIds.add(conceptId.longValue())) {
+				continue;
+			}
+			final Collection<Relationship> existingComponents = snomedTaxonomy.getInferredRelationships((long) conceptId);
+			final Collection<Relationship> generatedComponents = secondNormalisationPass(conceptId, uniqueEntries ? position : NO_TRANSITIVE_EDGES);
+			processor.apply(conceptId, existingComponents, generatedComponents);
+		}
+		if (secondPassRecomputedConcepts > 0) {
+			LOGGER.info("Second normalisation pass recomputed {} concepts using the complete transitive graphs", secondPassRecomputedConcepts);
+		}
 	}
 
 	/**
@@ -129,16 +248,18 @@ public final class RelationshipNormalFormGenerator {
 	 * This hierarchy is available during the first pass because of the breath first order of processing concepts.
 	 *
 	 * @param conceptId the concept for which components should be generated
+	 * @param position the position of the concept in the processing order
+	 * @param transitiveGraphLimit only transitive graph edges of concepts before this position are used
 	 */
-	private void firstNormalisationPass(long conceptId) {
-		final Set<Relationship> inferredNonIsAFragments = getInferredNonIsAFragmentsInNormalForm(conceptId);
+	private void firstNormalisationPass(final long conceptId, final int position, final int transitiveGraphLimit) {
+		final List<Relationship> inferredNonIsAFragments = getInferredNonIsAFragmentsInNormalForm(conceptId, transitiveGraphLimit);
 
 		// Place results in the cache, so children can re-use it
-		generatedNonIsACache.put(conceptId, ImmutableList.copyOf(inferredNonIsAFragments));
+		generatedNonIsACache.put(conceptId, inferredNonIsAFragments);
 
 		// Add to transitive graphs
 		inferredNonIsAFragments.stream().filter(r -> traversableProperties.contains(r.getTypeId())).forEach(r ->
-				transitiveNodeGraphs.get(r.getTypeId()).addParent(conceptId, r.getDestinationId()));
+				transitiveNodeGraphs.get(r.getTypeId()).addParent(conceptId, r.getDestinationId(), position));
 	}
 
 	/**
@@ -147,49 +268,118 @@ public final class RelationshipNormalFormGenerator {
 	 * Other transitive hierarchies can not be guaranteed to be complete during the first pass because the super-type of a
 	 * concept in a transitive property hierarchy may be at a lower level in the is-a hierarchy meaning that it's processed later during the first pass.
 	 *
+	 * The first pass result is only recomputed when a property chain comparison between the fragments of the concept
+	 * has a different result using the complete graphs.
+	 *
 	 * @param conceptId the concept for which components should be generated
+	 * @param firstPassLimit the transitive graph limit of the first pass of the concept or {@link #NO_TRANSITIVE_EDGES} if not known
 	 * @return the generated components of the specified concept in normal form
 	 */
-	private Collection<Relationship> secondNormalisationPass(final long conceptId) {
+	private Collection<Relationship> secondNormalisationPass(final long conceptId, final int firstPassLimit) {
 		final Set<Long> directSuperTypes = reasonerTaxonomy.getParents(conceptId);
 
 		// Step 1: collect IS-A relationships
 		final Iterable<Relationship> inferredIsAFragments = getInferredIsAFragments(conceptId, directSuperTypes);
 
 		Iterable<Relationship> inferredNonIsAFragments = generatedNonIsACache.get(conceptId);
-		if (!propertyChains.isEmpty()) {
-			for (Relationship inferredNonIsAFragment : inferredNonIsAFragments) {
-				// Is there a property chain for this relationship?
-				if (propertyChains.stream().anyMatch(propertyChain -> propertyChain.getSourceType().equals(inferredNonIsAFragment.getTypeId()))) {
-					inferredNonIsAFragments = getInferredNonIsAFragmentsInNormalForm(conceptId);
-					break;
-				}
-			}
+		// Is there a property chain for any of these relationships?
+		if (hasPropertyChainSourceType(inferredNonIsAFragments)
+				&& (!targetedSecondPass || isPropertyChainRedundancyChanged(conceptId, firstPassLimit))) {
+			inferredNonIsAFragments = getInferredNonIsAFragmentsInNormalForm(conceptId, ALL_TRANSITIVE_EDGES);
+			secondPassRecomputedConcepts++;
 		}
 
 		return ImmutableList.copyOf(Iterables.concat(inferredIsAFragments, inferredNonIsAFragments));
 	}
 
-	private Set<Relationship> getInferredNonIsAFragmentsInNormalForm(Long conceptId) {
+	private boolean hasPropertyChainSourceType(final Iterable<Relationship> relationships) {
+		if (propertyChainSourceTypes.isEmpty()) {
+			return false;
+		}
+		for (Relationship relationship : relationships) {
+			if (propertyChainSourceTypes.contains(relationship.getTypeId())) {
+				return true;
+			}
+		}
+		return false;
+	}
 
+	/**
+	 * Checks the property chain rule of {@link RelationshipFragment#isSameOrStrongerThan(RelationshipFragment)} for every pair of
+	 * fragments used by the first pass of the concept, skipping pairs where the class and role inclusion rule already applies.
+	 * The graphs only grow so a rule which held during the first pass still holds.
+	 *
+	 * @param firstPassLimit the transitive graph limit of the first pass of the concept or {@link #NO_TRANSITIVE_EDGES} if not known
+	 * @return true if any pair is only redundant using the complete transitive graphs.
+	 */
+	private boolean isPropertyChainRedundancyChanged(final long conceptId, final int firstPassLimit) {
 		if (reasonerTaxonomy.getAttributeIds().contains(conceptId)) {
-			// Attributes have no attributes, only parents.
-			return Collections.emptySet();
+			return false;
+		}
+		final List<Relationship> fragments = new ArrayList<>(getOwnStatedNonIsARelationships(conceptId));
+		fragments.addAll(getOwnInferredNonIsARelationships(conceptId));
+		for (Collection<Relationship> parentFragments : getParentNonIsAFragments(conceptId).values()) {
+			fragments.addAll(parentFragments);
 		}
 
-		final Set<Long> directSuperTypes = reasonerTaxonomy.getParents(conceptId);
+		for (Relationship redundant : fragments) {
+			final List<PropertyChain> inferringChains = propertyChainsByInferredType.get(redundant.getTypeId());
+			if (inferringChains == null || redundant.getValue() != null) {
+				continue;
+			}
+			for (PropertyChain propertyChain : inferringChains) {
+				for (Relationship stronger : fragments) {
+					if (stronger.getValue() != null || stronger.isUniversal() != redundant.isUniversal()
+							|| !reasonerTaxonomy.isSameOrAncestor(stronger.getTypeId(), propertyChain.getSourceType())
+							|| (reasonerTaxonomy.isSameOrAncestor(stronger.getTypeId(), redundant.getTypeId())
+									&& reasonerTaxonomy.isSameOrAncestor(stronger.getDestinationId(), redundant.getDestinationId()))) {
+						continue;
+					}
+					if (getPropertyChainTransitiveClosure(stronger.getDestinationId(), propertyChain.getDestinationType(), ALL_TRANSITIVE_EDGES)
+							.contains(redundant.getDestinationId())
+							&& !getPropertyChainTransitiveClosure(stronger.getDestinationId(), propertyChain.getDestinationType(), firstPassLimit)
+							.contains(redundant.getDestinationId())) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	private List<Relationship> getInferredNonIsAFragmentsInNormalForm(Long conceptId, int transitiveGraphLimit) {
+
+		if (reasonerTaxonomy.getAttributeIds().contains(conceptId)) {
+			// Attributes have no attributes, only parents.
+			return ImmutableList.of();
+		}
 
 		// Step 2: get all non IS-A relationships from ancestors and remove redundancy, then cache the results for later use
+		final Map<Long, Collection<Relationship>> otherNonIsAFragments = getParentNonIsAFragments(conceptId);
+
+		final NormalFormBuffer buffer = NORMAL_FORM_BUFFERS.get();
+		buffer.begin(this, transitiveGraphLimit);
+		try {
+			return getInferredNonIsAFragments(conceptId, buffer, otherNonIsAFragments);
+		} finally {
+			buffer.end();
+		}
+	}
+
+	private Map<Long, Collection<Relationship>> getParentNonIsAFragments(Long conceptId) {
 		final Map<Long, Collection<Relationship>> otherNonIsAFragments = new Long2ObjectOpenHashMap<>();
 
 		/*
 		 * We can rely on the fact that the tree is processed in breadth-first order, so the parents' non-IS A relationships
 		 * will already be present in the cache
 		 */
-		for (Long directSuperTypeId : directSuperTypes) {
+		for (Long directSuperTypeId : reasonerTaxonomy.getParents(conceptId)) {
 			otherNonIsAFragments.put(directSuperTypeId, getCachedNonIsAFragments(directSuperTypeId));
 		}
+		return otherNonIsAFragments;
+	}
 
+	private Collection<Relationship> getOwnStatedNonIsARelationships(Long conceptId) {
 		Set<AxiomRepresentation> axiomRepresentations = conceptAxiomStatementMap.get(conceptId);
 		final Collection<Relationship> ownStatedNonIsaRelationships;
 		if (axiomRepresentations == null) {
@@ -205,14 +395,12 @@ public final class RelationshipNormalFormGenerator {
 					.filter(relationship -> relationship.getTypeId() != Concepts.IS_A_LONG)
 					.collect(Collectors.toList()));
 		}
+		return ownStatedNonIsaRelationships;
+	}
 
+	private Collection<Relationship> getOwnInferredNonIsARelationships(Long conceptId) {
 		final Collection<Relationship> ownInferredFragments = snomedTaxonomy.getInferredRelationships(conceptId);
-		final Collection<Relationship> ownInferredNonIsaFragments = Collections2.filter(ownInferredFragments, input -> input.getTypeId() != IS_A_LONG);
-
-		return getInferredNonIsAFragments(conceptId,
-				ownInferredNonIsaFragments,
-				ownStatedNonIsaRelationships,
-				otherNonIsAFragments);
+		return Collections2.filter(ownInferredFragments, input -> input.getTypeId() != IS_A_LONG);
 	}
 
 	/**
@@ -242,27 +430,28 @@ public final class RelationshipNormalFormGenerator {
 	 * </ol>
 	 *
 	 */
-	private Set<Relationship> getInferredNonIsAFragments(long conceptId,
-			final Collection<Relationship> ownInferredNonIsAFragments,
-			final Collection<Relationship> ownStatedNonIsAFragments,
+	private List<Relationship> getInferredNonIsAFragments(final long conceptId, final NormalFormBuffer buffer,
 			final Map<Long, Collection<Relationship>> parentStatedNonIsAFragments) {
 
 		// Index existing inferred non-IS A relationship groups into a GroupSet (without redundancy check)
 		final GroupSet inferredGroups = new GroupSet();
-		final Iterable<Group> ownInferredGroups = toGroups(true, ownInferredNonIsAFragments);
-		for (final Group ownInferredGroup : ownInferredGroups) {
-			inferredGroups.addUnique(ownInferredGroup);
-		}
+		int start = buffer.getFragmentCount();
+		addOwnInferredNonIsAFragments(buffer, conceptId);
+		addGroups(buffer, start, true, inferredGroups, true);
 
 		// Eliminate redundancy between existing stated non-IS A relationship groups
-		final GroupSet groups = new GroupSet();
-		final Iterable<Group> ownGroups = toGroups(false, ownStatedNonIsAFragments);
-		Iterables.addAll(groups, ownGroups);
+		final GroupSet groups = indexedRedundancyElimination ? new GroupSet(this::getDominatedTypes) : new GroupSet();
+		start = buffer.getFragmentCount();
+		addOwnStatedNonIsAFragments(buffer, conceptId);
+		addGroups(buffer, start, false, groups, false);
 
 		// Continue by adding stated non-IS A relationship groups from parents indicated by the reasoner
 		for (Long parentId : parentStatedNonIsAFragments.keySet()) {
-			final Iterable<Group> otherGroups = toGroups(false, parentStatedNonIsAFragments.get(parentId));
-			Iterables.addAll(groups, otherGroups);
+			start = buffer.getFragmentCount();
+			for (Relationship relationship : parentStatedNonIsAFragments.get(parentId)) {
+				buffer.addFragment(relationship);
+			}
+			addGroups(buffer, start, false, groups, false);
 		}
 
 		// The remaining non-redundant groups should be numbered from 1
@@ -275,7 +464,40 @@ public final class RelationshipNormalFormGenerator {
 		groups.adjustOrder(inferredGroups);
 
 		// Convert groups back to individual statement fragments
-		return fromGroupSet(groups);
+		return fromGroupSet(buffer, groups);
+	}
+
+	private void addOwnStatedNonIsAFragments(final NormalFormBuffer buffer, final long conceptId) {
+		// Same relationships in the same order as getOwnStatedNonIsARelationships
+		for (Relationship relationship : snomedTaxonomy.getStatedRelationships(conceptId)) {
+			if (relationship.getTypeId() != IS_A_LONG) {
+				buffer.addFragment(relationship);
+			}
+		}
+		final Set<AxiomRepresentation> axiomRepresentations = conceptAxiomStatementMap.get(conceptId);
+		if (axiomRepresentations != null) {
+			for (AxiomRepresentation axiomRepresentation : axiomRepresentations) {
+				final Long leftHandSideNamedConcept = axiomRepresentation.getLeftHandSideNamedConcept();
+				if (leftHandSideNamedConcept == null || leftHandSideNamedConcept != conceptId) {
+					continue;
+				}
+				for (List<Relationship> relationships : axiomRepresentation.getRightHandSideRelationships().values()) {
+					for (Relationship relationship : relationships) {
+						if (relationship.getTypeId() != IS_A_LONG) {
+							buffer.addFragment(relationship);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private void addOwnInferredNonIsAFragments(final NormalFormBuffer buffer, final long conceptId) {
+		for (Relationship relationship : snomedTaxonomy.getInferredRelationships(conceptId)) {
+			if (relationship.getTypeId() != IS_A_LONG) {
+				buffer.addFragment(relationship);
+			}
+		}
 	}
 
 	private Collection<Relationship> getCachedNonIsAFragments(final long directSuperTypeId) {
@@ -286,77 +508,133 @@ public final class RelationshipNormalFormGenerator {
 		return parentIds.stream().map(parentId -> new Relationship(IS_A_LONG, parentId)).collect(Collectors.toSet());
 	}
 
-	private Iterable<Group> toGroups(final boolean preserveNumbers, final Collection<Relationship> nonIsARelationshipFragments) {
-
-		final Map<Integer, Collection<Relationship>> relationshipsByGroupId = Multimaps.index(nonIsARelationshipFragments, Relationship::getGroup).asMap();
-
-		final Collection<Collection<Group>> groups = Maps.transformEntries(relationshipsByGroupId,
-				(EntryTransformer<Integer, Collection<Relationship>, Collection<Group>>) (key, values) -> {
-					final Iterable<UnionGroup> unionGroups = toUnionGroups(preserveNumbers, values);
-					final Set<UnionGroup> disjointUnionGroups = getDisjointComparables(unionGroups);
-
-					if (key == 0) {
-						// Relationships in group 0 form separate groups
-						return ImmutableList.copyOf(toZeroGroups(disjointUnionGroups));
-					} else {
-						// Other group numbers produce a single group from all fragments
-						return ImmutableList.of(toNonZeroGroup(preserveNumbers, key, disjointUnionGroups));
-					}
-				}).values();
-
-		return Iterables.concat(groups);
-	}
+	/**
+	 * Forms groups from the fragments of the buffer starting at the given slot and adds them to the group set.
+	 * Fragments with the same group number form groups in the order the group numbers are first found.
+	 * Within those, fragments with union group number 0 each form a separate union group and other union group numbers
+	 * produce a single union group, in the order the union group numbers are first found.
+	 * Group 0 forms a group from each of its disjoint union groups, other group numbers produce a single group from them.
+	 *
+	 * @param unique add the groups without redundancy checks
+	 */
+	private void addGroups(final NormalFormBuffer buffer, final int start, final boolean preserveNumbers, final GroupSet groupSet, final boolean unique) {
+		final int end = buffer.getFragmentCount();
+		final boolean[] grouped = buffer.getGroupMarks(start, end);
+		final IntArrayList groupSlots = buffer.getGroupSlots();
+		final List<UnionGroup> unionGroups = buffer.getUnionGroupList();
+		final List<UnionGroup> disjointUnionGroups = buffer.getDisjointUnionGroupList();
+
+		for (int slot = start; slot < end; slot++) {
+			if (grouped[slot]) {
+				continue;
+			}
+			final int groupNumber = buffer.getFragment(slot).getRelationship().getGroup();
+			groupSlots.clear();
+			for (int other = slot; other < end; other++) {
+				if (!grouped[other] && buffer.getFragment(other).getRelationship().getGroup() == groupNumber) {
+					grouped[other] = true;
+					groupSlots.add(other);
+				}
+			}
 
-	private Iterable<Group> toZeroGroups(final Set<UnionGroup> disjointUnionGroups) {
-		return disjointUnionGroups.stream().map(unionGroup -> {
-			final Group group = new Group(ImmutableList.of(unionGroup));
-			group.setGroupNumber(ZERO_GROUP);
-			return group;
-		}).collect(Collectors.toList());
+			unionGroups.clear();
+			addUnionGroups(buffer, groupSlots, preserveNumbers, unionGroups);
+			disjointUnionGroups.clear();
+			getDisjointComparables(unionGroups, disjointUnionGroups, buffer,
+					indexedRedundancyElimination ? () -> RedundancyIndex.forUnionGroups(this::getDominatedTypes) : null);
+
+			if (groupNumber == ZERO_GROUP) {
+				// Relationships in group 0 form separate groups
+				for (UnionGroup unionGroup : disjointUnionGroups) {
+					final int from = buffer.getGroupUnionGroupCount();
+					buffer.addGroupUnionGroup(unionGroup);
+					final Group group = buffer.createGroup(from);
+					group.setGroupNumber(ZERO_GROUP);
+					addGroup(groupSet, group, unique);
+				}
+			} else {
+				// Other group numbers produce a single group from all fragments
+				final int from = buffer.getGroupUnionGroupCount();
+				for (UnionGroup unionGroup : disjointUnionGroups) {
+					buffer.addGroupUnionGroup(unionGroup);
+				}
+				final Group group = buffer.createGroup(from);
+				if (preserveNumbers) {
+					group.setGroupNumber(groupNumber);
+				}
+				addGroup(groupSet, group, unique);
+			}
+		}
 	}
 
-	private Group toNonZeroGroup(final boolean preserveNumbers, final int groupNumber, final Iterable<UnionGroup> disjointUnionGroups) {
-		final Group group = new Group(disjointUnionGroups);
-		if (preserveNumbers) {
-			group.setGroupNumber(groupNumber);
+	private void addGroup(final GroupSet groupSet, final Group group, final boolean unique) {
+		if (unique) {
+			groupSet.addUnique(group);
+		} else {
+			groupSet.add(group);
 		}
-		return group;
 	}
 
-	private Iterable<UnionGroup> toUnionGroups(final boolean preserveNumbers, final Collection<Relationship> values) {
-		final Map<Integer, Collection<Relationship>> relationshipsByUnionGroupId = Multimaps.index(values, Relationship::getUnionGroup).asMap();
-
-		final Collection<Collection<UnionGroup>> unionGroups = Maps.transformEntries(relationshipsByUnionGroupId,
-				(EntryTransformer<Integer, Collection<Relationship>, Collection<UnionGroup>>) (key, values1) -> {
-					if (key == 0) {
-						// Relationships in union group 0 form separate union groups
-						return ImmutableList.copyOf(toZeroUnionGroups(values1));
-					} else {
-						// Other group numbers produce a single union group from all fragments
-						return ImmutableList.of(toNonZeroUnionGroup(preserveNumbers, key, values1));
-					}
-				}).values();
+	private void addUnionGroups(final NormalFormBuffer buffer, final IntArrayList groupSlots, final boolean preserveNumbers, final List<UnionGroup> unionGroups) {
+		final boolean[] unionGrouped = buffer.getUnionGroupMarks(groupSlots);
+		final IntArrayList unionGroupSlots = buffer.getUnionGroupSlots();
 
-		return Iterables.concat(unionGroups);
-	}
+		for (int i = 0; i < groupSlots.size(); i++) {
+			final int slot = groupSlots.getInt(i);
+			if (unionGrouped[slot]) {
+				continue;
+			}
+			final int unionGroupNumber = buffer.getFragment(slot).getRelationship().getUnionGroup();
+			unionGroupSlots.clear();
+			for (int j = i; j < groupSlots.size(); j++) {
+				final int other = groupSlots.getInt(j);
+				if (!unionGrouped[other] && buffer.getFragment(other).getRelationship().getUnionGroup() == unionGroupNumber) {
+					unionGrouped[other] = true;
+					unionGroupSlots.add(other);
+				}
+			}
 
-	private Iterable<UnionGroup> toZeroUnionGroups(final Collection<Relationship> values) {
-		return values.stream().map(relationship -> {
-			final UnionGroup unionGroup = new UnionGroup(ImmutableList.of(new RelationshipFragment(RelationshipNormalFormGenerator.this, relationship)));
-			unionGroup.setUnionGroupNumber(ZERO_GROUP);
-			return unionGroup;
-		}).collect(Collectors.toSet());
+			if (unionGroupNumber == ZERO_GROUP) {
+				// Relationships in union group 0 form separate union groups, without duplicates and in hash set order
+				if (unionGroupSlots.size() == 1) {
+					unionGroups.add(toZeroUnionGroup(buffer, unionGroupSlots.getInt(0)));
+				} else {
+					final Set<UnionGroup> zeroUnionGroups = buffer.takeHashSet(HashSetSlot.ZERO_UNION_GROUPS);
+					for (int j = 0; j < unionGroupSlots.size(); j++) {
+						zeroUnionGroups.add(toZeroUnionGroup(buffer, unionGroupSlots.getInt(j)));
+					}
+					unionGroups.addAll(zeroUnionGroups);
+					buffer.releaseHashSet(HashSetSlot.ZERO_UNION_GROUPS, zeroUnionGroups.size());
+				}
+			} else {
+				// Other union group numbers produce a single union group from all fragments, without duplicates and in hash set order
+				final int from = buffer.getUnionGroupFragmentCount();
+				if (unionGroupSlots.size() == 1) {
+					buffer.addUnionGroupFragment(buffer.getFragment(unionGroupSlots.getInt(0)));
+				} else {
+					final Set<RelationshipFragment> fragments = buffer.takeHashSet(HashSetSlot.UNION_GROUP_FRAGMENTS);
+					for (int j = 0; j < unionGroupSlots.size(); j++) {
+						fragments.add(buffer.getFragment(unionGroupSlots.getInt(j)));
+					}
+					for (RelationshipFragment fragment : fragments) {
+						buffer.addUnionGroupFragment(fragment);
+					}
+					buffer.releaseHashSet(HashSetSlot.UNION_GROUP_FRAGMENTS, fragments.size());
+				}
+				final UnionGroup unionGroup = buffer.createUnionGroup(from);
+				if (preserveNumbers) {
+					unionGroup.setUnionGroupNumber(unionGroupNumber);
+				}
+				unionGroups.add(unionGroup);
+			}
+		}
 	}
 
-	private UnionGroup toNonZeroUnionGroup(final boolean preserveNumbers, final int unionGroupNumber, final Collection<Relationship> values) {
-		Set<RelationshipFragment> fragments = values.stream()
-				.map(relationship -> new RelationshipFragment(RelationshipNormalFormGenerator.this, relationship))
-				.collect(Collectors.toSet());
-
-		final UnionGroup unionGroup = new UnionGroup(fragments);
-		if (preserveNumbers) {
-			unionGroup.setUnionGroupNumber(unionGroupNumber);
-		}
+	private UnionGroup toZeroUnionGroup(final NormalFormBuffer buffer, final int slot) {
+		final int from = buffer.getUnionGroupFragmentCount();
+		buffer.addUnionGroupFragment(buffer.getFragment(slot));
+		final UnionGroup unionGroup = buffer.createUnionGroup(from);
+		unionGroup.setUnionGroupNumber(ZERO_GROUP);
 		return unionGroup;
 	}
 
@@ -377,28 +655,43 @@ public final class RelationshipNormalFormGenerator {
 	 * candidates are removed from the set, and the incoming item gets added);
 	 * </li>
 	 * <li>
-	 * all surviving items are returned.
+	 * all surviving items are added to the result in the iteration order of the candidate set.
 	 * </li>
 	 * </ol>
-	 * <p>
-	 * The returned Iterable is backed by a locally created Set, and supports
-	 * <code>remove()</code>.
 	 *
 	 * @param comparables
 	 *            the comparables to filter
-	 *
-	 * @return an {@link Set} that only includes the reduced comparables
+	 * @param result
+	 *            receives the reduced comparables
+	 * @param buffer
+	 *            provides the candidate set
+	 * @param indexSupplier
+	 *            creates an index of the candidates once there are enough of them,
+	 *            or null to check each item against all candidates
 	 */
-	private <T extends SemanticComparable<T>> Set<T> getDisjointComparables(final Iterable<T> comparables) {
-		final Set<T> candidates = Sets.newHashSet();
-		final Set<T> redundant = Sets.newHashSet();
+	private <T extends SemanticComparable<T>> void getDisjointComparables(final List<T> comparables, final List<T> result,
+			final NormalFormBuffer buffer, final Supplier<RedundancyIndex<T>> indexSupplier) {
+		if (comparables.size() == 1) {
+			result.add(comparables.get(0));
+			return;
+		}
+		final Set<T> candidates = buffer.takeHashSet(HashSetSlot.DISJOINT_CANDIDATES);
+		final Set<T> redundant = buffer.takeHashSet(HashSetSlot.DISJOINT_REDUNDANT);
+		int maxCandidates = 0;
+		int maxRedundant = 0;
+		RedundancyIndex<T> index = null;
 
 		for (final T comparable : comparables) {
 
 			redundant.clear();
 			boolean found = false;
 
-			for (final T candidate : candidates) {
+			if (index == null && indexSupplier != null && candidates.size() >= RedundancyIndex.MIN_INDEXED_SIZE) {
+				index = indexSupplier.get();
+				index.addAll(candidates);
+			}
+
+			for (final T candidate : index != null ? index.getCandidates(comparable, candidates) : candidates) {
 
 				if (candidate.isSameOrStrongerThan(comparable)) {
 					found = true;
@@ -407,54 +700,340 @@ public final class RelationshipNormalFormGenerator {
 					redundant.add(candidate);
 				}
 			}
+			maxRedundant = Math.max(maxRedundant, redundant.size());
 
 			if (!found) {
 				candidates.removeAll(redundant);
 				candidates.add(comparable);
+				maxCandidates = Math.max(maxCandidates, candidates.size());
+				if (index != null) {
+					redundant.forEach(index::remove);
+					index.add(comparable);
+				}
 			}
 		}
 
-		return candidates;
-	}
-
-	private Set<Relationship> fromGroupSet(final GroupSet groups) {
-		return groups.stream().map(this::fromGroup).flatMap(Collection::stream).collect(Collectors.toSet());
-	}
-
-	private Set<Relationship> fromGroup(final Group group) {
-		return group.getUnionGroups().stream().map(unionGroup ->  fromUnionGroup(unionGroup, group.getGroupNumber(), unionGroup.getUnionGroupNumber()))
-				.flatMap(Collection::stream).collect(Collectors.toSet());
-	}
-
-	private Set<Relationship> fromUnionGroup(final UnionGroup unionGroup, final int groupNumber, final int unionGroupNumber) {
-		return unionGroup.getRelationshipFragments().stream()
-				.map(input -> {
-					Relationship relationship = input.getRelationship();
-					if (!relationship.isConcrete()) {
-						return new Relationship(
-								input.getStatementId(),
-								-1,
-								input.getModuleId(),
-								input.getTypeId(),
-								input.getDestinationId(),
-								groupNumber,
-								unionGroupNumber,
-								input.isUniversal(),
-								-1);
-					} else {
-						return new Relationship(
-								input.getStatementId(),
-								-1,
-								input.getModuleId(),
-								input.getTypeId(),
-								relationship.getValue(),
-								groupNumber,
-								unionGroupNumber,
-								input.isUniversal(),
-								-1);
+		result.addAll(candidates);
+		buffer.releaseHashSet(HashSetSlot.DISJOINT_CANDIDATES, maxCandidates);
+		buffer.releaseHashSet(HashSetSlot.DISJOINT_REDUNDANT, maxRedundant);
+	}
+
+	/**
+	 * Creates relationships from the fragments of the groups, in the iteration order of a hash set of the relationships of each
+	 * union group, added to a hash set for each group, added to a hash set of all groups.
+	 */
+	private List<Relationship> fromGroupSet(final NormalFormBuffer buffer, final GroupSet groups) {
+		final Set<Relationship> relationships = buffer.takeHashSet(HashSetSlot.RESULT);
+		for (final Group group : groups) {
+			if (group.getUnionGroupCount() == 1 && group.getUnionGroup(0).getFragmentCount() == 1) {
+				final UnionGroup unionGroup = group.getUnionGroup(0);
+				relationships.add(fromFragment(unionGroup.getFragment(0), group.getGroupNumber(), unionGroup.getUnionGroupNumber()));
+			} else {
+				final Set<Relationship> groupRelationships = buffer.takeHashSet(HashSetSlot.RESULT_GROUP);
+				for (int i = 0; i < group.getUnionGroupCount(); i++) {
+					fromUnionGroup(buffer, group.getUnionGroup(i), group.getGroupNumber(), groupRelationships);
+				}
+				relationships.addAll(groupRelationships);
+				buffer.releaseHashSet(HashSetSlot.RESULT_GROUP, groupRelationships.size());
+			}
+		}
+		final List<Relationship> result = ImmutableList.copyOf(relationships);
+		buffer.releaseHashSet(HashSetSlot.RESULT, relationships.size());
+		return result;
+	}
+
+	private void fromUnionGroup(final NormalFormBuffer buffer, final UnionGroup unionGroup, final int groupNumber, final Set<Relationship> groupRelationships) {
+		if (unionGroup.getFragmentCount() == 1) {
+			groupRelationships.add(fromFragment(unionGroup.getFragment(0), groupNumber, unionGroup.getUnionGroupNumber()));
+			return;
+		}
+		final Set<Relationship> unionGroupRelationships = buffer.takeHashSet(HashSetSlot.RESULT_UNION_GROUP);
+		for (int i = 0; i < unionGroup.getFragmentCount(); i++) {
+			unionGroupRelationships.add(fromFragment(unionGroup.getFragment(i), groupNumber, unionGroup.getUnionGroupNumber()));
+		}
+		groupRelationships.addAll(unionGroupRelationships);
+		buffer.releaseHashSet(HashSetSlot.RESULT_UNION_GROUP, unionGroupRelationships.size());
+	}
+
+	private Relationship fromFragment(final RelationshipFragment input, final int groupNumber, final int unionGroupNumber) {
+		Relationship relationship = input.getRelationship();
+		if (!relationship.isConcrete()) {
+			return new Relationship(
+					input.getStatementId(),
+					-1,
+					input.getModuleId(),
+					input.getTypeId(),
+					input.getDestinationId(),
+					groupNumber,
+					unionGroupNumber,
+					input.isUniversal(),
+					-1);
+		} else {
+			return new Relationship(
+					input.getStatementId(),
+					-1,
+					input.getModuleId(),
+					input.getTypeId(),
+					relationship.getValue(),
+					groupNumber,
+					unionGroupNumber,
+					input.isUniversal(),
+					-1);
+		}
+	}
+
+	/**
+	 * Runs the first normalisation pass of each concept on a fork-join pool as soon as the first passes of its parents are complete.
+	 *
+	 * In the sequential order the first pass of a concept sees the transitive graph parents added by all earlier concepts.
+	 * Those graphs are only used when a relationship fragment has the inferred type of a property chain.
+	 * Concepts with such fragments wait until all earlier concepts are complete and then only read the graph parents of earlier concepts,
+	 * so every concept gets the same result as in the sequential order.
+	 */
+	private final class ParallelFirstNormalisationPass {
+
+		private final List<Long> entries;
+		private final ForkJoinPool pool;
+		private final IntArrayList[] children;
+		private final AtomicIntegerArray incompleteParents;
+		private final AtomicInteger incompleteConcepts;
+		private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+		// Guarded by this
+		private final boolean[] complete;
+		private final PriorityQueue<Integer> waitingForEarlierConcepts = new PriorityQueue<>();
+		private int completePrefix;
+
+		private ParallelFirstNormalisationPass(final List<Long> entries, final ForkJoinPool pool) {
+			this.entries = entries;
+			this.pool = pool;
+			final int size = entries.size();
+			children = new IntArrayList[size];
+			incompleteParents = new AtomicIntegerArray(size);
+			incompleteConcepts = new AtomicInteger(size);
+			complete = new boolean[size];
+
+			final Long2IntOpenHashMap positions = new Long2IntOpenHashMap(size);
+			positions.defaultReturnValue(-1);
+			for (int position = 0; position < size; position++) {
+				positions.put((long) entries.get(position), position);
+			}
+			for (int position = 0; position < size; position++) {
+				for (Long parentId : reasonerTaxonomy.getParents(entries.get(position))) {
+					final int parentPosition = positions.get((long) parentId);
+					// Parents later in the order are not read by the first pass
+					if (parentPosition >= 0 && parentPosition < position) {
+						if (children[parentPosition] == null) {
+							children[parentPosition] = new IntArrayList();
+						}
+						children[parentPosition].add(position);
+						incompleteParents.incrementAndGet(position);
 					}
-				})
-				.collect(Collectors.toSet());
+				}
+			}
+		}
+
+		private void run() throws InterruptedException, ExecutionException {
+			if (entries.isEmpty()) {
+				return;
+			}
+			// Find all roots before submitting any because running tasks submit children as their counts reach zero
+			final IntArrayList roots = new IntArrayList();
+			for (int position = 0; position < entries.size(); position++) {
+				if (incompleteParents.get(position) == 0) {
+					roots.add(position);
+				}
+			}
+			for (int position : roots) {
+				submit(position, false);
+			}
+			done.get();
+		}
+
+		private void submit(final int position, final boolean earlierConceptsComplete) {
+			pool.execute(() -> {
+				if (done.isDone()) {
+					return;
+				}
+				try {
+					final Long conceptId = entries.get(position);
+					if (!earlierConceptsComplete && usesTransitiveGraphs(conceptId) && !waitForEarlierConcepts(position)) {
+						// Submitted again once all earlier concepts are complete
+						return;
+					}
+					firstNormalisationPass(conceptId, position, position);
+					completed(position);
+				} catch (RuntimeException | Error e) {
+					done.completeExceptionally(e);
+				}
+			});
+		}
+
+		/**
+		 * @return true if all concepts before the position are complete, otherwise the position is queued to be submitted later.
+		 */
+		private synchronized boolean waitForEarlierConcepts(final int position) {
+			if (completePrefix >= position) {
+				return true;
+			}
+			waitingForEarlierConcepts.add(position);
+			return false;
+		}
+
+		private void completed(final int position) {
+			final List<Integer> released = new ArrayList<>();
+			synchronized (this) {
+				complete[position] = true;
+				while (completePrefix < complete.length && complete[completePrefix]) {
+					completePrefix++;
+				}
+				while (!waitingForEarlierConcepts.isEmpty() && waitingForEarlierConcepts.peek() <= completePrefix) {
+					released.add(waitingForEarlierConcepts.poll());
+				}
+			}
+			for (Integer waitingPosition : released) {
+				submit(waitingPosition, true);
+			}
+
+			if (children[position] != null) {
+				for (int childPosition : children[position]) {
+					if (incompleteParents.decrementAndGet(childPosition) == 0) {
+						submit(childPosition, false);
+					}
+				}
+			}
+
+			if (incompleteConcepts.decrementAndGet() == 0) {
+				done.complete(null);
+			}
+		}
+
+		/**
+		 * @return true if any fragment compared during the first pass of the concept has the inferred type of a property chain.
+		 */
+		private boolean usesTransitiveGraphs(final Long conceptId) {
+			if (propertyChainInferredTypes.isEmpty() || reasonerTaxonomy.getAttributeIds().contains(conceptId)) {
+				return false;
+			}
+			if (hasPropertyChainInferredType(getOwnStatedNonIsARelationships(conceptId))
+					|| hasPropertyChainInferredType(getOwnInferredNonIsARelationships(conceptId))) {
+				return true;
+			}
+			for (Long parentId : reasonerTaxonomy.getParents(conceptId)) {
+				final Collection<Relationship> parentFragments = getCachedNonIsAFragments(parentId);
+				if (parentFragments != null && hasPropertyChainInferredType(parentFragments)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private boolean hasPropertyChainInferredType(final Collection<Relationship> relationships) {
+			for (Relationship relationship : relationships) {
+				if (propertyChainInferredTypes.contains(relationship.getTypeId())) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the concept, the concepts reachable from it through the transitive graph of the chain destination type
+	 * and the ancestors of all of these.
+	 * A closure is cached with the transitive graph ancestors it was built from and reused while the graph returns the same ancestors,
+	 * which is for the range of limits over which the node's own closure is valid. Concepts at different positions of the first pass
+	 * and the second pass therefore share closures of concepts whose reachable edges are complete.
+	 *
+	 * @param transitiveGraphLimit only transitive graph edges of concepts before this position are used
+	 */
+	public Set<Long> getPropertyChainTransitiveClosure(final long conceptId, final long chainDestinationType, final int transitiveGraphLimit) {
+		final NodeGraph nodeGraph = transitiveNodeGraphs.get(chainDestinationType);
+		final Set<Long> graphAncestors = nodeGraph != null ? nodeGraph.getAncestors(conceptId, transitiveGraphLimit) : Collections.emptySet();
+		if (propertyChainClosureCache == null) {
+			return buildPropertyChainTransitiveClosure(conceptId, graphAncestors);
+		}
+		final ClosureKey key = new ClosureKey(conceptId, chainDestinationType);
+		final ClosureEntry entry = propertyChainClosureCache.getIfPresent(key);
+		// The node graph returns the same set instance for as long as its closure is valid
+		if (entry != null && entry.graphAncestors == graphAncestors) {
+			closureCacheHits.incrementAndGet();
+			return entry.closure;
+		}
+		closureCacheMisses.incrementAndGet();
+		final Set<Long> closure = buildPropertyChainTransitiveClosure(conceptId, graphAncestors);
+		propertyChainClosureCache.put(key, new ClosureEntry(graphAncestors, closure));
+		return closure;
+	}
+
+	private Set<Long> buildPropertyChainTransitiveClosure(final long conceptId, final Set<Long> graphAncestors) {
+		// Build closure containing all possible hops using chainDestinationType
+		// For every concept found also add its super types
+		final LongOpenHashSet chainPaths = new LongOpenHashSet();
+		chainPaths.add(conceptId);
+		chainPaths.addAll(graphAncestors);
+		final LongOpenHashSet chainStepAncestors = new LongOpenHashSet();
+		for (final long chainNode : chainPaths) {
+			chainStepAncestors.addAll(reasonerTaxonomy.getAncestors(chainNode));
+		}
+		chainPaths.addAll(chainStepAncestors);
+		return chainPaths;
+	}
+
+	/**
+	 * @return hit and miss counts of the property chain closure cache, all zero if there is no cache.
+	 */
+	public CacheStats getClosureCacheStats() {
+		return new CacheStats(closureCacheHits.get(), closureCacheMisses.get(), 0, 0, 0, 0);
+	}
+
+	private void logClosureCacheStats() {
+		final CacheStats stats = getClosureCacheStats();
+		if (stats.requestCount() > 0) {
+			LOGGER.info("Property chain closure cache: {} hits, {} misses, hit rate {}%", stats.hitCount(), stats.missCount(),
+					Math.round(stats.hitRate() * 100));
+		}
+	}
+
+	/**
+	 * @param targetedSecondPass false to recompute every concept with a fragment of a property chain source type in the second pass,
+	 * even when the complete transitive graphs do not change its redundancy. True by default.
+	 */
+	public void setTargetedSecondPass(final boolean targetedSecondPass) {
+		this.targetedSecondPass = targetedSecondPass;
+	}
+
+	/**
+	 * @return the number of concepts recomputed by the last second normalisation pass.
+	 */
+	public int getSecondPassRecomputedConcepts() {
+		return secondPassRecomputedConcepts;
+	}
+
+	/**
+	 * @return the types of the fragments which a fragment of the given type may be the same as or stronger than:
+	 * the type itself, its ancestors and the inferred types of property chains with the type or an ancestor as the source type.
+	 * @see RelationshipFragment#isSameOrStrongerThan(RelationshipFragment)
+	 */
+	public LongSet getDominatedTypes(final long typeId) {
+		return dominatedTypesCache.computeIfAbsent(typeId, id -> {
+			final LongSet dominatedTypes = new LongOpenHashSet(reasonerTaxonomy.getAncestors(id));
+			dominatedTypes.add(typeId);
+			for (PropertyChain propertyChain : propertyChains) {
+				if (reasonerTaxonomy.isSameOrAncestor(typeId, propertyChain.getSourceType())) {
+					dominatedTypes.add(propertyChain.getInferredType().longValue());
+				}
+			}
+			return LongSets.unmodifiable(dominatedTypes);
+		});
+	}
+
+	/**
+	 * @param indexedRedundancyElimination false to compare each group and union group with all others when removing redundancy,
+	 * instead of only those with fragment types it may be the same as or stronger than. True by default.
+	 */
+	public void setIndexedRedundancyElimination(final boolean indexedRedundancyElimination) {
+		this.indexedRedundancyElimination = indexedRedundancyElimination;
 	}
 
 	public ReasonerTaxonomy getReasonerTaxonomy() {
@@ -473,4 +1052,39 @@ public final class RelationshipNormalFormGenerator {
 		return transitiveNodeGraphs;
 	}
 
+	private static final class ClosureKey {
+
+		private final long conceptId;
+		private final long chainDestinationType;
+
+		private ClosureKey(final long conceptId, final long chainDestinationType) {
+			this.conceptId = conceptId;
+			this.chainDestinationType = chainDestinationType;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (this == o) return true;
+			if (!(o instanceof ClosureKey)) return false;
+			final ClosureKey that = (ClosureKey) o;
+			return conceptId == that.conceptId && chainDestinationType == that.chainDestinationType;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) HashCommon.mix(conceptId * 31 + chainDestinationType);
+		}
+	}
+
+	private static final class ClosureEntry {
+
+		private final Set<Long> graphAncestors;
+		private final Set<Long> closure;
+
+		private ClosureEntry(final Set<Long> graphAncestors, final Set<Long> closure) {
+			this.graphAncestors = graphAncestors;
+			this.closure = closure;
+		}
+	}
+
 }
@@ -20,15 +20,11 @@
  */
 package org.snomed.otf.owltoolkit.normalform.internal;
 
-import com.google.common.base.Optional;
-import com.google.common.base.Predicates;
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterables;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import org.snomed.otf.owltoolkit.normalform.RelationshipNormalFormGenerator;
 
-import java.util.List;
 import java.util.Map;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -37,27 +33,38 @@ import static com.google.common.base.Preconditions.checkArgument;
  * Represents a relationship group, consisting of a(n optionally preserved)
  * group number and a list of union groups. The object (source concept) is
  * not stored with the group; it is assumed to be known in context.
+ * The union groups are a range of a {@link NormalFormBuffer}.
  */
 public final class Group implements SemanticComparable<Group> {
 
-	private final List<UnionGroup> unionGroups;
+	private final NormalFormBuffer buffer;
+	private int from;
+	private int to;
 
 	private int groupNumber = RelationshipNormalFormGenerator.NUMBER_NOT_PRESERVED;
 
-	/**
-	 * Creates a new group instance.
-	 *
-	 * @param unionGroups
-	 *            the relationship union groups to associate with this group
-	 *            (may not be <code>null</code>)
-	 */
-	public Group(final Iterable<UnionGroup> unionGroups) {
-		checkArgument(unionGroups != null, "unionGroups is null.");
-		this.unionGroups = ImmutableList.copyOf(unionGroups);
+	Group(final NormalFormBuffer buffer) {
+		this.buffer = buffer;
 	}
 
-	public List<UnionGroup> getUnionGroups() {
-		return unionGroups;
+	void reset(final int from, final int to) {
+		this.from = from;
+		this.to = to;
+		groupNumber = RelationshipNormalFormGenerator.NUMBER_NOT_PRESERVED;
+	}
+
+	public int getUnionGroupCount() {
+		return to - from;
+	}
+
+	public UnionGroup getUnionGroup(final int index) {
+		return buffer.getGroupUnionGroup(from + index);
+	}
+
+	void collectTypeIds(final LongSet typeIds) {
+		for (int i = from; i < to; i++) {
+			buffer.getGroupUnionGroup(i).collectTypeIds(typeIds);
+		}
 	}
 
 	public int getGroupNumber() {
@@ -82,13 +89,14 @@ public final class Group implements SemanticComparable<Group> {
 		 * a more expressive union group in this group. Points are awarded
 		 * if we have extra union groups not used in the comparison.
 		 */
-		for (final UnionGroup otherUnionGroup : other.unionGroups) {
+		for (int j = other.from; j < other.to; j++) {
+			final UnionGroup otherUnionGroup = other.buffer.getGroupUnionGroup(j);
 
 			boolean found = false;
 
-			for (final UnionGroup ourUnionGroup : unionGroups) {
+			for (int i = from; i < to; i++) {
 
-				if (ourUnionGroup.isSameOrStrongerThan(otherUnionGroup)) {
+				if (buffer.getGroupUnionGroup(i).isSameOrStrongerThan(otherUnionGroup)) {
 					found = true;
 					break;
 				}
@@ -104,7 +112,12 @@ public final class Group implements SemanticComparable<Group> {
 
 	@Override
 	public int hashCode() {
-		return 31 + unionGroups.hashCode();
+		// Same as the hash code of a list of the union groups
+		int unionGroupsHashCode = 1;
+		for (int i = from; i < to; i++) {
+			unionGroupsHashCode = 31 * unionGroupsHashCode + buffer.getGroupUnionGroup(i).hashCode();
+		}
+		return 31 + unionGroupsHashCode;
 	}
 
 	@Override
@@ -119,30 +132,46 @@ public final class Group implements SemanticComparable<Group> {
 
 		final Group other = (Group) obj;
 
-		if (unionGroups.size() != other.unionGroups.size()) {
+		if (getUnionGroupCount() != other.getUnionGroupCount()) {
 			return false;
 		}
 
 		// containsAll should be symmetric in this case
-		return unionGroups.containsAll(other.unionGroups);
+		for (int j = other.from; j < other.to; j++) {
+			if (findUnionGroup(other.buffer.getGroupUnionGroup(j)) == null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private UnionGroup findUnionGroup(final UnionGroup unionGroup) {
+		for (int i = from; i < to; i++) {
+			if (buffer.getGroupUnionGroup(i).equals(unionGroup)) {
+				return buffer.getGroupUnionGroup(i);
+			}
+		}
+		return null;
 	}
 
 	void adjustOrder(final Group other) {
-		if (unionGroups.isEmpty()) {
+		if (getUnionGroupCount() == 0) {
 			return;
 		}
 
-		final Map<Integer, UnionGroup> oldNumberMap = new Int2ObjectOpenHashMap<>(unionGroups.size());
-		for (final UnionGroup unionGroup : unionGroups) {
+		final Map<Integer, UnionGroup> oldNumberMap = new Int2ObjectOpenHashMap<>(getUnionGroupCount());
+		for (int i = from; i < to; i++) {
+			final UnionGroup unionGroup = buffer.getGroupUnionGroup(i);
 			oldNumberMap.put(unionGroup.getUnionGroupNumber(), unionGroup);
 		}
 
-		final Map<UnionGroup, Integer> newNumberMap = new Object2IntOpenHashMap<>(unionGroups.size());
-		for (final UnionGroup unionGroup : unionGroups) {
-			final Optional<UnionGroup> otherUnionGroup = Iterables.tryFind(other.unionGroups, Predicates.equalTo(unionGroup));
-			if (otherUnionGroup.isPresent()) {
+		final Map<UnionGroup, Integer> newNumberMap = new Object2IntOpenHashMap<>(getUnionGroupCount());
+		for (int i = from; i < to; i++) {
+			final UnionGroup unionGroup = buffer.getGroupUnionGroup(i);
+			final UnionGroup otherUnionGroup = other.findUnionGroup(unionGroup);
+			if (otherUnionGroup != null) {
 				final int oldNumber = unionGroup.getUnionGroupNumber();
-				final int newNumber = otherUnionGroup.get().getUnionGroupNumber();
+				final int newNumber = otherUnionGroup.getUnionGroupNumber();
 
 				// If the current union group number is 0, it has a single relationship only, and should be kept that way
 				if (oldNumber != 0 && oldNumber != newNumber) {
@@ -171,7 +200,8 @@ public final class Group implements SemanticComparable<Group> {
 	void fillNumbers() {
 		int unionGroupNumber = 1;
 
-		for (final UnionGroup unionGroup : unionGroups) {
+		for (int i = from; i < to; i++) {
+			final UnionGroup unionGroup = buffer.getGroupUnionGroup(i);
 			if (unionGroup.getUnionGroupNumber() == RelationshipNormalFormGenerator.NUMBER_NOT_PRESERVED) {
 				unionGroup.setUnionGroupNumber(unionGroupNumber++);
 			}
@@ -181,9 +211,14 @@ public final class Group implements SemanticComparable<Group> {
 	@Override
 	public String toString() {
 		final StringBuilder builder = new StringBuilder();
-		builder.append("Group [unionGroups=");
-		builder.append(unionGroups);
-		builder.append("]");
+		builder.append("Group [unionGroups=[");
+		for (int i = from; i < to; i++) {
+			if (i > from) {
+				builder.append(", ");
+			}
+			builder.append(buffer.getGroupUnionGroup(i));
+		}
+		builder.append("]]");
 		return builder.toString();
 	}
 }
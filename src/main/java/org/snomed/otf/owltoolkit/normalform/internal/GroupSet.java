@@ -22,17 +22,38 @@ package org.snomed.otf.owltoolkit.normalform.internal;
 
 import com.google.common.collect.Lists;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import org.snomed.otf.owltoolkit.normalform.RelationshipNormalFormGenerator;
 
 import java.util.*;
+import java.util.function.LongFunction;
 
 /**
  * Represents a set of groups that do not allow redundant elements.
+ * Indexed sets only compare new groups with the groups given by a {@link RedundancyIndex} once they are large enough.
  */
 public final class GroupSet extends AbstractSet<Group> {
 
 	private final List<Group> groups = Lists.newArrayList();
+	private final LongFunction<LongSet> dominatedTypes;
+	private RedundancyIndex<Group> index;
+
+	/**
+	 * Creates a set which compares new groups with all groups.
+	 */
+	public GroupSet() {
+		this(null);
+	}
+
+	/**
+	 * Creates an indexed set.
+	 *
+	 * @param dominatedTypes the dominated types of a fragment type, see {@link RedundancyIndex}, or null to compare new groups with all groups
+	 */
+	public GroupSet(final LongFunction<LongSet> dominatedTypes) {
+		this.dominatedTypes = dominatedTypes;
+	}
 
 	/**
 	 * Adds the specified group to this set if it is not already present.
@@ -46,9 +67,10 @@ public final class GroupSet extends AbstractSet<Group> {
 	 */
 	@Override
 	public boolean add(final Group e) {
-		final List<Group> redundant = Lists.newArrayList();
+		// Identity set so that removing redundant groups from an indexed set stays linear
+		final Set<Group> redundant = Collections.newSetFromMap(new IdentityHashMap<>());
 
-		for (final Group existingGroup : groups) {
+		for (final Group existingGroup : getCandidates(e)) {
 			if (existingGroup.isSameOrStrongerThan(e)) {
 				return false;
 			} else if (e.isSameOrStrongerThan(existingGroup)) {
@@ -56,8 +78,18 @@ public final class GroupSet extends AbstractSet<Group> {
 			}
 		}
 
-		groups.removeAll(redundant);
-		groups.add(e);
+		if (index == null) {
+			groups.removeAll(redundant);
+		} else if (!redundant.isEmpty()) {
+			for (final Iterator<Group> iterator = groups.iterator(); iterator.hasNext();) {
+				final Group group = iterator.next();
+				if (redundant.contains(group)) {
+					iterator.remove();
+					index.remove(group);
+				}
+			}
+		}
+		addUnique(e);
 
 		return true;
 	}
@@ -68,7 +100,18 @@ public final class GroupSet extends AbstractSet<Group> {
 	 * @see #add(Group)
 	 */
 	public boolean addUnique(final Group e) {
-		return groups.add(e);
+		groups.add(e);
+		if (index != null) {
+			index.add(e);
+		} else if (dominatedTypes != null && groups.size() >= RedundancyIndex.MIN_INDEXED_SIZE) {
+			index = RedundancyIndex.forGroups(dominatedTypes);
+			index.addAll(groups);
+		}
+		return true;
+	}
+
+	private Collection<Group> getCandidates(final Group e) {
+		return index != null ? index.getCandidates(e, groups) : groups;
 	}
 
 	@Override
@@ -93,16 +136,16 @@ public final class GroupSet extends AbstractSet<Group> {
 
 		final Map<Group, Integer> newNumberMap = new Object2IntOpenHashMap<>(groups.size());
 		for (final Group statedGroup : groups) {
-			final Optional<Group> previousInferredGroup = previousInferredSet.groups.stream().filter(group -> group.equals(statedGroup)).findAny();
-			if (previousInferredGroup.isPresent()) {
+			final Group previousInferredGroup = previousInferredSet.findGroup(statedGroup);
+			if (previousInferredGroup != null) {
 				final int statedNumber = statedGroup.getGroupNumber();
-				final int previouslyInferredNumber = previousInferredGroup.get().getGroupNumber();
+				final int previouslyInferredNumber = previousInferredGroup.getGroupNumber();
 
 				if (statedNumber != previouslyInferredNumber) {
 					// Allow groups to move out of group 0 if they are no longer stated that way
 					if (previouslyInferredNumber != 0) {
 						newNumberMap.put(statedGroup, previouslyInferredNumber);
-						statedGroup.adjustOrder(previousInferredGroup.get());
+						statedGroup.adjustOrder(previousInferredGroup);
 					}
 				}
 			}
@@ -125,6 +168,15 @@ public final class GroupSet extends AbstractSet<Group> {
 		}
 	}
 
+	private Group findGroup(final Group group) {
+		for (final Group candidate : groups) {
+			if (candidate.equals(group)) {
+				return candidate;
+			}
+		}
+		return null;
+	}
+
 	public void fillNumbers() {
 		int groupNumber = 1;
 
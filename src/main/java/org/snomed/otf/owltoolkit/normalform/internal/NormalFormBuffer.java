@@ -0,0 +1,327 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.normalform.internal;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.snomed.otf.owltoolkit.domain.Relationship;
+import org.snomed.otf.owltoolkit.normalform.RelationshipNormalFormGenerator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Working memory for the normal form of one concept at a time, reused for every concept processed by a thread.
+ *
+ * Relationship fragments are packed into primitive arrays and each slot has a {@link RelationshipFragment} view which is created once.
+ * Union groups are ranges of fragments and groups are ranges of union groups, also backed by arrays and pooled objects.
+ * Everything taken from the buffer is only valid until the next call of {@link #begin(RelationshipNormalFormGenerator, int)}.
+ *
+ * Hash sets whose iteration order decides group numbers are only reused while they keep the table size of a new set,
+ * so they iterate in the same order as a new set.
+ */
+public final class NormalFormBuffer {
+
+	private static final int INITIAL_CAPACITY = 64;
+	// Largest size of a java.util.HashSet which keeps the initial table size
+	private static final int REUSABLE_HASH_SET_SIZE = 12;
+
+	private RelationshipNormalFormGenerator generator;
+	private int transitiveGraphLimit;
+
+	// Packed fragments
+	private int fragmentCount;
+	private Relationship[] relationships = new Relationship[INITIAL_CAPACITY];
+	private long[] typeIds = new long[INITIAL_CAPACITY];
+	private long[] destinationIds = new long[INITIAL_CAPACITY];
+	private long[] moduleIds = new long[INITIAL_CAPACITY];
+	private boolean[] universal = new boolean[INITIAL_CAPACITY];
+	private String[] values = new String[INITIAL_CAPACITY];
+	private RelationshipFragment[] fragments = new RelationshipFragment[INITIAL_CAPACITY];
+
+	// Members of union groups and groups
+	private int unionGroupFragmentCount;
+	private RelationshipFragment[] unionGroupFragments = new RelationshipFragment[INITIAL_CAPACITY];
+	private int groupUnionGroupCount;
+	private UnionGroup[] groupUnionGroups = new UnionGroup[INITIAL_CAPACITY];
+
+	private int unionGroupCount;
+	private UnionGroup[] unionGroups = new UnionGroup[INITIAL_CAPACITY];
+	private int groupCount;
+	private Group[] groups = new Group[INITIAL_CAPACITY];
+
+	// Scratch space for grouping fragments
+	private boolean[] groupMarks = new boolean[INITIAL_CAPACITY];
+	private boolean[] unionGroupMarks = new boolean[INITIAL_CAPACITY];
+	private final IntArrayList groupSlots = new IntArrayList();
+	private final IntArrayList unionGroupSlots = new IntArrayList();
+	private final List<UnionGroup> unionGroupList = new ArrayList<>();
+	private final List<UnionGroup> disjointUnionGroupList = new ArrayList<>();
+
+	private final HashSet<?>[] hashSets = new HashSet<?>[HashSetSlot.values().length];
+
+	/**
+	 * Hash sets of the buffer, each may only be in use once at a time.
+	 */
+	public enum HashSetSlot {
+		ZERO_UNION_GROUPS, UNION_GROUP_FRAGMENTS, DISJOINT_CANDIDATES, DISJOINT_REDUNDANT, RESULT_UNION_GROUP, RESULT_GROUP, RESULT
+	}
+
+	/**
+	 * Clears the buffer for the next concept.
+	 *
+	 * @param generator the generator of the concept, released by {@link #end()}
+	 * @param transitiveGraphLimit only transitive graph edges of concepts before this position are used by fragment comparisons
+	 */
+	public void begin(final RelationshipNormalFormGenerator generator, final int transitiveGraphLimit) {
+		this.generator = generator;
+		this.transitiveGraphLimit = transitiveGraphLimit;
+		fragmentCount = 0;
+		unionGroupFragmentCount = 0;
+		groupUnionGroupCount = 0;
+		unionGroupCount = 0;
+		groupCount = 0;
+	}
+
+	/**
+	 * Releases the generator and the relationships of the concept so that an idle buffer does not keep them.
+	 */
+	public void end() {
+		generator = null;
+		Arrays.fill(relationships, 0, fragmentCount, null);
+		Arrays.fill(values, 0, fragmentCount, null);
+		unionGroupList.clear();
+		disjointUnionGroupList.clear();
+	}
+
+	/**
+	 * @return the slot of the new fragment
+	 */
+	public int addFragment(final Relationship relationship) {
+		if (fragmentCount == relationships.length) {
+			final int capacity = fragmentCount * 2;
+			relationships = Arrays.copyOf(relationships, capacity);
+			typeIds = Arrays.copyOf(typeIds, capacity);
+			destinationIds = Arrays.copyOf(destinationIds, capacity);
+			moduleIds = Arrays.copyOf(moduleIds, capacity);
+			universal = Arrays.copyOf(universal, capacity);
+			values = Arrays.copyOf(values, capacity);
+			fragments = Arrays.copyOf(fragments, capacity);
+		}
+		final int slot = fragmentCount++;
+		relationships[slot] = relationship;
+		typeIds[slot] = relationship.getTypeId();
+		destinationIds[slot] = relationship.getDestinationId();
+		moduleIds[slot] = relationship.getModuleId();
+		universal[slot] = relationship.isUniversal();
+		values[slot] = relationship.getValue() != null ? relationship.getValue().asString() : null;
+		if (fragments[slot] == null) {
+			fragments[slot] = new RelationshipFragment(this, slot);
+		}
+		return slot;
+	}
+
+	public int getFragmentCount() {
+		return fragmentCount;
+	}
+
+	public RelationshipFragment getFragment(final int slot) {
+		return fragments[slot];
+	}
+
+	/**
+	 * Adds a fragment to the union group which is started with {@link #getUnionGroupFragmentCount()} and ended by {@link #createUnionGroup(int)}.
+	 */
+	public void addUnionGroupFragment(final RelationshipFragment fragment) {
+		if (unionGroupFragmentCount == unionGroupFragments.length) {
+			unionGroupFragments = Arrays.copyOf(unionGroupFragments, unionGroupFragmentCount * 2);
+		}
+		unionGroupFragments[unionGroupFragmentCount++] = fragment;
+	}
+
+	public int getUnionGroupFragmentCount() {
+		return unionGroupFragmentCount;
+	}
+
+	/**
+	 * @param from the union group fragment count before the fragments of the union group were added
+	 * @return a union group of the fragments added since then, without a number
+	 */
+	public UnionGroup createUnionGroup(final int from) {
+		if (unionGroupCount == unionGroups.length) {
+			unionGroups = Arrays.copyOf(unionGroups, unionGroupCount * 2);
+		}
+		UnionGroup unionGroup = unionGroups[unionGroupCount];
+		if (unionGroup == null) {
+			unionGroup = new UnionGroup(this);
+			unionGroups[unionGroupCount] = unionGroup;
+		}
+		unionGroupCount++;
+		unionGroup.reset(from, unionGroupFragmentCount);
+		return unionGroup;
+	}
+
+	/**
+	 * Adds a union group to the group which is started with {@link #getGroupUnionGroupCount()} and ended by {@link #createGroup(int)}.
+	 */
+	public void addGroupUnionGroup(final UnionGroup unionGroup) {
+		if (groupUnionGroupCount == groupUnionGroups.length) {
+			groupUnionGroups = Arrays.copyOf(groupUnionGroups, groupUnionGroupCount * 2);
+		}
+		groupUnionGroups[groupUnionGroupCount++] = unionGroup;
+	}
+
+	public int getGroupUnionGroupCount() {
+		return groupUnionGroupCount;
+	}
+
+	/**
+	 * @param from the group union group count before the union groups of the group were added
+	 * @return a group of the union groups added since then, without a number
+	 */
+	public Group createGroup(final int from) {
+		if (groupCount == groups.length) {
+			groups = Arrays.copyOf(groups, groupCount * 2);
+		}
+		Group group = groups[groupCount];
+		if (group == null) {
+			group = new Group(this);
+			groups[groupCount] = group;
+		}
+		groupCount++;
+		group.reset(from, groupUnionGroupCount);
+		return group;
+	}
+
+	/**
+	 * @return marks of the fragment slots, cleared between the given slots
+	 */
+	public boolean[] getGroupMarks(final int from, final int to) {
+		if (groupMarks.length < fragmentCount) {
+			groupMarks = new boolean[relationships.length];
+		}
+		Arrays.fill(groupMarks, from, to, false);
+		return groupMarks;
+	}
+
+	/**
+	 * @return marks of the fragment slots, cleared for the given slots
+	 */
+	public boolean[] getUnionGroupMarks(final IntArrayList slots) {
+		if (unionGroupMarks.length < fragmentCount) {
+			unionGroupMarks = new boolean[relationships.length];
+		}
+		for (int i = 0; i < slots.size(); i++) {
+			unionGroupMarks[slots.getInt(i)] = false;
+		}
+		return unionGroupMarks;
+	}
+
+	/**
+	 * @return a list for the fragment slots of a group
+	 */
+	public IntArrayList getGroupSlots() {
+		return groupSlots;
+	}
+
+	/**
+	 * @return a list for the fragment slots of a union group
+	 */
+	public IntArrayList getUnionGroupSlots() {
+		return unionGroupSlots;
+	}
+
+	/**
+	 * @return a list for the union groups of a group
+	 */
+	public List<UnionGroup> getUnionGroupList() {
+		return unionGroupList;
+	}
+
+	/**
+	 * @return a list for the non-redundant union groups of a group
+	 */
+	public List<UnionGroup> getDisjointUnionGroupList() {
+		return disjointUnionGroupList;
+	}
+
+	/**
+	 * @return an empty hash set which iterates in the same order as a new one, return it with {@link #releaseHashSet(HashSetSlot, int)}
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> HashSet<T> takeHashSet(final HashSetSlot slot) {
+		HashSet<T> hashSet = (HashSet<T>) hashSets[slot.ordinal()];
+		if (hashSet == null) {
+			hashSet = new HashSet<>();
+			hashSets[slot.ordinal()] = hashSet;
+		}
+		return hashSet;
+	}
+
+	/**
+	 * Clears the hash set for the next use. Sets which held more elements than a new table can take are replaced.
+	 *
+	 * @param maxSize the largest number of elements held by the set since it was taken
+	 */
+	public void releaseHashSet(final HashSetSlot slot, final int maxSize) {
+		if (maxSize > REUSABLE_HASH_SET_SIZE) {
+			hashSets[slot.ordinal()] = null;
+		} else {
+			hashSets[slot.ordinal()].clear();
+		}
+	}
+
+	RelationshipNormalFormGenerator getGenerator() {
+		return generator;
+	}
+
+	int getTransitiveGraphLimit() {
+		return transitiveGraphLimit;
+	}
+
+	Relationship getRelationship(final int slot) {
+		return relationships[slot];
+	}
+
+	long getTypeId(final int slot) {
+		return typeIds[slot];
+	}
+
+	long getDestinationId(final int slot) {
+		return destinationIds[slot];
+	}
+
+	long getModuleId(final int slot) {
+		return moduleIds[slot];
+	}
+
+	boolean isUniversal(final int slot) {
+		return universal[slot];
+	}
+
+	String getValue(final int slot) {
+		return values[slot];
+	}
+
+	RelationshipFragment getUnionGroupFragment(final int index) {
+		return unionGroupFragments[index];
+	}
+
+	UnionGroup getGroupUnionGroup(final int index) {
+		return groupUnionGroups[index];
+	}
+}
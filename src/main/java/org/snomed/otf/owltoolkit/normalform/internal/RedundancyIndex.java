@@ -0,0 +1,161 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.normalform.internal;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.LongFunction;
+
+/**
+ * Index of groups or union groups by the attribute types of their relationship fragments.
+ * It finds the indexed elements which may be the same as or stronger than another element, or which the other element may be
+ * the same as or stronger than, so that other elements do not need to be compared.
+ *
+ * A fragment can only be the same as or stronger than a fragment whose type is one of its dominated types:
+ * the same type, an ancestor of the type or the inferred type of a property chain with the type or an ancestor as the source type.
+ * So an element can only be the same as or stronger than another element with fragments if one of the other element's
+ * fragment types is a dominated type of the element. Elements without fragments may be compared with anything.
+ *
+ * @param <T> the type of indexed element
+ */
+public final class RedundancyIndex<T extends SemanticComparable<T>> {
+
+	/**
+	 * Collections smaller than this are cheaper to compare in full than to index.
+	 */
+	public static final int MIN_INDEXED_SIZE = 16;
+
+	private final LongFunction<LongSet> dominatedTypes;
+	private final BiConsumer<T, LongSet> typeIdCollector;
+
+	private final Long2ObjectOpenHashMap<Set<T>> elementsByType = new Long2ObjectOpenHashMap<>();
+	private final Long2ObjectOpenHashMap<Set<T>> elementsByDominatedType = new Long2ObjectOpenHashMap<>();
+	private final Set<T> elementsWithoutFragments = new ReferenceOpenHashSet<>();
+
+	private RedundancyIndex(final LongFunction<LongSet> dominatedTypes, final BiConsumer<T, LongSet> typeIdCollector) {
+		this.dominatedTypes = dominatedTypes;
+		this.typeIdCollector = typeIdCollector;
+	}
+
+	/**
+	 * @param dominatedTypes the dominated types of a fragment type
+	 */
+	public static RedundancyIndex<Group> forGroups(final LongFunction<LongSet> dominatedTypes) {
+		return new RedundancyIndex<>(dominatedTypes, Group::collectTypeIds);
+	}
+
+	/**
+	 * @param dominatedTypes the dominated types of a fragment type
+	 */
+	public static RedundancyIndex<UnionGroup> forUnionGroups(final LongFunction<LongSet> dominatedTypes) {
+		return new RedundancyIndex<>(dominatedTypes, UnionGroup::collectTypeIds);
+	}
+
+	public void add(final T element) {
+		final LongSet types = getTypes(element);
+		if (types.isEmpty()) {
+			elementsWithoutFragments.add(element);
+			return;
+		}
+		for (final long type : types) {
+			elementsByType.computeIfAbsent(type, key -> new ReferenceOpenHashSet<>()).add(element);
+		}
+		for (final long dominatedType : getDominatedTypes(types)) {
+			elementsByDominatedType.computeIfAbsent(dominatedType, key -> new ReferenceOpenHashSet<>()).add(element);
+		}
+	}
+
+	public void addAll(final Iterable<T> elements) {
+		for (final T element : elements) {
+			add(element);
+		}
+	}
+
+	/**
+	 * Removes the element instance, elements which are only equal to it are kept.
+	 */
+	public void remove(final T element) {
+		final LongSet types = getTypes(element);
+		if (types.isEmpty()) {
+			elementsWithoutFragments.remove(element);
+			return;
+		}
+		for (final long type : types) {
+			remove(elementsByType, type, element);
+		}
+		for (final long dominatedType : getDominatedTypes(types)) {
+			remove(elementsByDominatedType, dominatedType, element);
+		}
+	}
+
+	/**
+	 * @param allElements all indexed elements, returned if the element has no fragments
+	 * @return the indexed elements which may be the same as or stronger than the element or which the element may be the same as or stronger than.
+	 */
+	public Collection<T> getCandidates(final T element, final Collection<T> allElements) {
+		final LongSet types = getTypes(element);
+		if (types.isEmpty()) {
+			return allElements;
+		}
+		final Set<T> candidates = new ReferenceOpenHashSet<>(elementsWithoutFragments);
+		// Elements which may be stronger than the element
+		for (final long type : types) {
+			final Set<T> elements = elementsByDominatedType.get(type);
+			if (elements != null) {
+				candidates.addAll(elements);
+			}
+		}
+		// Elements which the element may be stronger than
+		for (final long dominatedType : getDominatedTypes(types)) {
+			final Set<T> elements = elementsByType.get(dominatedType);
+			if (elements != null) {
+				candidates.addAll(elements);
+			}
+		}
+		return candidates;
+	}
+
+	private LongSet getTypes(final T element) {
+		final LongSet types = new LongOpenHashSet();
+		typeIdCollector.accept(element, types);
+		return types;
+	}
+
+	private LongSet getDominatedTypes(final LongSet types) {
+		if (types.size() == 1) {
+			return dominatedTypes.apply(types.iterator().nextLong());
+		}
+		final LongSet allDominatedTypes = new LongOpenHashSet();
+		for (final long type : types) {
+			allDominatedTypes.addAll(dominatedTypes.apply(type));
+		}
+		return allDominatedTypes;
+	}
+
+	private static <T> void remove(final Long2ObjectOpenHashMap<Set<T>> elementsByKey, final long key, final T element) {
+		final Set<T> elements = elementsByKey.get(key);
+		if (elements != null && elements.remove(element) && elements.isEmpty()) {
+			elementsByKey.remove(key);
+		}
+	}
+
+}
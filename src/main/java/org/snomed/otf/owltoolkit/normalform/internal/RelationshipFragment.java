@@ -20,9 +20,7 @@
  */
 package org.snomed.otf.owltoolkit.normalform.internal;
 
-import com.google.common.base.Objects;
 import com.google.common.collect.Sets;
-import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import org.snomed.otf.owltoolkit.classification.ReasonerTaxonomy;
 import org.snomed.otf.owltoolkit.domain.Relationship;
 import org.snomed.otf.owltoolkit.normalform.RelationshipNormalFormGenerator;
@@ -30,50 +28,41 @@ import org.snomed.otf.owltoolkit.normalform.transitive.NodeGraph;
 import org.snomed.otf.owltoolkit.ontology.PropertyChain;
 
 import java.text.MessageFormat;
-import java.util.HashSet;
 import java.util.Set;
-import java.util.stream.Collectors;
-
-import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * Represents concept attribute-value pairs, used when relationships
  * originating from different sources are being processed.
+ *
+ * Fragments are views of a slot of a {@link NormalFormBuffer}, which holds their values in primitive arrays.
+ * Property chain rules only use the transitive graph parents of concepts before the limit of the buffer.
+ *
+ * @see NodeGraph#getAncestors(long, int)
  */
 public final class RelationshipFragment implements SemanticComparable<RelationshipFragment> {
 
-	private RelationshipNormalFormGenerator relationshipNormalFormGenerator;
-	private final Relationship fragment;
+	private final NormalFormBuffer buffer;
+	private final int slot;
 
-	/**
-	 * Creates a new relationship fragment from the specified relationship.
-	 *
-	 * @param fragment
-	 *            the relationship to extract attribute and value from (may
-	 *            not be <code>null</code>)
-	 *
-	 * @throws NullPointerException
-	 *             if the given relationship is <code>null</code>
-	 */
-	public RelationshipFragment(RelationshipNormalFormGenerator relationshipNormalFormGenerator, final Relationship fragment) {
-		this.relationshipNormalFormGenerator = relationshipNormalFormGenerator;
-		this.fragment = checkNotNull(fragment, "fragment");
+	RelationshipFragment(final NormalFormBuffer buffer, final int slot) {
+		this.buffer = buffer;
+		this.slot = slot;
 	}
 
 	public boolean isUniversal() {
-		return fragment.isUniversal();
+		return buffer.isUniversal(slot);
 	}
 
 	public long getTypeId() {
-		return fragment.getTypeId();
+		return buffer.getTypeId(slot);
 	}
 
 	public long getModuleId() {
-		return fragment.getModuleId();
+		return buffer.getModuleId(slot);
 	}
 
 	public long getDestinationId() {
-		return fragment.getDestinationId();
+		return buffer.getDestinationId(slot);
 	}
 
 	public boolean isConcreteValue() {
@@ -81,15 +70,15 @@ public final class RelationshipFragment implements SemanticComparable<Relationsh
 	}
 
 	public String getValue() {
-		return fragment.getValue() != null ? fragment.getValue().asString() : null;
+		return buffer.getValue(slot);
 	}
 
 	public long getStatementId() {
-		return fragment.getRelationshipId();
+		return getRelationship().getRelationshipId();
 	}
 
 	public Relationship getRelationship() {
-		return fragment;
+		return buffer.getRelationship(slot);
 	}
 
 	@Override
@@ -133,32 +122,30 @@ public final class RelationshipFragment implements SemanticComparable<Relationsh
 		 *
 		 */
 
-		final Set<Long> BAttributeClosure = getTransitiveClosure(B.getTypeId());
+		final RelationshipNormalFormGenerator relationshipNormalFormGenerator = buffer.getGenerator();
+		final ReasonerTaxonomy reasonerTaxonomy = relationshipNormalFormGenerator.getReasonerTaxonomy();
 
 		if (!A.isConcreteValue()) {
-			final Set<Long> BValueClosure = getTransitiveClosure(B.getDestinationId());
-
 			// Rule 1
-			if (BAttributeClosure.contains(A.getTypeId()) && BValueClosure.contains(A.getDestinationId())) {
+			if (reasonerTaxonomy.isSameOrAncestor(B.getTypeId(), A.getTypeId())
+					&& reasonerTaxonomy.isSameOrAncestor(B.getDestinationId(), A.getDestinationId())) {
 				return true;
 			}
 
 			// Rule 2
 			else {
-				Set<PropertyChain> relevantPropertyChains = relationshipNormalFormGenerator.getPropertyChains().stream()
-						.filter(propertyChain -> BAttributeClosure.contains(propertyChain.getSourceType()))
-						.filter(propertyChain -> propertyChain.getInferredType().equals(A.getTypeId()))
-						.collect(Collectors.toSet());
-				for (PropertyChain propertyChain : relevantPropertyChains) {
-					if (getPropertyChainTransitiveClosure(B.getDestinationId(), propertyChain.getDestinationType())
-							.contains(A.getDestinationId())) {
+				for (PropertyChain propertyChain : relationshipNormalFormGenerator.getPropertyChains()) {
+					if (propertyChain.getInferredType().equals(A.getTypeId())
+							&& reasonerTaxonomy.isSameOrAncestor(B.getTypeId(), propertyChain.getSourceType())
+							&& relationshipNormalFormGenerator.getPropertyChainTransitiveClosure(B.getDestinationId(), propertyChain.getDestinationType(),
+									buffer.getTransitiveGraphLimit()).contains(A.getDestinationId())) {
 						return true;
 					}
 				}
 			}
 		} else {
 			// Rule 1
-			if (BAttributeClosure.contains(A.getTypeId()) && A.getValue() != null && A.getValue().equals(B.getValue())) {
+			if (reasonerTaxonomy.isSameOrAncestor(B.getTypeId(), A.getTypeId()) && A.getValue() != null && A.getValue().equals(B.getValue())) {
 				return true;
 			}
 
@@ -174,8 +161,8 @@ public final class RelationshipFragment implements SemanticComparable<Relationsh
 
 	private boolean hasCommonExhaustiveSuperType(final RelationshipFragment other) {
 
-		final Set<Long> valueAncestors = relationshipNormalFormGenerator.getReasonerTaxonomy().getAncestors(getDestinationId());
-		final Set<Long> otherValueAncestors = relationshipNormalFormGenerator.getReasonerTaxonomy().getAncestors(other.getDestinationId());
+		final Set<Long> valueAncestors = buffer.getGenerator().getReasonerTaxonomy().getAncestors(getDestinationId());
+		final Set<Long> otherValueAncestors = buffer.getGenerator().getReasonerTaxonomy().getAncestors(other.getDestinationId());
 		final Set<Long> commonAncestors = Sets.intersection(valueAncestors, otherValueAncestors);
 
 		for (Long commonAncestor : commonAncestors) {
@@ -188,42 +175,7 @@ public final class RelationshipFragment implements SemanticComparable<Relationsh
 	}
 
 	private boolean isExhaustive(final long conceptId) {
-		return relationshipNormalFormGenerator.getSnomedTaxonomy().isExhaustive(conceptId);
-	}
-
-	/**
-	 * Collects all parent concepts reachable from the specified concept. The
-	 * returned set also includes the starting concept.
-	 *
-	 * @param conceptId
-	 *            the concept to start from
-	 *
-	 * @return a set containing the starting concept and all reachable
-	 *         supertypes
-	 */
-	private Set<Long> getTransitiveClosure(final long conceptId) {
-		final Set<Long> ancestors = relationshipNormalFormGenerator.getReasonerTaxonomy().getAncestors(conceptId);
-		final Set<Long> conceptAndAncestors = new LongOpenHashSet(ancestors);
-		conceptAndAncestors.add(conceptId);
-		return conceptAndAncestors;
-	}
-
-	private Set<Long> getPropertyChainTransitiveClosure(final long conceptId, Long chainDestinationType) {
-		// Build closure containing all possible hops using chainDestinationType
-		// For every concept found also add its super types
-
-		NodeGraph nodeGraph = relationshipNormalFormGenerator.getTransitiveNodeGraphs().getOrDefault(chainDestinationType, new NodeGraph());
-		ReasonerTaxonomy reasonerTaxonomy = relationshipNormalFormGenerator.getReasonerTaxonomy();
-
-		Set<Long> chainPaths = new HashSet<>();
-		chainPaths.add(conceptId);
-		chainPaths.addAll(nodeGraph.getAncestors(conceptId));
-		Set<Long> chainStepAncestors = new HashSet<>();
-		for (Long chainNode : chainPaths) {
-			chainStepAncestors.addAll(reasonerTaxonomy.getAncestors(chainNode));
-		}
-		chainPaths.addAll(chainStepAncestors);
-		return chainPaths;
+		return buffer.getGenerator().getSnomedTaxonomy().isExhaustive(conceptId);
 	}
 
 	@Override
@@ -247,9 +199,16 @@ public final class RelationshipFragment implements SemanticComparable<Relationsh
 				);
 	}
 
+	/**
+	 * Same as {@code Objects.hashCode(isUniversal(), getTypeId(), getDestinationId(), getValue())} without boxing.
+	 */
 	@Override
 	public int hashCode() {
-		return Objects.hashCode(isUniversal(), getTypeId(), getDestinationId(), getValue());
+		int result = 31 + Boolean.hashCode(isUniversal());
+		result = 31 * result + Long.hashCode(getTypeId());
+		result = 31 * result + Long.hashCode(getDestinationId());
+		final String value = getValue();
+		return 31 * result + (value != null ? value.hashCode() : 0);
 	}
 
 	@Override
@@ -20,34 +20,44 @@
  */
 package org.snomed.otf.owltoolkit.normalform.internal;
 
-import com.google.common.collect.ImmutableList;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import org.snomed.otf.owltoolkit.normalform.RelationshipNormalFormGenerator;
 
-import java.util.List;
-
 import static com.google.common.base.Preconditions.checkArgument;
 
+/**
+ * Represents a range of relationship fragments in a {@link NormalFormBuffer}.
+ */
 public final class UnionGroup implements SemanticComparable<UnionGroup> {
 
-	private final List<RelationshipFragment> fragments;
+	private final NormalFormBuffer buffer;
+	private int from;
+	private int to;
 
 	private int unionGroupNumber = RelationshipNormalFormGenerator.NUMBER_NOT_PRESERVED;
 
-	/**
-	 * Creates a new union group instance with the specified parameters,
-	 * preserving the union group number for later reference.
-	 *
-	 * @param fragments
-	 *            the relationship fragments to associate with this union
-	 *            group (may not be <code>null</code>)
-	 */
-	public UnionGroup(final Iterable<RelationshipFragment> fragments) {
-		checkArgument(fragments != null, "fragments is null.");
-		this.fragments = ImmutableList.copyOf(fragments);
+	UnionGroup(final NormalFormBuffer buffer) {
+		this.buffer = buffer;
+	}
+
+	void reset(final int from, final int to) {
+		this.from = from;
+		this.to = to;
+		unionGroupNumber = RelationshipNormalFormGenerator.NUMBER_NOT_PRESERVED;
+	}
+
+	public int getFragmentCount() {
+		return to - from;
 	}
 
-	public List<RelationshipFragment> getRelationshipFragments() {
-		return fragments;
+	public RelationshipFragment getFragment(final int index) {
+		return buffer.getUnionGroupFragment(from + index);
+	}
+
+	void collectTypeIds(final LongSet typeIds) {
+		for (int i = from; i < to; i++) {
+			typeIds.add(buffer.getUnionGroupFragment(i).getTypeId());
+		}
 	}
 
 	public int getUnionGroupNumber() {
@@ -73,13 +83,14 @@ public final class UnionGroup implements SemanticComparable<UnionGroup> {
 		 * awarded if we manage to get away with less fragments than the
 		 * "other" union group.
 		 */
-		for (final RelationshipFragment ourFragment : fragments) {
+		for (int i = from; i < to; i++) {
+			final RelationshipFragment ourFragment = buffer.getUnionGroupFragment(i);
 
 			boolean found = false;
 
-			for (final RelationshipFragment otherFragment : other.fragments) {
+			for (int j = other.from; j < other.to; j++) {
 
-				if (ourFragment.isSameOrStrongerThan(otherFragment)) {
+				if (ourFragment.isSameOrStrongerThan(other.buffer.getUnionGroupFragment(j))) {
 					found = true;
 					break;
 				}
@@ -95,7 +106,12 @@ public final class UnionGroup implements SemanticComparable<UnionGroup> {
 
 	@Override
 	public int hashCode() {
-		return 31 + fragments.hashCode();
+		// Same as the hash code of a list of the fragments
+		int fragmentsHashCode = 1;
+		for (int i = from; i < to; i++) {
+			fragmentsHashCode = 31 * fragmentsHashCode + buffer.getUnionGroupFragment(i).hashCode();
+		}
+		return 31 + fragmentsHashCode;
 	}
 
 	@Override
@@ -110,20 +126,39 @@ public final class UnionGroup implements SemanticComparable<UnionGroup> {
 
 		final UnionGroup other = (UnionGroup) obj;
 
-		if (fragments.size() != other.fragments.size()) {
+		if (getFragmentCount() != other.getFragmentCount()) {
 			return false;
 		}
 
 		// containsAll should be symmetric in this case
-		return fragments.containsAll(other.fragments);
+		for (int j = other.from; j < other.to; j++) {
+			if (!containsFragment(other.buffer.getUnionGroupFragment(j))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean containsFragment(final RelationshipFragment fragment) {
+		for (int i = from; i < to; i++) {
+			if (buffer.getUnionGroupFragment(i).equals(fragment)) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	@Override
 	public String toString() {
 		final StringBuilder builder = new StringBuilder();
-		builder.append("UnionGroup [fragments=");
-		builder.append(fragments);
-		builder.append("]");
+		builder.append("UnionGroup [fragments=[");
+		for (int i = from; i < to; i++) {
+			if (i > from) {
+				builder.append(", ");
+			}
+			builder.append(buffer.getUnionGroupFragment(i));
+		}
+		builder.append("]]");
 		return builder.toString();
 	}
 }
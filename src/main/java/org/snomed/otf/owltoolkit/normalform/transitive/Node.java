@@ -15,13 +15,23 @@
  */
 package org.snomed.otf.owltoolkit.normalform.transitive;
 
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.longs.LongSets;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 public class Node {
 
 	private final Long id;
 	private Set<Node> parents;
+	private volatile int position = Integer.MAX_VALUE;
+	private volatile Closure closure;
 
 	public Node(Long id) {
 		this.id = id;
@@ -29,24 +39,104 @@ public class Node {
 	}
 
 	public Set<Long> getAncestorIds() {
-		HashSet<Long> ids = new HashSet<>();
-		getAncestorIds(ids);
-		ids.remove(id);
-		return ids;
+		return getAncestorIds(Integer.MAX_VALUE);
 	}
 
-	private void getAncestorIds(Set<Long> ids) {
-		ids.add(id);
-		for (Node parent : parents) {
-			parent.getAncestorIds(ids);
+	/**
+	 * The closure is found iteratively, visiting each node once, so cycles are tolerated.
+	 * It is kept and reused by later calls, and by the closures of descendants, until a node it did not follow gains a position below the limit.
+	 * The parents of a node are expected to be complete before a closure following them is requested.
+	 *
+	 * @return ancestor ids following only the parents of nodes with a position before the limit. The set must not be changed.
+	 */
+	public Set<Long> getAncestorIds(int positionLimit) {
+		if (position >= positionLimit) {
+			return LongSets.EMPTY_SET;
+		}
+		final Closure existing = closure;
+		if (existing != null && existing.isValid(positionLimit)) {
+			return existing.ancestorIds;
+		}
+
+		final LongOpenHashSet ids = new LongOpenHashSet();
+		final Set<Node> notFollowed = new ReferenceOpenHashSet<>();
+		int maxFollowedPosition = position;
+		final List<Node> toVisit = new ArrayList<>();
+		ids.add((long) id);
+		toVisit.add(this);
+		while (!toVisit.isEmpty()) {
+			final Node node = toVisit.remove(toVisit.size() - 1);
+			if (node.position >= positionLimit) {
+				notFollowed.add(node);
+				continue;
+			}
+			maxFollowedPosition = Math.max(maxFollowedPosition, node.position);
+			final Closure nodeClosure = node != this ? node.closure : null;
+			if (nodeClosure != null && nodeClosure.isValid(positionLimit)) {
+				// Everything reachable from the node is already known
+				ids.addAll(nodeClosure.ancestorIds);
+				Collections.addAll(notFollowed, nodeClosure.notFollowed);
+				maxFollowedPosition = Math.max(maxFollowedPosition, nodeClosure.maxFollowedPosition);
+				continue;
+			}
+			for (Node parent : node.parents) {
+				if (ids.add((long) parent.id)) {
+					toVisit.add(parent);
+				}
+			}
 		}
+		ids.remove((long) id);
+
+		final Closure newClosure = new Closure(LongSets.unmodifiable(ids), maxFollowedPosition, notFollowed.toArray(new Node[notFollowed.size()]));
+		closure = newClosure;
+		return newClosure.ancestorIds;
 	}
 
 	public Set<Node> getParents() {
 		return parents;
 	}
 
+	/**
+	 * @return position of this node in the processing order, {@link Integer#MAX_VALUE} until parents are added.
+	 */
+	public int getPosition() {
+		return position;
+	}
+
+	public void setPosition(int position) {
+		this.position = position;
+	}
+
 	public Long getId() {
 		return id;
 	}
+
+	/**
+	 * Ancestors of a node found using one position limit, which are the same for any limit above the positions of the nodes followed
+	 * and no greater than the positions of the nodes not followed.
+	 */
+	private static final class Closure {
+
+		private final LongSet ancestorIds;
+		private final int maxFollowedPosition;
+		private final Node[] notFollowed;
+
+		private Closure(LongSet ancestorIds, int maxFollowedPosition, Node[] notFollowed) {
+			this.ancestorIds = ancestorIds;
+			this.maxFollowedPosition = maxFollowedPosition;
+			this.notFollowed = notFollowed;
+		}
+
+		private boolean isValid(int positionLimit) {
+			if (maxFollowedPosition >= positionLimit) {
+				return false;
+			}
+			for (Node node : notFollowed) {
+				if (node.position < positionLimit) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
 }
@@ -15,28 +15,54 @@
  */
 package org.snomed.otf.owltoolkit.normalform.transitive;
 
-import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
-
 import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Graph of the relationships of one transitive property.
+ *
+ * Concepts may be added from multiple threads as long as the parents of each concept are only added by one thread.
+ * The parents of a concept can be added with its position in a processing order so that readers can limit themselves
+ * to the parents of concepts before their own position.
+ *
+ * Ancestors are found without recursion and kept on each node so that they are reused by later lookups and by the lookups of descendants.
+ * Cycles are tolerated.
+ */
 public class NodeGraph {
 
-	private Map<Long, Node> nodeMap = new Long2ObjectOpenHashMap<>();
+	private Map<Long, Node> nodeMap = new ConcurrentHashMap<>();
 
 	public void addParent(long conceptId, long parentId) {
+		addParent(conceptId, parentId, Integer.MIN_VALUE);
+	}
+
+	/**
+	 * @param position position of the concept in the processing order.
+	 */
+	public void addParent(long conceptId, long parentId, int position) {
 		if (conceptId == parentId) return;
 		Node concept = nodeMap.computeIfAbsent(conceptId, Node::new);
 		Node parent = nodeMap.computeIfAbsent(parentId, Node::new);
+		concept.setPosition(position);
 		concept.getParents().add(parent);
 	}
 
 	public Set<Long> getAncestors(long conceptId) {
+		return getAncestors(conceptId, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @return ancestors of the concept following only the parents of concepts added before the position limit.
+	 * The set must not be changed.
+	 * @see Node#getAncestorIds(int)
+	 */
+	public Set<Long> getAncestors(long conceptId, int positionLimit) {
 		Node node = nodeMap.get(conceptId);
 		if (node == null) {
 			return Collections.emptySet();
 		}
-		return node.getAncestorIds();
+		return node.getAncestorIds(positionLimit);
 	}
 }
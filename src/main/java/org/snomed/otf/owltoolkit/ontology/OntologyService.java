@@ -16,11 +16,14 @@
 package org.snomed.otf.owltoolkit.ontology;
 
 import com.google.common.base.Strings;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import org.semanticweb.owlapi.apibinding.OWLManager;
 import org.semanticweb.owlapi.formats.FunctionalSyntaxDocumentFormat;
 import org.semanticweb.owlapi.model.*;
-import org.semanticweb.owlapi.util.DefaultPrefixManager;
 import org.semanticweb.owlapi.vocab.OWL2Datatype;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,6 +31,7 @@ import org.snomed.otf.owltoolkit.constants.Concepts;
 import org.snomed.otf.owltoolkit.domain.AxiomRepresentation;
 import org.snomed.otf.owltoolkit.domain.Relationship;
 import org.snomed.otf.owltoolkit.ontology.render.SnomedFunctionalSyntaxDocumentFormat;
+import org.snomed.otf.owltoolkit.ontology.render.SnomedFunctionalSyntaxStreamWriter;
 import org.snomed.otf.owltoolkit.ontology.render.SnomedFunctionalSyntaxStorerFactory;
 import org.snomed.otf.owltoolkit.ontology.render.SnomedPrefixManager;
 import org.snomed.otf.owltoolkit.service.ReasonerServiceRuntimeException;
@@ -35,10 +39,13 @@ import org.snomed.otf.owltoolkit.taxonomy.Description;
 import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomy;
 import uk.ac.manchester.cs.owl.owlapi.OWLDataFactoryImpl;
 
-import java.io.IOException;
-import java.io.OutputStream;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
 import static java.lang.Long.parseLong;
@@ -65,66 +72,194 @@ public class OntologyService {
 	private static final String SKOS_DEFINITION_LABEL_URI = SKOS_URI + "definition";
 	public static final String LANGUAGE_REFSET_DIALECT_MAP_PROPERTIES = "language-refset-dialect-map.properties";
 
+	// Concepts are shared out in more partitions than threads so that threads which finish early can take another
+	private static final int PARTITIONS_PER_THREAD = 8;
+	private static final int MIN_PARTITION_SIZE = 1000;
+
 	private final OWLOntologyManager manager;
 	private OWLDataFactory factory;
-	private DefaultPrefixManager prefixManager;
 	private final Set<Long> ungroupedAttributes;
+	private final SnomedEntityCache entityCache;
+	private final OWLObjectProperty roleGroupProperty;
 	private AtomicLong missingDialectWarnings;
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+	private CacheStats entityCacheStats = new CacheStats(0, 0, 0, 0, 0, 0);
+	private final Logger logger = LoggerFactory.getLogger(getClass());
 
 	public OntologyService(Set<Long> ungroupedAttributes) {
+		this(ungroupedAttributes, new OWLDataFactoryImpl());
+	}
+
+	private OntologyService(Set<Long> ungroupedAttributes, OWLDataFactory factory) {
+		this(ungroupedAttributes, factory, new SnomedEntityCache(factory));
+	}
+
+	/**
+	 * @param entityCache cache of the OWL classes and properties of concepts, created from the same factory.
+	 * By default each service has its own cache.
+	 */
+	public OntologyService(Set<Long> ungroupedAttributes, OWLDataFactory factory, SnomedEntityCache entityCache) {
 		this.ungroupedAttributes = ungroupedAttributes;
+		this.entityCache = entityCache;
+		this.factory = factory;
 		manager = OWLManager.createOWLOntologyManager();
-		factory = new OWLDataFactoryImpl();
-		prefixManager = new DefaultPrefixManager();
-		prefixManager.setDefaultPrefix(SNOMED_CORE_COMPONENTS_URI);
 		missingDialectWarnings = new AtomicLong();
+		roleGroupProperty = entityCache.getOwlObjectProperty(parseLong(ROLE_GROUP_SCTID));
 	}
 
 	public OWLOntology createOntology(SnomedTaxonomy snomedTaxonomy) throws OWLOntologyCreationException {
 		return createOntology(snomedTaxonomy, null, null, false);
 	}
 
+	/**
+	 * The axioms of each concept are created on a fork-join pool, see {@link #setParallelism(int)}.
+	 */
 	public OWLOntology createOntology(SnomedTaxonomy snomedTaxonomy, String ontologyUri, String versionDate, boolean includeDescriptions) throws OWLOntologyCreationException {
 
-		Map<Long, Set<OWLAxiom>> axiomsFromStatedRelationships = createAxiomsFromStatedRelationships(snomedTaxonomy);
-
-		Map<Long, String> langRefsetToDialectMap = null;
-		if (includeDescriptions) {
-			langRefsetToDialectMap = loadLanguageRefsetToDialectMap();
-		}
+		CacheStats entityCacheStatsBefore = entityCache.stats();
+		Map<Long, Set<OWLAxiom>> attributeAxioms = createAttributeAxioms(snomedTaxonomy, null);
+		Set<Long> classAxiomExcludedIds = getClassAxiomExcludedIds(snomedTaxonomy);
 
-		Set<OWLAxiom> axioms = new HashSet<>();
-		for (Long conceptId : snomedTaxonomy.getAllConceptIds()) {
+		final Map<Long, String> langRefsetToDialectMap = includeDescriptions ? loadLanguageRefsetToDialectMap() : null;
 
-			// Add raw axioms from the axiom reference set file
-			axioms.addAll(snomedTaxonomy.getConceptAxiomMap().getOrDefault(conceptId, Collections.emptyList()));
+		List<List<OWLAxiom>> axiomPartitions = createInPartitions(new ArrayList<>(snomedTaxonomy.getAllConceptIds()), (conceptId, axioms) ->
+				addConceptAxioms(snomedTaxonomy, conceptId, attributeAxioms, classAxiomExcludedIds, langRefsetToDialectMap, axioms));
 
-			// Add axioms generated from stated relationships
-			axioms.addAll(axiomsFromStatedRelationships.getOrDefault(conceptId, Collections.emptySet()));
+		// Sized up front so that the set is not rehashed while it grows
+		int axiomCount = 0;
+		for (List<OWLAxiom> axiomPartition : axiomPartitions) {
+			axiomCount += axiomPartition.size();
+		}
+		Set<OWLAxiom> axioms = Sets.newHashSetWithExpectedSize(axiomCount);
+		for (List<OWLAxiom> axiomPartition : axiomPartitions) {
+			axioms.addAll(axiomPartition);
+		}
 
-			if (includeDescriptions) {
-				addDescriptionAnnotations(conceptId, snomedTaxonomy, axioms, langRefsetToDialectMap);
-			}
+		entityCacheStats = entityCache.stats().minus(entityCacheStatsBefore);
+		if (entityCacheStats.requestCount() > 0) {
+			logger.info("OWL entity cache: {} hits, {} misses, hit rate {}%", entityCacheStats.hitCount(), entityCacheStats.missCount(),
+					String.format("%.1f", entityCacheStats.hitRate() * 100));
 		}
 
-		OWLOntology ontology;
+		OWLOntology ontology = createEmptyOntology(manager, ontologyUri, versionDate);
+		manager.addAxioms(ontology, axioms);
+		manager.setOntologyFormat(ontology, getFunctionalSyntaxDocumentFormat());
+		return ontology;
+	}
+
+	/**
+	 * Writes the same OWL functional syntax document as {@link #saveOntology(OWLOntology, OutputStream)} does for the ontology from
+	 * {@link #createOntology(SnomedTaxonomy, String, String, boolean)} without creating the ontology.
+	 * The axioms of each concept are created as they are written, see {@link SnomedFunctionalSyntaxStreamWriter},
+	 * so memory use does not grow with the number of axioms and descriptions.
+	 * The output stream is flushed but not closed.
+	 */
+	public void writeOntology(SnomedTaxonomy snomedTaxonomy, String ontologyUri, String versionDate, boolean includeDescriptions,
+			OutputStream outputStream) throws OWLOntologyCreationException, IOException {
+
+		Map<Long, Set<OWLAxiom>> attributeAxioms = createAttributeAxioms(snomedTaxonomy, null);
+		Set<Long> classAxiomExcludedIds = getClassAxiomExcludedIds(snomedTaxonomy);
+		final Map<Long, String> langRefsetToDialectMap = includeDescriptions ? loadLanguageRefsetToDialectMap() : null;
+
+		// Separate manager so that the ontology IRI does not clash with ontologies created by this service
+		OWLOntologyManager headerManager = OWLManager.createOWLOntologyManager();
+		OWLOntology headerOntology = createEmptyOntology(headerManager, ontologyUri, versionDate);
+		headerManager.setOntologyFormat(headerOntology, getFunctionalSyntaxDocumentFormat());
+
+		Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+		new SnomedFunctionalSyntaxStreamWriter(headerOntology, writer).writeOntology(snomedTaxonomy.getAllConceptIds(), conceptId -> {
+			List<OWLAxiom> axioms = new ArrayList<>();
+			addConceptAxioms(snomedTaxonomy, conceptId, attributeAxioms, classAxiomExcludedIds, langRefsetToDialectMap, axioms);
+			return axioms;
+		});
+	}
+
+	private OWLOntology createEmptyOntology(OWLOntologyManager manager, String ontologyUri, String versionDate) throws OWLOntologyCreationException {
 		if (Strings.isNullOrEmpty(ontologyUri)) {
 			ontologyUri = SNOMED_INTERNATIONAL_EDITION_URI;
 		}
 		if (Strings.isNullOrEmpty(versionDate)) {
-			ontology = manager.createOntology(IRI.create(ontologyUri));
+			return manager.createOntology(IRI.create(ontologyUri));
 		} else {
-			ontology = manager.createOntology(new OWLOntologyID(
+			return manager.createOntology(new OWLOntologyID(
 					com.google.common.base.Optional.of(IRI.create(ontologyUri)),
 					com.google.common.base.Optional.of(IRI.create(ontologyUri + ONTOLOGY_URI_VERSION_POSTFIX + versionDate))));
 		}
+	}
 
-		manager.addAxioms(ontology, axioms);
-		manager.setOntologyFormat(ontology, getFunctionalSyntaxDocumentFormat());
-		return ontology;
+	/**
+	 * @param langRefsetToDialectMap null to not add description annotations.
+	 */
+	private void addConceptAxioms(SnomedTaxonomy snomedTaxonomy, Long conceptId, Map<Long, Set<OWLAxiom>> attributeAxioms,
+			Set<Long> classAxiomExcludedIds, Map<Long, String> langRefsetToDialectMap, Collection<OWLAxiom> axioms) {
+
+		// Add raw axioms from the axiom reference set file
+		axioms.addAll(snomedTaxonomy.getConceptAxiomMap().getOrDefault(conceptId, Collections.emptyList()));
+
+		// Add axioms generated from stated relationships
+		axioms.addAll(attributeAxioms.getOrDefault(conceptId, Collections.emptySet()));
+		OWLClassAxiom conceptAxiom = createOwlClassAxiom(snomedTaxonomy, conceptId, classAxiomExcludedIds);
+		if (conceptAxiom != null) {
+			axioms.add(conceptAxiom);
+		}
+
+		if (langRefsetToDialectMap != null) {
+			addDescriptionAnnotations(conceptId, snomedTaxonomy, axioms, langRefsetToDialectMap);
+		}
 	}
 
 	public Map<Long, Set<OWLAxiom>> createAxiomsFromStatedRelationships(SnomedTaxonomy snomedTaxonomy, Set<Long> conceptIds) {
+		Map<Long, Set<OWLAxiom>> axiomsMap = createAttributeAxioms(snomedTaxonomy, conceptIds);
+
+		// Create axioms of all other Snomed concepts
+		Set<Long> classAxiomExcludedIds = getClassAxiomExcludedIds(snomedTaxonomy);
+
+		List<Long> classConceptIds = new ArrayList<>();
+		for (Long conceptId : snomedTaxonomy.getAllConceptIds()) {
+			if (conceptIds == null || conceptIds.contains(conceptId)) {
+				classConceptIds.add(conceptId);
+			}
+		}
+		List<List<Map.Entry<Long, OWLClassAxiom>>> conceptAxiomPartitions = createInPartitions(classConceptIds, (conceptId, conceptAxioms) -> {
+			// Convert any stated relationships to axioms
+			OWLClassAxiom conceptAxiom = createOwlClassAxiom(snomedTaxonomy, conceptId, classAxiomExcludedIds);
+			if (conceptAxiom != null) {
+				conceptAxioms.add(Maps.immutableEntry(conceptId, conceptAxiom));
+			}
+		});
+		for (List<Map.Entry<Long, OWLClassAxiom>> conceptAxioms : conceptAxiomPartitions) {
+			for (Map.Entry<Long, OWLClassAxiom> conceptAxiom : conceptAxioms) {
+				axiomsMap.computeIfAbsent(conceptAxiom.getKey(), (id) -> new HashSet<>())
+						.add(conceptAxiom.getValue());
+			}
+		}
+		return axiomsMap;
+	}
+
+	public Map<Long, Set<OWLAxiom>> createAxiomsFromStatedRelationships(SnomedTaxonomy snomedTaxonomy) {
+		return createAxiomsFromStatedRelationships(snomedTaxonomy, null);
+	}
+
+	/**
+	 * Number of threads used to create the axioms of concepts, 1 to create them on the calling thread.
+	 * Defaults to the number of available processors.
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Entity cache hits and misses of the last {@link #createOntology(SnomedTaxonomy)} call.
+	 */
+	public CacheStats getEntityCacheStats() {
+		return entityCacheStats;
+	}
+
+	/**
+	 * Creates the sub property axioms of the object and data attributes.
+	 * @param conceptIds the attributes to create axioms for or null for all attributes.
+	 */
+	private Map<Long, Set<OWLAxiom>> createAttributeAxioms(SnomedTaxonomy snomedTaxonomy, Set<Long> conceptIds) {
 		Map<Long, Set<OWLAxiom>> axiomsMap = new Long2ObjectOpenHashMap<>();
 
 		// Create axioms of concept model attributes
@@ -160,7 +295,13 @@ public class OntologyService {
 			}
 		}
 
-		// Create axioms of all other Snomed concepts
+		return axiomsMap;
+	}
+
+	/**
+	 * @return the attributes which do not have class axioms.
+	 */
+	private Set<Long> getClassAxiomExcludedIds(SnomedTaxonomy snomedTaxonomy) {
 		Set<Long> attributeIds = snomedTaxonomy.getDescendants(Concepts.CONCEPT_MODEL_ATTRIBUTE_LONG);
 
 		// Link the top object and data property into the class hierarchy.
@@ -169,34 +310,66 @@ public class OntologyService {
 		// Removing them from the attributeIds here set will ensure Class axioms are created.
 		attributeIds.remove(Concepts.CONCEPT_MODEL_OBJECT_ATTRIBUTE_LONG);
 		attributeIds.remove(Concepts.CONCEPT_MODEL_DATA_ATTRIBUTE_LONG);
+		return attributeIds;
+	}
 
-		for (Long conceptId : snomedTaxonomy.getAllConceptIds()) {
-			if (conceptIds != null && !conceptIds.contains(conceptId)) {
-				continue;
-			}
-			// Convert any stated relationships to axioms
-			boolean primitive = snomedTaxonomy.isPrimitive(conceptId);
-			Collection<Relationship> statedRelationships = snomedTaxonomy.getStatedRelationships(conceptId);
-
-			if (!statedRelationships.isEmpty() && !attributeIds.contains(conceptId)) {
-				AxiomRepresentation representation = new AxiomRepresentation();
-				representation.setPrimitive(primitive);
-				representation.setLeftHandSideNamedConcept(conceptId);
-				Map<Integer, List<Relationship>> relationshipMap = new HashMap<>();
-				for (Relationship statedRelationship : statedRelationships) {
-					relationshipMap.computeIfAbsent(statedRelationship.getGroup(), g -> new ArrayList<>()).add(statedRelationship);
-				}
-				representation.setRightHandSideRelationships(relationshipMap);
-				OWLClassAxiom conceptAxiom = createOwlClassAxiom(representation);
-				axiomsMap.computeIfAbsent(conceptId, (id) -> new HashSet<>())
-						.add(conceptAxiom);
+	/**
+	 * @return the class axiom of the stated relationships of the concept or null if the concept has none or is an attribute.
+	 */
+	private OWLClassAxiom createOwlClassAxiom(SnomedTaxonomy snomedTaxonomy, Long conceptId, Set<Long> classAxiomExcludedIds) {
+		Collection<Relationship> statedRelationships = snomedTaxonomy.getStatedRelationships(conceptId);
+		if (statedRelationships.isEmpty() || classAxiomExcludedIds.contains(conceptId)) {
+			return null;
+		}
+		AxiomRepresentation representation = new AxiomRepresentation();
+		representation.setPrimitive(snomedTaxonomy.isPrimitive(conceptId));
+		representation.setLeftHandSideNamedConcept(conceptId);
+		Map<Integer, List<Relationship>> relationshipMap = new HashMap<>();
+		for (Relationship statedRelationship : statedRelationships) {
+			relationshipMap.computeIfAbsent(statedRelationship.getGroup(), g -> new ArrayList<>()).add(statedRelationship);
+		}
+		representation.setRightHandSideRelationships(relationshipMap);
+		return createOwlClassAxiom(representation);
+	}
+
+	/**
+	 * Shares the concepts out in contiguous partitions across a fork-join pool. Each partition has its own output buffer which only
+	 * the thread processing that partition writes to.
+	 * The taxonomy and the data factory are only read or are thread safe, so the generator can run on several threads.
+	 *
+	 * @return the buffers of the partitions, in the order of the concepts.
+	 */
+	private <T> List<List<T>> createInPartitions(List<Long> conceptIds, BiConsumer<Long, List<T>> generator) {
+		int partitionSize = Math.max(MIN_PARTITION_SIZE, conceptIds.size() / (parallelism * PARTITIONS_PER_THREAD) + 1);
+		List<List<Long>> partitions = Lists.partition(conceptIds, partitionSize);
+		if (parallelism <= 1 || partitions.size() <= 1) {
+			List<List<T>> buffers = new ArrayList<>();
+			for (List<Long> partition : partitions) {
+				buffers.add(createPartition(partition, generator));
 			}
+			return buffers;
+		}
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			return pool.submit(() -> partitions.parallelStream()
+					.map(partition -> createPartition(partition, generator))
+					.collect(Collectors.toList())).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while creating axioms.", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Failed to create axioms.", e.getCause());
+		} finally {
+			pool.shutdown();
 		}
-		return axiomsMap;
 	}
 
-	public Map<Long, Set<OWLAxiom>> createAxiomsFromStatedRelationships(SnomedTaxonomy snomedTaxonomy) {
-		return createAxiomsFromStatedRelationships(snomedTaxonomy, null);
+	private <T> List<T> createPartition(List<Long> conceptIds, BiConsumer<Long, List<T>> generator) {
+		List<T> buffer = new ArrayList<>(conceptIds.size());
+		for (Long conceptId : conceptIds) {
+			generator.accept(conceptId, buffer);
+		}
+		return buffer;
 	}
 	
 	public void saveOntology(OWLOntology ontology, OutputStream outputStream) throws OWLOntologyStorageException {
@@ -357,11 +530,7 @@ public class OntologyService {
 	}
 
 	private OWLObjectSomeValuesFrom getOwlObjectSomeValuesFromGroup(OWLClassExpression owlObjectSomeValuesFrom) {
-		return getOwlObjectSomeValuesWithPrefix(SNOMED_ROLE_GROUP_SHORT_URI, owlObjectSomeValuesFrom);
-	}
-
-	private OWLObjectSomeValuesFrom getOwlObjectSomeValuesWithPrefix(String prefix, OWLClassExpression owlObjectSomeValuesFrom) {
-		return factory.getOWLObjectSomeValuesFrom(factory.getOWLObjectProperty(prefix, prefixManager), owlObjectSomeValuesFrom);
+		return factory.getOWLObjectSomeValuesFrom(roleGroupProperty, owlObjectSomeValuesFrom);
 	}
 
 	private OWLObjectSomeValuesFrom getOwlObjectSomeValuesFrom(long typeId, long destinationId) {
@@ -369,15 +538,15 @@ public class OntologyService {
 	}
 
 	private OWLObjectProperty getOwlObjectProperty(long typeId) {
-		return factory.getOWLObjectProperty(COLON + typeId, prefixManager);
+		return entityCache.getOwlObjectProperty(typeId);
 	}
 
 	private OWLDataProperty getOwlDataProperty(long typeId) {
-		return factory.getOWLDataProperty(COLON + typeId, prefixManager);
+		return entityCache.getOwlDataProperty(typeId);
 	}
 
 	private OWLClass getOwlClass(Long conceptId) {
-		return factory.getOWLClass(COLON + conceptId, prefixManager);
+		return entityCache.getOwlClass(conceptId);
 	}
 
 	private OWLDataHasValue getOwlDataHasValue(long typeId, ConcreteValue value) {
@@ -395,7 +564,7 @@ public class OntologyService {
 		return factory.getOWLDataHasValue(getOwlDataProperty(typeId), owlLiteral);
 	}
 
-	private void addDescriptionAnnotations(Long conceptId, SnomedTaxonomy snomedTaxonomy, Set<OWLAxiom> axioms, Map<Long, String> langRefsetToDialectMap) {
+	private void addDescriptionAnnotations(Long conceptId, SnomedTaxonomy snomedTaxonomy, Collection<OWLAxiom> axioms, Map<Long, String> langRefsetToDialectMap) {
 		for (Description description : snomedTaxonomy.getConceptDescriptions(conceptId)) {
 			String typeId = description.getTypeId();
 			String term = description.getTerm();
@@ -452,7 +621,6 @@ public class OntologyService {
 				}
 			} else {
 				if (missingDialectWarnings.incrementAndGet() < 50) {
-					Logger logger = LoggerFactory.getLogger(getClass());
 					logger.warn("Please add language reference set {} to {} and recompile. " +
 							"The dialect ISO code could not be appended to the annotations because it was not found.", preferredInLanRefset, LANGUAGE_REFSET_DIALECT_MAP_PROPERTIES);
 				}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.ontology;
+
+import com.google.common.cache.CacheStats;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import org.semanticweb.owlapi.model.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import static org.snomed.otf.owltoolkit.ontology.OntologyService.SNOMED_CORE_COMPONENTS_URI;
+
+/**
+ * Canonical OWL classes, object properties and data properties of SNOMED CT concepts, keyed by concept identifier.
+ * Each entity is created once from the concept identifier rather than resolving a prefixed name into a new IRI on every use.
+ *
+ * Each {@link OntologyService} creates its own cache from its data factory and the taxonomy loader shares one cache
+ * between its axiom parsers. Entities are never evicted, so a cache should belong to a service or a load
+ * and be garbage collected with it rather than live for the whole process.
+ * Instances are thread safe.
+ */
+public final class SnomedEntityCache {
+
+	// Must be a power of two
+	private static final int SEGMENTS = 64;
+
+	private final EntityMap<OWLClass> classes;
+	private final EntityMap<OWLObjectProperty> objectProperties;
+	private final EntityMap<OWLDataProperty> dataProperties;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * @param factory the data factory used to create entities, normally the factory of the owner of the cache.
+	 */
+	public SnomedEntityCache(OWLDataFactory factory) {
+		classes = new EntityMap<>(factory::getOWLClass);
+		objectProperties = new EntityMap<>(factory::getOWLObjectProperty);
+		dataProperties = new EntityMap<>(factory::getOWLDataProperty);
+	}
+
+	public OWLClass getOwlClass(long conceptId) {
+		return classes.get(conceptId);
+	}
+
+	public OWLObjectProperty getOwlObjectProperty(long conceptId) {
+		return objectProperties.get(conceptId);
+	}
+
+	public OWLDataProperty getOwlDataProperty(long conceptId) {
+		return dataProperties.get(conceptId);
+	}
+
+	/**
+	 * Hit and miss counts since the cache was created. Use {@link CacheStats#minus(CacheStats)} to measure a single operation.
+	 */
+	public CacheStats stats() {
+		return new CacheStats(hits.sum(), misses.sum(), 0, 0, 0, 0);
+	}
+
+	/**
+	 * Entities of one type, split into segments which are locked separately so that threads creating axioms
+	 * in parallel rarely wait for each other.
+	 */
+	private final class EntityMap<T extends OWLEntity> {
+
+		private final List<Long2ObjectOpenHashMap<T>> segments = new ArrayList<>(SEGMENTS);
+		private final Function<IRI, T> entityFactory;
+
+		private EntityMap(Function<IRI, T> entityFactory) {
+			this.entityFactory = entityFactory;
+			for (int i = 0; i < SEGMENTS; i++) {
+				segments.add(new Long2ObjectOpenHashMap<>());
+			}
+		}
+
+		private T get(long conceptId) {
+			Long2ObjectOpenHashMap<T> segment = segments.get((int) (HashCommon.mix(conceptId) & (SEGMENTS - 1)));
+			T entity;
+			synchronized (segment) {
+				entity = segment.get(conceptId);
+				if (entity == null) {
+					// Same IRI as resolving ":conceptId" with the default SNOMED prefix
+					entity = entityFactory.apply(IRI.create(SNOMED_CORE_COMPONENTS_URI, Long.toString(conceptId)));
+					segment.put(conceptId, entity);
+					misses.increment();
+					return entity;
+				}
+			}
+			hits.increment();
+			return entity;
+		}
+	}
+
+}
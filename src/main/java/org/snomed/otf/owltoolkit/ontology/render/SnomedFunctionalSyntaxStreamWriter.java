@@ -0,0 +1,407 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.ontology.render;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import org.semanticweb.owlapi.functional.renderer.FunctionalSyntaxObjectRenderer;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.util.AnnotationValueShortFormProvider;
+import org.semanticweb.owlapi.util.OWLEntityCollector;
+import org.semanticweb.owlapi.util.ShortFormProvider;
+import org.semanticweb.owlapi.vocab.OWLXMLVocabulary;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+import java.util.function.LongFunction;
+
+import static org.semanticweb.owlapi.util.CollectionFactory.sortOptionally;
+import static org.snomed.otf.owltoolkit.ontology.OntologyService.SNOMED_CORE_COMPONENTS_URI;
+
+/**
+ * Writes an ontology in OWL functional syntax one concept at a time, without the ontology being held in memory.
+ * The document is the same as {@link SnomedFunctionalSyntaxStorer} writes for an {@link OWLOntology} with the same axioms:
+ * the same prefixes and header followed by the declarations, the axioms of each entity and then all other axioms, in the same order.
+ *
+ * The axioms of a concept are created by the caller each time they are needed and are discarded once written.
+ * Concepts are read once to collect the entities of the ontology and again to write them in order.
+ * Only the entities, and the axioms which are not about the concept they were created for, such as GCI axioms and property chains,
+ * are kept in memory.
+ */
+public class SnomedFunctionalSyntaxStreamWriter extends FunctionalSyntaxObjectRenderer {
+
+	private static final String BANNER_LINE = "############################";
+	// Longer names may not fit in a long
+	private static final int MAX_CONCEPT_ID_LENGTH = 18;
+
+	private final OWLOntology headerOntology;
+	private final Writer writer;
+	private final OWLDataFactory factory;
+	private final EntityLabels entityLabels;
+	private final boolean addMissingDeclarations;
+
+	private Set<Long> conceptIds;
+	private LongFunction<Collection<OWLAxiom>> conceptAxioms;
+
+	// Collected by the first pass
+	private final Set<OWLEntity> signature = new HashSet<>();
+	private final OWLEntityCollector entityCollector = new OWLEntityCollector(signature);
+	private final Map<OWLEntity, Set<OWLDeclarationAxiom>> declarations = new HashMap<>();
+	private final Map<OWLEntity, Set<OWLAxiom>> otherEntityAxioms = new HashMap<>();
+	private final Map<IRI, Set<OWLAnnotationAssertionAxiom>> otherEntityAnnotations = new HashMap<>();
+	private final Set<OWLAxiom> otherAxioms = new HashSet<>();
+	private final Set<OWLAxiom> remainingAxioms = new HashSet<>();
+	private final LongSet annotationOnlyConceptIds = new LongOpenHashSet();
+	private final Set<IRI> signatureIris = new HashSet<>();
+	private final Set<IRI> punnedIris = new HashSet<>();
+
+	private final WrittenAxioms writtenAxioms = new WrittenAxioms();
+
+	/**
+	 * @param headerOntology empty ontology with the identifier and document format of the ontology to write.
+	 */
+	public SnomedFunctionalSyntaxStreamWriter(OWLOntology headerOntology, Writer writer) {
+		super(headerOntology, writer);
+		this.headerOntology = headerOntology;
+		this.writer = writer;
+		OWLOntologyManager manager = headerOntology.getOWLOntologyManager();
+		factory = manager.getOWLDataFactory();
+		OWLDocumentFormat format = manager.getOntologyFormat(headerOntology);
+		addMissingDeclarations = format == null || format.isAddMissingTypes();
+
+		// Force ontology prefix manager into renderer
+		if (format instanceof PrefixManager) {
+			setPrefixManager((PrefixManager) format);
+		}
+
+		entityLabels = new EntityLabels(factory.getRDFSLabel(), manager, labelMaker);
+		labelMaker = entityLabels;
+	}
+
+	/**
+	 * @param conceptIds the concepts of the ontology.
+	 * @param conceptAxioms creates the axioms of a concept, including annotation assertions. Called more than once for some concepts,
+	 * so must return the same axioms each time.
+	 */
+	public void writeOntology(Set<Long> conceptIds, LongFunction<Collection<OWLAxiom>> conceptAxioms) throws IOException {
+		this.conceptIds = conceptIds;
+		this.conceptAxioms = conceptAxioms;
+		for (Long conceptId : conceptIds) {
+			collectConceptAxioms(conceptId);
+		}
+		for (OWLEntity entity : signature) {
+			if (!signatureIris.add(entity.getIRI())) {
+				punnedIris.add(entity.getIRI());
+			}
+		}
+
+		writePrefixes();
+		writeReturn();
+		writeReturn();
+		writeHeader();
+		writeDeclarations();
+		writeSortedEntities("Annotation Properties", "Annotation Property", EntityType.ANNOTATION_PROPERTY);
+		writeSortedEntities("Object Properties", "Object Property", EntityType.OBJECT_PROPERTY);
+		writeSortedEntities("Data Properties", "Data Property", EntityType.DATA_PROPERTY);
+		writeSortedEntities("Datatypes", "Datatype", EntityType.DATATYPE);
+		writeSortedEntities("Classes", "Class", EntityType.CLASS);
+		writeSortedEntities("Named Individuals", "Individual", EntityType.NAMED_INDIVIDUAL);
+		writeRemainingAxioms();
+		writeCloseBracket();
+		writer.flush();
+	}
+
+	private void collectConceptAxioms(long conceptId) {
+		IRI conceptIri = getConceptIri(conceptId);
+		boolean conceptAnnotations = false;
+		boolean conceptAxioms = false;
+		for (OWLAxiom axiom : this.conceptAxioms.apply(conceptId)) {
+			// Unlike the axiom signature this includes the datatypes of literals, as the ontology signature does
+			axiom.accept(entityCollector);
+			if (axiom instanceof OWLDeclarationAxiom) {
+				OWLDeclarationAxiom declaration = (OWLDeclarationAxiom) axiom;
+				declarations.computeIfAbsent(declaration.getEntity(), entity -> new HashSet<>()).add(declaration);
+			} else if (axiom instanceof OWLAnnotationAssertionAxiom) {
+				OWLAnnotationAssertionAxiom annotation = (OWLAnnotationAssertionAxiom) axiom;
+				if (conceptIri.equals(annotation.getSubject())) {
+					conceptAnnotations = true;
+				} else if (annotation.getSubject() instanceof IRI) {
+					otherEntityAnnotations.computeIfAbsent((IRI) annotation.getSubject(), iri -> new HashSet<>()).add(annotation);
+					otherAxioms.add(annotation);
+				} else {
+					remainingAxioms.add(annotation);
+				}
+			} else {
+				conceptAxioms = true;
+				Collection<? extends OWLEntity> entities = getAxiomEntities(axiom);
+				if (entities.isEmpty() || isDisjointClassesOfMoreThanTwo(axiom)) {
+					remainingAxioms.add(axiom);
+				}
+				if (entities.size() > 1 || (entities.size() == 1 && !conceptIri.equals(entities.iterator().next().getIRI()))) {
+					for (OWLEntity entity : entities) {
+						otherEntityAxioms.computeIfAbsent(entity, e -> new HashSet<>()).add(axiom);
+					}
+					otherAxioms.add(axiom);
+				}
+			}
+		}
+		if (conceptAnnotations && !conceptAxioms) {
+			// Written with the remaining axioms if the concept is not used by any other axiom
+			annotationOnlyConceptIds.add(conceptId);
+		}
+	}
+
+	private void writeHeader() throws IOException {
+		writer.write(OWLXMLVocabulary.ONTOLOGY.getShortForm());
+		writeOpenBracket();
+		OWLOntologyID ontologyID = headerOntology.getOntologyID();
+		if (!ontologyID.isAnonymous()) {
+			writeFullIri(ontologyID.getOntologyIRI().get());
+			if (ontologyID.getVersionIRI().isPresent()) {
+				writeReturn();
+				writeFullIri(ontologyID.getVersionIRI().get());
+			}
+			writeReturn();
+		}
+		writeReturn();
+	}
+
+	private void writeDeclarations() {
+		Collection<IRI> illegalPunnings = OWLDocumentFormatImpl.determineIllegalPunnings(addMissingDeclarations, signature, punnedIris);
+		for (OWLEntity entity : sortOptionally(signature)) {
+			Set<OWLDeclarationAxiom> entityDeclarations = declarations.get(entity);
+			if (entityDeclarations != null) {
+				for (OWLDeclarationAxiom declaration : sortOptionally(entityDeclarations)) {
+					declaration.accept(this);
+					writeReturn();
+				}
+			} else if (addMissingDeclarations && !entity.isBuiltIn() && !illegalPunnings.contains(entity.getIRI())) {
+				factory.getOWLDeclarationAxiom(entity).accept(this);
+				writeReturn();
+			}
+		}
+	}
+
+	private void writeSortedEntities(String bannerName, String entityTypeName, EntityType<?> entityType) throws IOException {
+		Collection<OWLEntity> entities = new ArrayList<>();
+		for (OWLEntity entity : signature) {
+			if (entity.getEntityType() == entityType) {
+				entities.add(entity);
+			}
+		}
+		if (entities.isEmpty()) {
+			return;
+		}
+		boolean bannerWritten = false;
+		for (OWLEntity entity : sortOptionally(entities)) {
+			IRI iri = entity.getIRI();
+			Set<OWLAxiom> axioms = new HashSet<>(otherEntityAxioms.getOrDefault(entity, Collections.emptySet()));
+			Set<OWLAnnotationAssertionAxiom> annotations = new HashSet<>(otherEntityAnnotations.getOrDefault(iri, Collections.emptySet()));
+			Long conceptId = getConceptId(iri);
+			if (conceptId != null) {
+				for (OWLAxiom axiom : conceptAxioms.apply(conceptId)) {
+					if (axiom instanceof OWLAnnotationAssertionAxiom) {
+						if (iri.equals(((OWLAnnotationAssertionAxiom) axiom).getSubject())) {
+							annotations.add((OWLAnnotationAssertionAxiom) axiom);
+						}
+					} else if (!(axiom instanceof OWLDeclarationAxiom) && getAxiomEntities(axiom).equals(Collections.singleton(entity))) {
+						axioms.add(axiom);
+					}
+				}
+			}
+
+			// The label is taken from all annotations of the entity, including those already written with another entity using the same IRI
+			List<OWLAnnotationAssertionAxiom> sortedAnnotations = sortOptionally(annotations);
+			entityLabels.annotations = sortedAnnotations;
+			axioms.removeIf(writtenAxioms::contains);
+			List<OWLAnnotationAssertionAxiom> unwrittenAnnotations = new ArrayList<>();
+			for (OWLAnnotationAssertionAxiom annotation : sortedAnnotations) {
+				if (!writtenAxioms.contains(annotation)) {
+					unwrittenAnnotations.add(annotation);
+				}
+			}
+			if (axioms.isEmpty() && unwrittenAnnotations.isEmpty()) {
+				continue;
+			}
+			if (!bannerWritten) {
+				writeLine(BANNER_LINE);
+				writeLine("#   " + bannerName);
+				writeLine(BANNER_LINE);
+				writeReturn();
+				bannerWritten = true;
+			}
+			writtenAxioms.retainAll = punnedIris.contains(iri);
+			writeEntity2(entity, entityTypeName, sortAxioms(axioms), unwrittenAnnotations, writtenAxioms);
+		}
+		writeReturn();
+	}
+
+	private void writeRemainingAxioms() {
+		for (long conceptId : annotationOnlyConceptIds) {
+			IRI conceptIri = getConceptIri(conceptId);
+			if (!signatureIris.contains(conceptIri)) {
+				for (OWLAxiom axiom : conceptAxioms.apply(conceptId)) {
+					if (axiom instanceof OWLAnnotationAssertionAxiom && conceptIri.equals(((OWLAnnotationAssertionAxiom) axiom).getSubject())) {
+						remainingAxioms.add(axiom);
+					}
+				}
+			}
+		}
+		for (Map.Entry<IRI, Set<OWLAnnotationAssertionAxiom>> entry : otherEntityAnnotations.entrySet()) {
+			if (!signatureIris.contains(entry.getKey())) {
+				remainingAxioms.addAll(entry.getValue());
+			}
+		}
+		for (OWLAxiom axiom : sortOptionally(remainingAxioms)) {
+			axiom.accept(this);
+			writeReturn();
+		}
+	}
+
+	/**
+	 * @return the entities which the OWL API indexes the axiom by and renders it with, empty if it is rendered after all entities.
+	 */
+	private static Collection<? extends OWLEntity> getAxiomEntities(OWLAxiom axiom) {
+		if (axiom instanceof OWLSubClassOfAxiom) {
+			OWLClassExpression subClass = ((OWLSubClassOfAxiom) axiom).getSubClass();
+			return subClass.isAnonymous() ? Collections.emptySet() : Collections.singleton(subClass.asOWLClass());
+		} else if (axiom instanceof OWLEquivalentClassesAxiom) {
+			return ((OWLEquivalentClassesAxiom) axiom).getNamedClasses();
+		} else if (axiom instanceof OWLDisjointClassesAxiom) {
+			Set<OWLClass> classes = new HashSet<>();
+			for (OWLClassExpression classExpression : ((OWLDisjointClassesAxiom) axiom).getClassExpressions()) {
+				if (!classExpression.isAnonymous()) {
+					classes.add(classExpression.asOWLClass());
+				}
+			}
+			return classes;
+		} else if (axiom instanceof OWLDisjointUnionAxiom) {
+			return Collections.singleton(((OWLDisjointUnionAxiom) axiom).getOWLClass());
+		} else if (axiom instanceof OWLSubPropertyAxiom) {
+			return getNamedProperties(Collections.singleton(((OWLSubPropertyAxiom<?>) axiom).getSubProperty()));
+		} else if (axiom instanceof OWLUnaryPropertyAxiom) {
+			return getNamedProperties(Collections.singleton(((OWLUnaryPropertyAxiom<?>) axiom).getProperty()));
+		} else if (axiom instanceof OWLNaryPropertyAxiom) {
+			return getNamedProperties(((OWLNaryPropertyAxiom<?>) axiom).getProperties());
+		}
+		return Collections.emptySet();
+	}
+
+	private static Set<OWLEntity> getNamedProperties(Collection<? extends OWLPropertyExpression> properties) {
+		Set<OWLEntity> namedProperties = new HashSet<>();
+		for (OWLPropertyExpression property : properties) {
+			if (!property.isAnonymous() && property instanceof OWLEntity) {
+				namedProperties.add((OWLEntity) property);
+			}
+		}
+		return namedProperties;
+	}
+
+	// Rendered with the remaining axioms as well as being indexed by each class
+	private static boolean isDisjointClassesOfMoreThanTwo(OWLAxiom axiom) {
+		return axiom instanceof OWLDisjointClassesAxiom && ((OWLDisjointClassesAxiom) axiom).getClassExpressions().size() > 2;
+	}
+
+	private IRI getConceptIri(long conceptId) {
+		return IRI.create(SNOMED_CORE_COMPONENTS_URI, Long.toString(conceptId));
+	}
+
+	/**
+	 * @return the concept identified by the IRI or null if the IRI is not a concept of the ontology.
+	 */
+	private Long getConceptId(IRI iri) {
+		String iriString = iri.toString();
+		if (!iriString.startsWith(SNOMED_CORE_COMPONENTS_URI)) {
+			return null;
+		}
+		String id = iriString.substring(SNOMED_CORE_COMPONENTS_URI.length());
+		if (id.isEmpty() || id.length() > MAX_CONCEPT_ID_LENGTH || id.charAt(0) == '0') {
+			return null;
+		}
+		for (int i = 0; i < id.length(); i++) {
+			if (id.charAt(i) < '0' || id.charAt(i) > '9') {
+				return null;
+			}
+		}
+		Long conceptId = Long.parseLong(id);
+		return conceptIds.contains(conceptId) ? conceptId : null;
+	}
+
+	private void writeFullIri(IRI iri) throws IOException {
+		writer.write("<");
+		writer.write(iri.toString());
+		writer.write(">");
+	}
+
+	private void writeLine(String line) throws IOException {
+		writer.write(line);
+		writeReturn();
+	}
+
+	/**
+	 * Axioms already written. Only axioms which may be written with another entity are kept so that the set stays small.
+	 */
+	private final class WrittenAxioms extends AbstractSet<OWLAxiom> {
+
+		private final Set<OWLAxiom> axioms = new HashSet<>();
+		// Set while writing an entity which shares its IRI with another entity
+		private boolean retainAll;
+
+		@Override
+		public boolean add(OWLAxiom axiom) {
+			return (retainAll || otherAxioms.contains(axiom)) && axioms.add(axiom);
+		}
+
+		@Override
+		public boolean contains(Object axiom) {
+			return axioms.contains(axiom);
+		}
+
+		@Override
+		public Iterator<OWLAxiom> iterator() {
+			return axioms.iterator();
+		}
+
+		@Override
+		public int size() {
+			return axioms.size();
+		}
+	}
+
+	/**
+	 * Labels for the entity comments, taken from the annotations of the entity being written rather than from an ontology.
+	 */
+	private static final class EntityLabels extends AnnotationValueShortFormProvider {
+
+		private List<OWLAnnotationAssertionAxiom> annotations = Collections.emptyList();
+
+		private EntityLabels(OWLAnnotationProperty labelProperty, OWLOntologySetProvider ontologies, ShortFormProvider alternateShortFormProvider) {
+			super(Collections.singletonList(labelProperty), Collections.emptyMap(), ontologies, alternateShortFormProvider);
+		}
+
+		@Override
+		public String getShortForm(OWLEntity entity) {
+			for (OWLAnnotationAssertionAxiom annotation : annotations) {
+				if (annotation.getProperty().isLabel() && annotation.getValue() instanceof OWLLiteral) {
+					return ((OWLLiteral) annotation.getValue()).getLiteral();
+				}
+			}
+			return super.getShortForm(entity);
+		}
+	}
+
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local HTTP endpoint for a {@link ResidentClassificationService}. Listens on the loopback interface only.
+ *
+ * POST /classify with an RF2 delta archive as the request body, or an empty body to classify the base release.
+ * The optional query parameter classificationId is used in logging.
+ * The response body is the RF2 results delta archive, content type application/zip.
+ * Failures are returned as status 400 or 500 with a plain text message.
+ */
+public class ClassificationHttpServer {
+
+	public static final String CLASSIFY_PATH = "/classify";
+
+	private static final String CLASSIFICATION_ID_PARAM = "classificationId=";
+
+	private final ResidentClassificationService classificationService;
+	private final HttpServer httpServer;
+	private final ExecutorService executorService;
+	private final CountDownLatch stopped = new CountDownLatch(1);
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	/**
+	 * @param port port to listen on, 0 to choose a free port.
+	 */
+	public ClassificationHttpServer(ResidentClassificationService classificationService, int port) throws IOException {
+		this.classificationService = classificationService;
+		httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		httpServer.createContext(CLASSIFY_PATH, this::handleClassify);
+		// Classifications run one at a time, a single worker keeps other requests queued
+		executorService = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "classification-http");
+			thread.setDaemon(true);
+			return thread;
+		});
+		httpServer.setExecutor(executorService);
+	}
+
+	public void start() {
+		httpServer.start();
+		logger.info("Classification server listening on http://{}:{}{}", httpServer.getAddress().getHostString(), getPort(), CLASSIFY_PATH);
+	}
+
+	public void stop() {
+		httpServer.stop(0);
+		executorService.shutdownNow();
+		stopped.countDown();
+	}
+
+	/**
+	 * Blocks until {@link #stop()} is called.
+	 */
+	public void awaitStop() throws InterruptedException {
+		stopped.await();
+	}
+
+	public int getPort() {
+		return httpServer.getAddress().getPort();
+	}
+
+	private void handleClassify(HttpExchange exchange) throws IOException {
+		try {
+			if (!"POST".equals(exchange.getRequestMethod())) {
+				sendText(exchange, 405, "Use POST with an RF2 delta archive as the request body.");
+				return;
+			}
+			String classificationId = getClassificationId(exchange.getRequestURI().getRawQuery());
+
+			byte[] delta = readFully(exchange.getRequestBody());
+			ByteArrayOutputStream results = new ByteArrayOutputStream();
+			try {
+				classificationService.classify(classificationId, delta.length > 0 ? new ByteArrayInputStream(delta) : null, results);
+			} catch (ReasonerServiceException e) {
+				logger.error("Classification {} failed.", classificationId, e);
+				sendText(exchange, 400, "Classification failed: " + e.getMessage());
+				return;
+			} catch (RuntimeException e) {
+				logger.error("Classification {} failed.", classificationId, e);
+				sendText(exchange, 500, "Classification failed: " + e.getMessage());
+				return;
+			}
+
+			exchange.getResponseHeaders().set("Content-Type", "application/zip");
+			exchange.sendResponseHeaders(200, results.size());
+			try (OutputStream responseBody = exchange.getResponseBody()) {
+				results.writeTo(responseBody);
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private String getClassificationId(String query) {
+		if (query != null) {
+			for (String param : query.split("&")) {
+				if (param.startsWith(CLASSIFICATION_ID_PARAM)) {
+					try {
+						return URLDecoder.decode(param.substring(CLASSIFICATION_ID_PARAM.length()), StandardCharsets.UTF_8.name());
+					} catch (IOException e) {
+						// UTF-8 is always supported
+						throw new IllegalStateException(e);
+					}
+				}
+			}
+		}
+		return UUID.randomUUID().toString();
+	}
+
+	private static byte[] readFully(InputStream inputStream) throws IOException {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024 * 64];
+		int read;
+		while ((read = inputStream.read(buffer)) != -1) {
+			outputStream.write(buffer, 0, read);
+		}
+		return outputStream.toByteArray();
+	}
+
+	private static void sendText(HttpExchange exchange, int status, String message) throws IOException {
+		byte[] body = message.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream responseBody = exchange.getResponseBody()) {
+			responseBody.write(body);
+		}
+	}
+
+}
@@ -19,10 +19,8 @@ import org.snomed.otf.owltoolkit.constants.Concepts;
 import org.snomed.otf.owltoolkit.domain.Relationship;
 import org.snomed.otf.owltoolkit.normalform.RelationshipChangeProcessor;
 
-import java.io.BufferedWriter;
-import java.io.IOException;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
+import java.io.*;
+import java.nio.file.Files;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
@@ -64,6 +62,49 @@ class ClassificationResultsWriter {
 		}
 	}
 
+	/**
+	 * Writes the results archive using relationship changes which have been spilled to temporary files.
+	 * The spilled rows are copied into the archive so memory use does not depend on the number of changes.
+	 */
+	void writeResultsRf2Archive(
+			StreamingRelationshipChangeProcessor changeCollector,
+			List<Set<Long>> equivalentConceptIdSets,
+			OutputStream resultsOutputStream,
+			Date startDate) throws ReasonerServiceException {
+
+		try {
+			changeCollector.flush();
+			try (ZipOutputStream zipOutputStream = new ZipOutputStream(resultsOutputStream, UTF_8_CHARSET);
+				 BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(zipOutputStream))) {
+
+				String formattedDate = DATE_FORMAT.format(startDate);
+				zipOutputStream.putNextEntry(new ZipEntry(String.format("RF2/sct2_Relationship_Delta_Classification_%s.txt", formattedDate)));
+				writeSpilledRelationshipChanges(false, writer, zipOutputStream, changeCollector);
+
+				zipOutputStream.putNextEntry(new ZipEntry(String.format("RF2/sct2_RelationshipConcreteValues_Delta_Classification_%s.txt", formattedDate)));
+				writeSpilledRelationshipChanges(true, writer, zipOutputStream, changeCollector);
+
+				zipOutputStream.putNextEntry(new ZipEntry(String.format("RF2/der2_sRefset_EquivalentConceptSimpleMapDelta_Classification_%s.txt", formattedDate)));
+				writeEquivalentConcepts(writer, equivalentConceptIdSets);
+			}
+		} catch (IOException e) {
+			throw new ReasonerServiceException("Failed to write out results archive.", e);
+		}
+	}
+
+	private void writeSpilledRelationshipChanges(boolean concrete, BufferedWriter writer, OutputStream zipOutputStream,
+			StreamingRelationshipChangeProcessor changeCollector) throws IOException {
+
+		// Write header
+		writer.write(concrete ? CONCRETE_RELATIONSHIPS_HEADER : RELATIONSHIPS_HEADER);
+		writer.newLine();
+		writer.flush();
+
+		// Newly inferred relationships then redundant relationships
+		Files.copy(changeCollector.getAddedSpillFile(concrete).toPath(), zipOutputStream);
+		Files.copy(changeCollector.getRemovedSpillFile(concrete).toPath(), zipOutputStream);
+	}
+
 	private void writeRelationshipChanges(boolean concrete, BufferedWriter writer, Map<Long, Set<Relationship>> addedStatements, Map<Long, Set<Relationship>> removedStatements) throws IOException {
 		// Write header
 		writer.write(concrete ? CONCRETE_RELATIONSHIPS_HEADER : RELATIONSHIPS_HEADER);
@@ -144,7 +185,7 @@ class ClassificationResultsWriter {
 		writer.flush();
 	}
 
-	private void writeRelationship(BufferedWriter writer, String relationshipId, String active, Long sourceId, String destinationOrValue, Integer group, Long typeId) throws IOException {
+	static void writeRelationship(Writer writer, String relationshipId, String active, Long sourceId, String destinationOrValue, Integer group, Long typeId) throws IOException {
 		writer.write(relationshipId);
 		writer.write(TAB);
 
@@ -180,7 +221,7 @@ class ClassificationResultsWriter {
 
 		// modifierId always existential at this time
 		writer.write(Concepts.EXISTENTIAL_RESTRICTION_MODIFIER);
-		writer.newLine();
+		writer.write(System.lineSeparator());
 	}
 
 }
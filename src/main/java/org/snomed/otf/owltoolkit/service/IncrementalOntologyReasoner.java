@@ -0,0 +1,252 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.service;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.reasoner.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snomed.otf.owltoolkit.classification.ReasonerTaxonomy;
+import org.snomed.otf.owltoolkit.classification.ReasonerTaxonomyWalker;
+import org.snomed.otf.owltoolkit.constants.Concepts;
+import org.snomed.otf.owltoolkit.ontology.OntologyHelper;
+import org.snomed.otf.owltoolkit.ontology.OntologyService;
+import org.snomed.otf.owltoolkit.ontology.PropertyChain;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomy;
+import org.snomed.otf.owltoolkit.util.TimerUtil;
+
+import java.util.*;
+
+import static java.lang.Long.parseLong;
+
+/**
+ * Keeps the OWL ontology and reasoner of a base taxonomy alive so that copy-on-write views of it can be classified incrementally.
+ *
+ * The axioms of the concepts changed in a view are compared with those of the base taxonomy. The differences are applied
+ * to the ontology as AddAxiom and RemoveAxiom changes, the reasoner is flushed and the class hierarchy is recomputed.
+ * With ELK the changes are processed incrementally. Changes made for one view are reverted before the next view is applied.
+ * The reasoner taxonomy of the base is kept so that only the changed concepts, their descendants and the concepts which refer
+ * to them are read from the reasoner again.
+ *
+ * Instances are not thread safe.
+ */
+class IncrementalOntologyReasoner {
+
+	private final SnomedTaxonomy baseTaxonomy;
+	private final Set<Long> ungroupedRoles;
+	private final OntologyService ontologyService;
+	private final OWLOntology ontology;
+	private final OWLOntologyManager manager;
+	private final OWLReasoner reasoner;
+	private final Set<Long> baseAttributeIds;
+
+	// Axioms which are generated for more than one concept, with the number of concepts
+	private final Object2IntOpenHashMap<OWLAxiom> sharedAxiomCounts;
+
+	// For each concept, the base concepts with axioms which refer to it
+	private final Map<Long, List<Long>> referencingConceptIds;
+
+	private final ReasonerTaxonomy baseReasonerTaxonomy;
+
+	private List<OWLOntologyChange> appliedChanges = Collections.emptyList();
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	IncrementalOntologyReasoner(SnomedTaxonomy baseTaxonomy, OWLReasonerFactory reasonerFactory) throws ReasonerServiceException {
+		TimerUtil timer = new TimerUtil("Incremental reasoner setup");
+		this.baseTaxonomy = baseTaxonomy;
+		ungroupedRoles = baseTaxonomy.getUngroupedRolesForContentTypeOrDefault(parseLong(Concepts.ALL_PRECOORDINATED_CONTENT));
+		ontologyService = new OntologyService(ungroupedRoles);
+		try {
+			ontology = ontologyService.createOntology(baseTaxonomy);
+		} catch (OWLOntologyCreationException e) {
+			throw new ReasonerServiceException("Failed to build OWL Ontology.", e);
+		}
+		manager = ontology.getOWLOntologyManager();
+		timer.checkpoint("Create OWL Ontology");
+
+		baseAttributeIds = getAttributeIds(baseTaxonomy);
+		sharedAxiomCounts = new Object2IntOpenHashMap<>();
+		referencingConceptIds = new Long2ObjectOpenHashMap<>();
+		for (Map.Entry<Long, Set<OWLAxiom>> conceptAxioms : getConceptAxioms(baseTaxonomy, null).entrySet()) {
+			Long conceptId = conceptAxioms.getKey();
+			Set<Long> referencedConceptIds = new LongOpenHashSet();
+			for (OWLAxiom axiom : conceptAxioms.getValue()) {
+				sharedAxiomCounts.addTo(axiom, 1);
+				for (OWLClass owlClass : axiom.getClassesInSignature()) {
+					if (OntologyHelper.isConceptClass(owlClass)) {
+						referencedConceptIds.add(OntologyHelper.getConceptId(owlClass));
+					}
+				}
+			}
+			referencedConceptIds.remove(conceptId);
+			for (Long referencedConceptId : referencedConceptIds) {
+				referencingConceptIds.computeIfAbsent(referencedConceptId, id -> new LongArrayList()).add(conceptId);
+			}
+		}
+		sharedAxiomCounts.object2IntEntrySet().removeIf(entry -> entry.getIntValue() == 1);
+		sharedAxiomCounts.trim();
+		timer.checkpoint("Count shared axioms");
+
+		reasoner = reasonerFactory.createReasoner(ontology, new SimpleConfiguration(new ConsoleProgressMonitor()));
+		reasoner.flush();
+		reasoner.precomputeInferences(InferenceType.CLASS_HIERARCHY);
+		timer.checkpoint("Inference computation");
+
+		baseReasonerTaxonomy = new ReasonerTaxonomyWalker(reasoner, new ReasonerTaxonomy()).walk();
+		timer.checkpoint("Extract ReasonerTaxonomy");
+		timer.finish();
+	}
+
+	/**
+	 * @return true if the view can be classified incrementally. Views which change the never grouped roles need a new ontology.
+	 */
+	boolean canClassify(SnomedTaxonomy view) {
+		return ungroupedRoles.equals(view.getUngroupedRolesForContentTypeOrDefault(parseLong(Concepts.ALL_PRECOORDINATED_CONTENT)));
+	}
+
+	/**
+	 * Replaces the changes of the previous view with those of the given view and recomputes the class hierarchy.
+	 * @param view copy-on-write view of the base taxonomy.
+	 */
+	ReasonerTaxonomy classify(SnomedTaxonomy view, TimerUtil timer) {
+		Set<Long> changedConceptIds = getChangedConceptIdsIncludingAttributes(view);
+		boolean attributesChanged = changedConceptIds.containsAll(baseAttributeIds);
+		logger.info("{} concepts changed from base taxonomy", changedConceptIds.size());
+
+		// Revert to the base ontology
+		List<OWLOntologyChange> revertChanges = new ArrayList<>();
+		for (int i = appliedChanges.size() - 1; i >= 0; i--) {
+			OWLOntologyChange change = appliedChanges.get(i);
+			revertChanges.add(change.isAddAxiom() ? new RemoveAxiom(ontology, change.getAxiom()) : new AddAxiom(ontology, change.getAxiom()));
+		}
+		manager.applyChanges(revertChanges);
+
+		Object2IntOpenHashMap<OWLAxiom> baseCounts = countAxioms(getConceptAxioms(baseTaxonomy, changedConceptIds));
+		Object2IntOpenHashMap<OWLAxiom> viewCounts = countAxioms(getConceptAxioms(view, changedConceptIds));
+		List<OWLOntologyChange> changes = new ArrayList<>();
+		for (Object2IntMap.Entry<OWLAxiom> entry : baseCounts.object2IntEntrySet()) {
+			OWLAxiom axiom = entry.getKey();
+			// Keep axioms which are still generated by an unchanged concept
+			if (!viewCounts.containsKey(axiom) && sharedAxiomCounts.getOrDefault(axiom, 1) - entry.getIntValue() <= 0) {
+				changes.add(new RemoveAxiom(ontology, axiom));
+			}
+		}
+		for (OWLAxiom axiom : viewCounts.keySet()) {
+			if (!baseCounts.containsKey(axiom) && !ontology.containsAxiom(axiom)) {
+				changes.add(new AddAxiom(ontology, axiom));
+			}
+		}
+		manager.applyChanges(changes);
+		appliedChanges = changes;
+		logger.info("{} axioms reverted, {} axioms changed", revertChanges.size(), changes.size());
+		timer.checkpoint("Apply ontology changes");
+
+		reasoner.flush();
+		reasoner.precomputeInferences(InferenceType.CLASS_HIERARCHY);
+		timer.checkpoint("Inference computation");
+
+		ReasonerTaxonomyWalker walker = new ReasonerTaxonomyWalker(reasoner, new ReasonerTaxonomy());
+		// A change to the attribute hierarchy can change the subsumers of any concept
+		ReasonerTaxonomy reasonerTaxonomy = attributesChanged ? walker.walk() : walker.walk(baseReasonerTaxonomy, changedConceptIds, referencingConceptIds);
+		timer.checkpoint("Extract ReasonerTaxonomy");
+		return reasonerTaxonomy;
+	}
+
+	Set<PropertyChain> getPropertyChains() {
+		return ontologyService.getPropertyChains(ontology);
+	}
+
+	Set<Long> getUngroupedRoles() {
+		return ungroupedRoles;
+	}
+
+	void dispose() {
+		reasoner.dispose();
+	}
+
+	private Set<Long> getChangedConceptIdsIncludingAttributes(SnomedTaxonomy view) {
+		Set<Long> changedConceptIds = view.getChangedConceptIds();
+		for (Long conceptId : changedConceptIds) {
+			if (baseAttributeIds.contains(conceptId) || isAttribute(view, conceptId)) {
+				// The type of axiom generated for an attribute depends on its ancestors, recreate the axioms of all attributes
+				Set<Long> expanded = new HashSet<>(changedConceptIds);
+				expanded.addAll(baseAttributeIds);
+				expanded.addAll(getAttributeIds(view));
+				return expanded;
+			}
+		}
+		return changedConceptIds;
+	}
+
+	private boolean isAttribute(SnomedTaxonomy taxonomy, long conceptId) {
+		Deque<Long> toVisit = new ArrayDeque<>();
+		Set<Long> visited = new HashSet<>();
+		toVisit.add(conceptId);
+		while (!toVisit.isEmpty()) {
+			Long id = toVisit.pop();
+			if (id == Concepts.CONCEPT_MODEL_ATTRIBUTE_LONG) {
+				return true;
+			}
+			if (visited.add(id)) {
+				toVisit.addAll(taxonomy.getSuperTypeIds(id));
+			}
+		}
+		return false;
+	}
+
+	private Set<Long> getAttributeIds(SnomedTaxonomy taxonomy) {
+		Set<Long> attributeIds = taxonomy.getDescendants(Concepts.CONCEPT_MODEL_ATTRIBUTE_LONG);
+		attributeIds.add(Concepts.CONCEPT_MODEL_ATTRIBUTE_LONG);
+		return attributeIds;
+	}
+
+	/**
+	 * Collects the axioms which {@link OntologyService#createOntology(SnomedTaxonomy)} adds for each active concept.
+	 * @param conceptIds concepts to include or null for all.
+	 */
+	private Map<Long, Set<OWLAxiom>> getConceptAxioms(SnomedTaxonomy taxonomy, Set<Long> conceptIds) {
+		Map<Long, Set<OWLAxiom>> conceptAxioms = ontologyService.createAxiomsFromStatedRelationships(taxonomy, conceptIds);
+		Iterable<Long> ids = conceptIds != null ? conceptIds : taxonomy.getAllConceptIds();
+		for (Long conceptId : ids) {
+			if (!taxonomy.getAllConceptIds().contains(conceptId)) {
+				conceptAxioms.remove(conceptId);
+				continue;
+			}
+			List<OWLAxiom> axioms = taxonomy.getConceptAxiomMap().get(conceptId);
+			if (axioms != null && !axioms.isEmpty()) {
+				conceptAxioms.computeIfAbsent(conceptId, id -> new HashSet<>()).addAll(axioms);
+			}
+		}
+		return conceptAxioms;
+	}
+
+	private Object2IntOpenHashMap<OWLAxiom> countAxioms(Map<Long, Set<OWLAxiom>> conceptAxioms) {
+		Object2IntOpenHashMap<OWLAxiom> counts = new Object2IntOpenHashMap<>();
+		for (Set<OWLAxiom> axioms : conceptAxioms.values()) {
+			for (OWLAxiom axiom : axioms) {
+				counts.addTo(axiom, 1);
+			}
+		}
+		return counts;
+	}
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.service;
+
+import org.ihtsdo.otf.snomedboot.ReleaseImportException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snomed.otf.owltoolkit.classification.ReasonerTaxonomy;
+import org.snomed.otf.owltoolkit.metrics.MetricsRegistry;
+import org.snomed.otf.owltoolkit.taxonomy.RelationshipStoreType;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomy;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomyBuilder;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomyCache;
+import org.snomed.otf.owltoolkit.util.InputStreamSet;
+import org.snomed.otf.owltoolkit.util.TimerUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.Set;
+
+/**
+ * Classification service which keeps the taxonomy of a base release in memory between classifications.
+ * Each classification loads its RF2 delta into a copy-on-write view of the base taxonomy so the base is never changed
+ * and only the concepts touched by the delta are copied.
+ *
+ * Results are the same RF2 delta archive produced by {@link SnomedReasonerService}.
+ * Classifications run one at a time because each one uses a full OWL ontology and reasoner.
+ *
+ * In incremental reasoning mode the ontology and reasoner of the base taxonomy are also kept alive.
+ * Only the axioms of concepts changed by the delta are added to or removed from the ontology before the reasoner is flushed.
+ * Deltas which change the MRCM never grouped roles are classified using a new ontology.
+ */
+public class ResidentClassificationService {
+
+	private final SnomedTaxonomy baseTaxonomy;
+	private final String reasonerFactoryClassName;
+	private final SnomedReasonerService snomedReasonerService;
+	private final SnomedTaxonomyBuilder snomedTaxonomyBuilder;
+	private final IncrementalOntologyReasoner incrementalReasoner;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	public ResidentClassificationService(SnomedTaxonomy baseTaxonomy, String reasonerFactoryClassName) {
+		this.baseTaxonomy = baseTaxonomy;
+		this.reasonerFactoryClassName = reasonerFactoryClassName;
+		snomedReasonerService = new SnomedReasonerService();
+		snomedTaxonomyBuilder = new SnomedTaxonomyBuilder();
+		incrementalReasoner = null;
+	}
+
+	/**
+	 * @param incrementalReasoning keep the ontology and reasoner of the base taxonomy and apply the changes of each delta to them.
+	 */
+	public ResidentClassificationService(SnomedTaxonomy baseTaxonomy, String reasonerFactoryClassName, boolean incrementalReasoning) throws ReasonerServiceException {
+		this.baseTaxonomy = baseTaxonomy;
+		this.reasonerFactoryClassName = reasonerFactoryClassName;
+		snomedReasonerService = new SnomedReasonerService();
+		snomedTaxonomyBuilder = new SnomedTaxonomyBuilder();
+		incrementalReasoner = incrementalReasoning ?
+				new IncrementalOntologyReasoner(baseTaxonomy, snomedReasonerService.getOWLReasonerFactory(reasonerFactoryClassName)) : null;
+	}
+
+	/**
+	 * Loads the base release from RF2 snapshot archives.
+	 * @param snapshotCache optional cache of the built taxonomy, may be null.
+	 */
+	public static ResidentClassificationService load(Set<File> baseRf2SnapshotArchiveFiles, SnomedTaxonomyCache snapshotCache,
+			String reasonerFactoryClassName) throws ReasonerServiceException {
+
+		return load(baseRf2SnapshotArchiveFiles, snapshotCache, reasonerFactoryClassName, false);
+	}
+
+	/**
+	 * Loads the base release from RF2 snapshot archives.
+	 * @param snapshotCache optional cache of the built taxonomy, may be null.
+	 * @param incrementalReasoning keep the ontology and reasoner of the base taxonomy and apply the changes of each delta to them.
+	 */
+	public static ResidentClassificationService load(Set<File> baseRf2SnapshotArchiveFiles, SnomedTaxonomyCache snapshotCache,
+			String reasonerFactoryClassName, boolean incrementalReasoning) throws ReasonerServiceException {
+
+		return load(baseRf2SnapshotArchiveFiles, snapshotCache, reasonerFactoryClassName, incrementalReasoning, RelationshipStoreType.MAP);
+	}
+
+	/**
+	 * Loads the base release from RF2 snapshot archives.
+	 * @param snapshotCache optional cache of the built taxonomy, may be null.
+	 * @param incrementalReasoning keep the ontology and reasoner of the base taxonomy and apply the changes of each delta to them.
+	 * @param relationshipStoreType how the relationships of the base taxonomy are held while it is resident.
+	 */
+	public static ResidentClassificationService load(Set<File> baseRf2SnapshotArchiveFiles, SnomedTaxonomyCache snapshotCache,
+			String reasonerFactoryClassName, boolean incrementalReasoning, RelationshipStoreType relationshipStoreType) throws ReasonerServiceException {
+
+		SnomedTaxonomyBuilder snomedTaxonomyBuilder = new SnomedTaxonomyBuilder();
+		SnomedTaxonomy baseTaxonomy;
+		try {
+			if (snapshotCache != null) {
+				baseTaxonomy = snomedTaxonomyBuilder.build(baseRf2SnapshotArchiveFiles, null, snapshotCache, relationshipStoreType);
+			} else {
+				try (InputStreamSet snapshotArchives = new InputStreamSet(baseRf2SnapshotArchiveFiles)) {
+					baseTaxonomy = snomedTaxonomyBuilder.build(snapshotArchives, null, false, relationshipStoreType);
+				}
+			}
+		} catch (ReleaseImportException e) {
+			throw new ReasonerServiceException("Failed to build base taxonomy.", e);
+		} catch (IOException e) {
+			throw new ReasonerServiceException("IO error handling input files.", e);
+		}
+		return new ResidentClassificationService(baseTaxonomy, reasonerFactoryClassName, incrementalReasoning);
+	}
+
+	/**
+	 * Classifies the base release plus the given delta.
+	 * @param rf2DeltaArchive RF2 delta archive or null to classify the base release alone.
+	 * @param resultsRf2DeltaArchive stream to write the results archive to.
+	 */
+	public synchronized void classify(String classificationId, InputStream rf2DeltaArchive, OutputStream resultsRf2DeltaArchive) throws ReasonerServiceException {
+		TimerUtil timer = new TimerUtil("Resident classification " + classificationId, snomedReasonerService.getMetricsRegistry());
+		SnomedTaxonomy snomedTaxonomy = baseTaxonomy.createCopyOnWriteView();
+		timer.checkpoint("Create taxonomy view");
+
+		if (rf2DeltaArchive != null) {
+			try {
+				snomedTaxonomyBuilder.applyDelta(snomedTaxonomy, rf2DeltaArchive);
+			} catch (ReleaseImportException e) {
+				throw new ReasonerServiceException("Failed to load delta.", e);
+			}
+			timer.checkpoint("Load delta");
+		}
+
+		if (incrementalReasoner != null && incrementalReasoner.canClassify(snomedTaxonomy)) {
+			logger.info("Classifying {} incrementally against resident base ontology", classificationId);
+			Date startDate = new Date();
+			ReasonerTaxonomy reasonerTaxonomy = incrementalReasoner.classify(snomedTaxonomy, timer);
+			snomedReasonerService.generateResults(snomedTaxonomy, reasonerTaxonomy, incrementalReasoner.getUngroupedRoles(),
+					incrementalReasoner.getPropertyChains(), resultsRf2DeltaArchive, startDate, timer);
+		} else {
+			logger.info("Classifying {} against resident base taxonomy", classificationId);
+			snomedReasonerService.classify(classificationId, snomedTaxonomy, resultsRf2DeltaArchive, reasonerFactoryClassName, false, new Date(), timer);
+		}
+	}
+
+	/**
+	 * Releases the resources of the incremental reasoner, if any.
+	 */
+	public synchronized void dispose() {
+		if (incrementalReasoner != null) {
+			incrementalReasoner.dispose();
+		}
+	}
+
+	/**
+	 * Registry which receives the metrics of each classification.
+	 * @param metricsRegistry the registry or null to not measure classification.
+	 */
+	public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+		snomedReasonerService.setMetricsRegistry(metricsRegistry);
+	}
+
+	public SnomedTaxonomy getBaseTaxonomy() {
+		return baseTaxonomy;
+	}
+
+}
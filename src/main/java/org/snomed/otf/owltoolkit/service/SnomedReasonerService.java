@@ -27,15 +27,19 @@ import org.snomed.otf.owltoolkit.constants.Concepts;
 import org.snomed.otf.owltoolkit.conversion.AxiomRelationshipConversionService;
 import org.snomed.otf.owltoolkit.conversion.ConversionException;
 import org.snomed.otf.owltoolkit.domain.AxiomRepresentation;
-import org.snomed.otf.owltoolkit.domain.Relationship;
+import org.snomed.otf.owltoolkit.metrics.ClassificationReport;
+import org.snomed.otf.owltoolkit.metrics.MetricsRegistry;
 import org.snomed.otf.owltoolkit.normalform.RelationshipChangeProcessor;
+import org.snomed.otf.owltoolkit.normalform.RelationshipDiffType;
 import org.snomed.otf.owltoolkit.normalform.RelationshipInactivationProcessor;
 import org.snomed.otf.owltoolkit.normalform.RelationshipNormalFormGenerator;
 import org.snomed.otf.owltoolkit.ontology.OntologyDebugUtil;
 import org.snomed.otf.owltoolkit.ontology.OntologyService;
 import org.snomed.otf.owltoolkit.ontology.PropertyChain;
+import org.snomed.otf.owltoolkit.taxonomy.RelationshipStoreType;
 import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomy;
 import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomyBuilder;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomyCache;
 import org.snomed.otf.owltoolkit.util.InputStreamSet;
 import org.snomed.otf.owltoolkit.util.OptionalFileInputStream;
 import org.snomed.otf.owltoolkit.util.TimerUtil;
@@ -51,19 +55,114 @@ public class SnomedReasonerService {
 
 	private final ClassificationResultsWriter classificationResultsWriter;
 
-	private final Logger logger = LoggerFactory.getLogger(getClass());
+	private SnomedTaxonomyCache snapshotCache;
+
+	private boolean parallelTaxonomyExtraction;
+
+	private int normalFormParallelism = Runtime.getRuntime().availableProcessors();
+
+	private RelationshipDiffType relationshipDiffType = RelationshipDiffType.HASHED;
+
+	private long closureCacheSize = RelationshipNormalFormGenerator.DEFAULT_CLOSURE_CACHE_SIZE;
+	private boolean targetedSecondPass = true;
+	private boolean indexedRedundancyElimination = true;
+	private RelationshipStoreType relationshipStoreType = RelationshipStoreType.MAP;
+
+	private MetricsRegistry metricsRegistry = MetricsRegistry.NONE;
 
-	private static final Comparator<Relationship> RELATIONSHIP_COMPARATOR_RECENT_CHANGE_FIRST = Comparator
-			.comparing(Relationship::getTypeId)
-			.thenComparing(Relationship::getDestinationId)
-			.thenComparing(Relationship::getValueAsString, Comparator.nullsLast(Comparator.naturalOrder()))
-			.thenComparing(Relationship::getGroup)
-			.thenComparing(Relationship::getEffectiveTime, Comparator.reverseOrder());
+	private boolean writeMetricsReport;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
 
 	public SnomedReasonerService() {
 		this.classificationResultsWriter = new ClassificationResultsWriter();
 	}
 
+	/**
+	 * Sets a cache for the taxonomy built from the snapshot archives. Used when classifying from files.
+	 * @param snapshotCache the cache or null to always build from RF2.
+	 */
+	public void setSnapshotCache(SnomedTaxonomyCache snapshotCache) {
+		this.snapshotCache = snapshotCache;
+	}
+
+	/**
+	 * Extract the inferred hierarchy from the reasoner using one thread per core. Only for reasoners which can be queried
+	 * from several threads once the class hierarchy has been precomputed, such as ELK.
+	 */
+	public void setParallelTaxonomyExtraction(boolean parallelTaxonomyExtraction) {
+		this.parallelTaxonomyExtraction = parallelTaxonomyExtraction;
+	}
+
+	/**
+	 * Number of threads used to generate the relationship normal form, one per core by default.
+	 * The results are the same for any number of threads.
+	 */
+	public void setNormalFormParallelism(int normalFormParallelism) {
+		this.normalFormParallelism = normalFormParallelism;
+	}
+
+	/**
+	 * How the inferred relationships of each concept are compared with the existing ones, hashed by default.
+	 * The results are the same for either type.
+	 */
+	public void setRelationshipDiffType(RelationshipDiffType relationshipDiffType) {
+		this.relationshipDiffType = relationshipDiffType;
+	}
+
+	/**
+	 * Maximum number of property chain closures cached during normal form generation, 0 to disable the cache.
+	 * The results are the same with or without the cache.
+	 */
+	public void setClosureCacheSize(long closureCacheSize) {
+		this.closureCacheSize = closureCacheSize;
+	}
+
+	/**
+	 * Whether the second normal form pass only recomputes concepts whose property chain redundancy changes, true by default.
+	 * The results are the same either way.
+	 */
+	public void setTargetedSecondPass(boolean targetedSecondPass) {
+		this.targetedSecondPass = targetedSecondPass;
+	}
+
+	/**
+	 * Whether normal form generation only compares role groups which may make each other redundant, true by default.
+	 * The results are the same either way.
+	 */
+	public void setIndexedRedundancyElimination(boolean indexedRedundancyElimination) {
+		this.indexedRedundancyElimination = indexedRedundancyElimination;
+	}
+
+	/**
+	 * How the relationships of the taxonomy are held, {@link RelationshipStoreType#MAP} by default.
+	 * {@link RelationshipStoreType#COLUMNAR} uses less heap for large releases. The results are the same either way.
+	 */
+	public void setRelationshipStoreType(RelationshipStoreType relationshipStoreType) {
+		this.relationshipStoreType = relationshipStoreType;
+	}
+
+	/**
+	 * Registry which receives the resource use of each phase of classification and counts of the content classified.
+	 * @param metricsRegistry the registry or null to not measure classification.
+	 */
+	public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+		this.metricsRegistry = metricsRegistry != null ? metricsRegistry : MetricsRegistry.NONE;
+	}
+
+	public MetricsRegistry getMetricsRegistry() {
+		return metricsRegistry;
+	}
+
+	/**
+	 * Write a JSON report of the classification metrics next to the results archive when classifying to a file.
+	 * The metrics are also passed to the metrics registry, if set.
+	 * @see ClassificationReport#getReportFile(File)
+	 */
+	public void setWriteMetricsReport(boolean writeMetricsReport) {
+		this.writeMetricsReport = writeMetricsReport;
+	}
+
 	public void classify(String classificationId,
 			File previousReleaseRf2SnapshotArchiveFiles,
 			File currentReleaseRf2DeltaArchiveFile,
@@ -87,16 +186,68 @@ public class SnomedReasonerService {
 			String reasonerFactoryClassName,
 			boolean outputOntologyFileForDebug) throws ReasonerServiceException {
 
-		try (InputStreamSet previousReleaseRf2SnapshotArchives = new InputStreamSet(previousReleaseRf2SnapshotArchiveFile);
-			 OptionalFileInputStream currentReleaseRf2DeltaArchive = new OptionalFileInputStream(currentReleaseRf2DeltaArchiveFile);
+		ClassificationReport report = writeMetricsReport ? new ClassificationReport(classificationId, new Date(), metricsRegistry) : null;
+		MetricsRegistry classificationMetricsRegistry = report != null ? report : metricsRegistry;
+
+		if (snapshotCache != null) {
+			classifyUsingSnapshotCache(classificationId, previousReleaseRf2SnapshotArchiveFile, currentReleaseRf2DeltaArchiveFile,
+					resultsRf2DeltaArchiveFile, reasonerFactoryClassName, outputOntologyFileForDebug, classificationMetricsRegistry);
+		} else {
+			try (InputStreamSet previousReleaseRf2SnapshotArchives = new InputStreamSet(previousReleaseRf2SnapshotArchiveFile);
+				 OptionalFileInputStream currentReleaseRf2DeltaArchive = new OptionalFileInputStream(currentReleaseRf2DeltaArchiveFile);
+				 OutputStream resultsRf2DeltaArchive = new FileOutputStream(resultsRf2DeltaArchiveFile)) {
+
+				classify(classificationId,
+						previousReleaseRf2SnapshotArchives,
+						currentReleaseRf2DeltaArchive.getInputStream().orElse(null),
+						resultsRf2DeltaArchive,
+						reasonerFactoryClassName,
+						outputOntologyFileForDebug,
+						classificationMetricsRegistry);
+			} catch (IOException e) {
+				throw new ReasonerServiceException("IO error handling input/output files.", e);
+			}
+		}
+
+		if (report != null) {
+			File reportFile = ClassificationReport.getReportFile(resultsRf2DeltaArchiveFile);
+			try {
+				report.writeJson(reportFile);
+			} catch (IOException e) {
+				throw new ReasonerServiceException("Failed to write metrics report.", e);
+			}
+			logger.info("Metrics report written to {}", reportFile.getAbsolutePath());
+		}
+	}
+
+	private void classifyUsingSnapshotCache(String classificationId,
+			Set<File> previousReleaseRf2SnapshotArchiveFiles,
+			File currentReleaseRf2DeltaArchiveFile,
+			File resultsRf2DeltaArchiveFile,
+			String reasonerFactoryClassName,
+			boolean outputOntologyFileForDebug,
+			MetricsRegistry classificationMetricsRegistry) throws ReasonerServiceException {
+
+		Date startDate = new Date();
+		TimerUtil timer = new TimerUtil("Classification", classificationMetricsRegistry);
+		logger.info("Checking requested reasoner is available");
+		OWLReasonerFactory reasonerFactory = getOWLReasonerFactory(reasonerFactoryClassName);
+		timer.checkpoint("Create reasoner factory");
+
+		try (OptionalFileInputStream currentReleaseRf2DeltaArchive = new OptionalFileInputStream(currentReleaseRf2DeltaArchiveFile);
 			 OutputStream resultsRf2DeltaArchive = new FileOutputStream(resultsRf2DeltaArchiveFile)) {
 
-			classify(classificationId,
-					previousReleaseRf2SnapshotArchives,
-					currentReleaseRf2DeltaArchive.getInputStream().orElse(null),
-					resultsRf2DeltaArchive,
-					reasonerFactoryClassName,
-					outputOntologyFileForDebug);
+			logger.info("Building snomedTaxonomy using snapshot cache");
+			SnomedTaxonomy snomedTaxonomy;
+			try {
+				snomedTaxonomy = new SnomedTaxonomyBuilder().build(previousReleaseRf2SnapshotArchiveFiles,
+						currentReleaseRf2DeltaArchive.getInputStream().orElse(null), snapshotCache, relationshipStoreType);
+			} catch (ReleaseImportException e) {
+				throw new ReasonerServiceException("Failed to build existing taxonomy.", e);
+			}
+			timer.checkpoint("Build existing taxonomy");
+
+			classify(classificationId, snomedTaxonomy, reasonerFactory, resultsRf2DeltaArchive, outputOntologyFileForDebug, startDate, timer);
 		} catch (IOException e) {
 			throw new ReasonerServiceException("IO error handling input/output files.", e);
 		}
@@ -109,8 +260,20 @@ public class SnomedReasonerService {
 			String reasonerFactoryClassName,
 			boolean outputOntologyFileForDebug) throws ReasonerServiceException {
 
+		classify(classificationId, previousReleaseRf2SnapshotArchives, currentReleaseRf2DeltaArchive, resultsRf2DeltaArchive, reasonerFactoryClassName,
+				outputOntologyFileForDebug, metricsRegistry);
+	}
+
+	private void classify(String classificationId,
+			InputStreamSet previousReleaseRf2SnapshotArchives,
+			InputStream currentReleaseRf2DeltaArchive,
+			OutputStream resultsRf2DeltaArchive,
+			String reasonerFactoryClassName,
+			boolean outputOntologyFileForDebug,
+			MetricsRegistry classificationMetricsRegistry) throws ReasonerServiceException {
+
 		Date startDate = new Date();
-		TimerUtil timer = new TimerUtil("Classification");
+		TimerUtil timer = new TimerUtil("Classification", classificationMetricsRegistry);
 		logger.info("Checking requested reasoner is available");
 		OWLReasonerFactory reasonerFactory = getOWLReasonerFactory(reasonerFactoryClassName);
 		timer.checkpoint("Create reasoner factory");
@@ -119,12 +282,52 @@ public class SnomedReasonerService {
 		SnomedTaxonomyBuilder snomedTaxonomyBuilder = new SnomedTaxonomyBuilder();
 		SnomedTaxonomy snomedTaxonomy;
 		try {
-			snomedTaxonomy = snomedTaxonomyBuilder.build(previousReleaseRf2SnapshotArchives, currentReleaseRf2DeltaArchive, false);
+			snomedTaxonomy = snomedTaxonomyBuilder.build(previousReleaseRf2SnapshotArchives, currentReleaseRf2DeltaArchive, false, relationshipStoreType);
 		} catch (ReleaseImportException e) {
 			throw new ReasonerServiceException("Failed to build existing taxonomy.", e);
 		}
 		timer.checkpoint("Build existing taxonomy");
 
+		classify(classificationId, snomedTaxonomy, reasonerFactory, resultsRf2DeltaArchive, outputOntologyFileForDebug, startDate, timer);
+	}
+
+	/**
+	 * Classifies a taxonomy which has already been built, writing the results as an RF2 delta archive.
+	 */
+	public void classify(String classificationId,
+			SnomedTaxonomy snomedTaxonomy,
+			OutputStream resultsRf2DeltaArchive,
+			String reasonerFactoryClassName,
+			boolean outputOntologyFileForDebug) throws ReasonerServiceException {
+
+		classify(classificationId, snomedTaxonomy, resultsRf2DeltaArchive, reasonerFactoryClassName, outputOntologyFileForDebug,
+				new Date(), new TimerUtil("Classification", metricsRegistry));
+	}
+
+	/**
+	 * Classifies a taxonomy which has already been built, recording the remaining checkpoints to a timer started by the caller.
+	 */
+	void classify(String classificationId,
+			SnomedTaxonomy snomedTaxonomy,
+			OutputStream resultsRf2DeltaArchive,
+			String reasonerFactoryClassName,
+			boolean outputOntologyFileForDebug,
+			Date startDate,
+			TimerUtil timer) throws ReasonerServiceException {
+
+		OWLReasonerFactory reasonerFactory = getOWLReasonerFactory(reasonerFactoryClassName);
+		timer.checkpoint("Create reasoner factory");
+		classify(classificationId, snomedTaxonomy, reasonerFactory, resultsRf2DeltaArchive, outputOntologyFileForDebug, startDate, timer);
+	}
+
+	private void classify(String classificationId,
+			SnomedTaxonomy snomedTaxonomy,
+			OWLReasonerFactory reasonerFactory,
+			OutputStream resultsRf2DeltaArchive,
+			boolean outputOntologyFileForDebug,
+			Date startDate,
+			TimerUtil timer) throws ReasonerServiceException {
+
 		logger.info("Creating OwlOntology");
 		Set<Long> ungroupedRoles = snomedTaxonomy.getUngroupedRolesForContentTypeOrDefault(parseLong(Concepts.ALL_PRECOORDINATED_CONTENT));
 		OntologyService ontologyService = new OntologyService(ungroupedRoles);
@@ -135,6 +338,8 @@ public class SnomedReasonerService {
 			throw new ReasonerServiceException("Failed to build OWL Ontology.", e);
 		}
 		timer.checkpoint("Create OWL Ontology");
+		timer.getMetricsRegistry().setCounter(ClassificationReport.ENTITY_CACHE_HITS, ontologyService.getEntityCacheStats().hitCount());
+		timer.getMetricsRegistry().setCounter(ClassificationReport.ENTITY_CACHE_MISSES, ontologyService.getEntityCacheStats().missCount());
 
 		Set<PropertyChain> propertyChains = ontologyService.getPropertyChains(owlOntology);
 
@@ -155,10 +360,24 @@ public class SnomedReasonerService {
 
 		logger.info("Extract ReasonerTaxonomy");
 		ReasonerTaxonomyWalker walker = new ReasonerTaxonomyWalker(reasoner, new ReasonerTaxonomy());
-		ReasonerTaxonomy reasonerTaxonomy = walker.walk();
+		ReasonerTaxonomy reasonerTaxonomy = parallelTaxonomyExtraction ? walker.walkInParallel(Runtime.getRuntime().availableProcessors()) : walker.walk();
 		reasoner.dispose();
 		timer.checkpoint("Extract ReasonerTaxonomy");
 
+		generateResults(snomedTaxonomy, reasonerTaxonomy, ungroupedRoles, propertyChains, resultsRf2DeltaArchive, startDate, timer);
+	}
+
+	/**
+	 * Generates the normal form of the classified taxonomy and writes the changes to the results archive.
+	 */
+	void generateResults(SnomedTaxonomy snomedTaxonomy,
+			ReasonerTaxonomy reasonerTaxonomy,
+			Set<Long> ungroupedRoles,
+			Set<PropertyChain> propertyChains,
+			OutputStream resultsRf2DeltaArchive,
+			Date startDate,
+			TimerUtil timer) throws ReasonerServiceException {
+
 		logger.info("Generate normal form");
 		AxiomRelationshipConversionService axiomRelationshipConversionService = new AxiomRelationshipConversionService(ungroupedRoles);
 		Map<Long, Set<AxiomRepresentation>> conceptAxiomStatementMap;
@@ -167,59 +386,63 @@ public class SnomedReasonerService {
 		} catch (ConversionException e) {
 			throw new ReasonerServiceException("Failed to convert OWL Axiom Expressions into relationships for normal form generation.", e);
 		}
-		RelationshipNormalFormGenerator normalFormGenerator = new RelationshipNormalFormGenerator(reasonerTaxonomy, snomedTaxonomy, conceptAxiomStatementMap, propertyChains);
-
-		RelationshipChangeProcessor changeCollector = new RelationshipChangeProcessor();
-		normalFormGenerator.collectNormalFormChanges(changeCollector);
-		timer.checkpoint("Generate normal form");
-
-		logger.info("Inactivating inferred relationships for new inactive concepts");
-		new RelationshipInactivationProcessor(snomedTaxonomy).processInactivationChanges(changeCollector);
-
-		// Restore inactive relationships where appropriate
-		for (Long conceptId : changeCollector.getAddedStatements().keySet()) {
-			Set<Relationship> conceptInactiveInferredRelationship = snomedTaxonomy.getInactiveInferredRelationships(conceptId);
-			Set<Relationship> newInferredRelationship = changeCollector.getAddedStatements().get(conceptId);
-
-			if(!conceptInactiveInferredRelationship.isEmpty() && !newInferredRelationship.isEmpty()) {
-				// sort them by the most recent changes first.
-				// Today's date is used if the effective time is null or empty when loaded by SnomedTaxonomyLoader
-				List<Relationship> inactiveSortedByEffectiveTime = new ArrayList<>(conceptInactiveInferredRelationship);
-				Collections.sort(inactiveSortedByEffectiveTime, RELATIONSHIP_COMPARATOR_RECENT_CHANGE_FIRST);
-
-				for (Relationship newRel : newInferredRelationship) {
-					if (newRel.getRelationshipId() == -1) {// If we are updating an existing relationship then no need to find another one
-						for (Relationship inactiveRel : inactiveSortedByEffectiveTime) {
-							if (newRel.getGroup() == inactiveRel.getGroup()
-									&& newRel.getTypeId() == inactiveRel.getTypeId()
-									&& newRel.getDestinationId() == inactiveRel.getDestinationId()) {
-								newRel.setRelationshipId(inactiveRel.getRelationshipId());
-								// only need to find one to prevent inferred relationships churning
-								break;
-							}
-						}
-					}
-				}
-			}
+		RelationshipNormalFormGenerator normalFormGenerator = new RelationshipNormalFormGenerator(reasonerTaxonomy, snomedTaxonomy, conceptAxiomStatementMap, propertyChains,
+				closureCacheSize);
+		normalFormGenerator.setTargetedSecondPass(targetedSecondPass);
+		normalFormGenerator.setIndexedRedundancyElimination(indexedRedundancyElimination);
+
+		// Changes are spilled to temporary files as they are found
+		try (StreamingRelationshipChangeProcessor changeCollector = new StreamingRelationshipChangeProcessor(snomedTaxonomy, relationshipDiffType)) {
+			normalFormGenerator.collectNormalFormChanges(changeCollector, normalFormParallelism);
+			timer.checkpoint("Generate normal form");
+
+			logger.info("Inactivating inferred relationships for new inactive concepts");
+			new RelationshipInactivationProcessor(snomedTaxonomy).processInactivationChanges(changeCollector);
+
+			long redundantCount = changeCollector.getRedundantCount();
+			long totalChanges = changeCollector.getAddedCount() + changeCollector.getUpdatedCount() + redundantCount + changeCollector.getRemovedDueToConceptInactivationCount();
+			logger.info("{} relationship rows changed: {} added, {} updated, {} redundant, {} removed due to concept inactivation.",
+					formatDecimal(totalChanges), formatDecimal(changeCollector.getAddedCount()), formatDecimal(changeCollector.getUpdatedCount()),
+					formatDecimal(redundantCount), formatDecimal(changeCollector.getRemovedDueToConceptInactivationCount()));
+
+			logger.info("Writing results archive");
+			classificationResultsWriter.writeResultsRf2Archive(changeCollector, reasonerTaxonomy.getEquivalentConceptIds(), resultsRf2DeltaArchive, startDate);
+			timer.checkpoint("Write results to disk");
+
+			recordCounters(timer.getMetricsRegistry(), snomedTaxonomy, reasonerTaxonomy, normalFormGenerator, changeCollector);
+		} catch (IOException | UncheckedIOException e) {
+			throw new ReasonerServiceException("Failed to write out results archive.", e);
 		}
+		timer.finish();
+	}
 
-		long redundantCount = changeCollector.getRedundantCount();
-		long totalChanges = changeCollector.getAddedCount() + changeCollector.getUpdatedCount() + redundantCount + changeCollector.getRemovedDueToConceptInactivationCount();
-		logger.info("{} relationship rows changed: {} added, {} updated, {} redundant, {} removed due to concept inactivation.",
-				formatDecimal(totalChanges), formatDecimal(changeCollector.getAddedCount()), formatDecimal(changeCollector.getUpdatedCount()),
-				formatDecimal(redundantCount), formatDecimal(changeCollector.getRemovedDueToConceptInactivationCount()));
+	private void recordCounters(MetricsRegistry classificationMetricsRegistry, SnomedTaxonomy snomedTaxonomy, ReasonerTaxonomy reasonerTaxonomy,
+			RelationshipNormalFormGenerator normalFormGenerator, RelationshipChangeProcessor changeCollector) {
 
-		logger.info("Writing results archive");
-		classificationResultsWriter.writeResultsRf2Archive(changeCollector, reasonerTaxonomy.getEquivalentConceptIds(), resultsRf2DeltaArchive, startDate);
-		timer.checkpoint("Write results to disk");
-		timer.finish();
+		classificationMetricsRegistry.setCounter(ClassificationReport.CONCEPTS, snomedTaxonomy.getAllConceptIds().size());
+		classificationMetricsRegistry.setCounter(ClassificationReport.AXIOMS, snomedTaxonomy.getAxiomCount());
+		// Concepts found to be equivalent share one node
+		long reasonerNodes = reasonerTaxonomy.getConceptIds().size();
+		for (Set<Long> equivalentConceptIds : reasonerTaxonomy.getEquivalentConceptIds()) {
+			reasonerNodes -= equivalentConceptIds.size() - 1;
+		}
+		classificationMetricsRegistry.setCounter(ClassificationReport.REASONER_NODES, reasonerNodes);
+		classificationMetricsRegistry.setCounter(ClassificationReport.EQUIVALENT_CONCEPT_SETS, reasonerTaxonomy.getEquivalentConceptIds().size());
+		classificationMetricsRegistry.setCounter(ClassificationReport.RELATIONSHIPS_ADDED, changeCollector.getAddedCount());
+		classificationMetricsRegistry.setCounter(ClassificationReport.RELATIONSHIPS_UPDATED, changeCollector.getUpdatedCount());
+		classificationMetricsRegistry.setCounter(ClassificationReport.RELATIONSHIPS_REDUNDANT, changeCollector.getRedundantCount());
+		classificationMetricsRegistry.setCounter(ClassificationReport.RELATIONSHIPS_REMOVED_DUE_TO_CONCEPT_INACTIVATION,
+				changeCollector.getRemovedDueToConceptInactivationCount());
+		classificationMetricsRegistry.setCounter(ClassificationReport.CLOSURE_CACHE_HITS, normalFormGenerator.getClosureCacheStats().hitCount());
+		classificationMetricsRegistry.setCounter(ClassificationReport.CLOSURE_CACHE_MISSES, normalFormGenerator.getClosureCacheStats().missCount());
+		classificationMetricsRegistry.setCounter(ClassificationReport.SECOND_PASS_RECOMPUTED_CONCEPTS, normalFormGenerator.getSecondPassRecomputedConcepts());
 	}
 
 	private String formatDecimal(long number) {
 		return String.format("%,d", number);
 	}
 
-	private OWLReasonerFactory getOWLReasonerFactory(String reasonerFactoryClassName) throws ReasonerServiceException {
+	OWLReasonerFactory getOWLReasonerFactory(String reasonerFactoryClassName) throws ReasonerServiceException {
 		Class<?> reasonerFactoryClass = null;
 		try {
 			reasonerFactoryClass = Class.forName(reasonerFactoryClassName);
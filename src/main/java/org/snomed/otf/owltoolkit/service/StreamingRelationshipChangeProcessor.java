@@ -0,0 +1,194 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.service;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import org.snomed.otf.owltoolkit.domain.Relationship;
+import org.snomed.otf.owltoolkit.normalform.InactiveRelationshipIdIndex;
+import org.snomed.otf.owltoolkit.normalform.RelationshipChangeProcessor;
+import org.snomed.otf.owltoolkit.normalform.RelationshipDiffType;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomy;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Change processor which writes each relationship change as an RF2 row to a temporary spill file as soon as it is found,
+ * rather than collecting the changes in memory. There is one spill file for added and one for removed rows
+ * of both normal and concrete relationships. The files are copied into the results archive by {@link ClassificationResultsWriter}
+ * and deleted when this processor is closed.
+ *
+ * New relationships reuse the identifier of a matching inactive inferred relationship of the concept, if any, before they are written.
+ * See {@link InactiveRelationshipIdIndex}.
+ * The added and removed statement maps of this processor are always empty.
+ *
+ * Rows can not be taken back once written, so the changes of each concept may only be applied once.
+ * Redundant relationships of inactivated concepts are not written because the removals due to inactivation,
+ * processed after the normal form, replace them as they do in the removed statement map.
+ */
+class StreamingRelationshipChangeProcessor extends RelationshipChangeProcessor implements Closeable {
+
+	private final InactiveRelationshipIdIndex inactiveRelationshipIdIndex;
+	private final SpillFile added;
+	private final SpillFile removed;
+	private final SpillFile concreteAdded;
+	private final SpillFile concreteRemoved;
+	private final LongSet appliedConceptIds = new LongOpenHashSet();
+	private final Set<Long> inactivatedConceptIds;
+	private long redundantCount;
+
+	private long inactiveRelationshipsConceptId = -1;
+	private InactiveRelationshipIdIndex.ConceptIndex inactiveRelationships;
+
+	StreamingRelationshipChangeProcessor(SnomedTaxonomy snomedTaxonomy, RelationshipDiffType diffType) throws IOException {
+		super(diffType);
+		inactiveRelationshipIdIndex = new InactiveRelationshipIdIndex(snomedTaxonomy);
+		inactivatedConceptIds = snomedTaxonomy.getInactivatedConcepts();
+		List<SpillFile> spillFiles = new ArrayList<>();
+		try {
+			added = add(spillFiles, new SpillFile("added"));
+			removed = add(spillFiles, new SpillFile("removed"));
+			concreteAdded = add(spillFiles, new SpillFile("concrete-added"));
+			concreteRemoved = add(spillFiles, new SpillFile("concrete-removed"));
+		} catch (IOException e) {
+			for (SpillFile spillFile : spillFiles) {
+				spillFile.close();
+			}
+			throw e;
+		}
+	}
+
+	private static SpillFile add(List<SpillFile> spillFiles, SpillFile spillFile) {
+		spillFiles.add(spillFile);
+		return spillFile;
+	}
+
+	@Override
+	public void apply(long conceptId, Collection<Relationship> existingRelationships, Collection<Relationship> newRelationships) {
+		if (!appliedConceptIds.add(conceptId)) {
+			throw new IllegalStateException("Relationship changes of concept " + conceptId + " have already been applied.");
+		}
+		super.apply(conceptId, existingRelationships, newRelationships);
+	}
+
+	@Override
+	protected void handleAddedOrChangedRelationship(long conceptId, Relationship addedSubject) {
+		if (addedSubject.getRelationshipId() == -1) {
+			reuseInactiveRelationshipId(conceptId, addedSubject);
+		}
+		write(conceptId, addedSubject, true);
+	}
+
+	@Override
+	protected void handleRemovedRelationship(long conceptId, Relationship removedSubject) {
+		if (inactivatedConceptIds.contains(conceptId)) {
+			return;
+		}
+		redundantCount++;
+		write(conceptId, removedSubject, false);
+	}
+
+	@Override
+	protected void handleRemovalsDueToInactivation(Long inactiveConceptId, Set<Relationship> inferredRelationships) {
+		for (Relationship relationship : inferredRelationships) {
+			write(inactiveConceptId, relationship, false);
+		}
+	}
+
+	@Override
+	public Long getRedundantCount() {
+		return redundantCount;
+	}
+
+	private void reuseInactiveRelationshipId(long conceptId, Relationship newRelationship) {
+		// Changes are written one concept at a time
+		if (inactiveRelationshipsConceptId != conceptId) {
+			inactiveRelationshipsConceptId = conceptId;
+			inactiveRelationships = inactiveRelationshipIdIndex.getConceptIndex(conceptId);
+		}
+		inactiveRelationships.reuseInactiveRelationshipId(newRelationship);
+	}
+
+	private void write(long conceptId, Relationship relationship, boolean active) {
+		boolean concrete = relationship.isConcrete();
+		SpillFile spillFile = active ? (concrete ? concreteAdded : added) : (concrete ? concreteRemoved : removed);
+		try {
+			ClassificationResultsWriter.writeRelationship(spillFile.writer,
+					relationship.getRelationshipId() == -1 ? "" : relationship.getRelationshipId() + "",
+					active ? "1" : "0",
+					conceptId,
+					concrete ? relationship.getValue().getRF2Value() : "" + relationship.getDestinationId(),
+					relationship.getGroup(),
+					relationship.getTypeId());
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to write relationship change to spill file " + spillFile.file.getAbsolutePath(), e);
+		}
+	}
+
+	void flush() throws IOException {
+		added.writer.flush();
+		removed.writer.flush();
+		concreteAdded.writer.flush();
+		concreteRemoved.writer.flush();
+	}
+
+	File getAddedSpillFile(boolean concrete) {
+		return concrete ? concreteAdded.file : added.file;
+	}
+
+	File getRemovedSpillFile(boolean concrete) {
+		return concrete ? concreteRemoved.file : removed.file;
+	}
+
+	/**
+	 * Deletes the spill files.
+	 */
+	@Override
+	public void close() {
+		added.close();
+		removed.close();
+		concreteAdded.close();
+		concreteRemoved.close();
+	}
+
+	private static final class SpillFile {
+
+		private final File file;
+		private final Writer writer;
+
+		private SpillFile(String name) throws IOException {
+			file = File.createTempFile("classification-results-" + name + "-", ".txt");
+			try {
+				// Same character encoding as the results archive
+				writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file)));
+			} catch (IOException e) {
+				file.delete();
+				throw e;
+			}
+		}
+
+		private void close() {
+			try {
+				writer.close();
+			} catch (IOException e) {
+				// Only the file is needed from here
+			}
+			file.delete();
+		}
+	}
+
+}
@@ -7,6 +7,7 @@ import org.semanticweb.owlapi.io.StringDocumentSource;
 import org.semanticweb.owlapi.model.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.snomed.otf.owltoolkit.ontology.SnomedEntityCache;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
@@ -27,9 +28,40 @@ public class AxiomDeserialiser {
 	private int axiomsLoaded = 0;
 	private long timeTakenDeserialisingAxioms;
 	private final OWLOntologyManager owlOntologyManager;
+	private final boolean logProgress;
+	private final SnomedAxiomParser snomedAxiomParser;
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 
 	AxiomDeserialiser() {
+		this(true);
+	}
+
+	/**
+	 * @param logProgress false when progress is reported elsewhere, for example when several deserialisers are used in parallel.
+	 */
+	AxiomDeserialiser(boolean logProgress) {
+		this(logProgress, true);
+	}
+
+	/**
+	 * @param useSnomedAxiomParser if true axioms within the SNOMED subset of OWL functional syntax are parsed by {@link SnomedAxiomParser},
+	 * otherwise every axiom is parsed using the OWL API functional syntax parser.
+	 */
+	AxiomDeserialiser(boolean logProgress, boolean useSnomedAxiomParser) {
+		this(logProgress, useSnomedAxiomParser ? new SnomedAxiomParser() : null);
+	}
+
+	/**
+	 * @param entityCache cache of concept entities for the {@link SnomedAxiomParser}, shared by the deserialisers of one load.
+	 * Must be created from {@link OWLManager#getOWLDataFactory()}.
+	 */
+	AxiomDeserialiser(boolean logProgress, SnomedEntityCache entityCache) {
+		this(logProgress, new SnomedAxiomParser(OWLManager.getOWLDataFactory(), entityCache));
+	}
+
+	private AxiomDeserialiser(boolean logProgress, SnomedAxiomParser snomedAxiomParser) {
+		this.logProgress = logProgress;
+		this.snomedAxiomParser = snomedAxiomParser;
 		owlOntologyManager = OWLManager.createOWLOntologyManager();
 		try {
 			owlOntology = owlOntologyManager.loadOntologyFromOntologyDocument(
@@ -55,6 +87,14 @@ public class AxiomDeserialiser {
 		synchronized (this) {
 			try {
 				long start = new Date().getTime();
+				if (snomedAxiomParser != null) {
+					OWLAxiom owlAxiom = snomedAxiomParser.parse(owlExpression);
+					if (owlAxiom != null) {
+						timeTakenDeserialisingAxioms += new Date().getTime() - start;
+						return owlAxiom;
+					}
+					// Outside the SNOMED subset, fall back to the OWL API parser
+				}
 				owlFunctionalSyntaxOWLParser.parse(new StringDocumentSource(ontologyDocStart + owlExpression + ontologyDocEnd), owlOntology, owlOntologyLoaderConfiguration);
 
 				if (owlAxiomsLoaded.size() != 1) {
@@ -68,11 +108,13 @@ public class AxiomDeserialiser {
 				throw new OWLOntologyCreationException("Failed to parse axiom " + axiomIdentifier + ", '" + owlExpression + "'", e);
 			} finally {
 				axiomsLoaded++;
-				if (axiomsLoaded > 0 && axiomsLoaded % 10_000 == 0) {
+				if (logProgress && axiomsLoaded % 10_000 == 0) {
 					logger.info("Deserialised {} axioms...", String.format("%,8d", axiomsLoaded));
 				}
-				owlOntologyManager.removeAxioms(owlOntology, new HashSet<>(owlAxiomsLoaded));
-				owlAxiomsLoaded.clear();
+				if (!owlAxiomsLoaded.isEmpty()) {
+					owlOntologyManager.removeAxioms(owlOntology, new HashSet<>(owlAxiomsLoaded));
+					owlAxiomsLoaded.clear();
+				}
 			}
 		}
 	}
@@ -0,0 +1,364 @@
+/*
+ * Copyright 2019 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.taxonomy;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import org.snomed.otf.owltoolkit.domain.Relationship;
+
+import java.util.*;
+
+/**
+ * Relationship store holding rows in parallel primitive arrays, grouped by source concept using CSR style offsets.
+ * Rows for concept conceptIds[i] are found at positions offsets[i] (inclusive) to offsets[i + 1] (exclusive).
+ *
+ * While loading, rows are appended to the arrays without keeping a Relationship object per row.
+ * The rows are sorted by source concept and the arrays trimmed when the store is first read.
+ * Relationship objects are created on access, the sets returned are read only views of the rows of a concept.
+ * Changes made after the first read are held per concept in a small copy-on-write overlay which takes precedence over the arrays.
+ */
+class ColumnarRelationshipStore implements RelationshipStore {
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private long[] conceptIds = new long[0];
+	private int[] offsets = new int[1];
+	private int rowCount;
+
+	private long[] relationshipIds;
+	private int[] effectiveTimes;
+	private long[] moduleIds;
+	private long[] typeIds;
+	private long[] destinationIds;
+	private int[] groups;
+	private int[] unionGroups;
+	private long[] characteristicTypeIds;
+	private BitSet universal = new BitSet();
+	private Int2ObjectOpenHashMap<Relationship.ConcreteValue> concreteValues = new Int2ObjectOpenHashMap<>();
+
+	// Only used while loading, released once the rows are sorted
+	private long[] sourceIds;
+	private Long2IntOpenHashMap loadingRowsById;
+	private BitSet removedRows = new BitSet();
+	private volatile boolean sorted;
+
+	private final Long2ObjectOpenHashMap<Set<Relationship>> overlay = new Long2ObjectOpenHashMap<>();
+
+	/**
+	 * @param indexById match relationships by id while loading so that later versions of a row replace earlier ones.
+	 */
+	ColumnarRelationshipStore(boolean indexById) {
+		sourceIds = new long[INITIAL_CAPACITY];
+		relationshipIds = new long[INITIAL_CAPACITY];
+		effectiveTimes = new int[INITIAL_CAPACITY];
+		moduleIds = new long[INITIAL_CAPACITY];
+		typeIds = new long[INITIAL_CAPACITY];
+		destinationIds = new long[INITIAL_CAPACITY];
+		groups = new int[INITIAL_CAPACITY];
+		unionGroups = new int[INITIAL_CAPACITY];
+		characteristicTypeIds = new long[INITIAL_CAPACITY];
+		if (indexById) {
+			loadingRowsById = new Long2IntOpenHashMap();
+			loadingRowsById.defaultReturnValue(-1);
+		}
+	}
+
+	/**
+	 * Copies all rows of the given store into a new columnar store.
+	 */
+	static ColumnarRelationshipStore copyOf(RelationshipStore source, boolean indexById) {
+		ColumnarRelationshipStore store = new ColumnarRelationshipStore(indexById);
+		for (long conceptId : source.getConceptIds()) {
+			for (Relationship relationship : source.getRelationships(conceptId)) {
+				store.appendRow(conceptId, relationship);
+			}
+		}
+		return store;
+	}
+
+	private void appendRow(long conceptId, Relationship relationship) {
+		if (rowCount == relationshipIds.length) {
+			grow(rowCount * 2);
+		}
+		int row = rowCount++;
+		sourceIds[row] = conceptId;
+		relationshipIds[row] = relationship.getRelationshipId();
+		effectiveTimes[row] = relationship.getEffectiveTime();
+		moduleIds[row] = relationship.getModuleId();
+		typeIds[row] = relationship.getTypeId();
+		destinationIds[row] = relationship.getDestinationId();
+		groups[row] = relationship.getGroup();
+		unionGroups[row] = relationship.getUnionGroup();
+		characteristicTypeIds[row] = relationship.getCharacteristicTypeId();
+		universal.set(row, relationship.isUniversal());
+		if (relationship.isConcrete()) {
+			concreteValues.put(row, relationship.getValue());
+		}
+		if (loadingRowsById != null) {
+			loadingRowsById.put(relationship.getRelationshipId(), row);
+		}
+	}
+
+	private void grow(int capacity) {
+		sourceIds = Arrays.copyOf(sourceIds, capacity);
+		relationshipIds = Arrays.copyOf(relationshipIds, capacity);
+		effectiveTimes = Arrays.copyOf(effectiveTimes, capacity);
+		moduleIds = Arrays.copyOf(moduleIds, capacity);
+		typeIds = Arrays.copyOf(typeIds, capacity);
+		destinationIds = Arrays.copyOf(destinationIds, capacity);
+		groups = Arrays.copyOf(groups, capacity);
+		unionGroups = Arrays.copyOf(unionGroups, capacity);
+		characteristicTypeIds = Arrays.copyOf(characteristicTypeIds, capacity);
+	}
+
+	private void ensureSorted() {
+		if (!sorted) {
+			synchronized (this) {
+				if (!sorted) {
+					sortRows();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Orders the loaded rows by source concept using a counting sort, dropping removed rows and trimming the arrays to size.
+	 */
+	private void sortRows() {
+		LongOpenHashSet distinctConceptIds = new LongOpenHashSet();
+		for (int row = 0; row < rowCount; row++) {
+			if (!removedRows.get(row)) {
+				distinctConceptIds.add(sourceIds[row]);
+			}
+		}
+		long[] sortedConceptIds = distinctConceptIds.toLongArray();
+		Arrays.sort(sortedConceptIds);
+
+		int[] conceptIndexes = new int[rowCount];
+		int[] conceptOffsets = new int[sortedConceptIds.length + 1];
+		for (int row = 0; row < rowCount; row++) {
+			if (!removedRows.get(row)) {
+				conceptIndexes[row] = Arrays.binarySearch(sortedConceptIds, sourceIds[row]);
+				conceptOffsets[conceptIndexes[row] + 1]++;
+			}
+		}
+		for (int i = 0; i < sortedConceptIds.length; i++) {
+			conceptOffsets[i + 1] += conceptOffsets[i];
+		}
+
+		// order[newRow] is the loaded row placed at newRow
+		int[] order = new int[conceptOffsets[sortedConceptIds.length]];
+		int[] nextRow = Arrays.copyOf(conceptOffsets, sortedConceptIds.length);
+		for (int row = 0; row < rowCount; row++) {
+			if (!removedRows.get(row)) {
+				order[nextRow[conceptIndexes[row]]++] = row;
+			}
+		}
+
+		relationshipIds = permute(relationshipIds, order);
+		effectiveTimes = permute(effectiveTimes, order);
+		moduleIds = permute(moduleIds, order);
+		typeIds = permute(typeIds, order);
+		destinationIds = permute(destinationIds, order);
+		groups = permute(groups, order);
+		unionGroups = permute(unionGroups, order);
+		characteristicTypeIds = permute(characteristicTypeIds, order);
+		BitSet sortedUniversal = new BitSet(order.length);
+		Int2ObjectOpenHashMap<Relationship.ConcreteValue> sortedConcreteValues = new Int2ObjectOpenHashMap<>();
+		for (int row = 0; row < order.length; row++) {
+			sortedUniversal.set(row, universal.get(order[row]));
+			Relationship.ConcreteValue value = concreteValues.get(order[row]);
+			if (value != null) {
+				sortedConcreteValues.put(row, value);
+			}
+		}
+		universal = sortedUniversal;
+		concreteValues = sortedConcreteValues;
+
+		conceptIds = sortedConceptIds;
+		offsets = conceptOffsets;
+		rowCount = order.length;
+		sourceIds = null;
+		loadingRowsById = null;
+		removedRows = null;
+		sorted = true;
+	}
+
+	private static long[] permute(long[] column, int[] order) {
+		long[] sortedColumn = new long[order.length];
+		for (int row = 0; row < order.length; row++) {
+			sortedColumn[row] = column[order[row]];
+		}
+		return sortedColumn;
+	}
+
+	private static int[] permute(int[] column, int[] order) {
+		int[] sortedColumn = new int[order.length];
+		for (int row = 0; row < order.length; row++) {
+			sortedColumn[row] = column[order[row]];
+		}
+		return sortedColumn;
+	}
+
+	private Relationship getRow(int row) {
+		Relationship.ConcreteValue value = concreteValues.get(row);
+		if (value != null) {
+			return new Relationship(relationshipIds[row], effectiveTimes[row], moduleIds[row], typeIds[row], value,
+					groups[row], unionGroups[row], universal.get(row), characteristicTypeIds[row]);
+		}
+		return new Relationship(relationshipIds[row], effectiveTimes[row], moduleIds[row], typeIds[row], destinationIds[row],
+				groups[row], unionGroups[row], universal.get(row), characteristicTypeIds[row]);
+	}
+
+	@Override
+	public Set<Relationship> getRelationships(long conceptId) {
+		ensureSorted();
+		Set<Relationship> overlayRelationships = overlay.get(conceptId);
+		if (overlayRelationships != null) {
+			return Collections.unmodifiableSet(overlayRelationships);
+		}
+		return getSortedRelationships(conceptId);
+	}
+
+	private Set<Relationship> getSortedRelationships(long conceptId) {
+		int index = Arrays.binarySearch(conceptIds, conceptId);
+		if (index < 0) {
+			return Collections.emptySet();
+		}
+		return new RowSet(offsets[index], offsets[index + 1]);
+	}
+
+	private Set<Relationship> getWritableRelationships(long conceptId) {
+		ensureSorted();
+		return overlay.computeIfAbsent(conceptId, id -> new HashSet<>(getSortedRelationships(id)));
+	}
+
+	@Override
+	public synchronized boolean addOrModifyRelationship(long conceptId, Relationship relationship) {
+		if (!sorted) {
+			int row = loadingRowsById != null ? loadingRowsById.get(relationship.getRelationshipId()) : -1;
+			if (row != -1) {
+				// Only effectiveTime and groupId are mutable
+				effectiveTimes[row] = relationship.getEffectiveTime();
+				groups[row] = relationship.getGroup();
+				return false;
+			}
+			appendRow(conceptId, relationship);
+			return true;
+		}
+		Set<Relationship> relationships = getWritableRelationships(conceptId);
+		for (Relationship existingRelationship : relationships) {
+			if (existingRelationship.getRelationshipId() == relationship.getRelationshipId()) {
+				// Only effectiveTime and groupId are mutable
+				// Remove and add back because the fields are part of the hash code
+				relationships.remove(existingRelationship);
+				existingRelationship.setEffectiveTime(relationship.getEffectiveTime());
+				existingRelationship.setGroup(relationship.getGroup());
+				relationships.add(existingRelationship);
+				return false;
+			}
+		}
+		relationships.add(relationship);
+		return true;
+	}
+
+	@Override
+	public synchronized void addRelationship(long conceptId, Relationship relationship) {
+		if (!sorted) {
+			appendRow(conceptId, relationship);
+		} else {
+			getWritableRelationships(conceptId).add(relationship);
+		}
+	}
+
+	@Override
+	public synchronized void removeRelationship(long conceptId, long relationshipId) {
+		if (!sorted && loadingRowsById != null) {
+			int row = loadingRowsById.remove(relationshipId);
+			if (row != -1) {
+				removedRows.set(row);
+			}
+			return;
+		}
+		getWritableRelationships(conceptId).removeIf(relationship -> relationshipId == relationship.getRelationshipId());
+	}
+
+	@Override
+	public LongSet getConceptIds() {
+		ensureSorted();
+		LongOpenHashSet ids = new LongOpenHashSet(conceptIds);
+		ids.addAll(overlay.keySet());
+		return ids;
+	}
+
+	@Override
+	public int getRelationshipCount() {
+		ensureSorted();
+		int count = rowCount;
+		for (Long2ObjectMap.Entry<Set<Relationship>> entry : overlay.long2ObjectEntrySet()) {
+			int index = Arrays.binarySearch(conceptIds, entry.getLongKey());
+			if (index >= 0) {
+				count -= offsets[index + 1] - offsets[index];
+			}
+			count += entry.getValue().size();
+		}
+		return count;
+	}
+
+	/**
+	 * Read only set of the sorted rows from start (inclusive) to end (exclusive), creating a Relationship for each row as it is iterated.
+	 */
+	private final class RowSet extends AbstractSet<Relationship> {
+
+		private final int start;
+		private final int end;
+
+		private RowSet(int start, int end) {
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public Iterator<Relationship> iterator() {
+			return new Iterator<Relationship>() {
+				private int row = start;
+
+				@Override
+				public boolean hasNext() {
+					return row < end;
+				}
+
+				@Override
+				public Relationship next() {
+					if (row >= end) {
+						throw new NoSuchElementException();
+					}
+					return getRow(row++);
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return end - start;
+		}
+	}
+
+}
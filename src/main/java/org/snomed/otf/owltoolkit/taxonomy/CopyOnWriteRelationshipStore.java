@@ -0,0 +1,118 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.taxonomy;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import org.snomed.otf.owltoolkit.domain.Relationship;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Relationship store which reads through to a base store until the relationships of a concept are changed.
+ * The first change to a concept copies its relationships into an overlay owned by this store.
+ *
+ * Relationships of concepts which have not been changed are read only views of the base store, relationship objects are only copied
+ * when a concept is first changed. Callers must not change the relationship objects they read.
+ * The base store must not be changed while this store is in use.
+ */
+class CopyOnWriteRelationshipStore implements RelationshipStore {
+
+	private final RelationshipStore base;
+	private final Long2ObjectOpenHashMap<Set<Relationship>> overlay = new Long2ObjectOpenHashMap<>();
+
+	CopyOnWriteRelationshipStore(RelationshipStore base) {
+		this.base = base;
+	}
+
+	@Override
+	public Set<Relationship> getRelationships(long conceptId) {
+		Set<Relationship> overlayRelationships = overlay.get(conceptId);
+		if (overlayRelationships != null) {
+			return overlayRelationships;
+		}
+		return Collections.unmodifiableSet(base.getRelationships(conceptId));
+	}
+
+	// Relationship objects are copied because the mutable fields of relationships in the overlay are changed in place
+	private Set<Relationship> copyBaseRelationships(long conceptId) {
+		Set<Relationship> relationships = new HashSet<>();
+		for (Relationship relationship : base.getRelationships(conceptId)) {
+			relationships.add(relationship.copy());
+		}
+		return relationships;
+	}
+
+	private Set<Relationship> getWritableRelationships(long conceptId) {
+		return overlay.computeIfAbsent(conceptId, this::copyBaseRelationships);
+	}
+
+	@Override
+	public synchronized boolean addOrModifyRelationship(long conceptId, Relationship relationship) {
+		Set<Relationship> relationships = getWritableRelationships(conceptId);
+		for (Relationship existingRelationship : relationships) {
+			if (existingRelationship.getRelationshipId() == relationship.getRelationshipId()) {
+				// Only effectiveTime and groupId are mutable
+				// Remove and add back because the fields are part of the hash code
+				relationships.remove(existingRelationship);
+				existingRelationship.setEffectiveTime(relationship.getEffectiveTime());
+				existingRelationship.setGroup(relationship.getGroup());
+				relationships.add(existingRelationship);
+				return false;
+			}
+		}
+		relationships.add(relationship);
+		return true;
+	}
+
+	@Override
+	public synchronized void addRelationship(long conceptId, Relationship relationship) {
+		getWritableRelationships(conceptId).add(relationship);
+	}
+
+	@Override
+	public synchronized void removeRelationship(long conceptId, long relationshipId) {
+		getWritableRelationships(conceptId).removeIf(relationship -> relationshipId == relationship.getRelationshipId());
+	}
+
+	@Override
+	public LongSet getConceptIds() {
+		LongOpenHashSet ids = new LongOpenHashSet(base.getConceptIds());
+		ids.addAll(overlay.keySet());
+		return ids;
+	}
+
+	@Override
+	public int getRelationshipCount() {
+		int count = base.getRelationshipCount();
+		for (Long2ObjectMap.Entry<Set<Relationship>> entry : overlay.long2ObjectEntrySet()) {
+			count += entry.getValue().size() - base.getRelationships(entry.getLongKey()).size();
+		}
+		return count;
+	}
+
+	/**
+	 * @return ids of concepts whose relationships have been changed in this store, possibly changed back again.
+	 */
+	LongSet getChangedConceptIds() {
+		return new LongOpenHashSet(overlay.keySet());
+	}
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2019 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.taxonomy;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import org.snomed.otf.owltoolkit.domain.Relationship;
+
+import java.util.*;
+
+/**
+ * Relationship store backed by a set of relationship objects per concept and an optional index by relationship id.
+ * This is the store used while loading RF2.
+ */
+class MapRelationshipStore implements RelationshipStore {
+
+	private final Long2ObjectOpenHashMap<Set<Relationship>> conceptRelationshipMap = new Long2ObjectOpenHashMap<>();
+	private final Map<Long, Relationship> relationshipsById;
+
+	MapRelationshipStore(boolean indexById) {
+		relationshipsById = indexById ? new HashMap<>() : null;
+	}
+
+	@Override
+	public Set<Relationship> getRelationships(long conceptId) {
+		return conceptRelationshipMap.getOrDefault(conceptId, Collections.emptySet());
+	}
+
+	@Override
+	public boolean addOrModifyRelationship(long conceptId, Relationship relationship) {
+		// Have we seen this relationship before ie we need to modify it?
+		Relationship existingRelationship = relationshipsById != null ? relationshipsById.get(relationship.getRelationshipId()) : null;
+		if (existingRelationship != null) {
+			// Only effectiveTime and groupId are mutable
+			existingRelationship.setEffectiveTime(relationship.getEffectiveTime());
+			existingRelationship.setGroup(relationship.getGroup());
+			return false;
+		}
+		addRelationship(conceptId, relationship);
+		return true;
+	}
+
+	@Override
+	public void addRelationship(long conceptId, Relationship relationship) {
+		conceptRelationshipMap.computeIfAbsent(conceptId, k -> new HashSet<>()).add(relationship);
+		if (relationshipsById != null) {
+			relationshipsById.put(relationship.getRelationshipId(), relationship);
+		}
+	}
+
+	@Override
+	public void removeRelationship(long conceptId, long relationshipId) {
+		getRelationships(conceptId).removeIf(relationship -> relationshipId == relationship.getRelationshipId());
+		if (relationshipsById != null) {
+			relationshipsById.remove(relationshipId);
+		}
+	}
+
+	@Override
+	public LongSet getConceptIds() {
+		return conceptRelationshipMap.keySet();
+	}
+
+	@Override
+	public int getRelationshipCount() {
+		if (relationshipsById != null) {
+			return relationshipsById.size();
+		}
+		int count = 0;
+		for (Set<Relationship> relationships : conceptRelationshipMap.values()) {
+			count += relationships.size();
+		}
+		return count;
+	}
+
+	Map<Long, Relationship> getRelationshipsById() {
+		return relationshipsById;
+	}
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2019 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.taxonomy;
+
+import it.unimi.dsi.fastutil.longs.LongSet;
+import org.snomed.otf.owltoolkit.domain.Relationship;
+
+import java.util.Set;
+
+/**
+ * Storage for one characteristic type of relationship rows, keyed by source concept.
+ */
+interface RelationshipStore {
+
+	Set<Relationship> getRelationships(long conceptId);
+
+	/**
+	 * Adds the relationship or, if a relationship with the same id is already present on the concept, updates its mutable fields.
+	 * @return true if the relationship was not already present.
+	 */
+	boolean addOrModifyRelationship(long conceptId, Relationship relationship);
+
+	/**
+	 * Adds the relationship without matching by id, used for rows where several versions may be kept.
+	 */
+	void addRelationship(long conceptId, Relationship relationship);
+
+	void removeRelationship(long conceptId, long relationshipId);
+
+	LongSet getConceptIds();
+
+	int getRelationshipCount();
+
+}
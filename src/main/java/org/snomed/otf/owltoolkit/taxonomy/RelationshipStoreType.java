@@ -0,0 +1,34 @@
+/*
+ * Copyright 2019 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.taxonomy;
+
+/**
+ * How relationship rows are held in a {@link SnomedTaxonomy} once loading is complete.
+ */
+public enum RelationshipStoreType {
+
+	/**
+	 * One Relationship object per row held in hash maps. Fastest access, largest heap.
+	 */
+	MAP,
+
+	/**
+	 * Rows held in parallel primitive arrays keyed by source concept, loaded straight from RF2. Relationship objects are created on access.
+	 * Uses a fraction of the heap of MAP for large releases, about 60 bytes per row instead of about 300.
+	 */
+	COLUMNAR
+
+}
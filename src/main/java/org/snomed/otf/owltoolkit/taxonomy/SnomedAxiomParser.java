@@ -0,0 +1,342 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.taxonomy;
+
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.vocab.Namespaces;
+import org.snomed.otf.owltoolkit.ontology.SnomedEntityCache;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+
+import static org.snomed.otf.owltoolkit.ontology.OntologyService.SNOMED_CORE_COMPONENTS_URI;
+
+/**
+ * Parser for the subset of OWL functional syntax used in the SNOMED CT OWL axiom reference set.
+ * Axioms are created directly using the OWLDataFactory without creating an ontology document.
+ *
+ * Supported axioms are SubClassOf, EquivalentClasses, SubObjectPropertyOf (including ObjectPropertyChain), SubDataPropertyOf,
+ * TransitiveObjectProperty and ReflexiveObjectProperty. Supported class expressions are named classes, ObjectIntersectionOf,
+ * ObjectSomeValuesFrom and DataHasValue. Entities must use the default SNOMED prefix or a full IRI.
+ *
+ * {@link #parse(String)} returns null for anything outside this subset, including malformed axioms, so that the caller
+ * can fall back to the OWL API parser which reports errors in the usual way.
+ * Entities named by a concept identifier are taken from a {@link SnomedEntityCache}, which may be shared with other parsers.
+ * Instances are not thread safe.
+ */
+final class SnomedAxiomParser {
+
+	private static final String XSD_PREFIX = "xsd:";
+	// Longer names may not fit in a long
+	private static final int MAX_CONCEPT_ID_LENGTH = 18;
+
+	private final OWLDataFactory factory;
+	private final SnomedEntityCache entityCache;
+
+	private String input;
+	private int position;
+
+	SnomedAxiomParser() {
+		this(OWLManager.getOWLDataFactory());
+	}
+
+	SnomedAxiomParser(OWLDataFactory factory) {
+		this(factory, new SnomedEntityCache(factory));
+	}
+
+	SnomedAxiomParser(OWLDataFactory factory, SnomedEntityCache entityCache) {
+		this.factory = factory;
+		this.entityCache = entityCache;
+	}
+
+	/**
+	 * @return the axiom or null if the expression is not within the supported subset.
+	 */
+	OWLAxiom parse(String owlExpression) {
+		input = owlExpression;
+		position = 0;
+		try {
+			OWLAxiom axiom = axiom();
+			skipWhitespace();
+			return position == input.length() ? axiom : null;
+		} catch (UnsupportedSyntax e) {
+			return null;
+		} finally {
+			input = null;
+		}
+	}
+
+	private OWLAxiom axiom() throws UnsupportedSyntax {
+		String keyword = keyword();
+		expect('(');
+		OWLAxiom axiom;
+		switch (keyword) {
+			case "SubClassOf": {
+				OWLClassExpression subClass = classExpression();
+				OWLClassExpression superClass = classExpression();
+				axiom = factory.getOWLSubClassOfAxiom(subClass, superClass);
+				break;
+			}
+			case "EquivalentClasses": {
+				Set<OWLClassExpression> classExpressions = new HashSet<>();
+				classExpressions.add(classExpression());
+				do {
+					classExpressions.add(classExpression());
+				} while (!nextIs(')'));
+				axiom = factory.getOWLEquivalentClassesAxiom(classExpressions);
+				break;
+			}
+			case "SubObjectPropertyOf": {
+				if (nextIsKeyword("ObjectPropertyChain")) {
+					keyword();
+					expect('(');
+					List<OWLObjectPropertyExpression> chain = new ArrayList<>();
+					chain.add(objectProperty());
+					do {
+						chain.add(objectProperty());
+					} while (!nextIs(')'));
+					expect(')');
+					axiom = factory.getOWLSubPropertyChainOfAxiom(chain, objectProperty());
+				} else {
+					OWLObjectProperty subProperty = objectProperty();
+					axiom = factory.getOWLSubObjectPropertyOfAxiom(subProperty, objectProperty());
+				}
+				break;
+			}
+			case "SubDataPropertyOf": {
+				OWLDataProperty subProperty = dataProperty();
+				axiom = factory.getOWLSubDataPropertyOfAxiom(subProperty, dataProperty());
+				break;
+			}
+			case "TransitiveObjectProperty":
+				axiom = factory.getOWLTransitiveObjectPropertyAxiom(objectProperty());
+				break;
+			case "ReflexiveObjectProperty":
+				axiom = factory.getOWLReflexiveObjectPropertyAxiom(objectProperty());
+				break;
+			default:
+				throw new UnsupportedSyntax();
+		}
+		expect(')');
+		return axiom;
+	}
+
+	private OWLClassExpression classExpression() throws UnsupportedSyntax {
+		skipWhitespace();
+		if (position < input.length() && Character.isLetter(input.charAt(position))) {
+			String keyword = keyword();
+			expect('(');
+			OWLClassExpression classExpression;
+			switch (keyword) {
+				case "ObjectIntersectionOf": {
+					Set<OWLClassExpression> operands = new HashSet<>();
+					operands.add(classExpression());
+					do {
+						operands.add(classExpression());
+					} while (!nextIs(')'));
+					classExpression = factory.getOWLObjectIntersectionOf(operands);
+					break;
+				}
+				case "ObjectSomeValuesFrom": {
+					OWLObjectProperty property = objectProperty();
+					classExpression = factory.getOWLObjectSomeValuesFrom(property, classExpression());
+					break;
+				}
+				case "DataHasValue": {
+					OWLDataProperty property = dataProperty();
+					classExpression = factory.getOWLDataHasValue(property, literal());
+					break;
+				}
+				default:
+					throw new UnsupportedSyntax();
+			}
+			expect(')');
+			return classExpression;
+		}
+		return entity(entityCache::getOwlClass, factory::getOWLClass);
+	}
+
+	private OWLObjectProperty objectProperty() throws UnsupportedSyntax {
+		return entity(entityCache::getOwlObjectProperty, factory::getOWLObjectProperty);
+	}
+
+	private OWLDataProperty dataProperty() throws UnsupportedSyntax {
+		return entity(entityCache::getOwlDataProperty, factory::getOWLDataProperty);
+	}
+
+	private <T extends OWLEntity> T entity(LongFunction<T> cachedEntity, Function<IRI, T> newEntity) throws UnsupportedSyntax {
+		skipWhitespace();
+		long conceptId = conceptId();
+		return conceptId != -1 ? cachedEntity.apply(conceptId) : newEntity.apply(iri());
+	}
+
+	/**
+	 * Reads a name with the default prefix made of digits only, for example ":404684003".
+	 * @return the concept identifier or -1, without moving past the name, if the next name is not a concept identifier.
+	 */
+	private long conceptId() {
+		if (position + 1 >= input.length() || input.charAt(position) != ':') {
+			return -1;
+		}
+		int start = position + 1;
+		int end = start;
+		while (end < input.length() && input.charAt(end) >= '0' && input.charAt(end) <= '9') {
+			end++;
+		}
+		int length = end - start;
+		if (length == 0 || length > MAX_CONCEPT_ID_LENGTH || input.charAt(start) == '0'
+				|| (end < input.length() && isNameChar(input.charAt(end)))) {
+			// Leading zeros would give a different IRI to the identifier
+			return -1;
+		}
+		long conceptId = 0;
+		for (int i = start; i < end; i++) {
+			conceptId = conceptId * 10 + (input.charAt(i) - '0');
+		}
+		position = end;
+		return conceptId;
+	}
+
+	private IRI iri() throws UnsupportedSyntax {
+		skipWhitespace();
+		if (position >= input.length()) {
+			throw new UnsupportedSyntax();
+		}
+		char first = input.charAt(position);
+		if (first == ':') {
+			int start = ++position;
+			while (position < input.length() && isNameChar(input.charAt(position))) {
+				position++;
+			}
+			if (position == start) {
+				throw new UnsupportedSyntax();
+			}
+			return IRI.create(SNOMED_CORE_COMPONENTS_URI + input.substring(start, position));
+		} else if (first == '<') {
+			int end = input.indexOf('>', position);
+			if (end == -1) {
+				throw new UnsupportedSyntax();
+			}
+			IRI iri = IRI.create(input.substring(position + 1, end));
+			position = end + 1;
+			return iri;
+		}
+		throw new UnsupportedSyntax();
+	}
+
+	private OWLLiteral literal() throws UnsupportedSyntax {
+		skipWhitespace();
+		if (position >= input.length() || input.charAt(position) != '"') {
+			throw new UnsupportedSyntax();
+		}
+		position++;
+		StringBuilder lexicalValue = new StringBuilder();
+		while (true) {
+			if (position >= input.length()) {
+				throw new UnsupportedSyntax();
+			}
+			char c = input.charAt(position++);
+			if (c == '"') {
+				break;
+			}
+			if (c == '\\') {
+				if (position >= input.length()) {
+					throw new UnsupportedSyntax();
+				}
+				c = input.charAt(position++);
+			}
+			lexicalValue.append(c);
+		}
+		if (input.startsWith("^^", position)) {
+			position += 2;
+			return factory.getOWLLiteral(lexicalValue.toString(), factory.getOWLDatatype(datatypeIri()));
+		}
+		if (position < input.length() && input.charAt(position) == '@') {
+			// Language tags are not used in SNOMED axioms
+			throw new UnsupportedSyntax();
+		}
+		return factory.getOWLLiteral(lexicalValue.toString(), "");
+	}
+
+	private IRI datatypeIri() throws UnsupportedSyntax {
+		if (input.startsWith(XSD_PREFIX, position)) {
+			int start = position + XSD_PREFIX.length();
+			position = start;
+			while (position < input.length() && isNameChar(input.charAt(position))) {
+				position++;
+			}
+			if (position == start) {
+				throw new UnsupportedSyntax();
+			}
+			return IRI.create(Namespaces.XSD + input.substring(start, position));
+		} else if (position < input.length() && input.charAt(position) == '<') {
+			return iri();
+		}
+		throw new UnsupportedSyntax();
+	}
+
+	private String keyword() throws UnsupportedSyntax {
+		skipWhitespace();
+		int start = position;
+		while (position < input.length() && Character.isLetter(input.charAt(position))) {
+			position++;
+		}
+		if (position == start) {
+			throw new UnsupportedSyntax();
+		}
+		return input.substring(start, position);
+	}
+
+	private boolean nextIsKeyword(String keyword) {
+		skipWhitespace();
+		return input.startsWith(keyword, position);
+	}
+
+	private boolean nextIs(char c) {
+		skipWhitespace();
+		return position < input.length() && input.charAt(position) == c;
+	}
+
+	private void expect(char c) throws UnsupportedSyntax {
+		if (!nextIs(c)) {
+			throw new UnsupportedSyntax();
+		}
+		position++;
+	}
+
+	private void skipWhitespace() {
+		while (position < input.length() && Character.isWhitespace(input.charAt(position))) {
+			position++;
+		}
+	}
+
+	private static boolean isNameChar(char c) {
+		return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.';
+	}
+
+	private static final class UnsupportedSyntax extends Exception {
+		UnsupportedSyntax() {
+			// Stack trace not needed, this is used for control flow only
+			super(null, null, false, false);
+		}
+	}
+
+}
@@ -39,24 +39,30 @@ public class SnomedTaxonomy {
 	private Set<Long> allConceptIds = new LongOpenHashSet();
 	private Map<Long, Long> conceptModuleMap = new Long2ObjectOpenHashMap<>();
 	private Set<Long> fullyDefinedConceptIds = new LongOpenHashSet();
-	private Map<Long, Relationship> statedRelationshipsById = new HashMap<>();
-	private Map<Long, Relationship> inferredRelationshipsById = new HashMap<>();
-	private Map<Long, Set<Relationship>> conceptStatedRelationshipMap = new Long2ObjectOpenHashMap<>();
-	private Map<Long, Set<Relationship>> conceptInferredRelationshipMap = new Long2ObjectOpenHashMap<>();
-	private Map<Long, Set<Relationship>> conceptInactiveInferredRelationshipMap = new Long2ObjectOpenHashMap<>();
+	private RelationshipStore statedRelationships = new MapRelationshipStore(true);
+	private RelationshipStore inferredRelationships = new MapRelationshipStore(true);
+	private RelationshipStore inactiveInferredRelationships = new MapRelationshipStore(false);
 
-	// Axiom maps must be synchronised because international and extension refset members are loaded in parallel
+	// Axiom maps must be synchronised because international and extension refset members are loaded and deserialised in parallel
 	private Map<Long, List<OWLAxiom>> conceptAxiomMap = Long2ObjectMaps.synchronize(new Long2ObjectOpenHashMap<>());
 	private Map<String, OWLAxiom> axiomsById = new ConcurrentHashMap<>();
 
 	private Map<Long, Set<Long>> inferredSubTypesMap = new Long2ObjectOpenHashMap<>();
 
+	// Built when first used then kept up to date as stated relationships change
+	private StatedIsAIndex statedIsAIndex;
+
 	// Ungrouped roles map must be synchronised because international and extension refset members are loaded in parallel. The US Edition package contains the full MRCM.
 	private Map<Long, Set<Long>> ungroupedRolesByContentType = Long2ObjectMaps.synchronize(new Long2ObjectOpenHashMap<>());
 	private Set<Long> inactivatedConcepts = new LongOpenHashSet();
 	private Map<Long, Set<Description>> conceptDescriptionMap = Long2ObjectMaps.synchronize(new Long2ObjectOpenHashMap<>());
 	private Map<Long, Description> descriptionMap = Long2ObjectMaps.synchronize(new Long2ObjectOpenHashMap<>());
 
+	// Set in a copy-on-write view, these hold the ids of concepts whose axiom list or subtype set has been copied from the base taxonomy
+	private LongOpenHashSet copiedAxiomConceptIds;
+	private LongOpenHashSet copiedSubTypeConceptIds;
+	private SnomedTaxonomy copyOnWriteBase;
+
 	public static final Set<Long> DEFAULT_NEVER_GROUPED_ROLE_IDS = Collections.unmodifiableSet(Sets.newHashSet(
 			parseLong(Concepts.PART_OF),
 			parseLong(Concepts.LATERALITY),
@@ -76,76 +82,120 @@ public class SnomedTaxonomy {
 	 * @return the active source relationships.
 	 */
 	public Collection<Relationship> getStatedRelationships(Long conceptId) {
-		return conceptStatedRelationshipMap.getOrDefault(conceptId, Collections.emptySet());
+		return statedRelationships.getRelationships(conceptId);
 	}
 	
 	public Set<Relationship> getInferredRelationships(Long conceptId) {
-		return conceptInferredRelationshipMap.getOrDefault(conceptId, Collections.emptySet());
+		return inferredRelationships.getRelationships(conceptId);
 	}
 
 	public Set<Relationship> getInactiveInferredRelationships(Long conceptId) {
-		return conceptInactiveInferredRelationshipMap.getOrDefault(conceptId, Collections.emptySet());
+		return inactiveInferredRelationships.getRelationships(conceptId);
 	}
 
 	public synchronized void addOrModifyRelationship(boolean stated, long conceptId, Relationship relationship) {
-		// Have we seen this relationship before ie we need to modify it?
-		Relationship existingRelationship = stated ? statedRelationshipsById.get(relationship.getRelationshipId())
-				: inferredRelationshipsById.get(relationship.getRelationshipId());
-
-		if (existingRelationship != null) {
-			// Only effectiveTime and groupId are mutable
-			existingRelationship.setEffectiveTime(relationship.getEffectiveTime());
-			existingRelationship.setGroup(relationship.getGroup());
-		} else {
-			// add relationship
-			if (stated) {
-				conceptStatedRelationshipMap.computeIfAbsent(conceptId, k -> new HashSet<>()).add(relationship);
-				statedRelationshipsById.put(relationship.getRelationshipId(), relationship);
-			} else {
-				conceptInferredRelationshipMap.computeIfAbsent(conceptId, k -> new HashSet<>()).add(relationship);
-				inferredRelationshipsById.put(relationship.getRelationshipId(), relationship);
-				if (relationship.getTypeId() == Concepts.IS_A_LONG) {
-					inferredSubTypesMap.computeIfAbsent(relationship.getDestinationId(), k -> new HashSet<>()).add(conceptId);
-				}
+		if (stated) {
+			if (statedRelationships.addOrModifyRelationship(conceptId, relationship) && relationship.getTypeId() == Concepts.IS_A_LONG) {
+				updateStatedIsAIndex(conceptId);
 			}
+		} else if (inferredRelationships.addOrModifyRelationship(conceptId, relationship) && relationship.getTypeId() == Concepts.IS_A_LONG) {
+			getWritableSubTypeIds(relationship.getDestinationId()).add(conceptId);
 		}
 	}
 
+	private Set<Long> getWritableSubTypeIds(long conceptId) {
+		Set<Long> subTypeIds = inferredSubTypesMap.computeIfAbsent(conceptId, k -> new HashSet<>());
+		if (copiedSubTypeConceptIds != null && copiedSubTypeConceptIds.add(conceptId)) {
+			subTypeIds = new HashSet<>(subTypeIds);
+			inferredSubTypesMap.put(conceptId, subTypeIds);
+		}
+		return subTypeIds;
+	}
+
 	public synchronized void addInactiveInferredRelationship(long conceptId, Relationship relationship) {
-		conceptInactiveInferredRelationshipMap.computeIfAbsent(conceptId, k -> new HashSet<>()).add(relationship);
+		inactiveInferredRelationships.addRelationship(conceptId, relationship);
 	}
 
-	public Set<Long> getDescendants(Long ancestor) {
-		Set<Long> descendants = new HashSet<>();
-		for (Long conceptId : allConceptIds) {
-			if (conceptHasAncestor(conceptId, ancestor)) {
+	/**
+	 * Moves all relationship rows into the given type of store.
+	 * Setting {@link RelationshipStoreType#COLUMNAR} before loading RF2 loads the rows straight into the columnar store.
+	 * The columnar store sorts its rows when first read, later changes are still accepted but are held per concept in a less compact form.
+	 * @param relationshipStoreType the type of store to use.
+	 */
+	public synchronized void setRelationshipStoreType(RelationshipStoreType relationshipStoreType) {
+		if (relationshipStoreType == getRelationshipStoreType()) {
+			return;
+		}
+		if (relationshipStoreType == RelationshipStoreType.COLUMNAR) {
+			statedRelationships = ColumnarRelationshipStore.copyOf(statedRelationships, true);
+			inferredRelationships = ColumnarRelationshipStore.copyOf(inferredRelationships, true);
+			inactiveInferredRelationships = ColumnarRelationshipStore.copyOf(inactiveInferredRelationships, false);
+		} else {
+			statedRelationships = toMapStore(statedRelationships, true);
+			inferredRelationships = toMapStore(inferredRelationships, true);
+			inactiveInferredRelationships = toMapStore(inactiveInferredRelationships, false);
+		}
+	}
+
+	private static RelationshipStore toMapStore(RelationshipStore source, boolean indexById) {
+		MapRelationshipStore mapStore = new MapRelationshipStore(indexById);
+		for (long conceptId : source.getConceptIds()) {
+			for (Relationship relationship : source.getRelationships(conceptId)) {
+				mapStore.addRelationship(conceptId, relationship);
+			}
+		}
+		return mapStore;
+	}
+
+	RelationshipStore getStatedRelationshipStore() {
+		return statedRelationships;
+	}
+
+	RelationshipStore getInferredRelationshipStore() {
+		return inferredRelationships;
+	}
+
+	RelationshipStore getInactiveInferredRelationshipStore() {
+		return inactiveInferredRelationships;
+	}
+
+	public RelationshipStoreType getRelationshipStoreType() {
+		return statedRelationships instanceof ColumnarRelationshipStore ? RelationshipStoreType.COLUMNAR : RelationshipStoreType.MAP;
+	}
+
+	/**
+	 * Returns the active concepts below the given concept in the stated IS-A hierarchy, following all parents of each concept.
+	 * @return a new set which the caller may change.
+	 */
+	public synchronized Set<Long> getDescendants(Long ancestor) {
+		LongOpenHashSet descendants = new LongOpenHashSet();
+		for (long conceptId : getStatedIsAIndex().getDescendants(ancestor)) {
+			if (conceptId != Concepts.ROOT_LONG && allConceptIds.contains(conceptId)) {
 				descendants.add(conceptId);
 			}
 		}
 		return descendants;
 	}
 
-	private boolean conceptHasAncestor(long conceptId, long ancestor) {
-		return conceptHasAncestor(conceptId, ancestor, 0);
+	/**
+	 * Returns all concepts above the given concept in the stated IS-A hierarchy.
+	 * @return a new set which the caller may change.
+	 */
+	public synchronized Set<Long> getAncestors(Long conceptId) {
+		return getStatedIsAIndex().getAncestors(conceptId);
 	}
 
-	private boolean conceptHasAncestor(long conceptId, long ancestor, long depth) {
-		if (conceptId == Concepts.ROOT_LONG) {
-			return false;
-		}
-		
-		//TODO Temporary code to find out why we're seeing a recursive hierarchy
-		if (depth > 30) {
-			throw new RuntimeException("Depth limit exceeded searching for potential ancestor " + ancestor + " of concept " + conceptId ); 
+	private StatedIsAIndex getStatedIsAIndex() {
+		if (statedIsAIndex == null) {
+			statedIsAIndex = StatedIsAIndex.build(statedRelationships);
 		}
+		return statedIsAIndex;
+	}
 
-		// Check all ancestors for the attribute concept
-		for (Relationship relationship : conceptStatedRelationshipMap.getOrDefault(conceptId, Collections.emptySet())) {
-			if (relationship.getTypeId() == Concepts.IS_A_LONG) {
-				return relationship.getDestinationId() == ancestor || conceptHasAncestor(relationship.getDestinationId(), ancestor, ++depth);
-			}
+	private void updateStatedIsAIndex(long conceptId) {
+		if (statedIsAIndex != null) {
+			statedIsAIndex.setParents(conceptId, StatedIsAIndex.getParentIds(statedRelationships, conceptId));
 		}
-		return false;
 	}
 
 	public Set<Long> getSuperTypeIds(long conceptId) {
@@ -154,7 +204,7 @@ public class SnomedTaxonomy {
 		}
 
 		Set<Long> superTypes = new HashSet<>();
-		for (Relationship relationship : conceptStatedRelationshipMap.get(conceptId)) {
+		for (Relationship relationship : statedRelationships.getRelationships(conceptId)) {
 			if (relationship.getTypeId() == Concepts.IS_A_LONG) {
 				superTypes.add(relationship.getDestinationId());
 			}
@@ -163,7 +213,7 @@ public class SnomedTaxonomy {
 	}
 
 	public Collection<Relationship> getNonIsAStatements(Long conceptId) {
-		return conceptStatedRelationshipMap.getOrDefault(conceptId, Collections.emptySet()).stream().filter(f -> f.getTypeId() != Concepts.IS_A_LONG).collect(Collectors.toList());
+		return statedRelationships.getRelationships(conceptId).stream().filter(f -> f.getTypeId() != Concepts.IS_A_LONG).collect(Collectors.toList());
 	}
 
 	public Set<Long> getSubTypeIds(long conceptId) {
@@ -193,17 +243,17 @@ public class SnomedTaxonomy {
 	}
 
 	public Collection<Relationship> getInferredRelationships(long conceptId) {
-		return conceptInferredRelationshipMap.getOrDefault(conceptId, Collections.emptySet());
+		return inferredRelationships.getRelationships(conceptId);
 	}
 
 	public synchronized void removeRelationship(boolean stated, String sourceId, String relationshipIdStr) {
 		long relationshipId = parseLong(relationshipIdStr);
 		if (stated) {
-			getStatedRelationships(parseLong(sourceId)).removeIf(relationship -> relationshipId == relationship.getRelationshipId());
-			statedRelationshipsById.remove(relationshipId);
+			long conceptId = parseLong(sourceId);
+			statedRelationships.removeRelationship(conceptId, relationshipId);
+			updateStatedIsAIndex(conceptId);
 		} else {
-			getInferredRelationships(parseLong(sourceId)).removeIf(relationship -> relationshipId == relationship.getRelationshipId());
-			inferredRelationshipsById.remove(relationshipId);
+			inferredRelationships.removeRelationship(parseLong(sourceId), relationshipId);
 		}
 	}
 
@@ -231,11 +281,11 @@ public class SnomedTaxonomy {
 		return ontologyHeader;
 	}
 
-	public void addAxiom(String referencedComponentId, String axiomId, OWLAxiom owlAxiom) {
+	public synchronized void addAxiom(String referencedComponentId, String axiomId, OWLAxiom owlAxiom) {
 		// Manually remove any existing axiom by axiomId.
 		// We can't use the natural behaviour of a Java Set because the OWLAxiom does not use the axiomId in the equals method.
 		OWLAxiom existingAxiomVersion = axiomsById.get(axiomId);
-		List<OWLAxiom> conceptAxioms = conceptAxiomMap.computeIfAbsent(parseLong(referencedComponentId), id -> new ArrayList<>());
+		List<OWLAxiom> conceptAxioms = getWritableConceptAxioms(parseLong(referencedComponentId));
 		if (existingAxiomVersion != null) {
 			conceptAxioms.remove(existingAxiomVersion);
 		}
@@ -243,14 +293,23 @@ public class SnomedTaxonomy {
 		axiomsById.put(axiomId, owlAxiom);
 	}
 
-	public void removeAxiom(String referencedComponentId, String id) {
+	public synchronized void removeAxiom(String referencedComponentId, String id) {
 		// Find the previously loaded axiom by id so that it can be removed from the set of axioms on the concept
 		OWLAxiom owlAxiomToRemove = axiomsById.remove(id);
 		if (owlAxiomToRemove != null) {
-			conceptAxiomMap.get(parseLong(referencedComponentId)).remove(owlAxiomToRemove);
+			getWritableConceptAxioms(parseLong(referencedComponentId)).remove(owlAxiomToRemove);
 		}
 	}
 
+	private List<OWLAxiom> getWritableConceptAxioms(long conceptId) {
+		List<OWLAxiom> conceptAxioms = conceptAxiomMap.computeIfAbsent(conceptId, id -> new ArrayList<>());
+		if (copiedAxiomConceptIds != null && copiedAxiomConceptIds.add(conceptId)) {
+			conceptAxioms = new ArrayList<>(conceptAxioms);
+			conceptAxiomMap.put(conceptId, conceptAxioms);
+		}
+		return conceptAxioms;
+	}
+
 	void addDescription(String conceptId, String id, String term, String typeId, String languageCode) {
 		Description description = new Description(id, term, typeId, languageCode);
 		conceptDescriptionMap.computeIfAbsent(parseLong(conceptId), key -> new HashSet<>()).add(description);
@@ -315,8 +374,30 @@ public class SnomedTaxonomy {
 		return inactivatedConcepts;
 	}
 
+	/**
+	 * @deprecated use {@link #getStatedRelationshipCount()} or {@link #getStatedRelationships(Long)}.
+	 * When the columnar relationship store is in use the map returned is a copy.
+	 */
+	@Deprecated
 	public Map<Long, Relationship> getStatedRelationships() {
-		return statedRelationshipsById;
+		if (statedRelationships instanceof MapRelationshipStore) {
+			return ((MapRelationshipStore) statedRelationships).getRelationshipsById();
+		}
+		Map<Long, Relationship> relationshipsById = new HashMap<>();
+		for (long conceptId : statedRelationships.getConceptIds()) {
+			for (Relationship relationship : statedRelationships.getRelationships(conceptId)) {
+				relationshipsById.put(relationship.getRelationshipId(), relationship);
+			}
+		}
+		return relationshipsById;
+	}
+
+	public int getStatedRelationshipCount() {
+		return statedRelationships.getRelationshipCount();
+	}
+
+	public int getInferredRelationshipCount() {
+		return inferredRelationships.getRelationshipCount();
 	}
 
 	public Long getAxiomCount() {
@@ -329,4 +410,69 @@ public class SnomedTaxonomy {
 		return axiomsById;
 	}
 
+	/**
+	 * Creates a taxonomy which starts with the same content as this one and can be changed independently,
+	 * for example by loading an RF2 delta into it.
+	 * Relationships, axiom lists and subtype sets are shared with this taxonomy until they are changed in the view.
+	 * Concept sets and maps are copied. Descriptions are shared.
+	 *
+	 * This taxonomy must not be changed while views of it are in use, any number of views may be used concurrently.
+	 * @return the new view.
+	 */
+	public synchronized SnomedTaxonomy createCopyOnWriteView() {
+		SnomedTaxonomy view = new SnomedTaxonomy();
+		view.ontologyNamespaces = new HashMap<>(ontologyNamespaces);
+		view.ontologyHeader = new HashMap<>(ontologyHeader);
+		view.allConceptIds = new LongOpenHashSet(allConceptIds);
+		view.conceptModuleMap = new Long2ObjectOpenHashMap<>(conceptModuleMap);
+		view.fullyDefinedConceptIds = new LongOpenHashSet(fullyDefinedConceptIds);
+		view.statedRelationships = new CopyOnWriteRelationshipStore(statedRelationships);
+		view.inferredRelationships = new CopyOnWriteRelationshipStore(inferredRelationships);
+		view.inactiveInferredRelationships = new CopyOnWriteRelationshipStore(inactiveInferredRelationships);
+		view.conceptAxiomMap = Long2ObjectMaps.synchronize(new Long2ObjectOpenHashMap<>(conceptAxiomMap));
+		view.axiomsById = new ConcurrentHashMap<>(axiomsById);
+		view.inferredSubTypesMap = new Long2ObjectOpenHashMap<>(inferredSubTypesMap);
+		ungroupedRolesByContentType.forEach((contentType, attributeIds) -> view.ungroupedRolesByContentType.put(contentType, new HashSet<>(attributeIds)));
+		view.inactivatedConcepts = new LongOpenHashSet(inactivatedConcepts);
+		view.conceptDescriptionMap = conceptDescriptionMap;
+		view.descriptionMap = descriptionMap;
+		view.copiedAxiomConceptIds = new LongOpenHashSet();
+		view.copiedSubTypeConceptIds = new LongOpenHashSet();
+		view.copyOnWriteBase = this;
+		return view;
+	}
+
+	/**
+	 * For a view created by {@link #createCopyOnWriteView()} returns the ids of concepts whose active status, definition status,
+	 * stated relationships or axioms may differ from the base taxonomy.
+	 * Concepts which were changed and then changed back again may be included.
+	 * @throws IllegalStateException if this taxonomy is not a copy-on-write view.
+	 */
+	public synchronized Set<Long> getChangedConceptIds() {
+		if (copyOnWriteBase == null) {
+			throw new IllegalStateException("Changed concepts are only tracked in a copy-on-write view.");
+		}
+		LongOpenHashSet changed = new LongOpenHashSet(((CopyOnWriteRelationshipStore) statedRelationships).getChangedConceptIds());
+		changed.addAll(copiedAxiomConceptIds);
+		addSymmetricDifference(allConceptIds, copyOnWriteBase.allConceptIds, changed);
+		addSymmetricDifference(fullyDefinedConceptIds, copyOnWriteBase.fullyDefinedConceptIds, changed);
+		return changed;
+	}
+
+	private static void addSymmetricDifference(Set<Long> a, Set<Long> b, Set<Long> target) {
+		if (a.size() == b.size() && a.equals(b)) {
+			return;
+		}
+		for (Long id : a) {
+			if (!b.contains(id)) {
+				target.add(id);
+			}
+		}
+		for (Long id : b) {
+			if (!a.contains(id)) {
+				target.add(id);
+			}
+		}
+	}
+
 }
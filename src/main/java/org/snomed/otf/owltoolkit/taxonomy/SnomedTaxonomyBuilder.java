@@ -24,7 +24,10 @@ import org.slf4j.LoggerFactory;
 import org.snomed.otf.owltoolkit.util.InputStreamSet;
 import org.springframework.util.StopWatch;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.Set;
 
 import static org.snomed.otf.owltoolkit.constants.Concepts.*;
 
@@ -82,16 +85,29 @@ public class SnomedTaxonomyBuilder {
 		return build(snomedRf2SnapshotArchives, currentReleaseRf2DeltaArchive, null, null, includeDescriptions);
 	}
 
+	public SnomedTaxonomy build(
+			InputStreamSet snomedRf2SnapshotArchives,
+			InputStream currentReleaseRf2DeltaArchive,
+			boolean includeDescriptions,
+			RelationshipStoreType relationshipStoreType) throws ReleaseImportException {
+
+		return build(snomedRf2SnapshotArchives, currentReleaseRf2DeltaArchive, null, null, includeDescriptions, relationshipStoreType);
+	}
+
 	public SnomedTaxonomy buildWithAxiomRefset(InputStreamSet snomedRf2OwlSnapshotArchive) throws ReleaseImportException {
 		
 		StopWatch stopWatch = new StopWatch();
 		stopWatch.start();
 
-		SnomedTaxonomyLoader snomedTaxonomyLoader = new SnomedTaxonomyLoader();
+		SnomedTaxonomyLoader snomedTaxonomyLoader = new SnomedTaxonomyLoader(null, null, true);
 		
 		ReleaseImporter releaseImporter = new ReleaseImporter();
-		releaseImporter.loadEffectiveSnapshotReleaseFileStreams(snomedRf2OwlSnapshotArchive.getFileInputStreams(), OWL_SNAPSHOT_LOADING_PROFILE, snomedTaxonomyLoader);
-		snomedTaxonomyLoader.reportErrors();
+		try {
+			releaseImporter.loadEffectiveSnapshotReleaseFileStreams(snomedRf2OwlSnapshotArchive.getFileInputStreams(), OWL_SNAPSHOT_LOADING_PROFILE, snomedTaxonomyLoader);
+			snomedTaxonomyLoader.reportErrors();
+		} finally {
+			snomedTaxonomyLoader.abortAxiomDeserialisation();
+		}
 		logger.info("Loaded release snapshot");
 		logger.info("Time taken deserialising axioms {}s", (snomedTaxonomyLoader.getTimeTakenDeserialisingAxioms() / 1000.00));
 		
@@ -112,41 +128,129 @@ public class SnomedTaxonomyBuilder {
 			ComponentFactory deltaComponentFactoryTap,
 			boolean includeDescriptions) throws ReleaseImportException {
 
+		return build(snomedRf2SnapshotArchives, currentReleaseRf2DeltaArchive, snapshotComponentFactoryTap, deltaComponentFactoryTap, includeDescriptions,
+				RelationshipStoreType.MAP);
+	}
+
+	/**
+	 * Builds a SnomedTaxonomy from RF2 snapshot archives and an optional delta.
+	 * @param relationshipStoreType how relationship rows are held, rows are loaded straight into this type of store.
+	 * {@link RelationshipStoreType#COLUMNAR} uses much less heap for large releases at the cost of creating Relationship objects on access.
+	 */
+	public SnomedTaxonomy build(
+			InputStreamSet snomedRf2SnapshotArchives,
+			InputStream currentReleaseRf2DeltaArchive,
+			ComponentFactory snapshotComponentFactoryTap,
+			ComponentFactory deltaComponentFactoryTap,
+			boolean includeDescriptions,
+			RelationshipStoreType relationshipStoreType) throws ReleaseImportException {
+
 		StopWatch stopWatch = new StopWatch();
 		stopWatch.start();
 
-		SnomedTaxonomyLoader snomedTaxonomyLoader = new SnomedTaxonomyLoader(snapshotComponentFactoryTap, deltaComponentFactoryTap);
+		SnomedTaxonomyLoader snomedTaxonomyLoader = new SnomedTaxonomyLoader(snapshotComponentFactoryTap, deltaComponentFactoryTap, true);
+		snomedTaxonomyLoader.getSnomedTaxonomy().setRelationshipStoreType(relationshipStoreType);
 		
 		ReleaseImporter releaseImporter = new ReleaseImporter();
-		releaseImporter.loadEffectiveSnapshotReleaseFileStreams(
-				snomedRf2SnapshotArchives.getFileInputStreams(),
-				includeDescriptions ? SNAPSHOT_LOADING_PROFILE_PLUS_LANGUAGE : SNAPSHOT_LOADING_PROFILE,
-				snomedTaxonomyLoader);
-		snomedTaxonomyLoader.reportErrors();
+		try {
+			releaseImporter.loadEffectiveSnapshotReleaseFileStreams(
+					snomedRf2SnapshotArchives.getFileInputStreams(),
+					includeDescriptions ? SNAPSHOT_LOADING_PROFILE_PLUS_LANGUAGE : SNAPSHOT_LOADING_PROFILE,
+					snomedTaxonomyLoader);
+			snomedTaxonomyLoader.reportErrors();
+		} finally {
+			// Stops the axiom deserialisers if the import failed before they were waited for
+			snomedTaxonomyLoader.abortAxiomDeserialisation();
+		}
 		logger.info("Loaded release snapshot");
 		logger.info("Time taken deserialising axioms {}s", (snomedTaxonomyLoader.getTimeTakenDeserialisingAxioms() / 1000.00));
 
 		if (currentReleaseRf2DeltaArchive != null) {
-			logger.info("Loading delta");
-			snomedTaxonomyLoader.startLoadingDelta();
+			loadDelta(snomedTaxonomyLoader, releaseImporter, currentReleaseRf2DeltaArchive, includeDescriptions);
+		} else {
+			logger.info("Loading complete.");
+		}
+
+		return completeBuild(snomedTaxonomyLoader.getSnomedTaxonomy(), relationshipStoreType, stopWatch);
+	}
+
+	/**
+	 * Builds a SnomedTaxonomy from RF2 snapshot archives and an optional delta, without descriptions.
+	 * The taxonomy of the snapshot archives is read from the cache if present, otherwise it is built from RF2 and added to the cache.
+	 * The delta is then loaded on top.
+	 * @param snapshotCache cache of taxonomies keyed by the content of the snapshot archives.
+	 */
+	public SnomedTaxonomy build(
+			Set<File> snomedRf2SnapshotArchives,
+			InputStream currentReleaseRf2DeltaArchive,
+			SnomedTaxonomyCache snapshotCache,
+			RelationshipStoreType relationshipStoreType) throws ReleaseImportException {
+
+		StopWatch stopWatch = new StopWatch();
+		stopWatch.start();
+
+		String cacheKey;
+		try {
+			cacheKey = snapshotCache.getKey(snomedRf2SnapshotArchives);
+		} catch (IOException e) {
+			throw new ReleaseImportException("Failed to read snapshot archives.", e);
+		}
+		SnomedTaxonomy snomedTaxonomy = snapshotCache.load(cacheKey, relationshipStoreType);
+		if (snomedTaxonomy == null) {
+			try (InputStreamSet snapshotInputStreams = new InputStreamSet(snomedRf2SnapshotArchives)) {
+				snomedTaxonomy = build(snapshotInputStreams, null, false, relationshipStoreType);
+			} catch (IOException e) {
+				throw new ReleaseImportException("Failed to read snapshot archives.", e);
+			}
+			snapshotCache.store(cacheKey, snomedTaxonomy);
+		}
+
+		if (currentReleaseRf2DeltaArchive != null) {
+			applyDelta(snomedTaxonomy, currentReleaseRf2DeltaArchive);
+		}
+
+		return completeBuild(snomedTaxonomy, relationshipStoreType, stopWatch);
+	}
 
+	/**
+	 * Loads an RF2 delta, without descriptions, into an existing taxonomy.
+	 * Intended for use with {@link SnomedTaxonomy#createCopyOnWriteView()} so that the same base can be used with different deltas.
+	 */
+	public void applyDelta(SnomedTaxonomy snomedTaxonomy, InputStream rf2DeltaArchive) throws ReleaseImportException {
+		SnomedTaxonomyLoader snomedTaxonomyLoader = new SnomedTaxonomyLoader(snomedTaxonomy, true);
+		loadDelta(snomedTaxonomyLoader, new ReleaseImporter(), rf2DeltaArchive, false);
+	}
+
+	private void loadDelta(SnomedTaxonomyLoader snomedTaxonomyLoader, ReleaseImporter releaseImporter, InputStream currentReleaseRf2DeltaArchive,
+			boolean includeDescriptions) throws ReleaseImportException {
+
+		logger.info("Loading delta");
+		snomedTaxonomyLoader.startLoadingDelta();
+
+		try {
 			releaseImporter.loadDeltaReleaseFiles(
 					currentReleaseRf2DeltaArchive,
 					includeDescriptions ? DELTA_LOADING_PROFILE_PLUS_LANGUAGE : DELTA_LOADING_PROFILE,
 					snomedTaxonomyLoader);
 			snomedTaxonomyLoader.reportErrors();
-			logger.info("Loaded delta");
-			logger.info("Time taken deserialising axioms {}s", (snomedTaxonomyLoader.getTimeTakenDeserialisingAxioms() / 1000));
-		} else {
-			logger.info("Loading complete.");
+		} finally {
+			snomedTaxonomyLoader.abortAxiomDeserialisation();
+		}
+		logger.info("Loaded delta");
+		logger.info("Time taken deserialising axioms {}s", (snomedTaxonomyLoader.getTimeTakenDeserialisingAxioms() / 1000.00));
+	}
+
+	private SnomedTaxonomy completeBuild(SnomedTaxonomy snomedTaxonomy, RelationshipStoreType relationshipStoreType, StopWatch stopWatch) {
+		if (snomedTaxonomy.getRelationshipStoreType() != relationshipStoreType) {
+			logger.info("Moving relationships into {} store", relationshipStoreType);
+			snomedTaxonomy.setRelationshipStoreType(relationshipStoreType);
 		}
 
 		stopWatch.stop();
 		logger.info("SnomedTaxonomy loaded in {} seconds", stopWatch.getTotalTimeSeconds());
 
-		SnomedTaxonomy snomedTaxonomy = snomedTaxonomyLoader.getSnomedTaxonomy();
 		logger.info("{} concepts loaded", snomedTaxonomy.getAllConceptIds().size());
-		logger.info("{} active stated relationships loaded", snomedTaxonomy.getStatedRelationships().size());
+		logger.info("{} active stated relationships loaded", snomedTaxonomy.getStatedRelationshipCount());
 		logger.info("{} active axioms loaded", snomedTaxonomy.getAxiomCount());
 		return snomedTaxonomy;
 	}
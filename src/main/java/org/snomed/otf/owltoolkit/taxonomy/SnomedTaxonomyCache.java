@@ -0,0 +1,155 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.taxonomy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Directory of binary SnomedTaxonomy snapshots keyed by a hash of the RF2 snapshot archives they were built from.
+ * Used to skip RF2 parsing when the same base release is loaded repeatedly.
+ */
+public class SnomedTaxonomyCache {
+
+	private static final String FILE_PREFIX = "snomed-taxonomy-";
+	private static final String FILE_SUFFIX = ".bin";
+
+	private final File cacheDirectory;
+	private final SnomedTaxonomySerialiser serialiser = new SnomedTaxonomySerialiser();
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	public SnomedTaxonomyCache(File cacheDirectory) {
+		this.cacheDirectory = cacheDirectory;
+	}
+
+	/**
+	 * Creates a key from the content of the given archives and the serialisation format version.
+	 * The order of the archives does not affect the key.
+	 */
+	public String getKey(Collection<File> snapshotArchives) throws IOException {
+		List<String> archiveHashes = new ArrayList<>();
+		for (File archive : snapshotArchives) {
+			try (InputStream inputStream = new FileInputStream(archive)) {
+				archiveHashes.add(toHex(sha256(inputStream)));
+			}
+		}
+		Collections.sort(archiveHashes);
+		MessageDigest digest = newDigest();
+		digest.update(("format-" + SnomedTaxonomySerialiser.FORMAT_VERSION).getBytes());
+		for (String archiveHash : archiveHashes) {
+			digest.update(archiveHash.getBytes());
+		}
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * @return the cached taxonomy or null if there is no usable entry for this key.
+	 */
+	public SnomedTaxonomy load(String key) {
+		return load(key, RelationshipStoreType.MAP);
+	}
+
+	/**
+	 * @param relationshipStoreType the type of store the relationship rows are loaded into.
+	 * @return the cached taxonomy or null if there is no usable entry for this key.
+	 */
+	public SnomedTaxonomy load(String key, RelationshipStoreType relationshipStoreType) {
+		File file = getFile(key);
+		if (!file.isFile()) {
+			logger.info("No cached taxonomy found for key {}", key);
+			return null;
+		}
+		try {
+			long start = System.currentTimeMillis();
+			SnomedTaxonomy snomedTaxonomy = serialiser.read(file, key, relationshipStoreType);
+			if (snomedTaxonomy == null) {
+				logger.info("Cached taxonomy {} was written by a different version, ignoring.", file);
+			} else {
+				logger.info("Loaded cached taxonomy {} in {} seconds", file, (System.currentTimeMillis() - start) / 1000.0);
+			}
+			return snomedTaxonomy;
+		} catch (IOException e) {
+			logger.warn("Failed to read cached taxonomy {}, ignoring.", file, e);
+			return null;
+		}
+	}
+
+	public void store(String key, SnomedTaxonomy snomedTaxonomy) {
+		File file = getFile(key);
+		File tempFile = null;
+		try {
+			Files.createDirectories(cacheDirectory.toPath());
+			tempFile = File.createTempFile(FILE_PREFIX, ".tmp", cacheDirectory);
+			serialiser.write(snomedTaxonomy, key, tempFile);
+			try {
+				Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			logger.info("Stored taxonomy in cache {}", file);
+		} catch (IOException e) {
+			logger.warn("Failed to store taxonomy in cache {}", file, e);
+			if (tempFile != null && !tempFile.delete()) {
+				tempFile.deleteOnExit();
+			}
+		}
+	}
+
+	File getFile(String key) {
+		return new File(cacheDirectory, FILE_PREFIX + key + FILE_SUFFIX);
+	}
+
+	private static byte[] sha256(InputStream inputStream) throws IOException {
+		MessageDigest digest = newDigest();
+		byte[] buffer = new byte[1024 * 64];
+		int read;
+		while ((read = inputStream.read(buffer)) != -1) {
+			digest.update(buffer, 0, read);
+		}
+		return digest.digest();
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available.", e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder builder = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			builder.append(String.format("%02x", b));
+		}
+		return builder.toString();
+	}
+
+}
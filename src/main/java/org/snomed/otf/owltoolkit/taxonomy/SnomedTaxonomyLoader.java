@@ -19,6 +19,7 @@ import com.google.common.base.Strings;
 import org.ihtsdo.otf.snomedboot.ReleaseImportException;
 import org.ihtsdo.otf.snomedboot.factory.ComponentFactory;
 import org.ihtsdo.otf.snomedboot.factory.ImpotentComponentFactory;
+import org.semanticweb.owlapi.apibinding.OWLManager;
 import org.semanticweb.owlapi.model.OWLAxiom;
 import org.semanticweb.owlapi.model.OWLException;
 import org.semanticweb.owlapi.model.OWLOntologyCreationException;
@@ -28,9 +29,16 @@ import org.slf4j.LoggerFactory;
 import org.snomed.otf.owltoolkit.constants.Concepts;
 import org.snomed.otf.owltoolkit.domain.Relationship;
 import org.snomed.otf.owltoolkit.ontology.OntologyService;
+import org.snomed.otf.owltoolkit.ontology.SnomedEntityCache;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 import static java.lang.Long.parseLong;
@@ -38,21 +46,42 @@ import static org.snomed.otf.owltoolkit.constants.Concepts.*;
 
 public class SnomedTaxonomyLoader extends ImpotentComponentFactory {
 
-	private final SnomedTaxonomy snomedTaxonomy = new SnomedTaxonomy();
+	private final SnomedTaxonomy snomedTaxonomy;
 	private static final String ACTIVE = "1";
 
 	private boolean loadingDelta;
 	private final int effectiveTimeNow = Integer.parseInt(new SimpleDateFormat("yyyyMMdd").format(new Date()));
 
-	private Exception owlParsingExceptionThrown;
-	private String owlParsingExceptionMemberId;
+	private volatile Exception owlParsingExceptionThrown;
+	private volatile String owlParsingExceptionMemberId;
+	// Shared by the axiom deserialisers of this loader so that each concept entity is created once per load
+	private final SnomedEntityCache entityCache = new SnomedEntityCache(OWLManager.getOWLDataFactory());
 	private final AxiomDeserialiser axiomDeserialiser;
 	private ComponentFactory deltaComponentFactoryTap;
 	private ComponentFactory snapshotComponentFactoryTap;
+
+	// Parallel axiom deserialisation
+	private static final int AXIOM_QUEUE_CAPACITY = 10_000;
+	private boolean parallelAxiomDeserialisation;
+	private ThreadPoolExecutor axiomDeserialisationExecutor;
+	private final ThreadLocal<AxiomDeserialiser> threadAxiomDeserialiser = ThreadLocal.withInitial(() -> new AxiomDeserialiser(false, entityCache));
+	private final AtomicInteger parallelAxiomsLoaded = new AtomicInteger();
+	private final AtomicLong parallelDeserialisationStart = new AtomicLong();
+	private final AtomicLong parallelDeserialisationEnd = new AtomicLong();
+	private long parallelDeserialisationTime;
+
 	private static final Logger LOGGER = LoggerFactory.getLogger(SnomedTaxonomyLoader.class);
 
 	public SnomedTaxonomyLoader() {
-		axiomDeserialiser = new AxiomDeserialiser();
+		this(new SnomedTaxonomy());
+	}
+
+	/**
+	 * Loads components into an existing taxonomy, for example one read from a {@link SnomedTaxonomyCache}.
+	 */
+	SnomedTaxonomyLoader(SnomedTaxonomy snomedTaxonomy) {
+		this.snomedTaxonomy = snomedTaxonomy;
+		axiomDeserialiser = new AxiomDeserialiser(true, entityCache);
 	}
 
 	/**
@@ -66,6 +95,20 @@ public class SnomedTaxonomyLoader extends ImpotentComponentFactory {
 		this.deltaComponentFactoryTap = deltaComponentFactoryTap;
 	}
 
+	/**
+	 * @param parallelAxiomDeserialisation if true OWL axiom reference set members are handed to a pool of deserialisers, one per core,
+	 * through a bounded queue. Axioms are only guaranteed to be present in the taxonomy after {@link #reportErrors()} has been called.
+	 */
+	SnomedTaxonomyLoader(ComponentFactory snapshotComponentFactoryTap, ComponentFactory deltaComponentFactoryTap, boolean parallelAxiomDeserialisation) {
+		this(snapshotComponentFactoryTap, deltaComponentFactoryTap);
+		this.parallelAxiomDeserialisation = parallelAxiomDeserialisation;
+	}
+
+	SnomedTaxonomyLoader(SnomedTaxonomy snomedTaxonomy, boolean parallelAxiomDeserialisation) {
+		this(snomedTaxonomy);
+		this.parallelAxiomDeserialisation = parallelAxiomDeserialisation;
+	}
+
 	@Override
 	public void newConceptState(String conceptId, String effectiveTime, String active, String moduleId, String definitionStatusId) {
 		long id = parseLong(conceptId);
@@ -181,11 +224,14 @@ public class SnomedTaxonomyLoader extends ImpotentComponentFactory {
 		boolean activeBool = ACTIVE.equals(active);
 		if (refsetId.equals(Concepts.OWL_AXIOM_REFERENCE_SET) && owlParsingExceptionThrown == null) {
 			if (activeBool) {
-				try {
-					addActiveAxiom(id, referencedComponentId, otherValues[0]);
-				} catch (OWLException | OWLRuntimeException | IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
-					owlParsingExceptionThrown = e;
-					owlParsingExceptionMemberId = id;
+				if (parallelAxiomDeserialisation) {
+					String owlExpression = otherValues.length > 0 ? otherValues[0] : null;
+					getAxiomDeserialisationExecutor().execute(() -> {
+						addActiveAxiomRecordingErrors(id, referencedComponentId, owlExpression, threadAxiomDeserialiser.get());
+						recordParallelAxiomLoaded();
+					});
+				} else {
+					addActiveAxiomRecordingErrors(id, referencedComponentId, otherValues.length > 0 ? otherValues[0] : null, axiomDeserialiser);
 				}
 			} else {
 				// Remove the axiom from our active set
@@ -227,15 +273,111 @@ public class SnomedTaxonomyLoader extends ImpotentComponentFactory {
 		}
 	}
 
+	private void addActiveAxiomRecordingErrors(String id, String referencedComponentId, String owlExpression, AxiomDeserialiser deserialiser) {
+		if (owlParsingExceptionThrown != null) {
+			return;
+		}
+		try {
+			if (owlExpression == null) {
+				throw new IllegalArgumentException("OWL expression missing from reference set member.");
+			}
+			addActiveAxiom(id, referencedComponentId, owlExpression, deserialiser);
+		} catch (OWLException | OWLRuntimeException | IllegalArgumentException e) {
+			synchronized (this) {
+				if (owlParsingExceptionThrown == null) {
+					owlParsingExceptionMemberId = id;
+					owlParsingExceptionThrown = e;
+				}
+			}
+		}
+	}
+
 	public void addActiveAxiom(String id, String referencedComponentId, String owlExpression) throws OWLOntologyCreationException {
+		addActiveAxiom(id, referencedComponentId, owlExpression, axiomDeserialiser);
+	}
+
+	private void addActiveAxiom(String id, String referencedComponentId, String owlExpression, AxiomDeserialiser deserialiser) throws OWLOntologyCreationException {
+
 		String owlExpressionString = owlExpression
 				// Replace any remaining outdated role group constants
 				.replace(OntologyService.ROLE_GROUP_OUTDATED_CONSTANT, OntologyService.ROLE_GROUP_SCTID);
 
-		OWLAxiom owlAxiom = axiomDeserialiser.deserialiseAxiom(owlExpressionString, id);
+		OWLAxiom owlAxiom = deserialiser.deserialiseAxiom(owlExpressionString, id);
 		snomedTaxonomy.addAxiom(referencedComponentId, id, owlAxiom);
 	}
 
+	private synchronized ThreadPoolExecutor getAxiomDeserialisationExecutor() {
+		if (axiomDeserialisationExecutor == null) {
+			int threads = Runtime.getRuntime().availableProcessors();
+			AtomicInteger threadNumber = new AtomicInteger();
+			ThreadFactory threadFactory = runnable -> {
+				Thread thread = new Thread(runnable, "axiom-deserialiser-" + threadNumber.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			};
+			// When the queue is full the loading thread deserialises the axiom itself, this limits the number of axiom strings held in memory.
+			axiomDeserialisationExecutor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<>(AXIOM_QUEUE_CAPACITY), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+			parallelDeserialisationStart.set(System.currentTimeMillis());
+			parallelDeserialisationEnd.set(parallelDeserialisationStart.get());
+		}
+		return axiomDeserialisationExecutor;
+	}
+
+	private void recordParallelAxiomLoaded() {
+		parallelDeserialisationEnd.accumulateAndGet(System.currentTimeMillis(), Math::max);
+		int loaded = parallelAxiomsLoaded.incrementAndGet();
+		if (loaded % 10_000 == 0) {
+			LOGGER.info("Deserialised {} axioms...", String.format("%,8d", loaded));
+		}
+	}
+
+	/**
+	 * Waits for all axioms queued for parallel deserialisation to be added to the taxonomy.
+	 */
+	private void completeAxiomDeserialisation() throws ReleaseImportException {
+		ThreadPoolExecutor executor;
+		synchronized (this) {
+			executor = axiomDeserialisationExecutor;
+			axiomDeserialisationExecutor = null;
+		}
+		if (executor != null) {
+			executor.shutdown();
+			try {
+				while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+					LOGGER.info("Waiting for axiom deserialisation to complete...");
+				}
+			} catch (InterruptedException e) {
+				executor.shutdownNow();
+				Thread.currentThread().interrupt();
+				throw new ReleaseImportException("Interrupted while deserialising OWL axioms.", e);
+			}
+			parallelDeserialisationTime += parallelDeserialisationEnd.get() - parallelDeserialisationStart.get();
+		}
+	}
+
+	/**
+	 * Stops parallel axiom deserialisation without waiting for queued axioms, for when an import has failed.
+	 * Does nothing if deserialisation has already completed. Returns once the deserialiser threads have stopped.
+	 */
+	void abortAxiomDeserialisation() {
+		ThreadPoolExecutor executor;
+		synchronized (this) {
+			executor = axiomDeserialisationExecutor;
+			axiomDeserialisationExecutor = null;
+		}
+		if (executor != null) {
+			executor.shutdownNow();
+			try {
+				while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+					LOGGER.info("Waiting for axiom deserialisation to stop...");
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
 	@Override
 	public void newDescriptionState(String id, String effectiveTime, String active, String moduleId, String conceptId, String languageCode, String typeId, String term, String caseSignificanceId) {
 		if (ACTIVE.equals(active)) {
@@ -254,6 +396,7 @@ public class SnomedTaxonomyLoader extends ImpotentComponentFactory {
 	}
 
 	void reportErrors() throws ReleaseImportException {
+		completeAxiomDeserialisation();
 		if (owlParsingExceptionThrown != null) {
 			throw new ReleaseImportException("Failed to parse OWL Axiom in reference set member '" + owlParsingExceptionMemberId + "'",
 					owlParsingExceptionThrown);
@@ -271,9 +414,15 @@ public class SnomedTaxonomyLoader extends ImpotentComponentFactory {
 	void startLoadingDelta() {
 		loadingDelta = true;
 		axiomDeserialiser.clearCounters();
+		parallelAxiomsLoaded.set(0);
+		parallelDeserialisationTime = 0;
 	}
 
+	/**
+	 * @return milliseconds spent deserialising axioms. When deserialising in parallel this is the elapsed time
+	 * between the first axiom being queued and the last axiom being added to the taxonomy.
+	 */
 	long getTimeTakenDeserialisingAxioms() {
-		return axiomDeserialiser.getTimeTakenDeserialisingAxioms();
+		return parallelAxiomDeserialisation ? parallelDeserialisationTime : axiomDeserialiser.getTimeTakenDeserialisingAxioms();
 	}
 }
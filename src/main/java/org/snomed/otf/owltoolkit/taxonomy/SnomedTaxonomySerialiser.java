@@ -0,0 +1,551 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.taxonomy;
+
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+import org.snomed.otf.owltoolkit.domain.Relationship;
+
+import org.semanticweb.owlapi.functional.renderer.FunctionalSyntaxObjectRenderer;
+import org.semanticweb.owlapi.util.DefaultPrefixManager;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.snomed.otf.owltoolkit.ontology.OntologyService.SNOMED_CORE_COMPONENTS_URI;
+
+/**
+ * Writes and reads a SnomedTaxonomy in a versioned binary format.
+ * Descriptions are not included so this is only suitable for taxonomies built without descriptions.
+ *
+ * Axioms within the SNOMED subset of OWL are stored as a tree of tagged nodes and recreated directly using the OWLDataFactory.
+ * Any other axiom is stored in functional syntax and deserialised again when read.
+ * Concepts, relationships and axioms are written in id order and every axiom must have an id,
+ * so the same taxonomy is always written to the same bytes regardless of the order it was loaded in.
+ */
+public class SnomedTaxonomySerialiser {
+
+	public static final int FORMAT_VERSION = 2;
+
+	private static final byte[] MAGIC = "SCTTAXON".getBytes(StandardCharsets.US_ASCII);
+
+	// Axiom tags
+	private static final byte AXIOM_FUNCTIONAL_SYNTAX = 0;
+	private static final byte AXIOM_SUB_CLASS_OF = 1;
+	private static final byte AXIOM_EQUIVALENT_CLASSES = 2;
+	private static final byte AXIOM_SUB_OBJECT_PROPERTY_OF = 3;
+	private static final byte AXIOM_SUB_PROPERTY_CHAIN_OF = 4;
+	private static final byte AXIOM_SUB_DATA_PROPERTY_OF = 5;
+	private static final byte AXIOM_TRANSITIVE_OBJECT_PROPERTY = 6;
+	private static final byte AXIOM_REFLEXIVE_OBJECT_PROPERTY = 7;
+
+	// Class expression tags
+	private static final byte CLASS = 1;
+	private static final byte OBJECT_INTERSECTION_OF = 2;
+	private static final byte OBJECT_SOME_VALUES_FROM = 3;
+	private static final byte DATA_HAS_VALUE = 4;
+
+	// IRI tags
+	private static final byte IRI_SNOMED_ID = 0;
+	private static final byte IRI_FULL = 1;
+
+	private static final Comparator<Relationship> RELATIONSHIP_ORDER = Comparator.comparingLong(Relationship::getRelationshipId)
+			.thenComparingLong(Relationship::getTypeId)
+			.thenComparingLong(Relationship::getDestinationId)
+			.thenComparing(Relationship::getValueAsString, Comparator.nullsFirst(Comparator.naturalOrder()))
+			.thenComparingInt(Relationship::getGroup)
+			.thenComparingInt(Relationship::getUnionGroup)
+			.thenComparing(Relationship::isUniversal)
+			.thenComparingInt(Relationship::getEffectiveTime)
+			.thenComparingLong(Relationship::getModuleId)
+			.thenComparingLong(Relationship::getCharacteristicTypeId);
+
+	private final OWLDataFactory factory = OWLManager.getOWLDataFactory();
+
+	public void write(SnomedTaxonomy snomedTaxonomy, String key, File file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1024 * 64))) {
+			out.write(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			writeString(key, out);
+
+			writeStringMap(snomedTaxonomy.getOntologyNamespaces(), out);
+			writeStringMap(snomedTaxonomy.getOntologyHeader(), out);
+
+			writeLongs(snomedTaxonomy.getAllConceptIds(), out);
+			writeLongs(snomedTaxonomy.getFullyDefinedConceptIds(), out);
+			writeLongs(snomedTaxonomy.getInactivatedConcepts(), out);
+			Map<Long, Long> conceptModuleMap = snomedTaxonomy.getConceptModuleMap();
+			out.writeInt(conceptModuleMap.size());
+			for (Long conceptId : new TreeSet<>(conceptModuleMap.keySet())) {
+				out.writeLong(conceptId);
+				out.writeLong(conceptModuleMap.get(conceptId));
+			}
+
+			writeRelationships(snomedTaxonomy.getStatedRelationshipStore(), out);
+			writeRelationships(snomedTaxonomy.getInferredRelationshipStore(), out);
+			writeRelationships(snomedTaxonomy.getInactiveInferredRelationshipStore(), out);
+
+			Map<Long, Set<Long>> ungroupedRolesByContentType = snomedTaxonomy.getUngroupedRolesByContentType();
+			synchronized (ungroupedRolesByContentType) {
+				out.writeInt(ungroupedRolesByContentType.size());
+				for (Long contentType : new TreeSet<>(ungroupedRolesByContentType.keySet())) {
+					out.writeLong(contentType);
+					writeLongs(ungroupedRolesByContentType.get(contentType), out);
+				}
+			}
+
+			writeAxioms(snomedTaxonomy, out);
+		}
+	}
+
+	/**
+	 * @return the taxonomy or null if the file was written with a different format version or for a different key.
+	 */
+	public SnomedTaxonomy read(File file, String expectedKey) throws IOException {
+		return read(file, expectedKey, RelationshipStoreType.MAP);
+	}
+
+	/**
+	 * @param relationshipStoreType the type of store the relationship rows are read into.
+	 * @return the taxonomy or null if the file was written with a different format version or for a different key.
+	 */
+	public SnomedTaxonomy read(File file, String expectedKey, RelationshipStoreType relationshipStoreType) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1024 * 64))) {
+			return read(in, expectedKey, relationshipStoreType);
+		} catch (EOFException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+			throw new IOException("Taxonomy file " + file + " is truncated or corrupt.", e);
+		}
+	}
+
+	private SnomedTaxonomy read(DataInputStream in, String expectedKey, RelationshipStoreType relationshipStoreType) throws IOException {
+		byte[] magic = new byte[MAGIC.length];
+		in.readFully(magic);
+		if (!Arrays.equals(MAGIC, magic) || in.readInt() != FORMAT_VERSION || !Objects.equals(expectedKey, readString(in))) {
+			return null;
+		}
+
+		SnomedTaxonomy snomedTaxonomy = new SnomedTaxonomy();
+		snomedTaxonomy.setRelationshipStoreType(relationshipStoreType);
+		readStringMap(in).forEach(snomedTaxonomy::addOntologyNamespace);
+		readStringMap(in).forEach(snomedTaxonomy::addOntologyHeader);
+
+		readLongs(in, snomedTaxonomy.getAllConceptIds());
+		readLongs(in, snomedTaxonomy.getFullyDefinedConceptIds());
+		readLongs(in, snomedTaxonomy.getInactivatedConcepts());
+		int moduleMapSize = in.readInt();
+		Map<Long, Long> conceptModuleMap = snomedTaxonomy.getConceptModuleMap();
+		for (int i = 0; i < moduleMapSize; i++) {
+			conceptModuleMap.put(in.readLong(), in.readLong());
+		}
+
+		readRelationships(in, (conceptId, relationship) -> snomedTaxonomy.addOrModifyRelationship(true, conceptId, relationship));
+		readRelationships(in, (conceptId, relationship) -> snomedTaxonomy.addOrModifyRelationship(false, conceptId, relationship));
+		readRelationships(in, snomedTaxonomy::addInactiveInferredRelationship);
+
+		int contentTypeCount = in.readInt();
+		for (int i = 0; i < contentTypeCount; i++) {
+			long contentType = in.readLong();
+			Set<Long> attributeIds = new HashSet<>();
+			readLongs(in, attributeIds);
+			for (Long attributeId : attributeIds) {
+				snomedTaxonomy.addUngroupedRole(contentType, attributeId);
+			}
+		}
+
+		readAxioms(in, snomedTaxonomy);
+		return snomedTaxonomy;
+	}
+
+	private void writeRelationships(RelationshipStore store, DataOutputStream out) throws IOException {
+		long[] conceptIds = store.getConceptIds().toLongArray();
+		Arrays.sort(conceptIds);
+		out.writeInt(conceptIds.length);
+		for (long conceptId : conceptIds) {
+			List<Relationship> relationships = new ArrayList<>(store.getRelationships(conceptId));
+			relationships.sort(RELATIONSHIP_ORDER);
+			out.writeLong(conceptId);
+			out.writeInt(relationships.size());
+			for (Relationship relationship : relationships) {
+				out.writeLong(relationship.getRelationshipId());
+				out.writeInt(relationship.getEffectiveTime());
+				out.writeLong(relationship.getModuleId());
+				out.writeLong(relationship.getTypeId());
+				out.writeLong(relationship.getDestinationId());
+				out.writeInt(relationship.getGroup());
+				out.writeInt(relationship.getUnionGroup());
+				out.writeBoolean(relationship.isUniversal());
+				out.writeLong(relationship.getCharacteristicTypeId());
+				Relationship.ConcreteValue value = relationship.getValue();
+				if (value != null) {
+					out.writeByte(value.getType().ordinal());
+					writeString(value.asString(), out);
+				} else {
+					out.writeByte(-1);
+				}
+			}
+		}
+	}
+
+	private void readRelationships(DataInputStream in, RelationshipConsumer consumer) throws IOException {
+		int conceptCount = in.readInt();
+		Relationship.ConcreteValue.Type[] types = Relationship.ConcreteValue.Type.values();
+		for (int i = 0; i < conceptCount; i++) {
+			long conceptId = in.readLong();
+			int relationshipCount = in.readInt();
+			for (int j = 0; j < relationshipCount; j++) {
+				long relationshipId = in.readLong();
+				int effectiveTime = in.readInt();
+				long moduleId = in.readLong();
+				long typeId = in.readLong();
+				long destinationId = in.readLong();
+				int group = in.readInt();
+				int unionGroup = in.readInt();
+				boolean universal = in.readBoolean();
+				long characteristicTypeId = in.readLong();
+				byte valueType = in.readByte();
+				Relationship relationship;
+				if (valueType >= 0) {
+					Relationship.ConcreteValue value = new Relationship.ConcreteValue(types[valueType], readString(in));
+					relationship = new Relationship(relationshipId, effectiveTime, moduleId, typeId, value, group, unionGroup, universal, characteristicTypeId);
+				} else {
+					relationship = new Relationship(relationshipId, effectiveTime, moduleId, typeId, destinationId, group, unionGroup, universal, characteristicTypeId);
+				}
+				consumer.accept(conceptId, relationship);
+			}
+		}
+	}
+
+	private void writeAxioms(SnomedTaxonomy snomedTaxonomy, DataOutputStream out) throws IOException {
+		// The taxonomy holds axioms by concept and by id, pair these up using object identity
+		Map<OWLAxiom, Deque<String>> axiomIds = new IdentityHashMap<>();
+		for (Map.Entry<String, OWLAxiom> entry : new TreeMap<>(snomedTaxonomy.getAxiomsById()).entrySet()) {
+			axiomIds.computeIfAbsent(entry.getValue(), axiom -> new ArrayDeque<>()).add(entry.getKey());
+		}
+
+		ByteArrayOutputStream scratch = new ByteArrayOutputStream();
+		DataOutputStream scratchOut = new DataOutputStream(scratch);
+		StringWriter functionalSyntax = new StringWriter();
+		FunctionalSyntaxObjectRenderer functionalSyntaxRenderer = null;
+		Map<Long, List<OWLAxiom>> conceptAxiomMap = snomedTaxonomy.getConceptAxiomMap();
+		synchronized (conceptAxiomMap) {
+			out.writeInt(Math.toIntExact(snomedTaxonomy.getAxiomCount()));
+			for (Long conceptId : new TreeSet<>(conceptAxiomMap.keySet())) {
+				SortedMap<String, OWLAxiom> conceptAxiomsById = new TreeMap<>();
+				for (OWLAxiom axiom : conceptAxiomMap.get(conceptId)) {
+					Deque<String> ids = axiomIds.get(axiom);
+					if (ids == null || ids.isEmpty()) {
+						throw new IOException("Axiom of concept " + conceptId + " has no id, the taxonomy can not be written.");
+					}
+					conceptAxiomsById.put(ids.poll(), axiom);
+				}
+				for (Map.Entry<String, OWLAxiom> axiomEntry : conceptAxiomsById.entrySet()) {
+					OWLAxiom axiom = axiomEntry.getValue();
+					writeString(axiomEntry.getKey(), out);
+					out.writeLong(conceptId);
+
+					scratch.reset();
+					if (writeAxiom(axiom, scratchOut)) {
+						scratchOut.flush();
+						scratch.writeTo(out);
+					} else {
+						if (functionalSyntaxRenderer == null) {
+							functionalSyntaxRenderer = createFunctionalSyntaxRenderer(functionalSyntax);
+						}
+						functionalSyntax.getBuffer().setLength(0);
+						axiom.accept(functionalSyntaxRenderer);
+						out.writeByte(AXIOM_FUNCTIONAL_SYNTAX);
+						writeString(functionalSyntax.toString(), out);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return renderer writing IRIs relative to the same default prefix as {@link AxiomDeserialiser}.
+	 */
+	private FunctionalSyntaxObjectRenderer createFunctionalSyntaxRenderer(Writer writer) throws IOException {
+		try {
+			FunctionalSyntaxObjectRenderer renderer = new FunctionalSyntaxObjectRenderer(OWLManager.createOWLOntologyManager().createOntology(), writer);
+			DefaultPrefixManager prefixManager = new DefaultPrefixManager();
+			prefixManager.setDefaultPrefix(SNOMED_CORE_COMPONENTS_URI);
+			renderer.setPrefixManager(prefixManager);
+			return renderer;
+		} catch (OWLOntologyCreationException e) {
+			throw new IOException("Failed to create the functional syntax renderer.", e);
+		}
+	}
+
+	private void readAxioms(DataInputStream in, SnomedTaxonomy snomedTaxonomy) throws IOException {
+		AxiomDeserialiser axiomDeserialiser = null;
+		int axiomCount = in.readInt();
+		for (int i = 0; i < axiomCount; i++) {
+			String axiomId = readString(in);
+			String conceptId = Long.toString(in.readLong());
+			OWLAxiom axiom;
+			byte tag = in.readByte();
+			if (tag == AXIOM_FUNCTIONAL_SYNTAX) {
+				if (axiomDeserialiser == null) {
+					axiomDeserialiser = new AxiomDeserialiser(false);
+				}
+				try {
+					axiom = axiomDeserialiser.deserialiseAxiom(readString(in), axiomId);
+				} catch (OWLOntologyCreationException e) {
+					throw new IOException("Failed to deserialise axiom " + axiomId, e);
+				}
+			} else {
+				axiom = readAxiom(tag, in);
+			}
+			snomedTaxonomy.addAxiom(conceptId, axiomId, axiom);
+		}
+	}
+
+	private boolean writeAxiom(OWLAxiom axiom, DataOutputStream out) throws IOException {
+		if (axiom.isAnnotated()) {
+			return false;
+		}
+		if (axiom instanceof OWLSubClassOfAxiom) {
+			OWLSubClassOfAxiom subClassOfAxiom = (OWLSubClassOfAxiom) axiom;
+			out.writeByte(AXIOM_SUB_CLASS_OF);
+			return writeClassExpression(subClassOfAxiom.getSubClass(), out) && writeClassExpression(subClassOfAxiom.getSuperClass(), out);
+		} else if (axiom instanceof OWLEquivalentClassesAxiom) {
+			List<OWLClassExpression> classExpressions = ((OWLEquivalentClassesAxiom) axiom).getClassExpressionsAsList();
+			out.writeByte(AXIOM_EQUIVALENT_CLASSES);
+			out.writeInt(classExpressions.size());
+			for (OWLClassExpression classExpression : classExpressions) {
+				if (!writeClassExpression(classExpression, out)) {
+					return false;
+				}
+			}
+			return true;
+		} else if (axiom instanceof OWLSubObjectPropertyOfAxiom) {
+			OWLSubObjectPropertyOfAxiom subPropertyAxiom = (OWLSubObjectPropertyOfAxiom) axiom;
+			out.writeByte(AXIOM_SUB_OBJECT_PROPERTY_OF);
+			return writeProperty(subPropertyAxiom.getSubProperty(), out) && writeProperty(subPropertyAxiom.getSuperProperty(), out);
+		} else if (axiom instanceof OWLSubPropertyChainOfAxiom) {
+			OWLSubPropertyChainOfAxiom chainAxiom = (OWLSubPropertyChainOfAxiom) axiom;
+			out.writeByte(AXIOM_SUB_PROPERTY_CHAIN_OF);
+			out.writeInt(chainAxiom.getPropertyChain().size());
+			for (OWLObjectPropertyExpression property : chainAxiom.getPropertyChain()) {
+				if (!writeProperty(property, out)) {
+					return false;
+				}
+			}
+			return writeProperty(chainAxiom.getSuperProperty(), out);
+		} else if (axiom instanceof OWLSubDataPropertyOfAxiom) {
+			OWLSubDataPropertyOfAxiom subPropertyAxiom = (OWLSubDataPropertyOfAxiom) axiom;
+			out.writeByte(AXIOM_SUB_DATA_PROPERTY_OF);
+			return writeProperty(subPropertyAxiom.getSubProperty(), out) && writeProperty(subPropertyAxiom.getSuperProperty(), out);
+		} else if (axiom instanceof OWLTransitiveObjectPropertyAxiom) {
+			out.writeByte(AXIOM_TRANSITIVE_OBJECT_PROPERTY);
+			return writeProperty(((OWLTransitiveObjectPropertyAxiom) axiom).getProperty(), out);
+		} else if (axiom instanceof OWLReflexiveObjectPropertyAxiom) {
+			out.writeByte(AXIOM_REFLEXIVE_OBJECT_PROPERTY);
+			return writeProperty(((OWLReflexiveObjectPropertyAxiom) axiom).getProperty(), out);
+		}
+		return false;
+	}
+
+	private OWLAxiom readAxiom(byte tag, DataInputStream in) throws IOException {
+		switch (tag) {
+			case AXIOM_SUB_CLASS_OF: {
+				OWLClassExpression subClass = readClassExpression(in);
+				return factory.getOWLSubClassOfAxiom(subClass, readClassExpression(in));
+			}
+			case AXIOM_EQUIVALENT_CLASSES: {
+				int size = in.readInt();
+				Set<OWLClassExpression> classExpressions = new HashSet<>();
+				for (int i = 0; i < size; i++) {
+					classExpressions.add(readClassExpression(in));
+				}
+				return factory.getOWLEquivalentClassesAxiom(classExpressions);
+			}
+			case AXIOM_SUB_OBJECT_PROPERTY_OF: {
+				OWLObjectProperty subProperty = factory.getOWLObjectProperty(readIri(in));
+				return factory.getOWLSubObjectPropertyOfAxiom(subProperty, factory.getOWLObjectProperty(readIri(in)));
+			}
+			case AXIOM_SUB_PROPERTY_CHAIN_OF: {
+				int size = in.readInt();
+				List<OWLObjectProperty> chain = new ArrayList<>();
+				for (int i = 0; i < size; i++) {
+					chain.add(factory.getOWLObjectProperty(readIri(in)));
+				}
+				return factory.getOWLSubPropertyChainOfAxiom(chain, factory.getOWLObjectProperty(readIri(in)));
+			}
+			case AXIOM_SUB_DATA_PROPERTY_OF: {
+				OWLDataProperty subProperty = factory.getOWLDataProperty(readIri(in));
+				return factory.getOWLSubDataPropertyOfAxiom(subProperty, factory.getOWLDataProperty(readIri(in)));
+			}
+			case AXIOM_TRANSITIVE_OBJECT_PROPERTY:
+				return factory.getOWLTransitiveObjectPropertyAxiom(factory.getOWLObjectProperty(readIri(in)));
+			case AXIOM_REFLEXIVE_OBJECT_PROPERTY:
+				return factory.getOWLReflexiveObjectPropertyAxiom(factory.getOWLObjectProperty(readIri(in)));
+			default:
+				throw new IOException("Unrecognised axiom tag " + tag);
+		}
+	}
+
+	private boolean writeClassExpression(OWLClassExpression classExpression, DataOutputStream out) throws IOException {
+		if (classExpression instanceof OWLClass) {
+			out.writeByte(CLASS);
+			writeIri(((OWLClass) classExpression).getIRI(), out);
+			return true;
+		} else if (classExpression instanceof OWLObjectIntersectionOf) {
+			List<OWLClassExpression> operands = ((OWLObjectIntersectionOf) classExpression).getOperandsAsList();
+			out.writeByte(OBJECT_INTERSECTION_OF);
+			out.writeInt(operands.size());
+			for (OWLClassExpression operand : operands) {
+				if (!writeClassExpression(operand, out)) {
+					return false;
+				}
+			}
+			return true;
+		} else if (classExpression instanceof OWLObjectSomeValuesFrom) {
+			OWLObjectSomeValuesFrom someValuesFrom = (OWLObjectSomeValuesFrom) classExpression;
+			out.writeByte(OBJECT_SOME_VALUES_FROM);
+			return writeProperty(someValuesFrom.getProperty(), out) && writeClassExpression(someValuesFrom.getFiller(), out);
+		} else if (classExpression instanceof OWLDataHasValue) {
+			OWLDataHasValue dataHasValue = (OWLDataHasValue) classExpression;
+			OWLLiteral literal = dataHasValue.getFiller();
+			out.writeByte(DATA_HAS_VALUE);
+			if (!writeProperty(dataHasValue.getProperty(), out)) {
+				return false;
+			}
+			writeString(literal.getLiteral(), out);
+			writeString(literal.hasLang() ? literal.getLang() : null, out);
+			writeIri(literal.getDatatype().getIRI(), out);
+			return true;
+		}
+		return false;
+	}
+
+	private OWLClassExpression readClassExpression(DataInputStream in) throws IOException {
+		byte tag = in.readByte();
+		switch (tag) {
+			case CLASS:
+				return factory.getOWLClass(readIri(in));
+			case OBJECT_INTERSECTION_OF: {
+				int size = in.readInt();
+				Set<OWLClassExpression> operands = new HashSet<>();
+				for (int i = 0; i < size; i++) {
+					operands.add(readClassExpression(in));
+				}
+				return factory.getOWLObjectIntersectionOf(operands);
+			}
+			case OBJECT_SOME_VALUES_FROM: {
+				OWLObjectProperty property = factory.getOWLObjectProperty(readIri(in));
+				return factory.getOWLObjectSomeValuesFrom(property, readClassExpression(in));
+			}
+			case DATA_HAS_VALUE: {
+				OWLDataProperty property = factory.getOWLDataProperty(readIri(in));
+				String lexicalValue = readString(in);
+				String lang = readString(in);
+				IRI datatype = readIri(in);
+				OWLLiteral literal = lang != null ? factory.getOWLLiteral(lexicalValue, lang) : factory.getOWLLiteral(lexicalValue, factory.getOWLDatatype(datatype));
+				return factory.getOWLDataHasValue(property, literal);
+			}
+			default:
+				throw new IOException("Unrecognised class expression tag " + tag);
+		}
+	}
+
+	private boolean writeProperty(OWLPropertyExpression property, DataOutputStream out) throws IOException {
+		if (property.isAnonymous()) {
+			return false;
+		}
+		writeIri(((OWLEntity) property).getIRI(), out);
+		return true;
+	}
+
+	private void writeIri(IRI iri, DataOutputStream out) throws IOException {
+		String iriString = iri.toString();
+		if (iriString.startsWith(SNOMED_CORE_COMPONENTS_URI)) {
+			String id = iriString.substring(SNOMED_CORE_COMPONENTS_URI.length());
+			if (!id.isEmpty() && id.length() < 19 && id.chars().allMatch(Character::isDigit) && id.charAt(0) != '0') {
+				out.writeByte(IRI_SNOMED_ID);
+				out.writeLong(Long.parseLong(id));
+				return;
+			}
+		}
+		out.writeByte(IRI_FULL);
+		writeString(iriString, out);
+	}
+
+	private IRI readIri(DataInputStream in) throws IOException {
+		if (in.readByte() == IRI_SNOMED_ID) {
+			return IRI.create(SNOMED_CORE_COMPONENTS_URI + in.readLong());
+		}
+		return IRI.create(readString(in));
+	}
+
+	private void writeStringMap(Map<String, String> map, DataOutputStream out) throws IOException {
+		out.writeInt(map.size());
+		for (Map.Entry<String, String> entry : new TreeMap<>(map).entrySet()) {
+			writeString(entry.getKey(), out);
+			writeString(entry.getValue(), out);
+		}
+	}
+
+	private Map<String, String> readStringMap(DataInputStream in) throws IOException {
+		int size = in.readInt();
+		Map<String, String> map = new LinkedHashMap<>();
+		for (int i = 0; i < size; i++) {
+			map.put(readString(in), readString(in));
+		}
+		return map;
+	}
+
+	private void writeLongs(Collection<Long> longs, DataOutputStream out) throws IOException {
+		long[] values = longs.stream().mapToLong(Long::longValue).sorted().toArray();
+		out.writeInt(values.length);
+		for (long value : values) {
+			out.writeLong(value);
+		}
+	}
+
+	private void readLongs(DataInputStream in, Collection<Long> target) throws IOException {
+		int size = in.readInt();
+		for (int i = 0; i < size; i++) {
+			target.add(in.readLong());
+		}
+	}
+
+	private void writeString(String string, DataOutputStream out) throws IOException {
+		if (string == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length == -1) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private interface RelationshipConsumer {
+		void accept(long conceptId, Relationship relationship);
+	}
+
+}
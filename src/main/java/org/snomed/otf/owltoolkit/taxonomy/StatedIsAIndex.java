@@ -0,0 +1,103 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.taxonomy;
+
+import it.unimi.dsi.fastutil.longs.*;
+import org.snomed.otf.owltoolkit.constants.Concepts;
+import org.snomed.otf.owltoolkit.domain.Relationship;
+
+/**
+ * Index of the parents and children of each concept given by active stated IS-A relationships.
+ * Concepts may have any number of parents. Traversals are iterative and visit each concept once, so cycles are tolerated.
+ */
+class StatedIsAIndex {
+
+	private final Long2ObjectOpenHashMap<LongSet> parentIds = new Long2ObjectOpenHashMap<>();
+	private final Long2ObjectOpenHashMap<LongSet> childIds = new Long2ObjectOpenHashMap<>();
+
+	static StatedIsAIndex build(RelationshipStore statedRelationships) {
+		StatedIsAIndex index = new StatedIsAIndex();
+		for (long conceptId : statedRelationships.getConceptIds()) {
+			index.setParents(conceptId, getParentIds(statedRelationships, conceptId));
+		}
+		return index;
+	}
+
+	static LongSet getParentIds(RelationshipStore statedRelationships, long conceptId) {
+		LongSet parents = new LongOpenHashSet();
+		for (Relationship relationship : statedRelationships.getRelationships(conceptId)) {
+			if (relationship.getTypeId() == Concepts.IS_A_LONG) {
+				parents.add(relationship.getDestinationId());
+			}
+		}
+		return parents;
+	}
+
+	/**
+	 * Replaces the parents of a concept.
+	 */
+	void setParents(long conceptId, LongSet newParentIds) {
+		LongSet oldParentIds = parentIds.remove(conceptId);
+		if (oldParentIds != null) {
+			for (long parentId : oldParentIds) {
+				LongSet children = childIds.get(parentId);
+				children.remove(conceptId);
+				if (children.isEmpty()) {
+					childIds.remove(parentId);
+				}
+			}
+		}
+		if (!newParentIds.isEmpty()) {
+			parentIds.put(conceptId, new LongOpenHashSet(newParentIds));
+			for (long parentId : newParentIds) {
+				childIds.computeIfAbsent(parentId, id -> new LongOpenHashSet()).add(conceptId);
+			}
+		}
+	}
+
+	/**
+	 * @return all concepts below the given concept, not including the concept itself.
+	 */
+	LongSet getDescendants(long conceptId) {
+		return traverse(conceptId, childIds);
+	}
+
+	/**
+	 * @return all concepts above the given concept, not including the concept itself.
+	 */
+	LongSet getAncestors(long conceptId) {
+		return traverse(conceptId, parentIds);
+	}
+
+	private static LongSet traverse(long conceptId, Long2ObjectOpenHashMap<LongSet> links) {
+		LongSet visited = new LongOpenHashSet();
+		LongArrayList toVisit = new LongArrayList();
+		toVisit.add(conceptId);
+		while (!toVisit.isEmpty()) {
+			LongSet linked = links.get(toVisit.popLong());
+			if (linked != null) {
+				for (long linkedId : linked) {
+					if (visited.add(linkedId)) {
+						toVisit.add(linkedId);
+					}
+				}
+			}
+		}
+		visited.remove(conceptId);
+		return visited;
+	}
+
+}
@@ -3,6 +3,8 @@ package org.snomed.otf.owltoolkit.util;
 import org.apache.log4j.Level;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.snomed.otf.owltoolkit.metrics.JvmSample;
+import org.snomed.otf.owltoolkit.metrics.MetricsRegistry;
 
 import java.util.Date;
 
@@ -13,16 +15,33 @@ public class TimerUtil {
 	private long lastCheck;
 	private Logger logger = LoggerFactory.getLogger(getClass());
 	private final Level loggingLevel;
+	private final MetricsRegistry metricsRegistry;
+	private JvmSample lastSample;
 
 	public TimerUtil(String timerName) {
 		this(timerName, Level.INFO);
 	}
 
 	public TimerUtil(String timerName, Level loggingLevel) {
+		this(timerName, loggingLevel, MetricsRegistry.NONE);
+	}
+
+	/**
+	 * @param metricsRegistry receives the wall time, CPU time, memory and GC use of the phase ending at each checkpoint.
+	 */
+	public TimerUtil(String timerName, MetricsRegistry metricsRegistry) {
+		this(timerName, Level.INFO, metricsRegistry);
+	}
+
+	public TimerUtil(String timerName, Level loggingLevel, MetricsRegistry metricsRegistry) {
 		this.loggingLevel = loggingLevel;
 		this.timerName = timerName;
+		this.metricsRegistry = metricsRegistry != null ? metricsRegistry : MetricsRegistry.NONE;
 		this.start = new Date().getTime();
 		lastCheck = start;
+		if (this.metricsRegistry != MetricsRegistry.NONE) {
+			lastSample = JvmSample.take();
+		}
 		log("Timer {}: started", timerName);
 	}
 
@@ -31,6 +50,18 @@ public class TimerUtil {
 		float millisTaken = now - lastCheck;
 		lastCheck = now;
 		log("Timer {}: {} took {} seconds", timerName, name, millisTaken / 1000f);
+		if (lastSample != null) {
+			JvmSample sample = JvmSample.take();
+			metricsRegistry.recordPhase(lastSample.measurePhase(name, sample));
+			lastSample = sample;
+		}
+	}
+
+	/**
+	 * @return the registry given to this timer, for recording counters alongside the phases.
+	 */
+	public MetricsRegistry getMetricsRegistry() {
+		return metricsRegistry;
 	}
 
 	public void finish() {
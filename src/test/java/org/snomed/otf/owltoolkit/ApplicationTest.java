@@ -24,6 +24,14 @@ public class ApplicationTest {
 			"\n" +
 			" -classify                              Run classification process.\n" +
 			"                                        Results are written to an RF2 delta archive.\n" +
+			"                                        Add -parallel-taxonomy-extraction to read the inferred hierarchy from the reasoner using one thread per core.\n" +
+			"                                        Add -metrics-report to also write a JSON report of the time, memory and counts of each phase next to the results.\n" +
+			"                                        Add -columnar-relationships to hold relationships in primitive arrays, using less memory for large releases.\n" +
+			"\n" +
+			" -classification-server <port>          Load the Snapshots once and run a local classification server on the given port.\n" +
+			"                                        POST an RF2 delta archive to /classify, the response is the RF2 results delta archive.\n" +
+			"                                        Add -incremental-reasoning to also keep the ontology and reasoner loaded and apply each delta incrementally.\n" +
+			"                                        Add -columnar-relationships to hold the relationships of the Snapshots in primitive arrays, using less memory.\n" +
 			"\n" +
 			" -rf2-to-owl                            (Default mode) Convert RF2 to OWL Functional Syntax.\n" +
 			"                                        Results are written to an .owl file.\n" +
@@ -50,6 +58,9 @@ public class ApplicationTest {
 			" -rf2-authoring-delta-archive <path>    (Optional) Path to a zip file containing RF2 Delta files to be applied on top \n" +
 			"                                        of the Snapshots. This is helpful during an authoring cycle.\n" +
 			"\n" +
+			" -snapshot-cache <path>                 (Optional) Directory used to cache the taxonomy built from the Snapshots when classifying.\n" +
+			"                                        Classifying again with the same Snapshots loads the taxonomy from this cache.\n" +
+			"\n" +
 			" -debug                                 Additional output for debugging.\n" +
 			"\n" +
 			"\n" +
@@ -64,6 +75,9 @@ public class ApplicationTest {
 			" -without-annotations                   (Optional) Flag to omit Fully Specified Name annotations from the ontology \n" +
 			"                                        resulting in a smaller file size.\n" +
 			"\n" +
+			" -streaming-output                      (Optional) Flag to write the ontology concept by concept without building it in memory first.\n" +
+			"                                        The file is the same, memory use stays low for large editions.\n" +
+			"\n" +
 			"\n";
 
 	private ByteArrayOutputStream errorStream;
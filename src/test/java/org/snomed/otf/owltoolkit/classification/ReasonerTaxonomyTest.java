@@ -0,0 +1,91 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.classification;
+
+import com.google.common.collect.Sets;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class ReasonerTaxonomyTest {
+
+	// 1 <- 2 <- 4, 1 <- 3 <- 4, 4 <- 5
+	private static final List<ReasonerTaxonomyEntry> ENTRIES = Arrays.asList(
+			new ReasonerTaxonomyEntry(1L, Collections.emptySet()),
+			new ReasonerTaxonomyEntry(2L, Sets.newHashSet(1L)),
+			new ReasonerTaxonomyEntry(3L, Sets.newHashSet(1L)),
+			new ReasonerTaxonomyEntry(4L, Sets.newHashSet(2L, 3L)),
+			new ReasonerTaxonomyEntry(5L, Sets.newHashSet(4L)));
+
+	@Test
+	public void testAncestorIndexTypesMatch() throws ExecutionException, InterruptedException {
+		for (AncestorIndexType ancestorIndexType : AncestorIndexType.values()) {
+			ReasonerTaxonomy taxonomy = new ReasonerTaxonomy(ancestorIndexType);
+			ENTRIES.forEach(taxonomy::addEntry);
+			assertAncestors(ancestorIndexType.name(), taxonomy);
+
+			ReasonerTaxonomy bulkTaxonomy = new ReasonerTaxonomy(ancestorIndexType);
+			ForkJoinPool pool = new ForkJoinPool(2);
+			try {
+				bulkTaxonomy.addEntries(ENTRIES, pool);
+			} finally {
+				pool.shutdown();
+			}
+			assertAncestors(ancestorIndexType.name() + " addEntries", bulkTaxonomy);
+		}
+	}
+
+	@Test
+	public void testEntryAddedAgainKeepsAncestors() {
+		for (AncestorIndexType ancestorIndexType : AncestorIndexType.values()) {
+			ReasonerTaxonomy taxonomy = new ReasonerTaxonomy(ancestorIndexType);
+			ENTRIES.forEach(taxonomy::addEntry);
+			// Attribute concepts are added once from the property hierarchy and again from the class hierarchy
+			taxonomy.addEntry(new ReasonerTaxonomyEntry(6L, Sets.newHashSet(3L)));
+			taxonomy.addEntry(new ReasonerTaxonomyEntry(6L, Sets.newHashSet(5L)));
+			assertEquals(ancestorIndexType.name(), Sets.newHashSet(1L, 2L, 3L, 4L, 5L), taxonomy.getAncestors(6L));
+			assertEquals(ancestorIndexType.name(), Sets.newHashSet(3L, 5L), taxonomy.getParents(6L));
+		}
+	}
+
+	private void assertAncestors(String message, ReasonerTaxonomy taxonomy) {
+		assertEquals(message, Collections.emptySet(), taxonomy.getAncestors(1L));
+		assertEquals(message, Sets.newHashSet(1L), taxonomy.getAncestors(2L));
+		assertEquals(message, Sets.newHashSet(1L, 2L, 3L), taxonomy.getAncestors(4L));
+		assertEquals(message, Sets.newHashSet(1L, 2L, 3L, 4L), taxonomy.getAncestors(5L));
+		assertEquals(message, Collections.emptySet(), taxonomy.getAncestors(100L));
+
+		Set<Long> ancestors = taxonomy.getAncestors(5L);
+		assertTrue(message, ancestors.contains(3L));
+		assertFalse(message, ancestors.contains(5L));
+
+		assertTrue(message, taxonomy.isAncestor(5L, 1L));
+		assertTrue(message, taxonomy.isAncestor(4L, 3L));
+		assertFalse(message, taxonomy.isAncestor(3L, 2L));
+		assertFalse(message, taxonomy.isAncestor(5L, 5L));
+		assertTrue(message, taxonomy.isSameOrAncestor(5L, 5L));
+		assertFalse(message, taxonomy.isAncestor(100L, 1L));
+		assertFalse(message, taxonomy.isAncestor(5L, 100L));
+	}
+
+}
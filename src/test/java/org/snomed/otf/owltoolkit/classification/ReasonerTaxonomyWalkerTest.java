@@ -0,0 +1,94 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.classification;
+
+import org.ihtsdo.otf.snomedboot.ReleaseImportException;
+import org.junit.Test;
+import org.semanticweb.elk.owlapi.ElkReasonerFactory;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.reasoner.InferenceType;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+import org.snomed.otf.owltoolkit.constants.Concepts;
+import org.snomed.otf.owltoolkit.ontology.OntologyService;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomy;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomyBuilder;
+import org.snomed.otf.owltoolkit.util.InputStreamSet;
+import org.snomed.otf.snomedboot.testutil.ZipUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.*;
+
+import static java.lang.Long.parseLong;
+import static org.junit.Assert.*;
+
+public class ReasonerTaxonomyWalkerTest {
+
+	@Test
+	public void testParallelWalkMatchesWalk() throws IOException, ReleaseImportException, OWLOntologyCreationException {
+		// Deltas with equivalent concepts, GCIs and attribute changes
+		for (String delta : new String[] {"Add_Diabetes", "Equivalence", "Secondary_Diabetes_GCI", "Add_Attribute", "Triangle_Additional_Axiom"}) {
+			OWLReasoner reasoner = createReasoner("SnomedCT_MiniRF2_Base_snapshot", "SnomedCT_MiniRF2_" + delta + "_delta");
+			try {
+				ReasonerTaxonomy expected = new ReasonerTaxonomyWalker(reasoner, new ReasonerTaxonomy()).walk();
+				ReasonerTaxonomy actual = new ReasonerTaxonomyWalker(reasoner, new ReasonerTaxonomy()).walkInParallel(4);
+
+				assertEquals(delta, new HashSet<>(expected.getConceptIds()), new HashSet<>(actual.getConceptIds()));
+				assertEquals(delta, expected.getAttributeIds(), actual.getAttributeIds());
+				for (Long conceptId : expected.getConceptIds()) {
+					assertEquals(delta + " parents of " + conceptId, expected.getParents(conceptId), actual.getParents(conceptId));
+					assertEquals(delta + " ancestors of " + conceptId, expected.getAncestors(conceptId), actual.getAncestors(conceptId));
+				}
+				assertEquals(delta, new HashSet<>(expected.getEquivalentConceptIds()), new HashSet<>(actual.getEquivalentConceptIds()));
+				assertEquals(delta, expected.getUnsatisfiableConceptIds(), actual.getUnsatisfiableConceptIds());
+				assertParentsFirst(actual);
+			} finally {
+				reasoner.dispose();
+			}
+		}
+	}
+
+	private void assertParentsFirst(ReasonerTaxonomy taxonomy) {
+		Set<Long> attributeIds = new HashSet<>(taxonomy.getAttributeIds());
+		Set<Long> seen = new HashSet<>();
+		for (Long conceptId : taxonomy.getConceptIds()) {
+			// Attributes are moved after 'Concept model attribute' so their order is checked by the property hierarchy
+			if (!attributeIds.contains(conceptId)) {
+				for (Long parentId : taxonomy.getParents(conceptId)) {
+					assertTrue("Parent " + parentId + " must come before " + conceptId, seen.contains(parentId) || attributeIds.contains(parentId));
+				}
+			}
+			seen.add(conceptId);
+		}
+	}
+
+	private OWLReasoner createReasoner(String snapshot, String delta) throws IOException, ReleaseImportException, OWLOntologyCreationException {
+		File snapshotZip = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/" + snapshot);
+		File deltaZip = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/" + delta);
+		SnomedTaxonomy snomedTaxonomy;
+		try (InputStreamSet snapshotStreams = new InputStreamSet(snapshotZip); FileInputStream deltaStream = new FileInputStream(deltaZip)) {
+			snomedTaxonomy = new SnomedTaxonomyBuilder().build(snapshotStreams, deltaStream, false);
+		}
+		Set<Long> ungroupedRoles = snomedTaxonomy.getUngroupedRolesForContentTypeOrDefault(parseLong(Concepts.ALL_PRECOORDINATED_CONTENT));
+		OWLOntology ontology = new OntologyService(ungroupedRoles).createOntology(snomedTaxonomy);
+		OWLReasoner reasoner = new ElkReasonerFactory().createReasoner(ontology);
+		reasoner.precomputeInferences(InferenceType.CLASS_HIERARCHY);
+		return reasoner;
+	}
+
+}
@@ -507,4 +507,38 @@ public class RF2ToOWLServiceTest {
 				byteArrayOutputStream.toString());
 	}
 
+	@Test
+	public void convertRF2ArchiveToOWLWithStreamingOutput() throws Exception {
+		File baseRF2SnapshotZip = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Base_snapshot");
+		String[] deltas = {
+				null,
+				"src/test/resources/SnomedCT_MiniRF2_Base_extra_descriptions",
+				"src/test/resources/SnomedCT_MiniRF2_OWLDataProperty_delta",
+				"src/test/resources/SnomedCT_MiniRF2_Active_Ingredient_Property_Chain_delta",
+				"src/test/resources/SnomedCT_MiniRF2_Anatomy_Transitive_Reflexive_delta",
+				"src/test/resources/SnomedCT_MiniRF2_Secondary_Diabetes_GCI_delta",
+				"src/test/resources/SnomedCT_MiniRF2_Nested_GCI_delta",
+				"src/test/resources/SnomedCT_MiniRF2_Equivalence_delta"
+		};
+		for (String delta : deltas) {
+			File deltaZip = delta != null ? ZipUtil.zipDirectoryRemovingCommentsAndBlankLines(delta) : null;
+			for (boolean includeDescriptions : new boolean[] {true, false}) {
+				String expected = convert(false, includeDescriptions, deltaZip, baseRF2SnapshotZip);
+				assertEquals(delta + ", descriptions " + includeDescriptions, expected, convert(true, includeDescriptions, deltaZip, baseRF2SnapshotZip));
+			}
+		}
+
+		File extensionRF2SnapshotZip = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Extension_snapshot");
+		assertEquals(convert(false, true, null, baseRF2SnapshotZip, extensionRF2SnapshotZip),
+				convert(true, true, null, baseRF2SnapshotZip, extensionRF2SnapshotZip));
+	}
+
+	private String convert(boolean streamingOutput, boolean includeDescriptions, File deltaZip, File... snapshotZips) throws Exception {
+		RF2ToOWLService rf2ToOWLService = new RF2ToOWLService();
+		rf2ToOWLService.setStreamingOutput(streamingOutput);
+		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+		rf2ToOWLService.convertRF2ArchiveToOWL(null, "20180731", includeDescriptions, new InputStreamSet(snapshotZips), new OptionalFileInputStream(deltaZip), byteArrayOutputStream);
+		return byteArrayOutputStream.toString();
+	}
+
 }
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+public class JvmSampleTest {
+
+	private static final int ARRAY_BYTES = 1024 * 1024;
+	private static final int ARRAY_COUNT = 32;
+
+	@Test
+	public void testAllocationOfEndedThreadCounted() throws InterruptedException {
+		JvmSample start = JvmSample.take();
+		Thread thread = new Thread(() -> {
+			long checksum = 0;
+			for (int i = 0; i < ARRAY_COUNT; i++) {
+				byte[] bytes = new byte[ARRAY_BYTES];
+				checksum += bytes.length;
+			}
+			assertTrue(checksum > 0);
+		});
+		thread.start();
+		thread.join();
+		PhaseMetrics phase = start.measurePhase("Allocate", JvmSample.take());
+
+		assertTrue(phase.getAllocatedBytes() >= (long) ARRAY_BYTES * ARRAY_COUNT);
+		assertTrue(phase.getPeakHeapBytes() > 0);
+	}
+
+}
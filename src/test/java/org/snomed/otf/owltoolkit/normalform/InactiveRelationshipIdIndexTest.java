@@ -0,0 +1,56 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.normalform;
+
+import org.junit.Test;
+import org.snomed.otf.owltoolkit.constants.Concepts;
+import org.snomed.otf.owltoolkit.domain.Relationship;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class InactiveRelationshipIdIndexTest {
+
+	private static final long FINDING_SITE = 363698007L;
+
+	@Test
+	public void testMostRecentMatchingRelationshipIdReused() {
+		SnomedTaxonomy snomedTaxonomy = new SnomedTaxonomy();
+		addInactive(snomedTaxonomy, 100, 501, 20190131, Concepts.IS_A_LONG, 200, 0);
+		addInactive(snomedTaxonomy, 100, 502, 20200131, Concepts.IS_A_LONG, 200, 0);
+		addInactive(snomedTaxonomy, 100, 503, 20210131, Concepts.IS_A_LONG, 200, 1);
+		addInactive(snomedTaxonomy, 100, 504, 20210131, FINDING_SITE, 300, 1);
+
+		Relationship isA = new Relationship(Concepts.IS_A_LONG, 200);
+		Relationship findingSite = new Relationship(1, FINDING_SITE, 300);
+		Relationship otherFindingSite = new Relationship(1, FINDING_SITE, 301);
+
+		InactiveRelationshipIdIndex.ConceptIndex conceptIndex = new InactiveRelationshipIdIndex(snomedTaxonomy).getConceptIndex(100);
+		assertTrue(conceptIndex.reuseInactiveRelationshipId(isA));
+		assertTrue(conceptIndex.reuseInactiveRelationshipId(findingSite));
+		assertFalse(conceptIndex.reuseInactiveRelationshipId(otherFindingSite));
+		assertEquals(502, isA.getRelationshipId());
+		assertEquals(504, findingSite.getRelationshipId());
+		assertEquals(-1, otherFindingSite.getRelationshipId());
+	}
+
+	private void addInactive(SnomedTaxonomy snomedTaxonomy, long conceptId, long relationshipId, int effectiveTime, long typeId, long destinationId, int group) {
+		snomedTaxonomy.addInactiveInferredRelationship(conceptId, new Relationship(relationshipId, effectiveTime, -1, typeId, destinationId, group, 0, false, -1));
+	}
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.normalform;
+
+import com.google.common.collect.Sets;
+import org.junit.Before;
+import org.junit.Test;
+import org.snomed.otf.owltoolkit.classification.ReasonerTaxonomy;
+import org.snomed.otf.owltoolkit.normalform.transitive.NodeGraph;
+import org.snomed.otf.owltoolkit.ontology.PropertyChain;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomy;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class RelationshipNormalFormGeneratorClosureCacheTest {
+
+	private static final long SOURCE_TYPE = 1L;
+	private static final long DESTINATION_TYPE = 2L;
+
+	private RelationshipNormalFormGenerator generator;
+	private NodeGraph nodeGraph;
+
+	@Before
+	public void setup() {
+		generator = new RelationshipNormalFormGenerator(new ReasonerTaxonomy(), new SnomedTaxonomy(), Collections.emptyMap(),
+				Collections.singleton(new PropertyChain(SOURCE_TYPE, DESTINATION_TYPE, SOURCE_TYPE)));
+		nodeGraph = generator.getTransitiveNodeGraphs().get(DESTINATION_TYPE);
+		// Concept 10 at position 0 has parent 11 at position 1, which has parent 12 at position 2
+		nodeGraph.addParent(10, 11, 0);
+		nodeGraph.addParent(11, 12, 1);
+	}
+
+	@Test
+	public void testClosureReusedByConceptsAtLaterPositions() {
+		// Requested by the concepts at positions 5 and 9, which see the same edges
+		assertEquals(Sets.newHashSet(10L, 11L, 12L), generator.getPropertyChainTransitiveClosure(10, DESTINATION_TYPE, 5));
+		assertSame(generator.getPropertyChainTransitiveClosure(10, DESTINATION_TYPE, 5),
+				generator.getPropertyChainTransitiveClosure(10, DESTINATION_TYPE, 9));
+		assertEquals(2, generator.getClosureCacheStats().hitCount());
+		assertEquals(1, generator.getClosureCacheStats().missCount());
+
+		// The second pass sees all edges, which are the same
+		generator.getPropertyChainTransitiveClosure(10, DESTINATION_TYPE, Integer.MAX_VALUE);
+		assertEquals(3, generator.getClosureCacheStats().hitCount());
+	}
+
+	@Test
+	public void testClosureRebuiltWhenEdgesChange() {
+		// The concept at position 1 does not see the parent of 11
+		assertEquals(Sets.newHashSet(10L, 11L), generator.getPropertyChainTransitiveClosure(10, DESTINATION_TYPE, 1));
+		assertEquals(Sets.newHashSet(10L, 11L, 12L), generator.getPropertyChainTransitiveClosure(10, DESTINATION_TYPE, 5));
+		assertEquals(0, generator.getClosureCacheStats().hitCount());
+
+		// An edge added at a position before the limit of the cached closure replaces it
+		nodeGraph.addParent(12, 13, 3);
+		assertEquals(Sets.newHashSet(10L, 11L, 12L, 13L), generator.getPropertyChainTransitiveClosure(10, DESTINATION_TYPE, 5));
+		assertEquals(0, generator.getClosureCacheStats().hitCount());
+		assertEquals(3, generator.getClosureCacheStats().missCount());
+	}
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.normalform.transitive;
+
+import com.google.common.collect.Sets;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+public class NodeGraphTest {
+
+	@Test
+	public void testDiamondsVisitedOnce() {
+		// Chain of 40 diamonds, 2^40 paths from the bottom to the top
+		NodeGraph nodeGraph = new NodeGraph();
+		Set<Long> expected = new HashSet<>();
+		for (long level = 0; level < 40; level++) {
+			long bottom = level * 3;
+			nodeGraph.addParent(bottom, bottom + 1);
+			nodeGraph.addParent(bottom, bottom + 2);
+			nodeGraph.addParent(bottom + 1, bottom + 3);
+			nodeGraph.addParent(bottom + 2, bottom + 3);
+			expected.add(bottom + 1);
+			expected.add(bottom + 2);
+			expected.add(bottom + 3);
+		}
+		assertEquals(expected, nodeGraph.getAncestors(0));
+		assertEquals(3, nodeGraph.getAncestors(117).size());
+	}
+
+	@Test
+	public void testCycle() {
+		NodeGraph nodeGraph = new NodeGraph();
+		nodeGraph.addParent(1, 2);
+		nodeGraph.addParent(2, 3);
+		nodeGraph.addParent(3, 1);
+		nodeGraph.addParent(3, 4);
+		assertEquals(Sets.newHashSet(2L, 3L, 4L), nodeGraph.getAncestors(1));
+		assertEquals(Sets.newHashSet(1L, 3L, 4L), nodeGraph.getAncestors(2));
+		assertEquals(Sets.newHashSet(1L, 2L, 4L), nodeGraph.getAncestors(3));
+		assertEquals(Sets.newHashSet(), nodeGraph.getAncestors(4));
+	}
+
+	@Test
+	public void testPositionLimit() {
+		NodeGraph nodeGraph = new NodeGraph();
+		nodeGraph.addParent(1, 2, 5);
+		nodeGraph.addParent(2, 3, 7);
+
+		assertEquals(Sets.newHashSet(), nodeGraph.getAncestors(1, 5));
+		assertEquals(Sets.newHashSet(2L), nodeGraph.getAncestors(1, 6));
+		assertEquals(Sets.newHashSet(2L, 3L), nodeGraph.getAncestors(1, 8));
+		assertEquals(Sets.newHashSet(2L), nodeGraph.getAncestors(1, 6));
+
+		// Concept 3 is not followed until it is added
+		assertEquals(Sets.newHashSet(2L, 3L), nodeGraph.getAncestors(1));
+		nodeGraph.addParent(3, 4, 9);
+		assertEquals(Sets.newHashSet(2L, 3L), nodeGraph.getAncestors(1, 9));
+		assertEquals(Sets.newHashSet(2L, 3L, 4L), nodeGraph.getAncestors(1));
+		assertEquals(Sets.newHashSet(3L, 4L), nodeGraph.getAncestors(2));
+	}
+
+}
@@ -7,7 +7,10 @@ import org.junit.Test;
 import org.semanticweb.owlapi.model.OWLOntology;
 import org.snomed.otf.owltoolkit.constants.Concepts;
 import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomy;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomyBuilder;
 import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomyLoader;
+import org.snomed.otf.owltoolkit.testutil.SyntheticSnapshotGenerator;
+import org.snomed.otf.owltoolkit.util.InputStreamSet;
 
 import java.util.*;
 
@@ -48,6 +51,45 @@ public class OntologyServiceTest {
 		assertEquals("PropertyChain{sourceType=400, destinationType=400, inferredType=400}", chains.get(1).toString());
 	}
 
+	@Test
+	public void createOntologyInParallel() throws Exception {
+		SnomedTaxonomy snomedTaxonomy;
+		try (InputStreamSet snapshotArchives = new InputStreamSet(new SyntheticSnapshotGenerator(5000, 4, 1)
+				.withGciAxioms(50)
+				.withPropertyChains(2)
+				.writeSnapshot())) {
+			snomedTaxonomy = new SnomedTaxonomyBuilder().build(snapshotArchives, null, false);
+		}
+
+		ontologyService.setParallelism(1);
+		OWLOntology expected = ontologyService.createOntology(snomedTaxonomy);
+		OntologyService parallelOntologyService = new OntologyService(SnomedTaxonomy.DEFAULT_NEVER_GROUPED_ROLE_IDS);
+		parallelOntologyService.setParallelism(4);
+		OWLOntology actual = parallelOntologyService.createOntology(snomedTaxonomy);
+
+		assertEquals(expected.getAxiomCount(), actual.getAxiomCount());
+		assertEquals(expected.getAxioms(), actual.getAxioms());
+		assertEquals(ontologyService.createAxiomsFromStatedRelationships(snomedTaxonomy),
+				parallelOntologyService.createAxiomsFromStatedRelationships(snomedTaxonomy));	}
+
+	@Test
+	public void createOntologyUsesEntityCacheOfService() throws Exception {
+		SnomedTaxonomyLoader snomedTaxonomyLoader = new SnomedTaxonomyLoader();
+		addAttribute("100", snomedTaxonomyLoader);
+		snomedTaxonomyLoader.newConceptState("200", "", "1", Concepts.SNOMED_CT_CORE_MODULE, Concepts.PRIMITIVE);
+		snomedTaxonomyLoader.newRelationshipState("201", "", "1", Concepts.SNOMED_CT_CORE_MODULE, "200", Concepts.CONCEPT_MODEL_ATTRIBUTE, "0", Concepts.IS_A, Concepts.STATED_RELATIONSHIP, "");
+		snomedTaxonomyLoader.newRelationshipState("202", "", "1", Concepts.SNOMED_CT_CORE_MODULE, "200", "300", "0", "100", Concepts.STATED_RELATIONSHIP, "");
+		SnomedTaxonomy snomedTaxonomy = snomedTaxonomyLoader.getSnomedTaxonomy();
+
+		ontologyService.createOntology(snomedTaxonomy);
+		OntologyService otherOntologyService = new OntologyService(SnomedTaxonomy.DEFAULT_NEVER_GROUPED_ROLE_IDS);
+		otherOntologyService.createOntology(snomedTaxonomy);
+
+		// Entities created by one service are not reused by another
+		assertTrue(ontologyService.getEntityCacheStats().missCount() > 0);
+		assertEquals(ontologyService.getEntityCacheStats(), otherOntologyService.getEntityCacheStats());
+	}
+
 	private void addAttribute(String attribute, SnomedTaxonomyLoader snomedTaxonomyLoader) {
 		snomedTaxonomyLoader.newConceptState(attribute, "", "1", Concepts.SNOMED_CT_CORE_MODULE, "");
 		snomedTaxonomyLoader.newRelationshipState("101", "", "1", Concepts.SNOMED_CT_CORE_MODULE, attribute, Concepts.CONCEPT_MODEL_ATTRIBUTE, "0", Concepts.IS_A, Concepts.INFERRED_RELATIONSHIP, "");
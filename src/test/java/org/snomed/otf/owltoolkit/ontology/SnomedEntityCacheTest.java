@@ -0,0 +1,76 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.ontology;
+
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.util.DefaultPrefixManager;
+import uk.ac.manchester.cs.owl.owlapi.OWLDataFactoryImpl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.snomed.otf.owltoolkit.ontology.OntologyService.SNOMED_CORE_COMPONENTS_URI;
+
+public class SnomedEntityCacheTest {
+
+	@Test
+	public void testEntitiesAreCanonical() {
+		SnomedEntityCache entityCache = new SnomedEntityCache(OWLManager.getOWLDataFactory());
+		assertSame(entityCache.getOwlClass(404684003L), entityCache.getOwlClass(404684003L));
+		assertSame(entityCache.getOwlObjectProperty(363698007L), entityCache.getOwlObjectProperty(363698007L));
+		assertSame(entityCache.getOwlDataProperty(1142137007L), entityCache.getOwlDataProperty(1142137007L));
+		assertNotEquals(entityCache.getOwlClass(363698007L), entityCache.getOwlObjectProperty(363698007L));
+
+		assertEquals(4, entityCache.stats().hitCount());
+		assertEquals(4, entityCache.stats().missCount());
+	}
+
+	@Test
+	public void testEntitiesEqualPrefixedNames() {
+		OWLDataFactory factory = OWLManager.getOWLDataFactory();
+		SnomedEntityCache entityCache = new SnomedEntityCache(factory);
+		DefaultPrefixManager prefixManager = new DefaultPrefixManager();
+		prefixManager.setDefaultPrefix(SNOMED_CORE_COMPONENTS_URI);
+
+		assertEquals(factory.getOWLClass(":404684003", prefixManager), entityCache.getOwlClass(404684003L));
+		assertEquals(factory.getOWLClass(IRI.create(SNOMED_CORE_COMPONENTS_URI + "404684003")), entityCache.getOwlClass(404684003L));
+		assertEquals(factory.getOWLObjectProperty(":609096000", prefixManager), entityCache.getOwlObjectProperty(609096000L));
+		assertEquals(factory.getOWLDataProperty(":1142137007", prefixManager), entityCache.getOwlDataProperty(1142137007L));
+		assertEquals("404684003", entityCache.getOwlClass(404684003L).getIRI().getShortForm());
+	}
+
+	@Test
+	public void testEntitiesCreatedByGivenFactory() {
+		AtomicInteger classesCreated = new AtomicInteger();
+		OWLDataFactory factory = new OWLDataFactoryImpl() {
+			@Override
+			public OWLClass getOWLClass(IRI iri) {
+				classesCreated.incrementAndGet();
+				return super.getOWLClass(iri);
+			}
+		};
+		SnomedEntityCache entityCache = new SnomedEntityCache(factory);
+		entityCache.getOwlClass(404684003L);
+		entityCache.getOwlClass(404684003L);
+		entityCache.getOwlClass(138875005L);
+		assertEquals(2, classesCreated.get());
+	}
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.service;
+
+import org.junit.Test;
+import org.snomed.otf.owltoolkit.constants.Concepts;
+import org.snomed.otf.owltoolkit.domain.Relationship;
+import org.snomed.otf.owltoolkit.domain.Relationship.ConcreteValue;
+import org.snomed.otf.owltoolkit.normalform.RelationshipChangeProcessor;
+import org.snomed.otf.owltoolkit.normalform.RelationshipDiffType;
+import org.snomed.otf.owltoolkit.normalform.RelationshipInactivationProcessor;
+import org.snomed.otf.owltoolkit.service.classification.TestFileUtil;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomy;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class StreamingRelationshipChangeProcessorTest {
+
+	private static final long CONCEPT_ID = 100L;
+	private static final long FINDING_SITE = 363698007L;
+	private static final long HAS_COUNT = 3264479001L;
+	private static final long OTHER_CONCEPT_ID = 110L;
+
+	@Test
+	public void testResultsMatchCollectedChanges() throws IOException, ReasonerServiceException {
+		SnomedTaxonomy snomedTaxonomy = new SnomedTaxonomy();
+		snomedTaxonomy.addInactiveInferredRelationship(CONCEPT_ID, new Relationship(500, 20190131, -1, Concepts.IS_A_LONG, 200, 0, 0, false, -1));
+		snomedTaxonomy.addInactiveInferredRelationship(CONCEPT_ID, new Relationship(501, 20200131, -1, Concepts.IS_A_LONG, 200, 0, 0, false, -1));
+
+		// Removals due to inactivation replace the redundant relationships of an inactivated concept
+		snomedTaxonomy.getInactivatedConcepts().add(OTHER_CONCEPT_ID);
+		snomedTaxonomy.addOrModifyRelationship(false, OTHER_CONCEPT_ID, new Relationship(701, 20200131, -1, Concepts.IS_A_LONG, 200, 0, 0, false, -1));
+
+		File expectedResults = writeResults(new RelationshipChangeProcessor(RelationshipDiffType.SORTED), snomedTaxonomy);
+		File results;
+		File spillFile;
+		try (StreamingRelationshipChangeProcessor changeCollector = new StreamingRelationshipChangeProcessor(snomedTaxonomy, RelationshipDiffType.HASHED)) {
+			results = writeResults(changeCollector, snomedTaxonomy);
+			assertEquals(3, (long) changeCollector.getAddedCount());
+			assertEquals(1, (long) changeCollector.getRedundantCount());
+			assertEquals(1, (long) changeCollector.getRemovedDueToConceptInactivationCount());
+			assertTrue(changeCollector.getAddedStatements().isEmpty());
+			spillFile = changeCollector.getAddedSpillFile(false);
+		}
+		assertFalse("Spill files are deleted on close.", spillFile.exists());
+
+		// The collected changes do not reuse inactive relationship ids, the most recently inactivated one is reused when streaming
+		List<String> expectedLines = TestFileUtil.readInferredRelationshipLinesTrim(expectedResults);
+		expectedLines.replaceAll(line -> line.startsWith("1\t\t100\t200\t") ? "501\t\t" + line : line);
+		assertEquals(expectedLines, TestFileUtil.readInferredRelationshipLinesTrim(results));
+		assertEquals(TestFileUtil.readInferredRelationshipConcreteValuesLinesTrim(expectedResults),
+				TestFileUtil.readInferredRelationshipConcreteValuesLinesTrim(results));
+		assertEquals(5, TestFileUtil.readInferredRelationshipLinesTrim(results).size());
+		assertEquals(2, TestFileUtil.readInferredRelationshipConcreteValuesLinesTrim(results).size());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testChangesOfConceptAppliedOnce() throws IOException {
+		try (StreamingRelationshipChangeProcessor changeCollector = new StreamingRelationshipChangeProcessor(new SnomedTaxonomy(), RelationshipDiffType.HASHED)) {
+			Set<Relationship> newRelationships = Collections.singleton(new Relationship(Concepts.IS_A_LONG, 200));
+			changeCollector.apply(CONCEPT_ID, Collections.emptySet(), newRelationships);
+			changeCollector.apply(CONCEPT_ID, Collections.emptySet(), newRelationships);
+		}
+	}
+
+	private File writeResults(RelationshipChangeProcessor changeCollector, SnomedTaxonomy snomedTaxonomy) throws IOException, ReasonerServiceException {
+		Set<Relationship> existingRelationships = new HashSet<>(Collections.singleton(
+				new Relationship(600, 20200131, -1, FINDING_SITE, 300, 1, 0, false, -1)));
+		Set<Relationship> newRelationships = new HashSet<>(Arrays.asList(
+				new Relationship(Concepts.IS_A_LONG, 200),
+				new Relationship(1, FINDING_SITE, 301),
+				new Relationship(2, HAS_COUNT, new ConcreteValue(ConcreteValue.Type.INTEGER, "1"))));
+		changeCollector.apply(CONCEPT_ID, existingRelationships, newRelationships);
+		changeCollector.apply(OTHER_CONCEPT_ID, Collections.singleton(
+				new Relationship(700, 20200131, -1, FINDING_SITE, 300, 1, 0, false, -1)), Collections.emptySet());
+		new RelationshipInactivationProcessor(snomedTaxonomy).processInactivationChanges(changeCollector);
+
+		File results = TestFileUtil.newTemporaryFile();
+		try (OutputStream resultsStream = new FileOutputStream(results)) {
+			ClassificationResultsWriter classificationResultsWriter = new ClassificationResultsWriter();
+			if (changeCollector instanceof StreamingRelationshipChangeProcessor) {
+				classificationResultsWriter.writeResultsRf2Archive((StreamingRelationshipChangeProcessor) changeCollector, Collections.emptyList(), resultsStream, new Date());
+			} else {
+				classificationResultsWriter.writeResultsRf2Archive(changeCollector, Collections.emptyList(), resultsStream, new Date());
+			}
+		}
+		return results;
+	}
+
+}
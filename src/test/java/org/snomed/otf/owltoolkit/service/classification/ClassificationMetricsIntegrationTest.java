@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.service.classification;
+
+import org.junit.Test;
+import org.snomed.otf.owltoolkit.metrics.ClassificationReport;
+import org.snomed.otf.owltoolkit.metrics.MetricsRegistry;
+import org.snomed.otf.owltoolkit.metrics.PhaseMetrics;
+import org.snomed.otf.owltoolkit.service.ReasonerServiceException;
+import org.snomed.otf.owltoolkit.service.SnomedReasonerService;
+import org.snomed.otf.snomedboot.testutil.ZipUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.snomed.otf.owltoolkit.service.SnomedReasonerService.ELK_REASONER_FACTORY;
+
+public class ClassificationMetricsIntegrationTest {
+
+	@Test
+	public void testMetricsReportWrittenNextToResults() throws IOException, ReasonerServiceException {
+		File baseRF2SnapshotZip = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Base_snapshot");
+		File deltaZip = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Add_Diabetes_delta");
+		File results = TestFileUtil.newTemporaryFile();
+
+		List<PhaseMetrics> phases = new ArrayList<>();
+		Map<String, Long> counters = new HashMap<>();
+		SnomedReasonerService snomedReasonerService = new SnomedReasonerService();
+		snomedReasonerService.setMetricsRegistry(new MetricsRegistry() {
+			@Override
+			public void recordPhase(PhaseMetrics phaseMetrics) {
+				phases.add(phaseMetrics);
+			}
+
+			@Override
+			public void setCounter(String name, long value) {
+				counters.put(name, value);
+			}
+		});
+		snomedReasonerService.setWriteMetricsReport(true);
+		snomedReasonerService.classify("metrics-test", baseRF2SnapshotZip, deltaZip, results, ELK_REASONER_FACTORY, false);
+
+		List<String> phaseNames = new ArrayList<>();
+		for (PhaseMetrics phase : phases) {
+			phaseNames.add(phase.getName());
+			assertTrue(phase.getWallTimeMillis() >= 0);
+			assertTrue(phase.getPeakHeapBytes() > 0);
+		}
+		assertEquals(Arrays.asList("Create reasoner factory", "Build existing taxonomy", "Create OWL Ontology", "Create reasoner", "Inference computation",
+				"Extract ReasonerTaxonomy", "Generate normal form", "Write results to disk"), phaseNames);
+
+		assertEquals(TestFileUtil.readInferredRelationshipLinesTrim(results).size() - 1, (long) counters.get(ClassificationReport.RELATIONSHIPS_ADDED));
+		assertEquals(0, (long) counters.get(ClassificationReport.EQUIVALENT_CONCEPT_SETS));
+		assertTrue(counters.get(ClassificationReport.CONCEPTS) > 0);
+		assertNotNull(counters.get(ClassificationReport.AXIOMS));
+		assertTrue(counters.get(ClassificationReport.REASONER_NODES) > 0);
+
+		File reportFile = ClassificationReport.getReportFile(results);
+		assertEquals(results.getAbsoluteFile().getParentFile(), reportFile.getParentFile());
+		String report = new String(Files.readAllBytes(reportFile.toPath()), StandardCharsets.UTF_8);
+		reportFile.delete();
+		assertTrue(report, report.contains("\"classificationId\": \"metrics-test\""));
+		assertTrue(report, report.contains("{\"name\": \"Inference computation\", \"wallTimeMillis\": "));
+		assertTrue(report, report.contains("\"" + ClassificationReport.RELATIONSHIPS_ADDED + "\": " + counters.get(ClassificationReport.RELATIONSHIPS_ADDED)));
+	}
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.service.classification;
+
+import org.junit.Test;
+import org.snomed.otf.owltoolkit.metrics.ClassificationReport;
+import org.snomed.otf.owltoolkit.service.ReasonerServiceException;
+import org.snomed.otf.owltoolkit.service.SnomedReasonerService;
+import org.snomed.otf.owltoolkit.testutil.SyntheticSnapshotGenerator;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertTrue;
+import static org.snomed.otf.owltoolkit.service.classification.TestFileUtil.*;
+
+public class ClosureCacheIntegrationTest {
+
+	private static final Consumer<SnomedReasonerService> UNCACHED = service -> service.setClosureCacheSize(0);
+
+	@Test
+	public void testCachedClosuresMatchComputed() throws IOException, ReasonerServiceException {
+		assertSameResultsForFixtures(UNCACHED, cached(1, new HashMap<>()), cached(4, new HashMap<>()));
+	}
+
+	@Test
+	public void testCachedClosuresMatchComputedForSyntheticEdition() throws IOException, ReasonerServiceException {
+		SyntheticSnapshotGenerator generator = SyntheticSnapshotGenerator.editionScale(3000, 1);
+		Map<String, Long> sequentialCounters = new HashMap<>();
+		Map<String, Long> parallelCounters = new HashMap<>();
+		assertSameResults("Synthetic", Collections.singleton(generator.writeSnapshot()), generator.writeDelta(30), UNCACHED,
+				cached(1, sequentialCounters), cached(4, parallelCounters));
+		assertTrue("Closures of the property chains are reused by the sequential pass", sequentialCounters.get(ClassificationReport.CLOSURE_CACHE_HITS) > 0);
+		assertTrue("Closures of the property chains are reused by the parallel pass", parallelCounters.get(ClassificationReport.CLOSURE_CACHE_HITS) > 0);
+	}
+
+	private Consumer<SnomedReasonerService> cached(int parallelism, Map<String, Long> counters) {
+		return service -> {
+			service.setNormalFormParallelism(parallelism);
+			service.setMetricsRegistry(countersRegistry(counters));
+		};
+	}
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.service.classification;
+
+import org.junit.Test;
+import org.snomed.otf.owltoolkit.service.ReasonerServiceException;
+import org.snomed.otf.owltoolkit.service.SnomedReasonerService;
+import org.snomed.otf.owltoolkit.testutil.SyntheticSnapshotGenerator;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.function.Consumer;
+
+import static org.snomed.otf.owltoolkit.service.classification.TestFileUtil.assertSameResults;
+import static org.snomed.otf.owltoolkit.service.classification.TestFileUtil.assertSameResultsForFixtures;
+
+public class IndexedRedundancyEliminationIntegrationTest {
+
+	private static final Consumer<SnomedReasonerService> UNINDEXED = service -> service.setIndexedRedundancyElimination(false);
+	private static final Consumer<SnomedReasonerService> INDEXED = service -> service.setIndexedRedundancyElimination(true);
+
+	@Test
+	public void testIndexedMatchesUnindexed() throws IOException, ReasonerServiceException {
+		assertSameResultsForFixtures(UNINDEXED, INDEXED);
+	}
+
+	@Test
+	public void testIndexedMatchesUnindexedForManyRoleGroups() throws IOException, ReasonerServiceException {
+		// Concepts inherit the role groups of their ancestors so deeper concepts have enough groups to be indexed
+		SyntheticSnapshotGenerator generator = new SyntheticSnapshotGenerator(1500, 4, 1)
+				.withMaxDepth(8)
+				.withRoleGroups(8, 2)
+				.withConcreteValues(2)
+				.withPropertyChains(2);
+		assertSameResults("Many role groups", Collections.singleton(generator.writeSnapshot()), generator.writeDelta(20), UNINDEXED, INDEXED);
+	}
+
+}
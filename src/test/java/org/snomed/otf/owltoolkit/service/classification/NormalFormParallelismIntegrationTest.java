@@ -0,0 +1,38 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.service.classification;
+
+import org.junit.Test;
+import org.snomed.otf.owltoolkit.service.ReasonerServiceException;
+import org.snomed.otf.owltoolkit.service.SnomedReasonerService;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+import static org.snomed.otf.owltoolkit.service.classification.TestFileUtil.assertSameResultsForFixtures;
+
+public class NormalFormParallelismIntegrationTest {
+
+	private static final Consumer<SnomedReasonerService> SEQUENTIAL = service -> service.setNormalFormParallelism(1);
+	private static final Consumer<SnomedReasonerService> PARALLEL = service -> service.setNormalFormParallelism(4);
+
+	@Test
+	public void testParallelNormalFormMatchesSequential() throws IOException, ReasonerServiceException {
+		// Repeat to give thread scheduling a chance to change the order of work
+		assertSameResultsForFixtures(SEQUENTIAL, PARALLEL, PARALLEL, PARALLEL);
+	}
+
+}
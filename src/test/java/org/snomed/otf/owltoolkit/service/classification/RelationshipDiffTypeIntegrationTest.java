@@ -0,0 +1,54 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.service.classification;
+
+import com.google.common.collect.Sets;
+import org.junit.Test;
+import org.snomed.otf.owltoolkit.normalform.RelationshipDiffType;
+import org.snomed.otf.owltoolkit.service.ReasonerServiceException;
+import org.snomed.otf.owltoolkit.service.SnomedReasonerService;
+import org.snomed.otf.owltoolkit.testutil.SyntheticSnapshotGenerator;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.function.Consumer;
+
+import static org.snomed.otf.owltoolkit.service.classification.TestFileUtil.*;
+
+public class RelationshipDiffTypeIntegrationTest {
+
+	private static final Consumer<SnomedReasonerService> SORTED = service -> service.setRelationshipDiffType(RelationshipDiffType.SORTED);
+	private static final Consumer<SnomedReasonerService> HASHED = service -> service.setRelationshipDiffType(RelationshipDiffType.HASHED);
+
+	@Test
+	public void testHashedDiffMatchesSorted() throws IOException, ReasonerServiceException {
+		assertSameResultsForFixtures(SORTED, HASHED);
+	}
+
+	@Test
+	public void testHashedDiffMatchesSortedForExtension() throws IOException, ReasonerServiceException {
+		assertSameResults("Extension",
+				Sets.newHashSet(zipFixture("Base_CompleteOwl_snapshot"), zipFixture("Extension_snapshot_with_duplicate_axiom_expression")),
+				zipFixture("Extension_delta_remove_duplicate_axiom"), SORTED, HASHED);
+	}
+
+	@Test
+	public void testHashedDiffMatchesSortedForSyntheticEdition() throws IOException, ReasonerServiceException {
+		SyntheticSnapshotGenerator generator = SyntheticSnapshotGenerator.editionScale(3000, 1);
+		assertSameResults("Synthetic", Collections.singleton(generator.writeSnapshot()), generator.writeDelta(30), SORTED, HASHED);
+	}
+
+}
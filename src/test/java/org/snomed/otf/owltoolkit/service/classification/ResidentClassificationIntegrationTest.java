@@ -0,0 +1,158 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.service.classification;
+
+import org.junit.Test;
+import org.snomed.otf.owltoolkit.metrics.MetricsRegistry;
+import org.snomed.otf.owltoolkit.metrics.PhaseMetrics;
+import org.snomed.otf.owltoolkit.service.ClassificationHttpServer;
+import org.snomed.otf.owltoolkit.service.ReasonerServiceException;
+import org.snomed.otf.owltoolkit.service.ResidentClassificationService;
+import org.snomed.otf.owltoolkit.service.SnomedReasonerService;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.snomed.otf.owltoolkit.service.SnomedReasonerService.ELK_REASONER_FACTORY;
+import static org.snomed.otf.owltoolkit.service.classification.TestFileUtil.*;
+
+public class ResidentClassificationIntegrationTest {
+
+	@Test
+	public void testResultsMatchSingleClassification() throws IOException, ReasonerServiceException {
+		File baseRF2SnapshotZip = zipFixture("Concept_Inactivation_snapshot");
+		File deltaZip = zipFixture("Concept_Inactivation_delta");
+
+		File expectedResults = TestFileUtil.newTemporaryFile();
+		new SnomedReasonerService().classify("", baseRF2SnapshotZip, deltaZip, expectedResults, ELK_REASONER_FACTORY, false);
+
+		ResidentClassificationService service = ResidentClassificationService.load(Collections.singleton(baseRF2SnapshotZip), null, ELK_REASONER_FACTORY);
+		// Classify twice to check that the first delta does not change the base taxonomy
+		for (int i = 0; i < 2; i++) {
+			File results = classify(service, deltaZip);
+			assertSameInferredRelationships("Classification " + i, expectedResults, results);
+			assertEquals(equivalentConcepts(expectedResults), equivalentConcepts(results));
+		}
+	}
+
+	@Test
+	public void testDeltaNotRetainedBetweenClassifications() throws IOException, ReasonerServiceException {
+		File baseRF2SnapshotZip = zipFixture("Base_snapshot");
+		File deltaZip = zipFixture("Add_Diabetes_delta");
+		ResidentClassificationService service = ResidentClassificationService.load(Collections.singleton(baseRF2SnapshotZip), null, ELK_REASONER_FACTORY);
+
+		assertEquals(3, readInferredRelationshipLinesTrim(classify(service, deltaZip)).size());
+		assertEquals("Relationship delta should only contain the header line.", 1, readInferredRelationshipLinesTrim(classify(service, null)).size());
+	}
+
+	@Test
+	public void testPhasesRecordedOnOneTimeline() throws IOException, ReasonerServiceException {
+		File baseRF2SnapshotZip = zipFixture("Base_snapshot");
+		File deltaZip = zipFixture("Add_Diabetes_delta");
+		ResidentClassificationService service = ResidentClassificationService.load(Collections.singleton(baseRF2SnapshotZip), null, ELK_REASONER_FACTORY);
+		List<String> phaseNames = new ArrayList<>();
+		service.setMetricsRegistry(new MetricsRegistry() {
+			@Override
+			public void recordPhase(PhaseMetrics phaseMetrics) {
+				phaseNames.add(phaseMetrics.getName());
+			}
+
+			@Override
+			public void setCounter(String name, long value) {
+			}
+		});
+
+		classify(service, deltaZip);
+		assertEquals(Arrays.asList("Create taxonomy view", "Load delta", "Create reasoner factory", "Create OWL Ontology", "Create reasoner",
+				"Inference computation", "Extract ReasonerTaxonomy", "Generate normal form", "Write results to disk"), phaseNames);
+	}
+
+	@Test
+	public void testIncrementalReasoningMatchesSingleClassification() throws IOException, ReasonerServiceException {
+		File baseRF2SnapshotZip = zipFixture("Base_snapshot");
+		ResidentClassificationService service = ResidentClassificationService.load(Collections.singleton(baseRF2SnapshotZip), null, ELK_REASONER_FACTORY, true);
+		SnomedReasonerService snomedReasonerService = new SnomedReasonerService();
+		try {
+			// Each delta replaces the changes of the previous one
+			for (String delta : new String[] {"Add_Diabetes", "Empty", "Add_Laterality", "Add_Attribute", "Equivalence", "Add_Diabetes",
+					"Secondary_Diabetes_GCI", "Nested_GCI", "Triangle_Additional_Axiom", "Concept_Deletion_Orphan_Relationship", "Anatomy_Transitive_Reflexive"}) {
+				File deltaZip = zipFixture(delta + "_delta");
+				File expectedResults = TestFileUtil.newTemporaryFile();
+				snomedReasonerService.classify("", baseRF2SnapshotZip, deltaZip, expectedResults, ELK_REASONER_FACTORY, false);
+
+				File results = classify(service, deltaZip);
+				assertSameInferredRelationships(delta, expectedResults, results);
+				assertEquals(delta, equivalentConcepts(expectedResults), equivalentConcepts(results));
+			}
+		} finally {
+			service.dispose();
+		}
+	}
+
+	@Test
+	public void testClassifyOverHttp() throws IOException, ReasonerServiceException {
+		File baseRF2SnapshotZip = zipFixture("Base_snapshot");
+		File deltaZip = zipFixture("Add_Diabetes_delta");
+		ResidentClassificationService service = ResidentClassificationService.load(Collections.singleton(baseRF2SnapshotZip), null, ELK_REASONER_FACTORY);
+		File expectedResults = classify(service, deltaZip);
+
+		ClassificationHttpServer server = new ClassificationHttpServer(service, 0);
+		server.start();
+		try {
+			HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + ClassificationHttpServer.CLASSIFY_PATH + "?classificationId=test")
+					.openConnection();
+			connection.setRequestMethod("POST");
+			connection.setDoOutput(true);
+			try (OutputStream requestBody = connection.getOutputStream()) {
+				Files.copy(deltaZip.toPath(), requestBody);
+			}
+			assertEquals(200, connection.getResponseCode());
+			assertEquals("application/zip", connection.getContentType());
+
+			File results = TestFileUtil.newTemporaryFile();
+			try (InputStream responseBody = connection.getInputStream()) {
+				Files.copy(responseBody, results.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			assertSameInferredRelationships("HTTP", expectedResults, results);
+		} finally {
+			server.stop();
+		}
+	}
+
+	private File classify(ResidentClassificationService service, File deltaZip) throws IOException, ReasonerServiceException {
+		File results = TestFileUtil.newTemporaryFile();
+		try (InputStream delta = deltaZip != null ? new FileInputStream(deltaZip) : null;
+			 OutputStream resultsStream = new FileOutputStream(results)) {
+			service.classify("", delta, resultsStream);
+		}
+		return results;
+	}
+
+	// Referenced components without the generated member and set identifiers
+	private List<String> equivalentConcepts(File results) throws IOException {
+		List<String> referencedComponentIds = new ArrayList<>();
+		for (String line : readEquivalentConceptLinesTrim(results)) {
+			referencedComponentIds.add(line.split("\t")[5]);
+		}
+		return sorted(referencedComponentIds);
+	}
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.service.classification;
+
+import org.ihtsdo.otf.snomedboot.ReleaseImportException;
+import org.junit.Test;
+import org.snomed.otf.owltoolkit.service.ReasonerServiceException;
+import org.snomed.otf.owltoolkit.service.SnomedReasonerService;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomy;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomyBuilder;
+import org.snomed.otf.owltoolkit.testutil.SyntheticSnapshotGenerator;
+import org.snomed.otf.owltoolkit.util.InputStreamSet;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.snomed.otf.owltoolkit.service.SnomedReasonerService.ELK_REASONER_FACTORY;
+import static org.snomed.otf.owltoolkit.service.classification.TestFileUtil.readInferredRelationshipConcreteValuesLinesTrim;
+import static org.snomed.otf.owltoolkit.service.classification.TestFileUtil.readInferredRelationshipLinesTrim;
+
+public class SyntheticClassificationIntegrationTest {
+
+	@Test
+	public void testGeneratedContentIsDeterministic() throws IOException {
+		assertEquals(readEntries(SyntheticSnapshotGenerator.editionScale(500, 7).writeSnapshot()),
+				readEntries(SyntheticSnapshotGenerator.editionScale(500, 7).writeSnapshot()));
+		assertEquals(readEntries(SyntheticSnapshotGenerator.editionScale(500, 7).writeDelta(30)),
+				readEntries(SyntheticSnapshotGenerator.editionScale(500, 7).writeDelta(30)));
+	}
+
+	@Test
+	public void testLoadSnapshotAndDelta() throws IOException, ReleaseImportException {
+		SyntheticSnapshotGenerator generator = SyntheticSnapshotGenerator.editionScale(3000, 1);
+		File snapshot = generator.writeSnapshot();
+		File delta = generator.writeDelta(30);
+
+		SnomedTaxonomyBuilder snomedTaxonomyBuilder = new SnomedTaxonomyBuilder();
+		SnomedTaxonomy snapshotTaxonomy = snomedTaxonomyBuilder.build(new InputStreamSet(snapshot), null, false);
+		// Metadata, top level concept, object and data attributes, concepts, extension module and extension concepts
+		assertEquals(6 + 1 + 10 + 2 + 3000 + 1 + 30, snapshotTaxonomy.getAllConceptIds().size());
+		assertEquals(2, snapshotTaxonomy.getConceptModuleMap().values().stream().filter(moduleId -> moduleId != 900000000000012004L).distinct().count());
+
+		SnomedTaxonomy deltaTaxonomy = snomedTaxonomyBuilder.build(new InputStreamSet(snapshot), new FileInputStream(delta), false);
+		assertEquals("Ten new concepts and ten inactivated", snapshotTaxonomy.getAllConceptIds().size(), deltaTaxonomy.getAllConceptIds().size());
+		assertEquals(10, deltaTaxonomy.getInactivatedConcepts().size());
+	}
+
+	@Test
+	public void testClassifySnapshotAndDelta() throws IOException, ReasonerServiceException {
+		SyntheticSnapshotGenerator generator = SyntheticSnapshotGenerator.editionScale(3000, 1);
+		File results = TestFileUtil.newTemporaryFile();
+		new SnomedReasonerService().classify("", generator.writeSnapshot(), generator.writeDelta(30), results, ELK_REASONER_FACTORY, false);
+
+		assertTrue(readInferredRelationshipLinesTrim(results).size() > 3000);
+		assertTrue(readInferredRelationshipConcreteValuesLinesTrim(results).size() > 1);
+	}
+
+	private Map<String, String> readEntries(File archive) throws IOException {
+		Map<String, String> entries = new TreeMap<>();
+		try (ZipFile zipFile = new ZipFile(archive)) {
+			Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+			while (zipEntries.hasMoreElements()) {
+				ZipEntry zipEntry = zipEntries.nextElement();
+				try (BufferedReader reader = new BufferedReader(new InputStreamReader(zipFile.getInputStream(zipEntry), StandardCharsets.UTF_8))) {
+					entries.put(zipEntry.getName(), reader.lines().collect(Collectors.joining("\n")));
+				}
+			}
+		}
+		return entries;
+	}
+
+}
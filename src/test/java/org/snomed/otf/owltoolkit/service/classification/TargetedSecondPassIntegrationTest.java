@@ -0,0 +1,71 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.service.classification;
+
+import org.junit.Test;
+import org.snomed.otf.owltoolkit.metrics.ClassificationReport;
+import org.snomed.otf.owltoolkit.service.ReasonerServiceException;
+import org.snomed.otf.owltoolkit.service.SnomedReasonerService;
+import org.snomed.otf.owltoolkit.testutil.SyntheticSnapshotGenerator;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertTrue;
+import static org.snomed.otf.owltoolkit.service.classification.TestFileUtil.*;
+
+public class TargetedSecondPassIntegrationTest {
+
+	@Test
+	public void testTargetedSecondPassMatchesFullSecondPass() throws IOException, ReasonerServiceException {
+		assertSameResultsForFixtures(full(new HashMap<>()), targeted(1, new HashMap<>()), targeted(4, new HashMap<>()));
+	}
+
+	@Test
+	public void testTargetedSecondPassRecomputesFewerConceptsForSyntheticEdition() throws IOException, ReasonerServiceException {
+		SyntheticSnapshotGenerator generator = SyntheticSnapshotGenerator.editionScale(3000, 1);
+		Map<String, Long> fullCounters = new HashMap<>();
+		Map<String, Long> sequentialCounters = new HashMap<>();
+		Map<String, Long> parallelCounters = new HashMap<>();
+		assertSameResults("Synthetic", Collections.singleton(generator.writeSnapshot()), generator.writeDelta(30), full(fullCounters),
+				targeted(1, sequentialCounters), targeted(4, parallelCounters));
+		long fullRecomputedConcepts = fullCounters.get(ClassificationReport.SECOND_PASS_RECOMPUTED_CONCEPTS);
+		assertTrue("Full second pass recomputes concepts", fullRecomputedConcepts > 0);
+		// The parallel first pass sees fewer transitive graph edges, so it may leave more concepts to recompute than the sequential pass
+		assertTrue("Targeted second pass recomputes fewer concepts",
+				sequentialCounters.get(ClassificationReport.SECOND_PASS_RECOMPUTED_CONCEPTS) < fullRecomputedConcepts);
+		assertTrue("Targeted second pass after the parallel first pass recomputes fewer concepts",
+				parallelCounters.get(ClassificationReport.SECOND_PASS_RECOMPUTED_CONCEPTS) < fullRecomputedConcepts);
+	}
+
+	private Consumer<SnomedReasonerService> full(Map<String, Long> counters) {
+		return service -> {
+			service.setTargetedSecondPass(false);
+			service.setMetricsRegistry(countersRegistry(counters));
+		};
+	}
+
+	private Consumer<SnomedReasonerService> targeted(int parallelism, Map<String, Long> counters) {
+		return service -> {
+			service.setNormalFormParallelism(parallelism);
+			service.setMetricsRegistry(countersRegistry(counters));
+		};
+	}
+
+}
@@ -17,6 +17,10 @@ package org.snomed.otf.owltoolkit.service.classification;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.snomed.otf.owltoolkit.metrics.MetricsRegistry;
+import org.snomed.otf.owltoolkit.metrics.PhaseMetrics;
+import org.snomed.otf.owltoolkit.service.ReasonerServiceException;
+import org.snomed.otf.owltoolkit.service.SnomedReasonerService;
 import org.snomed.otf.snomedboot.testutil.ZipUtil;
 import org.springframework.util.StreamUtils;
 
@@ -25,10 +29,8 @@ import java.nio.file.CopyOption;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.Enumeration;
-import java.util.List;
+import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.StreamSupport;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
@@ -37,6 +39,7 @@ import java.util.zip.ZipOutputStream;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.snomed.otf.owltoolkit.service.SnomedReasonerService.ELK_REASONER_FACTORY;
 
 public class TestFileUtil {
 
@@ -45,6 +48,100 @@ public class TestFileUtil {
 	private static final String RELATIONSHIP_CONCRETE_VALUES_DELTA = "sct2_RelationshipConcreteValues_Delta_Classification_";
 	private static final Logger LOGGER = LoggerFactory.getLogger(TestFileUtil.class);
 
+	// Snapshots and deltas of the classification integration tests, used to compare the results of different settings
+	static final String[][] CLASSIFICATION_FIXTURES = {
+			{"Base_snapshot", "Empty_delta"},
+			{"Base_snapshot", "Add_Diabetes_delta"},
+			{"Base_snapshot", "Add_Attribute_delta"},
+			{"Base_snapshot", "Add_Attribute_with_two_parents_delta"},
+			{"Base_snapshot", "Add_Laterality_delta"},
+			{"Base_snapshot", "Concept_Deletion_Orphan_Relationship_delta"},
+			{"Base_snapshot", "Equivalence_delta"},
+			{"Base_snapshot", "Secondary_Diabetes_GCI_delta"},
+			{"Base_snapshot", "Nested_GCI_delta"},
+			{"Base_snapshot", "Triangle_Additional_Axiom_delta"},
+			{"Base_snapshot", "Active_Ingredient_Property_Chain_delta"},
+			{"Base_snapshot", "Anatomy_Transitive_Reflexive_delta"},
+			{"Base_some_Inactive_snapshot", null},
+			{"Base_with_Axioms_snapshot", null},
+			{"Base_with_Axioms_snapshot", "Change_Axiom_Parents_delta"},
+			{"Base_with_extra_attribute_snapshot", "Inactivate_Attribute_delta"},
+			{"Base_with_Concepts_as_numbers_snapshot", "Concrete_Domain_conversion_delta"},
+			{"Base_with_Concepts_as_numbers_snapshot", "Concrete_Domain_conversion_classified_delta"},
+			{"Base_with_Concepts_as_numbers_snapshot", "Concrete_Domain_conversion_classified_delta_with_change"},
+			{"Concept_Inactivation_snapshot", "Concept_Inactivation_delta"},
+			{"Concept_Inactivation_snapshot", "Concept_Reactivation_delta"},
+			{"Base_with_Anthrax_snapshot", "Empty_delta"},
+	};
+
+	/**
+	 * Classifies each of the {@link #CLASSIFICATION_FIXTURES} with the expected setting and then once with each of the other settings,
+	 * asserting that the inferred relationships are the same.
+	 */
+	@SafeVarargs
+	static void assertSameResultsForFixtures(Consumer<SnomedReasonerService> expectedSetting, Consumer<SnomedReasonerService>... settings)
+			throws IOException, ReasonerServiceException {
+
+		for (String[] fixture : CLASSIFICATION_FIXTURES) {
+			File snapshotZip = zipFixture(fixture[0]);
+			File deltaZip = fixture[1] != null ? zipFixture(fixture[1]) : null;
+			assertSameResults(Arrays.toString(fixture), Collections.singleton(snapshotZip), deltaZip, expectedSetting, settings);
+		}
+	}
+
+	/**
+	 * Classifies with the expected setting and then once with each of the other settings, asserting that the inferred relationships are the same.
+	 */
+	@SafeVarargs
+	static void assertSameResults(String message, Set<File> snapshotZips, File deltaZip,
+			Consumer<SnomedReasonerService> expectedSetting, Consumer<SnomedReasonerService>... settings) throws IOException, ReasonerServiceException {
+
+		File expectedResults = classify(expectedSetting, snapshotZips, deltaZip);
+		for (Consumer<SnomedReasonerService> setting : settings) {
+			assertSameInferredRelationships(message, expectedResults, classify(setting, snapshotZips, deltaZip));
+		}
+	}
+
+	static void assertSameInferredRelationships(String message, File expectedResults, File results) throws IOException {
+		assertEquals(message, sorted(readInferredRelationshipLinesTrim(expectedResults)), sorted(readInferredRelationshipLinesTrim(results)));
+		assertEquals(message, sorted(readInferredRelationshipConcreteValuesLinesTrim(expectedResults)),
+				sorted(readInferredRelationshipConcreteValuesLinesTrim(results)));
+	}
+
+	static File classify(Consumer<SnomedReasonerService> setting, Set<File> snapshotZips, File deltaZip) throws IOException, ReasonerServiceException {
+		SnomedReasonerService snomedReasonerService = new SnomedReasonerService();
+		setting.accept(snomedReasonerService);
+		File results = newTemporaryFile();
+		snomedReasonerService.classify("", snapshotZips, deltaZip, results, ELK_REASONER_FACTORY, false);
+		return results;
+	}
+
+	/**
+	 * @return registry adding the values of the counters set on it to the map.
+	 */
+	static MetricsRegistry countersRegistry(Map<String, Long> counters) {
+		return new MetricsRegistry() {
+			@Override
+			public void recordPhase(PhaseMetrics phaseMetrics) {
+			}
+
+			@Override
+			public void setCounter(String name, long value) {
+				counters.merge(name, value, Long::sum);
+			}
+		};
+	}
+
+	static File zipFixture(String name) throws IOException {
+		return ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_" + name);
+	}
+
+	static List<String> sorted(List<String> lines) {
+		List<String> sorted = new ArrayList<>(lines);
+		Collections.sort(sorted);
+		return sorted;
+	}
+
 	public static List<String> readInferredRelationshipLinesTrim(File zipFile) throws IOException {
 		return readLinesTrim(zipFile, RELATIONSHIP_DELTA);
 	}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.taxonomy;
+
+import org.junit.Test;
+import org.snomed.otf.owltoolkit.domain.Relationship;
+
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ColumnarRelationshipStoreTest {
+
+	private static final long MODULE = 900000000000207008L;
+	private static final long INFERRED = 900000000000011006L;
+
+	@Test
+	public void testRowsLoadedAndModifiedBeforeFirstRead() {
+		ColumnarRelationshipStore store = new ColumnarRelationshipStore(true);
+		for (int i = 0; i < 3000; i++) {
+			long conceptId = 3000 - i % 1000;
+			assertTrue(store.addOrModifyRelationship(conceptId, relationship(i + 1, conceptId + 1, 0)));
+		}
+		assertFalse(store.addOrModifyRelationship(2500, relationship(1501, 2501, 3)));
+		store.removeRelationship(2500, 2501);
+		store.removeRelationship(2500, 99999);
+		store.addRelationship(10, relationship(5000, 11, new Relationship.ConcreteValue("#5")));
+
+		assertEquals(3000, store.getRelationshipCount());
+		assertEquals(1001, store.getConceptIds().size());
+		Set<Relationship> relationships = store.getRelationships(2500);
+		assertEquals(2, relationships.size());
+		assertTrue(relationships.contains(relationship(1501, 2501, 3)));
+		assertFalse(relationships.contains(relationship(2501, 2501, 0)));
+		assertEquals("5", store.getRelationships(10).iterator().next().getValue().asString());
+		assertTrue(store.getRelationships(1).isEmpty());
+	}
+
+	@Test
+	public void testChangesAfterFirstReadHeldInOverlay() {
+		ColumnarRelationshipStore store = new ColumnarRelationshipStore(true);
+		store.addOrModifyRelationship(100, relationship(1, 101, 0));
+		store.addOrModifyRelationship(100, relationship(2, 102, 0));
+		assertEquals(2, store.getRelationships(100).size());
+
+		assertFalse(store.addOrModifyRelationship(100, relationship(1, 101, 2)));
+		store.removeRelationship(100, 2);
+		store.addRelationship(200, relationship(3, 201, 0));
+
+		assertEquals(1, store.getRelationships(100).size());
+		assertEquals(2, store.getRelationships(100).iterator().next().getGroup());
+		assertEquals(2, store.getRelationshipCount());
+		assertEquals(2, store.getConceptIds().size());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testRelationshipsReadOnly() {
+		ColumnarRelationshipStore store = new ColumnarRelationshipStore(false);
+		store.addRelationship(100, relationship(1, 101, 0));
+		store.getRelationships(100).add(relationship(2, 102, 0));
+	}
+
+	private static Relationship relationship(long relationshipId, long destinationId, int group) {
+		return new Relationship(relationshipId, 20200131, MODULE, 116680003L, destinationId, group, 0, false, INFERRED);
+	}
+
+	private static Relationship relationship(long relationshipId, long typeId, Relationship.ConcreteValue value) {
+		return new Relationship(relationshipId, 20200131, MODULE, typeId, value, 0, 0, false, INFERRED);
+	}
+
+}
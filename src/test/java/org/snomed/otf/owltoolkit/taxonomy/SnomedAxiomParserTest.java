@@ -0,0 +1,118 @@
+package org.snomed.otf.owltoolkit.taxonomy;
+
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.model.OWLSubClassOfAxiom;
+import org.snomed.otf.owltoolkit.ontology.SnomedEntityCache;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class SnomedAxiomParserTest {
+
+	private final SnomedAxiomParser parser = new SnomedAxiomParser();
+	private final AxiomDeserialiser owlApiDeserialiser = new AxiomDeserialiser(false, false);
+
+	@Test
+	public void testTestResourceAxiomsMatchOwlApi() throws IOException, OWLOntologyCreationException {
+		Set<String> expressions = new HashSet<>();
+		try (Stream<Path> paths = Files.walk(Paths.get("src/test/resources"))) {
+			for (Path path : paths.filter(path -> path.getFileName().toString().contains("sRefset_OWLAxiom")).collect(Collectors.toList())) {
+				for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+					String[] columns = line.split("\t");
+					if (!line.startsWith("#") && columns.length > 6 && !columns[0].equals("id")) {
+						expressions.add(columns[6]);
+					}
+				}
+			}
+		}
+		assertTrue(expressions.size() > 20);
+		for (String expression : expressions) {
+			assertParsedSameAsOwlApi(expression);
+		}
+	}
+
+	@Test
+	public void testSubsetConstructsMatchOwlApi() throws OWLOntologyCreationException {
+		assertParsedSameAsOwlApi("SubClassOf(:113331007 :138875005)");
+		assertParsedSameAsOwlApi("  SubClassOf( :113331007\n\t:138875005 )  ");
+		assertParsedSameAsOwlApi("SubClassOf(<http://snomed.info/id/113331007> <http://snomed.info/id/138875005>)");
+		assertParsedSameAsOwlApi("EquivalentClasses(:362969004 ObjectIntersectionOf(:404684003 ObjectSomeValuesFrom(:609096000 ObjectSomeValuesFrom(:363698007 :113331007))))");
+		assertParsedSameAsOwlApi("SubClassOf(ObjectIntersectionOf(:73211009 ObjectSomeValuesFrom(:42752001 :100102001)) :8801005)");
+		assertParsedSameAsOwlApi("SubClassOf(:18736003 ObjectIntersectionOf(:12481008 :76145000 ObjectSomeValuesFrom(:609096000 ObjectIntersectionOf(ObjectSomeValuesFrom(:260686004 :129287005) ObjectSomeValuesFrom(:405813007 :84301002)))))");
+		assertParsedSameAsOwlApi("SubClassOf(:871788009 ObjectIntersectionOf(:138875005 DataHasValue(:1142137007 \"1\"^^xsd:integer)))");
+		assertParsedSameAsOwlApi("SubClassOf(:871788009 ObjectIntersectionOf(:138875005 DataHasValue(:1142138002 \"2.5\"^^xsd:decimal)))");
+		assertParsedSameAsOwlApi("SubClassOf(:871788009 ObjectIntersectionOf(:138875005 DataHasValue(:1142138003 \"some \\\"text\\\"\"^^xsd:string)))");
+		assertParsedSameAsOwlApi("SubClassOf(:871788009 ObjectIntersectionOf(:138875005 DataHasValue(:1142138003 \"plain\")))");
+		assertParsedSameAsOwlApi("SubObjectPropertyOf(:363698007 :762705008)");
+		assertParsedSameAsOwlApi("SubObjectPropertyOf(ObjectPropertyChain(:127489000 :738774007) :127489000)");
+		assertParsedSameAsOwlApi("SubDataPropertyOf(:1142137007 :762706009)");
+		assertParsedSameAsOwlApi("TransitiveObjectProperty(:733928003)");
+		assertParsedSameAsOwlApi("ReflexiveObjectProperty(:733928003)");
+	}
+
+	@Test
+	public void testNamesWhichAreNotConceptIdsMatchOwlApi() throws OWLOntologyCreationException {
+		assertParsedSameAsOwlApi("SubClassOf(:0113331007 :138875005)");
+		assertParsedSameAsOwlApi("SubClassOf(:113331007a :138875005)");
+		assertParsedSameAsOwlApi("SubClassOf(:1133310071133310071133310 :138875005)");
+		assertParsedSameAsOwlApi("SubObjectPropertyOf(:363698007-x :762705008)");
+	}
+
+	@Test
+	public void testConceptEntitiesTakenFromEntityCache() {
+		OWLDataFactory factory = OWLManager.getOWLDataFactory();
+		SnomedEntityCache entityCache = new SnomedEntityCache(factory);
+		SnomedAxiomParser parser = new SnomedAxiomParser(factory, entityCache);
+		OWLSubClassOfAxiom axiom = (OWLSubClassOfAxiom) parser.parse(
+				"SubClassOf(:871788009 ObjectIntersectionOf(:138875005 ObjectSomeValuesFrom(:363698007 :113331007) DataHasValue(:1142137007 \"1\"^^xsd:integer)))");
+
+		assertSame(entityCache.getOwlClass(871788009L), axiom.getSubClass());
+		Set<OWLEntity> signature = axiom.getSignature();
+		assertTrue(signature.contains(entityCache.getOwlClass(138875005L)));
+		assertTrue(signature.contains(entityCache.getOwlObjectProperty(363698007L)));
+		assertTrue(signature.contains(entityCache.getOwlDataProperty(1142137007L)));
+		assertEquals(5, entityCache.stats().missCount());
+	}
+
+	@Test
+	public void testUnsupportedOrMalformedReturnsNull() {
+		assertNull(parser.parse("DisjointClasses(:1 :2)"));
+		assertNull(parser.parse("SubClassOf(:1 ObjectUnionOf(:2 :3))"));
+		assertNull(parser.parse("SubClassOf(Annotation(rdfs:label \"x\") :1 :2)"));
+		assertNull(parser.parse("SubClassOf(:1 ObjectIntersectionOf(:2))"));
+		assertNull(parser.parse("SubClassOf(:1 DataHasValue(:2 \"x\"@en))"));
+		assertNull(parser.parse("SubClassOf(owl:Thing :2)"));
+		assertNull(parser.parse("SubClassOf(:1 :2) SubClassOf(:3 :4)"));
+		assertNull(parser.parse("SubClassOf(:1 ObjectIntersectionOf("));
+		assertNull(parser.parse(""));
+	}
+
+	@Test
+	public void testDeserialiserFallsBackToOwlApi() throws OWLOntologyCreationException {
+		AxiomDeserialiser deserialiser = new AxiomDeserialiser(false, true);
+		String expression = "SubClassOf(:1 ObjectUnionOf(:2 :3))";
+		assertEquals(owlApiDeserialiser.deserialiseAxiom(expression, null), deserialiser.deserialiseAxiom(expression, null));
+	}
+
+	private void assertParsedSameAsOwlApi(String expression) throws OWLOntologyCreationException {
+		OWLAxiom expected = owlApiDeserialiser.deserialiseAxiom(expression, null);
+		OWLAxiom actual = parser.parse(expression);
+		assertNotNull("Expression should be within the supported subset: " + expression, actual);
+		assertEquals(expression, expected, actual);
+		assertEquals(expected.toString(), actual.toString());
+	}
+
+}
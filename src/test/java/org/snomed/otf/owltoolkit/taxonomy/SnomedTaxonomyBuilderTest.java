@@ -2,12 +2,15 @@ package org.snomed.otf.owltoolkit.taxonomy;
 
 import org.ihtsdo.otf.snomedboot.ReleaseImportException;
 import org.junit.Test;
+import org.snomed.otf.owltoolkit.domain.Relationship;
 import org.snomed.otf.owltoolkit.util.InputStreamSet;
 import org.snomed.otf.snomedboot.testutil.ZipUtil;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
 
 import static org.junit.Assert.*;
 
@@ -25,4 +28,81 @@ public class SnomedTaxonomyBuilderTest {
 		assertEquals("The donated axiom must remain present after the US duplicate is made inactive", 1, snomedTaxonomy.getConceptAxiomMap().get(362969004L).size());
 	}
 
+	@Test
+	public void testAxiomDeserialisersStoppedWhenDeltaFails() throws IOException, ReleaseImportException, InterruptedException {
+		SnomedTaxonomyBuilder builder = new SnomedTaxonomyBuilder();
+		File snapshot = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Base_snapshot");
+		// An active axiom followed by a row with missing columns
+		File delta = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Malformed_Axiom_delta");
+		SnomedTaxonomy snomedTaxonomy = builder.build(new InputStreamSet(snapshot), null, false);
+
+		for (int i = 0; i < 3; i++) {
+			try (FileInputStream deltaStream = new FileInputStream(delta)) {
+				builder.applyDelta(snomedTaxonomy.createCopyOnWriteView(), deltaStream);
+				fail("Malformed delta must not load");
+			} catch (ReleaseImportException | RuntimeException e) {
+				// Expected
+			}
+		}
+		assertEquals("Axiom deserialiser threads must stop when the import fails", 0, countAxiomDeserialiserThreads());
+	}
+
+	private long countAxiomDeserialiserThreads() throws InterruptedException {
+		long count = 0;
+		// Threads may take a moment to exit after the pool has terminated
+		for (int attempt = 0; attempt < 50; attempt++) {
+			count = Thread.getAllStackTraces().keySet().stream()
+					.filter(thread -> thread.isAlive() && thread.getName().startsWith("axiom-deserialiser-")).count();
+			if (count == 0) {
+				break;
+			}
+			Thread.sleep(100);
+		}
+		return count;
+	}
+
+	@Test
+	public void testColumnarRelationshipStoreMatchesMapStore() throws IOException, ReleaseImportException {
+		final SnomedTaxonomyBuilder builder = new SnomedTaxonomyBuilder();
+		File snapshot = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Concept_Inactivation_snapshot");
+		File delta = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Concept_Inactivation_delta");
+
+		final SnomedTaxonomy mapTaxonomy = builder.build(new InputStreamSet(snapshot), new FileInputStream(delta), false, RelationshipStoreType.MAP);
+		final SnomedTaxonomy columnarTaxonomy = builder.build(new InputStreamSet(snapshot), new FileInputStream(delta), false, RelationshipStoreType.COLUMNAR);
+		assertEquals(RelationshipStoreType.COLUMNAR, columnarTaxonomy.getRelationshipStoreType());
+
+		Set<Long> conceptIds = new HashSet<>(mapTaxonomy.getAllConceptIds());
+		conceptIds.addAll(mapTaxonomy.getInactivatedConcepts());
+		assertFalse(conceptIds.isEmpty());
+		for (Long conceptId : conceptIds) {
+			assertEquals(mapTaxonomy.getStatedRelationships(conceptId), columnarTaxonomy.getStatedRelationships(conceptId));
+			assertEquals(mapTaxonomy.getInferredRelationships(conceptId), columnarTaxonomy.getInferredRelationships(conceptId));
+			assertEquals(mapTaxonomy.getInactiveInferredRelationships(conceptId), columnarTaxonomy.getInactiveInferredRelationships(conceptId));
+			assertEquals(new HashSet<>(mapTaxonomy.getNonIsAStatements(conceptId)), new HashSet<>(columnarTaxonomy.getNonIsAStatements(conceptId)));
+		}
+		assertEquals(mapTaxonomy.getStatedRelationshipCount(), columnarTaxonomy.getStatedRelationshipCount());
+		assertEquals(mapTaxonomy.getInferredRelationshipCount(), columnarTaxonomy.getInferredRelationshipCount());
+	}
+
+	@Test
+	public void testColumnarRelationshipStoreAcceptsChangesAfterCompaction() throws IOException, ReleaseImportException {
+		final SnomedTaxonomyBuilder builder = new SnomedTaxonomyBuilder();
+		File snapshot = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Concept_Inactivation_snapshot");
+		final SnomedTaxonomy taxonomy = builder.build(new InputStreamSet(snapshot), null, false, RelationshipStoreType.COLUMNAR);
+
+		Long conceptId = taxonomy.getAllConceptIds().stream().filter(id -> !taxonomy.getStatedRelationships(id).isEmpty()).findFirst().orElseThrow(AssertionError::new);
+		int statedCount = taxonomy.getStatedRelationshipCount();
+		int conceptStatedCount = taxonomy.getStatedRelationships(conceptId).size();
+		Relationship existing = taxonomy.getStatedRelationships(conceptId).iterator().next();
+
+		taxonomy.addOrModifyRelationship(true, conceptId, new Relationship(existing.getRelationshipId(), 20200101, existing.getModuleId(), existing.getTypeId(),
+				existing.getDestinationId(), 5, 0, false, existing.getCharacteristicTypeId()));
+		assertEquals(conceptStatedCount, taxonomy.getStatedRelationships(conceptId).size());
+		assertTrue(taxonomy.getStatedRelationships(conceptId).stream().anyMatch(r -> r.getRelationshipId() == existing.getRelationshipId() && r.getGroup() == 5));
+
+		taxonomy.removeRelationship(true, conceptId.toString(), Long.toString(existing.getRelationshipId()));
+		assertEquals(conceptStatedCount - 1, taxonomy.getStatedRelationships(conceptId).size());
+		assertEquals(statedCount - 1, taxonomy.getStatedRelationshipCount());
+	}
+
 }
\ No newline at end of file
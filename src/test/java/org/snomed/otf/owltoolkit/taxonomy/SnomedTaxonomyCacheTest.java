@@ -0,0 +1,152 @@
+package org.snomed.otf.owltoolkit.taxonomy;
+
+import org.ihtsdo.otf.snomedboot.ReleaseImportException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.snomed.otf.owltoolkit.domain.Relationship;
+import org.snomed.otf.owltoolkit.util.InputStreamSet;
+import org.snomed.otf.snomedboot.testutil.ZipUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class SnomedTaxonomyCacheTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testSerialiserRoundTrip() throws IOException, ReleaseImportException, OWLOntologyCreationException {
+		File snapshot = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Concept_Inactivation_snapshot");
+		File delta = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Concept_Inactivation_delta");
+		SnomedTaxonomy taxonomy = new SnomedTaxonomyBuilder().build(new InputStreamSet(snapshot), new FileInputStream(delta), false);
+
+		// Axiom outside of the binary encoding, written as functional syntax
+		OWLAxiom unionAxiom = new AxiomDeserialiser().deserialiseAxiom(
+				"SubClassOf(:362969004 ObjectUnionOf(:138875005 :404684003))", "1d8c5a2c-0c3a-4b9a-9b0a-0d6c2fbe1e11");
+		taxonomy.addAxiom("362969004", "1d8c5a2c-0c3a-4b9a-9b0a-0d6c2fbe1e11", unionAxiom);
+
+		SnomedTaxonomySerialiser serialiser = new SnomedTaxonomySerialiser();
+		File file = temporaryFolder.newFile();
+		serialiser.write(taxonomy, "key", file);
+
+		assertNull("Key mismatch must be treated as a miss", serialiser.read(file, "other-key"));
+		SnomedTaxonomy readTaxonomy = serialiser.read(file, "key");
+		assertNotNull(readTaxonomy);
+		assertTaxonomiesEqual(taxonomy, readTaxonomy);
+		assertTrue(readTaxonomy.getConceptAxiomMap().get(362969004L).contains(unionAxiom));
+	}
+
+	@Test
+	public void testAxiomWithoutIdNotWritten() throws IOException, OWLOntologyCreationException {
+		SnomedTaxonomy taxonomy = new SnomedTaxonomy();
+		AxiomDeserialiser axiomDeserialiser = new AxiomDeserialiser();
+		taxonomy.addAxiom("362969004", "1d8c5a2c-0c3a-4b9a-9b0a-0d6c2fbe1e11", axiomDeserialiser.deserialiseAxiom(
+				"SubClassOf(:362969004 :404684003)", "1d8c5a2c-0c3a-4b9a-9b0a-0d6c2fbe1e11"));
+		// The same axiom id used for another concept leaves the first axiom without an id
+		taxonomy.addAxiom("404684003", "1d8c5a2c-0c3a-4b9a-9b0a-0d6c2fbe1e11", axiomDeserialiser.deserialiseAxiom(
+				"SubClassOf(:404684003 :138875005)", "1d8c5a2c-0c3a-4b9a-9b0a-0d6c2fbe1e11"));
+
+		try {
+			new SnomedTaxonomySerialiser().write(taxonomy, "key", temporaryFolder.newFile());
+			fail("An axiom without an id must not be written");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("362969004"));
+		}
+	}
+
+	@Test
+	public void testSameTaxonomyWrittenToSameBytes() throws IOException, ReleaseImportException, OWLOntologyCreationException {
+		File snapshot = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Base_snapshot");
+		SnomedTaxonomy taxonomy = new SnomedTaxonomyBuilder().build(new InputStreamSet(snapshot), false);
+		SnomedTaxonomySerialiser serialiser = new SnomedTaxonomySerialiser();
+		File file = temporaryFolder.newFile();
+		serialiser.write(taxonomy, "key", file);
+
+		// Reading loads everything back in a different order to the parallel snapshot import
+		File rewrittenFile = temporaryFolder.newFile();
+		serialiser.write(serialiser.read(file, "key", RelationshipStoreType.COLUMNAR), "key", rewrittenFile);
+		assertArrayEquals(Files.readAllBytes(file.toPath()), Files.readAllBytes(rewrittenFile.toPath()));
+
+		// Axioms and relationships of one concept added in opposite orders
+		AxiomDeserialiser axiomDeserialiser = new AxiomDeserialiser();
+		OWLAxiom firstAxiom = axiomDeserialiser.deserialiseAxiom("SubClassOf(:362969004 :404684003)", "1d8c5a2c-0c3a-4b9a-9b0a-0d6c2fbe1e11");
+		OWLAxiom secondAxiom = axiomDeserialiser.deserialiseAxiom("SubClassOf(:362969004 :138875005)", "9a7d4c1e-5b2f-4e8a-8c3d-2f6b1a0e7d55");
+		Relationship firstRelationship = new Relationship(100022L, 20180731, 900000000000207008L, 116680003L, 404684003L, 0, 0, false, 900000000000011006L);
+		Relationship secondRelationship = new Relationship(100023L, 20180731, 900000000000207008L, 116680003L, 138875005L, 0, 0, false, 900000000000011006L);
+
+		SnomedTaxonomy inOrder = new SnomedTaxonomy();
+		inOrder.addAxiom("362969004", "1d8c5a2c-0c3a-4b9a-9b0a-0d6c2fbe1e11", firstAxiom);
+		inOrder.addAxiom("362969004", "9a7d4c1e-5b2f-4e8a-8c3d-2f6b1a0e7d55", secondAxiom);
+		inOrder.addOrModifyRelationship(false, 362969004L, firstRelationship);
+		inOrder.addOrModifyRelationship(false, 362969004L, secondRelationship);
+
+		SnomedTaxonomy reversed = new SnomedTaxonomy();
+		reversed.addAxiom("362969004", "9a7d4c1e-5b2f-4e8a-8c3d-2f6b1a0e7d55", secondAxiom);
+		reversed.addAxiom("362969004", "1d8c5a2c-0c3a-4b9a-9b0a-0d6c2fbe1e11", firstAxiom);
+		reversed.addOrModifyRelationship(false, 362969004L, secondRelationship);
+		reversed.addOrModifyRelationship(false, 362969004L, firstRelationship);
+
+		File inOrderFile = temporaryFolder.newFile();
+		File reversedFile = temporaryFolder.newFile();
+		serialiser.write(inOrder, "key", inOrderFile);
+		serialiser.write(reversed, "key", reversedFile);
+		assertArrayEquals(Files.readAllBytes(inOrderFile.toPath()), Files.readAllBytes(reversedFile.toPath()));
+	}
+
+	@Test
+	public void testBuildUsingCache() throws IOException, ReleaseImportException {
+		File snapshot = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Base_snapshot");
+		File delta = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Add_Diabetes_delta");
+		SnomedTaxonomyCache cache = new SnomedTaxonomyCache(temporaryFolder.getRoot());
+		Set<File> snapshots = Collections.singleton(snapshot);
+		String key = cache.getKey(snapshots);
+
+		SnomedTaxonomyBuilder builder = new SnomedTaxonomyBuilder();
+		SnomedTaxonomy expected = builder.build(new InputStreamSet(snapshot), new FileInputStream(delta), false);
+
+		assertFalse(cache.getFile(key).exists());
+		SnomedTaxonomy firstBuild = builder.build(snapshots, new FileInputStream(delta), cache, RelationshipStoreType.MAP);
+		assertTrue("Snapshot taxonomy must be stored on a cache miss", cache.getFile(key).isFile());
+		assertTaxonomiesEqual(expected, firstBuild);
+
+		SnomedTaxonomy secondBuild = builder.build(snapshots, new FileInputStream(delta), cache, RelationshipStoreType.COLUMNAR);
+		assertTaxonomiesEqual(expected, secondBuild);
+	}
+
+	private void assertTaxonomiesEqual(SnomedTaxonomy expected, SnomedTaxonomy actual) {
+		assertEquals(expected.getAllConceptIds(), actual.getAllConceptIds());
+		assertEquals(expected.getFullyDefinedConceptIds(), actual.getFullyDefinedConceptIds());
+		assertEquals(expected.getInactivatedConcepts(), actual.getInactivatedConcepts());
+		assertEquals(expected.getConceptModuleMap(), actual.getConceptModuleMap());
+		assertEquals(expected.getOntologyNamespaces(), actual.getOntologyNamespaces());
+		assertEquals(expected.getOntologyHeader(), actual.getOntologyHeader());
+		assertEquals(expected.getUngroupedRolesByContentType(), actual.getUngroupedRolesByContentType());
+
+		Set<Long> conceptIds = new HashSet<>(expected.getAllConceptIds());
+		conceptIds.addAll(expected.getInactivatedConcepts());
+		for (Long conceptId : conceptIds) {
+			assertEquals(new HashSet<>(expected.getStatedRelationships(conceptId)), new HashSet<>(actual.getStatedRelationships(conceptId)));
+			assertEquals(expected.getInferredRelationships(conceptId), actual.getInferredRelationships(conceptId));
+			assertEquals(expected.getInactiveInferredRelationships(conceptId), actual.getInactiveInferredRelationships(conceptId));
+		}
+		assertEquals(expected.getStatedRelationshipCount(), actual.getStatedRelationshipCount());
+		assertEquals(expected.getInferredRelationshipCount(), actual.getInferredRelationshipCount());
+
+		assertEquals(expected.getAxiomCount(), actual.getAxiomCount());
+		assertEquals(expected.getAxiomsById(), actual.getAxiomsById());
+		assertEquals(expected.getConceptAxiomMap().keySet(), actual.getConceptAxiomMap().keySet());
+		for (Map.Entry<Long, List<OWLAxiom>> entry : expected.getConceptAxiomMap().entrySet()) {
+			assertEquals(new HashSet<>(entry.getValue()), new HashSet<>(actual.getConceptAxiomMap().get(entry.getKey())));
+		}
+	}
+
+}
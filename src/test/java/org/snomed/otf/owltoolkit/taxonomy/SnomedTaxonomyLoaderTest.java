@@ -0,0 +1,63 @@
+package org.snomed.otf.owltoolkit.taxonomy;
+
+import org.ihtsdo.otf.snomedboot.ReleaseImportException;
+import org.junit.Test;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.snomed.otf.owltoolkit.constants.Concepts;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class SnomedTaxonomyLoaderTest {
+
+	private static final String[] FIELD_NAMES = {"id", "effectiveTime", "active", "moduleId", "refsetId", "referencedComponentId", "owlExpression"};
+
+	@Test
+	public void testParallelAxiomDeserialisationMatchesSequential() throws ReleaseImportException {
+		SnomedTaxonomyLoader sequentialLoader = new SnomedTaxonomyLoader();
+		SnomedTaxonomyLoader parallelLoader = new SnomedTaxonomyLoader(null, null, true);
+
+		Map<String, String> axioms = new HashMap<>();
+		for (int i = 0; i < 5_000; i++) {
+			long conceptId = 100_000 + i;
+			axioms.put(UUID.randomUUID().toString(), String.format("SubClassOf(:%s ObjectIntersectionOf(:%s ObjectSomeValuesFrom(:609096000 ObjectSomeValuesFrom(:%s :%s))))",
+					conceptId, conceptId - 1, 363698007, 200_000 + i % 50));
+		}
+
+		axioms.forEach((id, expression) -> addAxiomMember(sequentialLoader, id, expression));
+		// Members are normally supplied by several release importer threads
+		axioms.entrySet().parallelStream().forEach(entry -> addAxiomMember(parallelLoader, entry.getKey(), entry.getValue()));
+
+		sequentialLoader.reportErrors();
+		parallelLoader.reportErrors();
+
+		Map<String, OWLAxiom> expected = sequentialLoader.getSnomedTaxonomy().getAxiomsById();
+		Map<String, OWLAxiom> actual = parallelLoader.getSnomedTaxonomy().getAxiomsById();
+		assertEquals(axioms.size(), actual.size());
+		assertEquals(expected, actual);
+		assertEquals(sequentialLoader.getSnomedTaxonomy().getConceptAxiomMap(), parallelLoader.getSnomedTaxonomy().getConceptAxiomMap());
+	}
+
+	@Test
+	public void testParallelAxiomDeserialisationReportsErrors() {
+		SnomedTaxonomyLoader parallelLoader = new SnomedTaxonomyLoader(null, null, true);
+		IntStream.range(0, 100).parallel().forEach(i -> addAxiomMember(parallelLoader, "member-" + i, String.format("SubClassOf(:%s :138875005)", 100_000 + i)));
+		addAxiomMember(parallelLoader, "bad-member", "SubClassOf(:100 ObjectIntersectionOf(");
+		try {
+			parallelLoader.reportErrors();
+			fail("Expected ReleaseImportException");
+		} catch (ReleaseImportException e) {
+			assertEquals("Failed to parse OWL Axiom in reference set member 'bad-member'", e.getMessage());
+		}
+	}
+
+	private void addAxiomMember(SnomedTaxonomyLoader loader, String id, String expression) {
+		String referencedComponentId = expression.substring(expression.indexOf(':') + 1, expression.indexOf(' '));
+		loader.newReferenceSetMemberState(FIELD_NAMES, id, "", "1", Concepts.SNOMED_CT_CORE_MODULE, Concepts.OWL_AXIOM_REFERENCE_SET, referencedComponentId, expression);
+	}
+
+}
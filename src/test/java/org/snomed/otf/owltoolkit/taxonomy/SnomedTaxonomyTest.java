@@ -0,0 +1,90 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.taxonomy;
+
+import com.google.common.collect.Sets;
+import org.junit.Test;
+import org.snomed.otf.owltoolkit.constants.Concepts;
+import org.snomed.otf.owltoolkit.domain.Relationship;
+
+import static org.junit.Assert.*;
+
+public class SnomedTaxonomyTest {
+
+	private static final long STATED = Long.parseLong(Concepts.STATED_RELATIONSHIP);
+
+	@Test
+	public void testDescendantsFollowAllParents() {
+		SnomedTaxonomy taxonomy = new SnomedTaxonomy();
+		// 4 has parents 2 and 3, only 3 is below 1
+		addIsA(taxonomy, 10, 2, Concepts.ROOT_LONG);
+		addIsA(taxonomy, 11, 1, Concepts.ROOT_LONG);
+		addIsA(taxonomy, 12, 3, 1);
+		addIsA(taxonomy, 13, 4, 2);
+		addIsA(taxonomy, 14, 4, 3);
+		addIsA(taxonomy, 15, 5, 4);
+
+		assertEquals(Sets.newHashSet(3L, 4L, 5L), taxonomy.getDescendants(1L));
+		assertEquals(Sets.newHashSet(2L, 3L, 1L, Concepts.ROOT_LONG), taxonomy.getAncestors(4L));
+
+		// Changes are reflected once the index has been built
+		taxonomy.removeRelationship(true, "4", "14");
+		assertEquals(Sets.newHashSet(3L), taxonomy.getDescendants(1L));
+		addIsA(taxonomy, 16, 2, 3);
+		assertEquals(Sets.newHashSet(2L, 3L, 4L, 5L), taxonomy.getDescendants(1L));
+
+		// Views have their own index
+		SnomedTaxonomy view = taxonomy.createCopyOnWriteView();
+		view.removeRelationship(true, "2", "16");
+		assertEquals(Sets.newHashSet(3L), view.getDescendants(1L));
+		assertEquals(Sets.newHashSet(2L, 3L, 4L, 5L), taxonomy.getDescendants(1L));
+
+		// Only active concepts are returned
+		taxonomy.getAllConceptIds().remove(5L);
+		assertEquals(Sets.newHashSet(2L, 3L, 4L), taxonomy.getDescendants(1L));
+	}
+
+	@Test
+	public void testCopyOnWriteViewReadsBaseUntilChanged() {
+		SnomedTaxonomy taxonomy = new SnomedTaxonomy();
+		addIsA(taxonomy, 10, 2, Concepts.ROOT_LONG);
+		addIsA(taxonomy, 11, 3, Concepts.ROOT_LONG);
+		Relationship baseRelationship = taxonomy.getStatedRelationships(2L).iterator().next();
+
+		SnomedTaxonomy view = taxonomy.createCopyOnWriteView();
+		assertSame("Unchanged concepts are not copied", baseRelationship, view.getStatedRelationships(2L).iterator().next());
+		try {
+			view.getStatedRelationships(2L).clear();
+			fail("Relationships read from the base must be read only");
+		} catch (UnsupportedOperationException e) {
+			// Expected
+		}
+
+		view.addOrModifyRelationship(true, 2L, new Relationship(10, 20210131, 900000000000207008L, Concepts.IS_A_LONG, Concepts.ROOT_LONG,
+				1, 0, false, STATED));
+		assertEquals(1, view.getStatedRelationships(2L).iterator().next().getGroup());
+		assertEquals("The base is not changed by the view", 0, baseRelationship.getGroup());
+		assertEquals(20200101, baseRelationship.getEffectiveTime());
+	}
+
+	private void addIsA(SnomedTaxonomy taxonomy, long relationshipId, long conceptId, long parentId) {
+		taxonomy.getAllConceptIds().add(conceptId);
+		taxonomy.getAllConceptIds().add(parentId);
+		taxonomy.addOrModifyRelationship(true, conceptId, new Relationship(relationshipId, 20200101, 900000000000207008L, Concepts.IS_A_LONG, parentId,
+				0, 0, false, STATED));
+	}
+
+}
@@ -0,0 +1,538 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.testutil;
+
+import org.snomed.otf.owltoolkit.constants.Concepts;
+import org.snomed.otf.owltoolkit.ontology.OntologyService;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes RF2 snapshot and delta archives of a synthetic taxonomy defined by OWL axioms, for tests and benchmarks which need more content
+ * than the MiniRF2 fixtures. The same arguments always produce the same content, also when the snapshot and delta are written
+ * by different instances.
+ *
+ * Concepts form a tree below a single top level concept, with the given fan-out down to the maximum depth. Below that depth concepts
+ * are attached to random concepts higher up. Every third concept has role groups of attributes and every fifth of those is fully defined.
+ * Attribute values are taken from the first half of the concepts.
+ *
+ * Optionally role groups also have concrete values, some concepts have an additional GCI axiom, some attributes have property chains
+ * and extension modules add concepts below the international ones.
+ */
+public class SyntheticSnapshotGenerator {
+
+	private static final String EFFECTIVE_TIME = "20200731";
+	private static final String DELTA_EFFECTIVE_TIME = "20210131";
+	private static final String MODULE = Concepts.SNOMED_CT_CORE_MODULE;
+	private static final String MODEL_MODULE = Concepts.SNOMED_CT_MODEL_COMPONENT_MODULE;
+	private static final String OWL_AXIOM_REFSET = "733073007";
+	private static final String OWL_ONTOLOGY_REFSET = "762103008";
+	private static final String OWL_ONTOLOGY_NAMESPACE = "734146004";
+	private static final String HEADER_CONCEPT = "id\teffectiveTime\tactive\tmoduleId\tdefinitionStatusId\n";
+	private static final String HEADER_OWL_REFSET = "id\teffectiveTime\tactive\tmoduleId\trefsetId\treferencedComponentId\towlExpression\n";
+	private static final String HEADER_RELATIONSHIP = "id\teffectiveTime\tactive\tmoduleId\tsourceId\tdestinationId\trelationshipGroup\ttypeId\tcharacteristicTypeId\tmodifierId\n";
+
+	private static final long TOP_CONCEPT = 100000101L;
+	private static final long FIRST_ATTRIBUTE = 200000101L;
+	private static final long FIRST_DATA_ATTRIBUTE = 250000101L;
+	private static final long FIRST_CONCEPT = 300000101L;
+	private static final long FIRST_EXTENSION_MODULE = 400000101L;
+	private static final long FIRST_EXTENSION_CONCEPT = 500000101L;
+	private static final long FIRST_RELATIONSHIP = 600000121L;
+	private static final int ATTRIBUTES = 10;
+
+	// Concepts added by a delta are numbered after the snapshot concepts
+	private static final int DELTA_CONCEPT_OFFSET = 100_000_000;
+
+	private final int conceptCount;
+	private final int fanOut;
+	private final long seed;
+
+	private int maxDepth = Integer.MAX_VALUE;
+	private int roleGroups = 1;
+	private int attributesPerGroup = 1;
+	private int dataAttributes;
+	private int gciAxiomInterval;
+	private int propertyChains;
+	private int extensionModules;
+	private int extensionConceptsPerModule;
+	private boolean inferredRelationships;
+
+	private int[] parents;
+
+	public SyntheticSnapshotGenerator(int conceptCount, int fanOut, long seed) {
+		if (conceptCount < 1 || fanOut < 1) {
+			throw new IllegalArgumentException("Concept count and fan-out must be at least 1.");
+		}
+		this.conceptCount = conceptCount;
+		this.fanOut = fanOut;
+		this.seed = seed;
+	}
+
+	/**
+	 * Generator with proportions similar to a SNOMED CT edition, for load and scaling tests.
+	 * The international edition has around 360,000 concepts.
+	 */
+	public static SyntheticSnapshotGenerator editionScale(int conceptCount, long seed) {
+		return new SyntheticSnapshotGenerator(conceptCount, 6, seed)
+				.withMaxDepth(14)
+				.withRoleGroups(2, 2)
+				.withConcreteValues(2)
+				.withGciAxioms(50)
+				.withPropertyChains(2)
+				.withExtensionModules(1, Math.max(1, conceptCount / 100));
+	}
+
+	/**
+	 * Depth of the concepts below the top level concept, which has depth 0.
+	 */
+	public SyntheticSnapshotGenerator withMaxDepth(int maxDepth) {
+		if (maxDepth < 1) {
+			throw new IllegalArgumentException("Max depth must be at least 1.");
+		}
+		this.maxDepth = maxDepth;
+		parents = null;
+		return this;
+	}
+
+	/**
+	 * Number of role groups, and attributes within each group, of concepts which have attributes.
+	 */
+	public SyntheticSnapshotGenerator withRoleGroups(int roleGroups, int attributesPerGroup) {
+		if (roleGroups < 1 || attributesPerGroup < 1) {
+			throw new IllegalArgumentException("Role groups and attributes per group must be at least 1.");
+		}
+		this.roleGroups = roleGroups;
+		this.attributesPerGroup = attributesPerGroup;
+		return this;
+	}
+
+	/**
+	 * Adds an integer concrete value to each role group using one of the given number of data attributes.
+	 */
+	public SyntheticSnapshotGenerator withConcreteValues(int dataAttributes) {
+		this.dataAttributes = dataAttributes;
+		return this;
+	}
+
+	/**
+	 * Gives one in every interval concepts which have attributes an additional GCI axiom.
+	 */
+	public SyntheticSnapshotGenerator withGciAxioms(int interval) {
+		this.gciAxiomInterval = interval;
+		return this;
+	}
+
+	/**
+	 * Adds property chains to the first attributes. Attribute n followed by attribute n + 1 implies attribute n.
+	 */
+	public SyntheticSnapshotGenerator withPropertyChains(int propertyChains) {
+		if (propertyChains >= ATTRIBUTES) {
+			throw new IllegalArgumentException("At most " + (ATTRIBUTES - 1) + " property chains are supported.");
+		}
+		this.propertyChains = propertyChains;
+		return this;
+	}
+
+	/**
+	 * Adds an inferred relationship snapshot with the IS-A and attribute rows of the stated form of each concept.
+	 */
+	public SyntheticSnapshotGenerator withInferredRelationships() {
+		this.inferredRelationships = true;
+		return this;
+	}
+
+	/**
+	 * Adds extension modules, written to separate files of the snapshot archive.
+	 * Extension concepts are primitive, below international concepts which are also used as attribute values.
+	 */
+	public SyntheticSnapshotGenerator withExtensionModules(int extensionModules, int conceptsPerModule) {
+		this.extensionModules = extensionModules;
+		this.extensionConceptsPerModule = conceptsPerModule;
+		return this;
+	}
+
+	public File writeSnapshot() throws IOException {
+		File archive = File.createTempFile("synthetic-snapshot-" + conceptCount + "-", ".zip");
+		archive.deleteOnExit();
+		try (ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(archive));
+			 Writer writer = new BufferedWriter(new OutputStreamWriter(zipOutputStream, StandardCharsets.UTF_8))) {
+
+			zipOutputStream.putNextEntry(new ZipEntry("SnomedCT_Synthetic/Snapshot/Terminology/sct2_Concept_Snapshot_INT_" + EFFECTIVE_TIME + ".txt"));
+			writer.write(HEADER_CONCEPT);
+			writeConcept(writer, Concepts.ROOT, EFFECTIVE_TIME, true, MODULE, false);
+			for (String metadataConcept : new String[] {Concepts.SNOMED_CT_MODEL_COMPONENT, Concepts.IS_A, Concepts.CONCEPT_MODEL_ATTRIBUTE,
+					Concepts.CONCEPT_MODEL_OBJECT_ATTRIBUTE, Concepts.CONCEPT_MODEL_DATA_ATTRIBUTE}) {
+				writeConcept(writer, metadataConcept, EFFECTIVE_TIME, true, MODEL_MODULE, false);
+			}
+			writeConcept(writer, Long.toString(TOP_CONCEPT), EFFECTIVE_TIME, true, MODULE, false);
+			for (int i = 0; i < ATTRIBUTES; i++) {
+				writeConcept(writer, Long.toString(attributeId(i)), EFFECTIVE_TIME, true, MODULE, false);
+			}
+			for (int i = 0; i < dataAttributes; i++) {
+				writeConcept(writer, Long.toString(dataAttributeId(i)), EFFECTIVE_TIME, true, MODULE, false);
+			}
+			for (int i = 0; i < conceptCount; i++) {
+				writeConcept(writer, Long.toString(conceptId(i)), EFFECTIVE_TIME, true, MODULE, isFullyDefined(i));
+			}
+			writer.flush();
+
+			zipOutputStream.putNextEntry(new ZipEntry("SnomedCT_Synthetic/Snapshot/Terminology/sct2_sRefset_OWLOntologySnapshot_INT_" + EFFECTIVE_TIME + ".txt"));
+			writer.write(HEADER_OWL_REFSET);
+			writeRefsetMember(writer, memberId(OWL_ONTOLOGY_NAMESPACE, 0), EFFECTIVE_TIME, true, MODULE, OWL_ONTOLOGY_REFSET, OWL_ONTOLOGY_NAMESPACE,
+					"Prefix(:=<http://snomed.info/id/>)");
+			writer.flush();
+
+			zipOutputStream.putNextEntry(new ZipEntry("SnomedCT_Synthetic/Snapshot/Terminology/sct2_sRefset_OWLAxiomSnapshot_INT_" + EFFECTIVE_TIME + ".txt"));
+			writer.write(HEADER_OWL_REFSET);
+			writeAxiom(writer, Concepts.SNOMED_CT_MODEL_COMPONENT, 0, EFFECTIVE_TIME, true, MODULE,
+					"SubClassOf(:" + Concepts.SNOMED_CT_MODEL_COMPONENT + " :" + Concepts.ROOT + ")");
+			writeAxiom(writer, Concepts.IS_A, 0, EFFECTIVE_TIME, true, MODULE, "SubClassOf(:" + Concepts.IS_A + " :" + Concepts.SNOMED_CT_MODEL_COMPONENT + ")");
+			writeAxiom(writer, Concepts.CONCEPT_MODEL_ATTRIBUTE, 0, EFFECTIVE_TIME, true, MODULE,
+					"SubClassOf(:" + Concepts.CONCEPT_MODEL_ATTRIBUTE + " :" + Concepts.SNOMED_CT_MODEL_COMPONENT + ")");
+			writeAxiom(writer, Concepts.CONCEPT_MODEL_OBJECT_ATTRIBUTE, 0, EFFECTIVE_TIME, true, MODULE,
+					"SubClassOf(:" + Concepts.CONCEPT_MODEL_OBJECT_ATTRIBUTE + " :" + Concepts.CONCEPT_MODEL_ATTRIBUTE + ")");
+			writeAxiom(writer, Concepts.CONCEPT_MODEL_DATA_ATTRIBUTE, 0, EFFECTIVE_TIME, true, MODULE,
+					"SubClassOf(:" + Concepts.CONCEPT_MODEL_DATA_ATTRIBUTE + " :" + Concepts.CONCEPT_MODEL_ATTRIBUTE + ")");
+			writeAxiom(writer, Long.toString(TOP_CONCEPT), 0, EFFECTIVE_TIME, true, MODULE, "SubClassOf(:" + TOP_CONCEPT + " :" + Concepts.ROOT + ")");
+			for (int i = 0; i < ATTRIBUTES; i++) {
+				String attributeId = Long.toString(attributeId(i));
+				writeAxiom(writer, attributeId, 0, EFFECTIVE_TIME, true, MODULE, "SubObjectPropertyOf(:" + attributeId + " :" + Concepts.CONCEPT_MODEL_OBJECT_ATTRIBUTE + ")");
+				if (i < propertyChains) {
+					writeAxiom(writer, attributeId, 1, EFFECTIVE_TIME, true, MODULE,
+							"SubObjectPropertyOf(ObjectPropertyChain(:" + attributeId + " :" + attributeId(i + 1) + ") :" + attributeId + ")");
+				}
+			}
+			for (int i = 0; i < dataAttributes; i++) {
+				String dataAttributeId = Long.toString(dataAttributeId(i));
+				writeAxiom(writer, dataAttributeId, 0, EFFECTIVE_TIME, true, MODULE,
+						"SubDataPropertyOf(:" + dataAttributeId + " :" + Concepts.CONCEPT_MODEL_DATA_ATTRIBUTE + ")");
+			}
+			for (int i = 0; i < conceptCount; i++) {
+				String conceptId = Long.toString(conceptId(i));
+				writeAxiom(writer, conceptId, 0, EFFECTIVE_TIME, true, MODULE, getConceptAxiom(i, false));
+				if (hasGciAxiom(i)) {
+					writeAxiom(writer, conceptId, 1, EFFECTIVE_TIME, true, MODULE, getGciAxiom(i));
+				}
+			}
+			writer.flush();
+
+			if (inferredRelationships) {
+				zipOutputStream.putNextEntry(new ZipEntry("SnomedCT_Synthetic/Snapshot/Terminology/sct2_Relationship_Snapshot_INT_" + EFFECTIVE_TIME + ".txt"));
+				writer.write(HEADER_RELATIONSHIP);
+				writeInferredRelationships(writer);
+				writer.flush();
+			}
+
+			if (extensionModules > 0) {
+				writeExtensionFiles(zipOutputStream, writer);
+			}
+		}
+		return archive;
+	}
+
+	// Follows the same random sequence as getConceptAxiom so that the rows match the attributes of the axioms
+	private void writeInferredRelationships(Writer writer) throws IOException {
+		long relationshipNumber = 0;
+		for (int i = 0; i < conceptCount; i++) {
+			long conceptId = conceptId(i);
+			long parentId = getParent(i) == -1 ? TOP_CONCEPT : conceptId(getParent(i));
+			writeRelationship(writer, relationshipNumber++, conceptId, parentId, 0, Concepts.IS_A);
+			if (hasAttributes(i)) {
+				SplittableRandom random = getConceptRandom(i);
+				int valuePoolSize = Math.min(Math.max(i, 1), getValuePoolSize());
+				for (int group = 0; group < roleGroups; group++) {
+					for (int attribute = 0; attribute < attributesPerGroup; attribute++) {
+						String attributeId = Long.toString(attributeId(random.nextInt(ATTRIBUTES)));
+						writeRelationship(writer, relationshipNumber++, conceptId, conceptId(random.nextInt(valuePoolSize)), group + 1, attributeId);
+					}
+					if (dataAttributes > 0) {
+						random.nextInt(dataAttributes);
+						random.nextInt(1, 11);
+					}
+				}
+			}
+		}
+	}
+
+	private void writeRelationship(Writer writer, long relationshipNumber, long sourceId, long destinationId, int group, String typeId) throws IOException {
+		writer.write(String.join("\t", Long.toString(FIRST_RELATIONSHIP + relationshipNumber * 1000L), EFFECTIVE_TIME, "1", MODULE,
+				Long.toString(sourceId), Long.toString(destinationId), Integer.toString(group), typeId, Concepts.INFERRED_RELATIONSHIP,
+				Concepts.EXISTENTIAL_RESTRICTION_MODIFIER) + "\n");
+	}
+
+	/**
+	 * Writes a delta archive which changes the content of the snapshot.
+	 * Changes are made in turn: a new concept, a new role group on an existing concept which may be used as an attribute value
+	 * and the inactivation of a leaf concept which is not. Inactivations stop when there are no more candidates.
+	 */
+	public File writeDelta(int changeCount) throws IOException {
+		File archive = File.createTempFile("synthetic-delta-" + conceptCount + "-", ".zip");
+		archive.deleteOnExit();
+		SplittableRandom random = new SplittableRandom(seed ^ 0x5DEECE66DL);
+		BitSet hasChildren = getConceptsWithChildren();
+
+		StringBuilder concepts = new StringBuilder();
+		StringBuilder axioms = new StringBuilder();
+		int nextInactivationCandidate = conceptCount - 1;
+		for (int change = 0; change < changeCount; change++) {
+			switch (change % 3) {
+				case 0:
+					int newConcept = DELTA_CONCEPT_OFFSET + change;
+					long newConceptId = conceptId(newConcept);
+					long parentId = conceptId(random.nextInt(getValuePoolSize()));
+					appendConcept(concepts, Long.toString(newConceptId), DELTA_EFFECTIVE_TIME, true, MODULE, false);
+					appendRefsetMember(axioms, memberId(Long.toString(newConceptId), 0), DELTA_EFFECTIVE_TIME, true, MODULE, OWL_AXIOM_REFSET,
+							Long.toString(newConceptId), "SubClassOf(:" + newConceptId + " ObjectIntersectionOf(:" + parentId + " " +
+									getRoleGroup(random, getValuePoolSize()) + "))");
+					break;
+				case 1:
+					int changedConcept = random.nextInt(getValuePoolSize());
+					String changedConceptId = Long.toString(conceptId(changedConcept));
+					appendRefsetMember(axioms, memberId(changedConceptId, 0), DELTA_EFFECTIVE_TIME, true, MODULE, OWL_AXIOM_REFSET,
+							changedConceptId, getConceptAxiom(changedConcept, true));
+					break;
+				default:
+					while (nextInactivationCandidate >= getValuePoolSize() && hasChildren.get(nextInactivationCandidate)) {
+						nextInactivationCandidate--;
+					}
+					if (nextInactivationCandidate < getValuePoolSize()) {
+						break;
+					}
+					int inactiveConcept = nextInactivationCandidate--;
+					String inactiveConceptId = Long.toString(conceptId(inactiveConcept));
+					appendConcept(concepts, inactiveConceptId, DELTA_EFFECTIVE_TIME, false, MODULE, isFullyDefined(inactiveConcept));
+					appendRefsetMember(axioms, memberId(inactiveConceptId, 0), DELTA_EFFECTIVE_TIME, false, MODULE, OWL_AXIOM_REFSET,
+							inactiveConceptId, getConceptAxiom(inactiveConcept, false));
+					if (hasGciAxiom(inactiveConcept)) {
+						appendRefsetMember(axioms, memberId(inactiveConceptId, 1), DELTA_EFFECTIVE_TIME, false, MODULE, OWL_AXIOM_REFSET,
+								inactiveConceptId, getGciAxiom(inactiveConcept));
+					}
+			}
+		}
+
+		try (ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(archive));
+			 Writer writer = new BufferedWriter(new OutputStreamWriter(zipOutputStream, StandardCharsets.UTF_8))) {
+
+			zipOutputStream.putNextEntry(new ZipEntry("SnomedCT_Synthetic/Delta/Terminology/sct2_Concept_Delta_INT_" + DELTA_EFFECTIVE_TIME + ".txt"));
+			writer.write(HEADER_CONCEPT);
+			writer.write(concepts.toString());
+			writer.flush();
+
+			zipOutputStream.putNextEntry(new ZipEntry("SnomedCT_Synthetic/Delta/Terminology/sct2_sRefset_OWLAxiomDelta_INT_" + DELTA_EFFECTIVE_TIME + ".txt"));
+			writer.write(HEADER_OWL_REFSET);
+			writer.write(axioms.toString());
+			writer.flush();
+		}
+		return archive;
+	}
+
+	private void writeExtensionFiles(ZipOutputStream zipOutputStream, Writer writer) throws IOException {
+		zipOutputStream.putNextEntry(new ZipEntry("SnomedCT_Synthetic/Snapshot/Terminology/sct2_Concept_Snapshot_Extension_" + EFFECTIVE_TIME + ".txt"));
+		writer.write(HEADER_CONCEPT);
+		for (int module = 0; module < extensionModules; module++) {
+			String moduleId = Long.toString(extensionModuleId(module));
+			writeConcept(writer, moduleId, EFFECTIVE_TIME, true, moduleId, false);
+			for (int i = 0; i < extensionConceptsPerModule; i++) {
+				writeConcept(writer, Long.toString(extensionConceptId(module, i)), EFFECTIVE_TIME, true, moduleId, false);
+			}
+		}
+		writer.flush();
+
+		zipOutputStream.putNextEntry(new ZipEntry("SnomedCT_Synthetic/Snapshot/Terminology/sct2_sRefset_OWLAxiomSnapshot_Extension_" + EFFECTIVE_TIME + ".txt"));
+		writer.write(HEADER_OWL_REFSET);
+		for (int module = 0; module < extensionModules; module++) {
+			String moduleId = Long.toString(extensionModuleId(module));
+			writeAxiom(writer, moduleId, 0, EFFECTIVE_TIME, true, moduleId, "SubClassOf(:" + moduleId + " :" + Concepts.SNOMED_CT_MODEL_COMPONENT + ")");
+			for (int i = 0; i < extensionConceptsPerModule; i++) {
+				long conceptId = extensionConceptId(module, i);
+				SplittableRandom random = new SplittableRandom(seed ^ conceptId);
+				writeAxiom(writer, Long.toString(conceptId), 0, EFFECTIVE_TIME, true, moduleId, "SubClassOf(:" + conceptId + " :" + conceptId(random.nextInt(getValuePoolSize())) + ")");
+			}
+		}
+		writer.flush();
+	}
+
+	private String getConceptAxiom(int i, boolean withAdditionalRoleGroup) {
+		long conceptId = conceptId(i);
+		long parentId = getParent(i) == -1 ? TOP_CONCEPT : conceptId(getParent(i));
+		if (!hasAttributes(i) && !withAdditionalRoleGroup) {
+			return "SubClassOf(:" + conceptId + " :" + parentId + ")";
+		}
+		SplittableRandom random = getConceptRandom(i);
+		int valuePoolSize = Math.min(Math.max(i, 1), getValuePoolSize());
+		StringBuilder definition = new StringBuilder("ObjectIntersectionOf(:").append(parentId);
+		for (int group = hasAttributes(i) ? 0 : roleGroups; group < roleGroups + (withAdditionalRoleGroup ? 1 : 0); group++) {
+			definition.append(" ").append(getRoleGroup(random, valuePoolSize));
+		}
+		definition.append(")");
+		return isFullyDefined(i) ?
+				"EquivalentClasses(:" + conceptId + " " + definition + ")" :
+				"SubClassOf(:" + conceptId + " " + definition + ")";
+	}
+
+	private String getGciAxiom(int i) {
+		SplittableRandom random = new SplittableRandom(seed ^ ~conceptId(i));
+		long parentId = getParent(i) == -1 ? TOP_CONCEPT : conceptId(getParent(i));
+		return "SubClassOf(ObjectIntersectionOf(:" + parentId + " " + getRoleGroup(random, Math.min(i, getValuePoolSize())) + ") :" + conceptId(i) + ")";
+	}
+
+	private String getRoleGroup(SplittableRandom random, int valuePoolSize) {
+		StringBuilder group = new StringBuilder("ObjectSomeValuesFrom(:").append(OntologyService.ROLE_GROUP_SCTID).append(" ");
+		int groupSize = attributesPerGroup + (dataAttributes > 0 ? 1 : 0);
+		if (groupSize > 1) {
+			group.append("ObjectIntersectionOf(");
+		}
+		for (int i = 0; i < attributesPerGroup; i++) {
+			if (i > 0) {
+				group.append(" ");
+			}
+			group.append("ObjectSomeValuesFrom(:").append(attributeId(random.nextInt(ATTRIBUTES)))
+					.append(" :").append(conceptId(random.nextInt(valuePoolSize))).append(")");
+		}
+		if (dataAttributes > 0) {
+			group.append(" DataHasValue(:").append(dataAttributeId(random.nextInt(dataAttributes)))
+					.append(" \"").append(random.nextInt(1, 11)).append("\"^^xsd:integer)");
+		}
+		if (groupSize > 1) {
+			group.append(")");
+		}
+		return group.append(")").toString();
+	}
+
+	private SplittableRandom getConceptRandom(int i) {
+		return new SplittableRandom(seed ^ conceptId(i));
+	}
+
+	private boolean hasAttributes(int i) {
+		return i % 3 == 0 && i > 0;
+	}
+
+	private boolean isFullyDefined(int i) {
+		return i % 15 == 0 && i > 0;
+	}
+
+	private boolean hasGciAxiom(int i) {
+		return gciAxiomInterval > 0 && hasAttributes(i) && (i / 3) % gciAxiomInterval == 0;
+	}
+
+	// Concepts which may be attribute values or parents of extension and new concepts, so are never inactivated
+	private int getValuePoolSize() {
+		return Math.max(1, conceptCount / 2);
+	}
+
+	/**
+	 * @return index of the parent concept or -1 for the top level concept.
+	 */
+	private int getParent(int i) {
+		if (parents == null) {
+			parents = calculateParents();
+		}
+		return parents[i];
+	}
+
+	// Breadth first, so the concepts above the max depth are the first ones until the max depth is reached.
+	// After that concepts are attached to one of those at random.
+	private int[] calculateParents() {
+		int[] parents = new int[conceptCount];
+		int[] depths = new int[conceptCount];
+		int conceptsAboveMaxDepth = 0;
+		for (int i = 0; i < conceptCount; i++) {
+			int parent = i < fanOut ? -1 : (i - fanOut) / fanOut;
+			if (parent != -1 && depths[parent] >= maxDepth) {
+				parent = conceptsAboveMaxDepth == 0 ? -1 : getConceptRandom(i).nextInt(conceptsAboveMaxDepth);
+			}
+			parents[i] = parent;
+			depths[i] = parent == -1 ? 1 : depths[parent] + 1;
+			if (depths[i] < maxDepth && conceptsAboveMaxDepth == i) {
+				conceptsAboveMaxDepth++;
+			}
+		}
+		return parents;
+	}
+
+	private BitSet getConceptsWithChildren() {
+		BitSet hasChildren = new BitSet(conceptCount);
+		for (int i = 0; i < conceptCount; i++) {
+			if (getParent(i) != -1) {
+				hasChildren.set(getParent(i));
+			}
+		}
+		return hasChildren;
+	}
+
+	private static long attributeId(int i) {
+		return FIRST_ATTRIBUTE + i * 1000L;
+	}
+
+	private static long dataAttributeId(int i) {
+		return FIRST_DATA_ATTRIBUTE + i * 1000L;
+	}
+
+	private static long conceptId(int i) {
+		return FIRST_CONCEPT + i * 1000L;
+	}
+
+	private static long extensionModuleId(int module) {
+		return FIRST_EXTENSION_MODULE + module * 1000L;
+	}
+
+	private long extensionConceptId(int module, int i) {
+		return FIRST_EXTENSION_CONCEPT + ((long) module * extensionConceptsPerModule + i) * 1000L;
+	}
+
+	// Stable identifiers so that delta rows replace snapshot rows
+	private static String memberId(String referencedComponentId, int axiomNumber) {
+		return UUID.nameUUIDFromBytes((referencedComponentId + "-" + axiomNumber).getBytes(StandardCharsets.UTF_8)).toString();
+	}
+
+	private void writeConcept(Writer writer, String conceptId, String effectiveTime, boolean active, String moduleId, boolean fullyDefined) throws IOException {
+		StringBuilder line = new StringBuilder();
+		appendConcept(line, conceptId, effectiveTime, active, moduleId, fullyDefined);
+		writer.write(line.toString());
+	}
+
+	private void writeAxiom(Writer writer, String conceptId, int axiomNumber, String effectiveTime, boolean active, String moduleId, String owlExpression) throws IOException {
+		writeRefsetMember(writer, memberId(conceptId, axiomNumber), effectiveTime, active, moduleId, OWL_AXIOM_REFSET, conceptId, owlExpression);
+	}
+
+	private void writeRefsetMember(Writer writer, String memberId, String effectiveTime, boolean active, String moduleId, String refsetId,
+			String referencedComponentId, String owlExpression) throws IOException {
+
+		StringBuilder line = new StringBuilder();
+		appendRefsetMember(line, memberId, effectiveTime, active, moduleId, refsetId, referencedComponentId, owlExpression);
+		writer.write(line.toString());
+	}
+
+	private static void appendConcept(StringBuilder builder, String conceptId, String effectiveTime, boolean active, String moduleId, boolean fullyDefined) {
+		builder.append(String.join("\t", conceptId, effectiveTime, active ? "1" : "0", moduleId, fullyDefined ? Concepts.FULLY_DEFINED : Concepts.PRIMITIVE))
+				.append("\n");
+	}
+
+	private static void appendRefsetMember(StringBuilder builder, String memberId, String effectiveTime, boolean active, String moduleId, String refsetId,
+			String referencedComponentId, String owlExpression) {
+
+		builder.append(String.join("\t", memberId, effectiveTime, active ? "1" : "0", moduleId, refsetId, referencedComponentId, owlExpression))
+				.append("\n");
+	}
+
+}